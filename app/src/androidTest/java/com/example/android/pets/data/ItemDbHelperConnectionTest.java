@@ -0,0 +1,89 @@
+package com.example.android.pets.data;
+
+import android.content.Context;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/**
+ * Checks the connection settings on the device's own SQLite, which decides whether write-ahead
+ * logging and the other pragmas are honoured.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ItemDbHelperConnectionTest {
+
+    private Context mContext;
+    private ItemDbHelper mDbHelper;
+
+    @Before
+    public void setUp() {
+        mContext = InstrumentationRegistry.getTargetContext();
+        // The page size only applies to a new database file
+        mContext.deleteDatabase(ItemDbHelper.DATABASE_NAME);
+        mDbHelper = new ItemDbHelper(mContext);
+    }
+
+    @After
+    public void tearDown() {
+        mDbHelper.close();
+        mContext.deleteDatabase(ItemDbHelper.DATABASE_NAME);
+    }
+
+    @Test
+    public void defaultConfigUsesWriteAheadLogging() {
+        SQLiteDatabase db = mDbHelper.getWritableDatabase();
+        assertEquals("wal", DatabaseUtils.stringForQuery(db, "PRAGMA journal_mode", null));
+    }
+
+    @Test
+    public void defaultConfigIsApplied() {
+        SQLiteDatabase db = mDbHelper.getWritableDatabase();
+        ItemDbConfig config = ItemDbConfig.DEFAULT;
+        // The helper configures the primary connection, which a transaction runs on
+        db.beginTransaction();
+        try {
+            assertEquals(config.pageSize,
+                    DatabaseUtils.longForQuery(db, "PRAGMA page_size", null));
+            assertEquals(config.getCacheSizePages(),
+                    DatabaseUtils.longForQuery(db, "PRAGMA cache_size", null));
+            // 1 is NORMAL
+            assertEquals(1, DatabaseUtils.longForQuery(db, "PRAGMA synchronous", null));
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    @Test
+    public void foreignKeysAreEnforcedOnReadConnections() {
+        SQLiteDatabase db = mDbHelper.getReadableDatabase();
+        // Outside a transaction, write-ahead logging sends reads to the pool's other connections
+        assertEquals(1, DatabaseUtils.longForQuery(db, "PRAGMA foreign_keys", null));
+    }
+
+    @Test
+    public void rollbackJournalCanBeConfigured() {
+        mDbHelper.close();
+        mDbHelper = new ItemDbHelper(mContext,
+                new ItemDbConfig(false, ItemDbConfig.SYNCHRONOUS_FULL, 4096, 2048));
+        SQLiteDatabase db = mDbHelper.getWritableDatabase();
+        // The rollback journal mode is the device's default, which varies
+        assertFalse("wal".equalsIgnoreCase(
+                DatabaseUtils.stringForQuery(db, "PRAGMA journal_mode", null)));
+        db.beginTransaction();
+        try {
+            // 2 is FULL
+            assertEquals(2, DatabaseUtils.longForQuery(db, "PRAGMA synchronous", null));
+        } finally {
+            db.endTransaction();
+        }
+    }
+}
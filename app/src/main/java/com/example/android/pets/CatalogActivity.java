@@ -5,25 +5,75 @@ import android.content.Intent;
 import android.database.Cursor;
 import android.net.Uri;
 import android.os.Bundle;
+import android.os.SystemClock;
 import android.support.design.widget.FloatingActionButton;
+import android.support.v4.app.LoaderManager;
+import android.support.v4.content.CursorLoader;
+import android.support.v4.content.Loader;
 import android.support.v7.app.AppCompatActivity;
 import android.util.Log;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.view.View;
-import android.widget.TextView;
+import android.widget.AbsListView;
+import android.widget.ListView;
 
+import java.util.ArrayList;
+
+import com.example.android.pets.data.ItemContract;
 import com.example.android.pets.data.ItemContract.ItemEntry;
-import com.example.android.pets.data.ItemDbHelper;
+import com.example.android.pets.data.ItemSnapshot;
+import com.example.android.pets.data.ItemWriteQueue;
 
 /**
- * Displays list of pets that were entered and stored in the app.
+ * Displays list of items that were entered and stored in the app.
  */
-public class CatalogActivity extends AppCompatActivity {
+public class CatalogActivity extends AppCompatActivity implements
+        LoaderManager.LoaderCallbacks<Cursor> {
+
+    /** Tag for the log messages */
+    private static final String LOG_TAG = CatalogActivity.class.getSimpleName();
+
+    /** Number of rows read by each page loader. Page i is read by the loader with ID i. */
+    private static final int PAGE_SIZE = 50;
+
+    /** Number of rows before the end of the loaded pages at which the next page is requested */
+    private static final int PREFETCH_MARGIN = 15;
+
+    /** Loader argument: URI of the page (String) */
+    private static final String ARG_PAGE_URI = "pageUri";
+
+    /**
+     * Loader argument: largest _id the page may hold (long), set once the page after it has
+     * been requested. Items added later then only ever show up in the last page.
+     */
+    private static final String ARG_PAGE_MAX_ID = "pageMaxId";
+
+    /** Saved state: the loader arguments of every requested page */
+    private static final String STATE_PAGES = "pages";
+
+    /** Adapter for the ListView */
+    private ItemCursorAdapter mCursorAdapter;
+
+    /** Loader arguments of each requested page */
+    private ArrayList<Bundle> mPageArgs = new ArrayList<Bundle>();
+
+    /** Latest rows of each requested page, or null until its loader first delivers */
+    private final ArrayList<Cursor> mPages = new ArrayList<Cursor>();
+
+    /** Rows from the saved snapshot, shown until the loader delivers the real ones */
+    private Cursor mSnapshotCursor;
+
+    /** {@link SystemClock#elapsedRealtime()} when the activity was created */
+    private long mCreateTime;
+
+    /** Whether the time until the list first had rows has been logged */
+    private boolean mFirstRowsLogged;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        mCreateTime = SystemClock.elapsedRealtime();
         setContentView(R.layout.activity_catalog);
 
         // Setup FAB to open EditorActivity
@@ -35,89 +85,182 @@ public class CatalogActivity extends AppCompatActivity {
                 startActivity(intent);
             }
         });
+
+        // Find the ListView which will be populated with the item data
+        ListView itemListView = (ListView) findViewById(R.id.list);
+
+        // Find and set empty view on the ListView, so that it only shows when the list has 0 items.
+        View emptyView = findViewById(R.id.empty_view);
+        itemListView.setEmptyView(emptyView);
+
+        // Setup an Adapter to create a list item for each row of item data in the Cursor.
+        // There is no item data yet (until the loader finishes) so pass in null for the Cursor.
+        mCursorAdapter = new ItemCursorAdapter(this, null);
+        itemListView.setAdapter(mCursorAdapter);
+        itemListView.setOnScrollListener(mScrollListener);
+
+        // Show the rows saved by the last run straight away, while the loader opens the
+        // database and reads the real ones
+        mSnapshotCursor = ItemSnapshot.read(this);
+        if (mSnapshotCursor != null) {
+            mCursorAdapter.swapCursor(mSnapshotCursor);
+            logFirstRows(mSnapshotCursor, "snapshot");
+        }
+
+        // Kick off a loader for each page: the first one, or every page the user had already
+        // scrolled through if the activity is being recreated
+        if (savedInstanceState != null) {
+            mPageArgs = savedInstanceState.getParcelableArrayList(STATE_PAGES);
+        } else {
+            Bundle args = new Bundle();
+            args.putString(ARG_PAGE_URI,
+                    ItemEntry.buildPageUri(ItemContract.SORT_BY_ID, PAGE_SIZE).toString());
+            mPageArgs.add(args);
+        }
+        LoaderManager loaderManager = getSupportLoaderManager();
+        for (int i = 0; i < mPageArgs.size(); i++) {
+            mPages.add(null);
+            loaderManager.initLoader(i, mPageArgs.get(i), this);
+        }
     }
 
     @Override
-    protected void onStart () {
-        super.onStart();
-        displayDatabaseInfo();
+    protected void onSaveInstanceState(Bundle outState) {
+        super.onSaveInstanceState(outState);
+        outState.putParcelableArrayList(STATE_PAGES, mPageArgs);
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        // The snapshot cursor is still ours if the loader never delivered
+        if (mSnapshotCursor != null) {
+            mSnapshotCursor.close();
+            mSnapshotCursor = null;
+        }
+    }
+
+    /**
+     * Log how long after the activity was created the list first had rows to show, which is
+     * the time to first row on a cold start with or without a snapshot.
+     */
+    private void logFirstRows(Cursor cursor, String source) {
+        if (!mFirstRowsLogged && cursor.getCount() > 0) {
+            mFirstRowsLogged = true;
+            Log.i(LOG_TAG, "First rows from " + source + " after "
+                    + (SystemClock.elapsedRealtime() - mCreateTime) + " ms");
+        }
     }
 
     /**
-     * Temporary helper method to display information in the onscreen TextView about the state of
-     * the pets database.
+     * Request the next page once the user scrolls to within {@link #PREFETCH_MARGIN} rows of
+     * the end of what has been read so far.
      */
-    private void displayDatabaseInfo() {
-
-        // Define a projection that specifies which columns from the database
-        // you will actually use after this query.
-        String [] projection = {
-                ItemEntry._ID,
-                ItemEntry.COLUMN_ITEM_NAME,
-                ItemEntry.COLUMN_ITEM_PRICE,
-                ItemEntry.COLUMN_ITEM_QUANTITY,
-                ItemEntry.COLUMN_ITEM_SUPPLIER_NAME,
-                ItemEntry.COLUMN_ITEM_SUPPLIER_PHONE
-        };
-
-        // Perform a query on the provider using ContentResolver.
-        // Use the {@link PetEntry#CONTENT_URI} to access the item data.
-        Cursor cursor = getContentResolver().query(
-                ItemEntry.CONTENT_URI,   // the content URI of the items table
-                projection,             // the columns to return for each row
-                null,          // selection criteria
-                null,       // selection criteria
-                null);          // the sort order for returned rows
-
-        TextView displayView = (TextView) findViewById(R.id.text_view_item);
-
-        try {
-            // Create a header in the Text View that looks like this:
-            //
-            // The items table contains <number of rows in Cursor> items.
-            // _id - name - price - quantity - supplier name - supplier phone
-            //
-            // In the while loop below, iterate through the rows of the cursor and display
-            // the information from each column in this order.
-            displayView.setText("The items table contains " + cursor.getCount() + " items.\n\n");
-            displayView.append(ItemEntry._ID + " - " +
-                    ItemEntry.COLUMN_ITEM_NAME + " - " +
-                    ItemEntry.COLUMN_ITEM_PRICE + " - " +
-                    ItemEntry.COLUMN_ITEM_QUANTITY + " - " +
-                    ItemEntry.COLUMN_ITEM_SUPPLIER_NAME + " - " +
-                    ItemEntry.COLUMN_ITEM_SUPPLIER_PHONE + "\n");
-
-            // Figure out the index of each column
-            int idColumnIndex = cursor.getColumnIndex(ItemEntry._ID);
-            int nameColumnIndex = cursor.getColumnIndex(ItemEntry.COLUMN_ITEM_NAME);
-            int priceColumnIndex = cursor.getColumnIndex(ItemEntry.COLUMN_ITEM_PRICE);
-            int quantityColumnIndex = cursor.getColumnIndex(ItemEntry.COLUMN_ITEM_QUANTITY);
-            int supplierNameColumnIndex = cursor.getColumnIndex(ItemEntry.COLUMN_ITEM_SUPPLIER_NAME);
-            int supplierPhoneColumnIndex = cursor.getColumnIndex(ItemEntry.COLUMN_ITEM_SUPPLIER_PHONE);
-
-            // Iterate through all the returned rows in the cursor
-            while (cursor.moveToNext()) {
-                // Use that index to extract the String or Int value of the word
-                // at the current row the cursor is on.
-                int currentID = cursor.getInt(idColumnIndex);
-                String currentName = cursor.getString(nameColumnIndex);
-                int currentPrice = cursor.getInt(priceColumnIndex);
-                int currentQuantity = cursor.getInt(quantityColumnIndex);
-                String currentSupplierName = cursor.getString(supplierNameColumnIndex);
-                String currentSupplierPhone = cursor.getString(supplierPhoneColumnIndex);
-
-                // Display the values from each column of the current row in the cursor in the TextView
-                displayView.append(("\n" + currentID + " - " +
-                        currentName + " - " +
-                        currentPrice + " - " +
-                        currentQuantity + " - " +
-                        currentSupplierName + " - " +
-                        currentSupplierPhone));
+    private final AbsListView.OnScrollListener mScrollListener = new AbsListView.OnScrollListener() {
+        @Override
+        public void onScrollStateChanged(AbsListView view, int scrollState) {
+        }
+
+        @Override
+        public void onScroll(AbsListView view, int firstVisibleItem, int visibleItemCount,
+                             int totalItemCount) {
+            // Only ask for more rows once the last page has loaded, and only if it was full,
+            // otherwise everything in the table has already been read.
+            int lastPage = mPages.size() - 1;
+            Cursor last = lastPage >= 0 ? mPages.get(lastPage) : null;
+            if (last == null
+                    || firstVisibleItem + visibleItemCount + PREFETCH_MARGIN < totalItemCount) {
+                return;
             }
-        } finally {
-            // Always close the cursor when you're done reading from it. This releases all its
-            // resources and makes it invalid.
-            cursor.close();
+            String nextPageUri = last.getExtras().getString(ItemContract.EXTRA_NEXT_PAGE_URI);
+            if (nextPageUri == null || !last.moveToLast()) {
+                return;
+            }
+            long lastId = last.getLong(last.getColumnIndexOrThrow(ItemEntry._ID));
+
+            // Close off the last page at its current last row, so that when it reloads after a
+            // change it neither picks up rows that belong to the new page nor drops its own
+            Bundle lastArgs = new Bundle(mPageArgs.get(lastPage));
+            lastArgs.putLong(ARG_PAGE_MAX_ID, lastId);
+            mPageArgs.set(lastPage, lastArgs);
+            getSupportLoaderManager().restartLoader(lastPage, lastArgs, CatalogActivity.this);
+
+            // The new page only reads the rows after it, however many rows there already are
+            Bundle nextArgs = new Bundle();
+            nextArgs.putString(ARG_PAGE_URI, nextPageUri);
+            mPageArgs.add(nextArgs);
+            mPages.add(null);
+            getSupportLoaderManager().initLoader(lastPage + 1, nextArgs, CatalogActivity.this);
+        }
+    };
+
+    @Override
+    public Loader<Cursor> onCreateLoader(int id, Bundle args) {
+        // Each page is read with keyset pagination, starting after the last ID of the page
+        // before it, so reading page n costs the same as reading the first and pages already
+        // shown are never read again just to show more.
+        String selection = null;
+        String[] selectionArgs = null;
+        if (args.containsKey(ARG_PAGE_MAX_ID)) {
+            selection = ItemEntry._ID + " <= ?";
+            selectionArgs = new String[] { String.valueOf(args.getLong(ARG_PAGE_MAX_ID)) };
+        }
+
+        // This loader will execute the ContentProvider's query method on a background thread
+        return new CursorLoader(this,                   // Parent activity context
+                Uri.parse(args.getString(ARG_PAGE_URI)), // Provider content URI to query
+                ItemEntry.LIST_PROJECTION,              // Only the columns a list row shows
+                selection,                              // Upper bound, once closed off
+                selectionArgs,                          // Arguments for the upper bound
+                null);                                  // Always in ID order for keyset pages
+    }
+
+    @Override
+    public void onLoadFinished(Loader<Cursor> loader, Cursor data) {
+        int page = loader.getId();
+        mPages.set(page, data);
+        showPages();
+        if (page == 0 && data != null) {
+            logFirstRows(data, "provider");
+            // Keep the first rows for the next start. This only copies them out of the cursor;
+            // the file is written in the background, and not at all if they haven't changed.
+            ItemSnapshot.save(this, data);
+        }
+    }
+
+    @Override
+    public void onLoaderReset(Loader<Cursor> loader) {
+        // Callback called when the data needs to be deleted
+        mPages.set(loader.getId(), null);
+        showPages();
+    }
+
+    /**
+     * Show the loaded pages in order, up to the first one that hasn't been delivered yet.
+     */
+    private void showPages() {
+        int loaded = 0;
+        while (loaded < mPages.size() && mPages.get(loaded) != null) {
+            loaded++;
+        }
+        if (loaded == 0 && mSnapshotCursor != null) {
+            // Keep showing the snapshot until the first page arrives
+            return;
+        }
+
+        Cursor merged = null;
+        if (loaded > 0) {
+            merged = new PageListCursor(mPages.subList(0, loaded).toArray(new Cursor[loaded]));
+        }
+
+        // Update {@link ItemCursorAdapter} with the merged pages. The loaders own the page
+        // cursors, but the merged or snapshot cursor being replaced is ours to close.
+        Cursor oldCursor = mCursorAdapter.swapCursor(merged);
+        if (oldCursor == mSnapshotCursor) {
+            mSnapshotCursor = null;
+        }
+        if (oldCursor != null) {
+            oldCursor.close();
         }
     }
 
@@ -129,17 +272,16 @@ public class CatalogActivity extends AppCompatActivity {
         // and notebook attributes are the values.
         ContentValues values = new ContentValues();
         values.put(ItemEntry.COLUMN_ITEM_NAME, "Notebook");
-        values.put(ItemEntry.COLUMN_ITEM_PRICE, 1.99);
+        values.put(ItemEntry.COLUMN_ITEM_PRICE, 199);
         values.put(ItemEntry.COLUMN_ITEM_QUANTITY, 30);
         values.put(ItemEntry.COLUMN_ITEM_SUPPLIER_NAME, "Tree Killers");
         values.put(ItemEntry.COLUMN_ITEM_SUPPLIER_PHONE, "18001234567");
 
-        // Insert a new row for the notebook into the provider using the ContentResolver.
-        // Use the {@link ItemEntry#CONTENT_URI} to indicate that we want to insert
-        // into the items database table.
-        // Receive the new content URI that will allow us to access notebook data in the future.
-        Uri newUri = getContentResolver().insert(ItemEntry.CONTENT_URI, values);
+        // Queue the insert of a new row for the notebook. It runs on the background writer,
+        // and the list reloads once it has been committed.
+        ItemWriteQueue.getInstance(this).insert(values, null);
     }
+
     @Override
     public boolean onCreateOptionsMenu(Menu menu) {
         // Inflate the menu options from the res/menu/menu_catalog.xml file.
@@ -155,11 +297,11 @@ public class CatalogActivity extends AppCompatActivity {
             // Respond to a click on the "Insert dummy data" menu option
             case R.id.action_insert_dummy_data:
                 insertItem();
-                displayDatabaseInfo();
                 return true;
-            // Respond to a click on the "Delete all entries" menu option
+            // Respond to a click on the "Delete all entries" menu option. The delete runs on
+            // the background writer, and the list reloads once it has been committed.
             case R.id.action_delete_all_entries:
-                // Do nothing for now
+                ItemWriteQueue.getInstance(this).delete(ItemEntry.CONTENT_URI, null);
                 return true;
         }
         return super.onOptionsItemSelected(item);
@@ -1,13 +1,15 @@
 package com.example.android.pets;
 
 import android.content.ClipData;
+import android.content.ContentProviderResult;
 import android.content.ContentValues;
+import android.content.Context;
 import android.database.sqlite.SQLiteDatabase;
-import android.net.Uri;
 import android.os.Bundle;
 import android.support.v4.app.NavUtils;
 import android.support.v7.app.AppCompatActivity;
 import android.text.TextUtils;
+import android.util.Log;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.view.View;
@@ -19,12 +21,15 @@ import android.widget.Toast;
 
 import com.example.android.pets.data.ItemContract.ItemEntry;
 import com.example.android.pets.data.ItemDbHelper;
+import com.example.android.pets.data.ItemWriteQueue;
 
 /**
  * Allows user to create a new item or edit an existing one.
  */
 public class EditorActivity extends AppCompatActivity {
 
+    private static final String LOG_TAG = EditorActivity.class.getSimpleName();
+
     /** EditText field to enter the item's name */
     private EditText mNameEditText;
 
@@ -63,9 +68,10 @@ public class EditorActivity extends AppCompatActivity {
     }
 
     /**
-     * Get user input from editor and save new item into database.
+     * Get user input from editor and queue the new item to be saved into the database.
+     * Return false if the input can't be saved, in which case the editor should stay open.
      */
-    private void insertItem() {
+    private boolean insertItem() {
         // Read from input fields
         // Use trim to eliminate leading or trailing white space
         String nameString = mNameEditText.getText().toString().trim();
@@ -74,28 +80,42 @@ public class EditorActivity extends AppCompatActivity {
         String supplierNameString = mSupplierNameEditText.getText().toString().trim();
         String supplierPhoneString = mSupplierPhoneEditText.getText().toString().trim();
 
+        // Convert the price to cents and the quantity to a number. If either can't be read,
+        // there's nothing sensible to save.
+        long priceCents;
+        int quantity;
+        try {
+            priceCents = ItemEntry.parsePrice(priceString);
+            quantity = Integer.parseInt(quantityString);
+        } catch (NumberFormatException e) {
+            Toast.makeText(this, getString(R.string.editor_insert_item_failed),
+                    Toast.LENGTH_SHORT).show();
+            return false;
+        }
+
         // Create a ContentValues object where column names are the keys,
         // and item attributes from the editor are the values.
         ContentValues values = new ContentValues();
         values.put(ItemEntry.COLUMN_ITEM_NAME, nameString);
-        values.put(ItemEntry.COLUMN_ITEM_PRICE, priceString);
-        values.put(ItemEntry.COLUMN_ITEM_QUANTITY, quantityString);
+        values.put(ItemEntry.COLUMN_ITEM_PRICE, priceCents);
+        values.put(ItemEntry.COLUMN_ITEM_QUANTITY, quantity);
         values.put(ItemEntry.COLUMN_ITEM_SUPPLIER_NAME, supplierNameString);
         values.put(ItemEntry.COLUMN_ITEM_SUPPLIER_PHONE, supplierPhoneString);
 
-        // Insert a new item into the provider, returning the content URI for the new item.
-        Uri newUri = getContentResolver().insert(ItemEntry.CONTENT_URI, values);
-
-        // Show a toast message depending on whether or not the insertion was successful
-        if (newUri == null) {
-            // If the new content URI is null, then there was an error with insertion.
-            Toast.makeText(this, getString(R.string.editor_insert_item_failed),
-                    Toast.LENGTH_SHORT).show();
-        } else {
-            // Otherwise, the insertion was successful and we can display a toast.
-            Toast.makeText(this, getString(R.string.editor_insert_item_successful),
-                    Toast.LENGTH_SHORT).show();
+        // Check the input here, so the editor stays open to fix it rather than closing and
+        // reporting the failure later
+        String problems = ItemWriteQueue.checkInsert(values);
+        if (problems != null) {
+            Toast.makeText(this, problems, Toast.LENGTH_SHORT).show();
+            return false;
         }
+
+        // Queue the insert on the background writer, so saving doesn't block the UI thread.
+        // The activity finishes straight away, so the result is reported through the
+        // application context.
+        ItemWriteQueue.getInstance(this).insert(values,
+                new InsertResultToast(getApplicationContext()));
+        return true;
     }
 
     @Override
@@ -104,11 +124,17 @@ public class EditorActivity extends AppCompatActivity {
         switch (item.getItemId()) {
             // Respond to a click on the "Save" menu option
             case R.id.action_save:
-                // Save item to database
-                insertItem();
-                // Exit the activity
-                finish();
-                // Respond to a click on the "Delete" menu option
+                // Save item to database, and exit the activity unless the input was rejected.
+                // Log how long the save held up the UI thread.
+                long startNanos = System.nanoTime();
+                boolean saved = insertItem();
+                Log.d(LOG_TAG, "Save took " + (System.nanoTime() - startNanos) / 1000
+                        + " us on the UI thread");
+                if (saved) {
+                    finish();
+                }
+                return true;
+            // Respond to a click on the "Delete" menu option
             case R.id.action_delete:
                 // Do nothing for now
                 return true;
@@ -121,4 +147,29 @@ public class EditorActivity extends AppCompatActivity {
         return super.onOptionsItemSelected(item);
     }
 
-}
\ No newline at end of file
+    /**
+     * Shows the result of a queued insert. It may run after the activity has finished, so it
+     * only holds on to the application context.
+     */
+    private static final class InsertResultToast implements ItemWriteQueue.Callback {
+        private final Context mAppContext;
+
+        InsertResultToast(Context appContext) {
+            mAppContext = appContext;
+        }
+
+        @Override
+        public void onWriteComplete(ContentProviderResult result) {
+            // Show a toast message depending on whether or not the insertion was successful
+            if (result == null) {
+                // If there is no result, then there was an error with insertion.
+                Toast.makeText(mAppContext, mAppContext.getString(
+                        R.string.editor_insert_item_failed), Toast.LENGTH_SHORT).show();
+            } else {
+                // Otherwise, the insertion was successful and we can display a toast.
+                Toast.makeText(mAppContext, mAppContext.getString(
+                        R.string.editor_insert_item_successful), Toast.LENGTH_SHORT).show();
+            }
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.android.pets;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.support.v4.widget.CursorAdapter;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+
+import com.example.android.pets.data.ItemContract.ItemEntry;
+
+/**
+ * {@link ItemCursorAdapter} is an adapter for a list view that uses a {@link Cursor} of item
+ * data as its data source. Rows are only bound when the list view asks for them, and row views
+ * are recycled as the user scrolls.
+ */
+public class ItemCursorAdapter extends CursorAdapter {
+
+    /**
+     * Constructs a new {@link ItemCursorAdapter}.
+     *
+     * @param context The context
+     * @param c       The cursor from which to get the data.
+     */
+    public ItemCursorAdapter(Context context, Cursor c) {
+        super(context, c, 0 /* flags */);
+    }
+
+    /** Positions of the bound columns in the current cursor, looked up once per cursor */
+    private int mNameColumnIndex;
+    private int mPriceColumnIndex;
+    private int mQuantityColumnIndex;
+
+    /**
+     * Swaps in a new cursor and looks up the positions of the columns bound to each row.
+     */
+    @Override
+    public Cursor swapCursor(Cursor newCursor) {
+        if (newCursor != null) {
+            mNameColumnIndex = newCursor.getColumnIndexOrThrow(ItemEntry.COLUMN_ITEM_NAME);
+            mPriceColumnIndex = newCursor.getColumnIndexOrThrow(ItemEntry.COLUMN_ITEM_PRICE);
+            mQuantityColumnIndex = newCursor.getColumnIndexOrThrow(ItemEntry.COLUMN_ITEM_QUANTITY);
+        }
+        return super.swapCursor(newCursor);
+    }
+
+    /**
+     * Makes a new blank list item view. No data is set (or bound) to the views yet.
+     */
+    @Override
+    public View newView(Context context, Cursor cursor, ViewGroup parent) {
+        View view = LayoutInflater.from(context).inflate(R.layout.list_item, parent, false);
+        view.setTag(new ViewHolder(view));
+        return view;
+    }
+
+    /**
+     * Binds the item data (in the current row pointed to by cursor) to the given
+     * list item layout.
+     */
+    @Override
+    public void bindView(View view, Context context, Cursor cursor) {
+        ViewHolder holder = (ViewHolder) view.getTag();
+
+        // Read the item attributes from the Cursor for the current item
+        String itemName = cursor.getString(mNameColumnIndex);
+        String itemPrice = ItemEntry.formatPrice(cursor.getLong(mPriceColumnIndex));
+        int itemQuantity = cursor.getInt(mQuantityColumnIndex);
+
+        // Update the TextViews with the attributes for the current item
+        holder.nameTextView.setText(itemName);
+        holder.summaryTextView.setText(
+                context.getString(R.string.item_summary, itemPrice, itemQuantity));
+    }
+
+    /**
+     * Caches the child views of a list item so they aren't looked up on every bind.
+     */
+    private static class ViewHolder {
+        final TextView nameTextView;
+        final TextView summaryTextView;
+
+        ViewHolder(View view) {
+            nameTextView = (TextView) view.findViewById(R.id.name);
+            summaryTextView = (TextView) view.findViewById(R.id.summary);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.android.pets;
+
+import android.database.AbstractCursor;
+import android.database.Cursor;
+
+/**
+ * Read-only cursor presenting consecutive pages of rows, each read by its own loader, as one
+ * list. Unlike {@link android.database.MergeCursor} it neither observes nor closes the page
+ * cursors: they belong to their loaders, which close them once a newer page replaces them.
+ * Every page must have the same columns.
+ */
+class PageListCursor extends AbstractCursor {
+
+    private final Cursor[] mPages;
+
+    /** Position of the first row of each page, plus the total count as the last element */
+    private final int[] mPageStarts;
+
+    /** The page holding the current row */
+    private Cursor mCurrentPage;
+
+    PageListCursor(Cursor[] pages) {
+        mPages = pages;
+        mPageStarts = new int[pages.length + 1];
+        for (int i = 0; i < pages.length; i++) {
+            mPageStarts[i + 1] = mPageStarts[i] + pages[i].getCount();
+        }
+    }
+
+    @Override
+    public int getCount() {
+        return mPageStarts[mPages.length];
+    }
+
+    @Override
+    public String[] getColumnNames() {
+        return mPages[0].getColumnNames();
+    }
+
+    @Override
+    public boolean onMove(int oldPosition, int newPosition) {
+        // Pages are few, so a linear scan for the one holding the row is enough
+        for (int i = 0; i < mPages.length; i++) {
+            if (newPosition < mPageStarts[i + 1]) {
+                mCurrentPage = mPages[i];
+                return mCurrentPage.moveToPosition(newPosition - mPageStarts[i]);
+            }
+        }
+        mCurrentPage = null;
+        return false;
+    }
+
+    @Override
+    public String getString(int column) {
+        return mCurrentPage.getString(column);
+    }
+
+    @Override
+    public short getShort(int column) {
+        return mCurrentPage.getShort(column);
+    }
+
+    @Override
+    public int getInt(int column) {
+        return mCurrentPage.getInt(column);
+    }
+
+    @Override
+    public long getLong(int column) {
+        return mCurrentPage.getLong(column);
+    }
+
+    @Override
+    public float getFloat(int column) {
+        return mCurrentPage.getFloat(column);
+    }
+
+    @Override
+    public double getDouble(int column) {
+        return mCurrentPage.getDouble(column);
+    }
+
+    @Override
+    public int getType(int column) {
+        return mCurrentPage.getType(column);
+    }
+
+    @Override
+    public boolean isNull(int column) {
+        return mCurrentPage.isNull(column);
+    }
+
+    @Override
+    public byte[] getBlob(int column) {
+        return mCurrentPage.getBlob(column);
+    }
+}
@@ -0,0 +1,235 @@
+package com.example.android.pets.data;
+
+/**
+ * Bounded least-recently-used cache of item rows, keyed by the item's _id. Keys are kept as
+ * primitive longs in a hand-rolled hash table so lookups don't box, and the cache is limited by
+ * an estimate of the memory its rows take up rather than by a row count.
+ *
+ * All methods are thread-safe.
+ */
+class ItemCache {
+
+    /** Estimated fixed cost in bytes of one cached row, on top of its values */
+    private static final int ENTRY_OVERHEAD_BYTES = 64;
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    /** Maximum estimated size of all cached rows, in bytes */
+    private final long mMaxSizeBytes;
+
+    /** Hash buckets; the length is always a power of two */
+    private Entry[] mTable = new Entry[INITIAL_CAPACITY];
+
+    /**
+     * Sentinel of the circular access-order list. {@code mHead.next} is the most recently used
+     * entry and {@code mHead.prev} the least recently used one.
+     */
+    private final Entry mHead = new Entry(0, null, 0);
+
+    private int mCount;
+    private long mSizeBytes;
+
+    /**
+     * Incremented by every invalidation, so a row read from the database before a write can be
+     * recognised and kept out of the cache.
+     */
+    private long mGeneration;
+
+    private long mHitCount;
+    private long mMissCount;
+    private long mEvictionCount;
+
+    ItemCache(long maxSizeBytes) {
+        mMaxSizeBytes = maxSizeBytes;
+        mHead.prev = mHead;
+        mHead.next = mHead;
+    }
+
+    /**
+     * Return the cached row for the given ID, or null if it isn't cached. The returned array
+     * must not be modified.
+     */
+    synchronized Object[] get(long id) {
+        Entry entry = find(id);
+        if (entry == null) {
+            mMissCount++;
+            return null;
+        }
+        mHitCount++;
+        unlink(entry);
+        linkFirst(entry);
+        return entry.row;
+    }
+
+    /**
+     * Return the current generation. Pass it to {@link #put} along with a row read after
+     * this call.
+     */
+    synchronized long getGeneration() {
+        return mGeneration;
+    }
+
+    /**
+     * Cache the row for the given ID, unless the cache has been invalidated since
+     * {@code generation} was read, in which case the row may already be out of date.
+     */
+    synchronized void put(long id, Object[] row, long generation) {
+        if (generation != mGeneration) {
+            return;
+        }
+        int size = estimateSize(row);
+        if (size > mMaxSizeBytes) {
+            return;
+        }
+        removeEntry(id);
+
+        Entry entry = new Entry(id, row, size);
+        int index = indexFor(id, mTable.length);
+        entry.nextInBucket = mTable[index];
+        mTable[index] = entry;
+        linkFirst(entry);
+        mCount++;
+        mSizeBytes += size;
+
+        if (mCount > mTable.length - (mTable.length >> 2)) {
+            resize();
+        }
+        while (mSizeBytes > mMaxSizeBytes) {
+            Entry eldest = mHead.prev;
+            removeEntry(eldest.key);
+            mEvictionCount++;
+        }
+    }
+
+    /**
+     * Drop the row for the given ID, if it is cached.
+     */
+    synchronized void remove(long id) {
+        mGeneration++;
+        removeEntry(id);
+    }
+
+    /**
+     * Drop every cached row.
+     */
+    synchronized void clear() {
+        mGeneration++;
+        mTable = new Entry[INITIAL_CAPACITY];
+        mHead.prev = mHead;
+        mHead.next = mHead;
+        mCount = 0;
+        mSizeBytes = 0;
+    }
+
+    synchronized long getHitCount() {
+        return mHitCount;
+    }
+
+    synchronized long getMissCount() {
+        return mMissCount;
+    }
+
+    synchronized long getEvictionCount() {
+        return mEvictionCount;
+    }
+
+    synchronized long getSizeBytes() {
+        return mSizeBytes;
+    }
+
+    private Entry find(long id) {
+        Entry entry = mTable[indexFor(id, mTable.length)];
+        while (entry != null && entry.key != id) {
+            entry = entry.nextInBucket;
+        }
+        return entry;
+    }
+
+    private void removeEntry(long id) {
+        int index = indexFor(id, mTable.length);
+        Entry previous = null;
+        Entry entry = mTable[index];
+        while (entry != null && entry.key != id) {
+            previous = entry;
+            entry = entry.nextInBucket;
+        }
+        if (entry == null) {
+            return;
+        }
+        if (previous == null) {
+            mTable[index] = entry.nextInBucket;
+        } else {
+            previous.nextInBucket = entry.nextInBucket;
+        }
+        unlink(entry);
+        mCount--;
+        mSizeBytes -= entry.size;
+    }
+
+    private void resize() {
+        Entry[] oldTable = mTable;
+        Entry[] newTable = new Entry[oldTable.length * 2];
+        for (Entry bucket : oldTable) {
+            Entry entry = bucket;
+            while (entry != null) {
+                Entry next = entry.nextInBucket;
+                int index = indexFor(entry.key, newTable.length);
+                entry.nextInBucket = newTable[index];
+                newTable[index] = entry;
+                entry = next;
+            }
+        }
+        mTable = newTable;
+    }
+
+    private void linkFirst(Entry entry) {
+        entry.prev = mHead;
+        entry.next = mHead.next;
+        mHead.next.prev = entry;
+        mHead.next = entry;
+    }
+
+    private static void unlink(Entry entry) {
+        entry.prev.next = entry.next;
+        entry.next.prev = entry.prev;
+        entry.prev = null;
+        entry.next = null;
+    }
+
+    private static int indexFor(long key, int length) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & (length - 1);
+    }
+
+    /**
+     * Estimate the heap size of a row in bytes.
+     */
+    private static int estimateSize(Object[] row) {
+        int size = ENTRY_OVERHEAD_BYTES + 4 * row.length;
+        for (Object value : row) {
+            if (value instanceof String) {
+                size += 40 + 2 * ((String) value).length();
+            } else if (value instanceof byte[]) {
+                size += 16 + ((byte[]) value).length;
+            } else if (value != null) {
+                size += 16;
+            }
+        }
+        return size;
+    }
+
+    private static final class Entry {
+        final long key;
+        final Object[] row;
+        final int size;
+        Entry prev;
+        Entry next;
+        Entry nextInBucket;
+
+        Entry(long key, Object[] row, int size) {
+            this.key = key;
+            this.row = row;
+            this.size = size;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.android.pets.data;
+
+import android.content.ContentResolver;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Coalesces change notifications for the inventory provider. Writes record the URIs they
+ * touched, and the notifications are delivered together a short moment later, so a burst of
+ * writes results in one refresh for each observer instead of one per row.
+ */
+class ItemChangeNotifier {
+
+    /** How long to wait for further writes before delivering the pending notifications */
+    private static final long COALESCE_DELAY_MS = 50;
+
+    /**
+     * Once more than this many distinct item URIs are pending, a single notification for the
+     * whole items table is sent instead.
+     */
+    private static final int MAX_PENDING_ITEM_URIS = 32;
+
+    private final ContentResolver mResolver;
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+    /** URIs waiting to be notified. Guarded by this. */
+    private final Set<Uri> mPendingUris = new LinkedHashSet<>();
+
+    /** Whether the whole items table has changed. Guarded by this. */
+    private boolean mTableChanged;
+
+    /** Whether a flush has already been posted. Guarded by this. */
+    private boolean mFlushScheduled;
+
+    private final Runnable mFlush = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    ItemChangeNotifier(ContentResolver resolver) {
+        mResolver = resolver;
+    }
+
+    /**
+     * Record that the item with the given ID changed.
+     */
+    void notifyItemChanged(long id) {
+        synchronized (this) {
+            if (!mTableChanged) {
+                mPendingUris.add(ItemContract.ItemEntry.buildItemUri(id));
+                if (mPendingUris.size() > MAX_PENDING_ITEM_URIS) {
+                    mPendingUris.clear();
+                    mTableChanged = true;
+                }
+            }
+            scheduleFlushLocked();
+        }
+    }
+
+    /**
+     * Record that an unknown set of rows in the items table changed.
+     */
+    void notifyTableChanged() {
+        synchronized (this) {
+            mPendingUris.clear();
+            mTableChanged = true;
+            scheduleFlushLocked();
+        }
+    }
+
+    private void scheduleFlushLocked() {
+        if (!mFlushScheduled) {
+            mFlushScheduled = true;
+            mHandler.postDelayed(mFlush, COALESCE_DELAY_MS);
+        }
+    }
+
+    /**
+     * Deliver all pending notifications.
+     */
+    private void flush() {
+        Uri[] uris;
+        boolean tableChanged;
+        synchronized (this) {
+            uris = mPendingUris.toArray(new Uri[mPendingUris.size()]);
+            tableChanged = mTableChanged;
+            mPendingUris.clear();
+            mTableChanged = false;
+            mFlushScheduled = false;
+        }
+
+        if (tableChanged) {
+            // Cursors registered on the items URI observe descendants too, and observers of a
+            // single item are notified when their ancestor URI changes.
+            mResolver.notifyChange(ItemContract.ItemEntry.CONTENT_URI, null);
+            return;
+        }
+        for (Uri uri : uris) {
+            mResolver.notifyChange(uri, null);
+        }
+    }
+}
@@ -1,8 +1,11 @@
 package com.example.android.pets.data;
 
+import android.content.ContentUris;
 import android.net.Uri;
 import android.provider.BaseColumns;
 
+import java.math.BigDecimal;
+
 /**
  * API Contract for the inventory app.
  */
@@ -34,6 +37,435 @@ public final class ItemContract {
      */
     public static final String PATH_ITEMS = "items";
 
+    /**
+     * Path for the suppliers items refer to. A supplier's items are under its own URI, e.g.
+     * content://com.example.android.pets/suppliers/3/items
+     */
+    public static final String PATH_SUPPLIERS = "suppliers";
+
+    /**
+     * Path segment (appended to the items path) for full-text search, e.g.
+     * content://com.example.android.pets/items/search/note
+     */
+    public static final String PATH_SEARCH = "search";
+
+    /**
+     * Path segment for a single row summarising the whole stock, with the
+     * {@link ItemEntry#COLUMN_ITEM_COUNT}, {@link ItemEntry#COLUMN_TOTAL_QUANTITY} and
+     * {@link ItemEntry#COLUMN_TOTAL_VALUE} columns. A query's projection, selection and sort
+     * order apply to the summary rows, not to the items they are computed from.
+     */
+    public static final String PATH_STATS = "stats";
+
+    /**
+     * Path segment for one summary row per supplier, with the supplier name and the same
+     * columns as {@link #PATH_STATS}, sorted by supplier name unless the query gives a sort
+     * order. As for {@link #PATH_STATS}, a query's projection, selection and sort order apply
+     * to the summary rows.
+     */
+    public static final String PATH_BY_SUPPLIER = "by_supplier";
+
+    /**
+     * Path segment for the read-only per-supplier totals that the database keeps up to date as
+     * items change. It has the same columns as {@link #PATH_BY_SUPPLIER} but doesn't need to
+     * add up the items table on every read.
+     */
+    public static final String PATH_SUPPLIER_SUMMARY = "supplier_summary";
+
+    /**
+     * Path segment for the items whose quantity is at or below the
+     * {@link #QUERY_PARAMETER_THRESHOLD}, lowest stock first.
+     */
+    public static final String PATH_LOW_STOCK = "low_stock";
+
+    /**
+     * Path segment for one page of live items in a stable order, read with keyset pagination:
+     * each page starts right after the sort key of the last row of the previous one, so reading
+     * a deep page costs the same as reading the first. The page is sorted by the
+     * {@link #QUERY_PARAMETER_SORT} column and then by _id, and holds up to
+     * {@link #QUERY_PARAMETER_LIMIT} rows. If there may be more rows, the cursor's extras hold
+     * the URI of the next page under {@link #EXTRA_NEXT_PAGE_URI}.
+     */
+    public static final String PATH_PAGE = "page";
+
+    /**
+     * Path segment for the compact rows a list of items shows: the live items in ID order with
+     * only the {@link ItemEntry#LIST_PROJECTION} columns, up to {@link #QUERY_PARAMETER_LIMIT}
+     * rows. The projection, selection and sort order of the query are ignored, so the narrow
+     * rows fit many more to a cursor window than full item rows do.
+     */
+    public static final String PATH_LIST = "list";
+
+    /**
+     * Query parameter for {@link #PATH_PAGE} naming the sort column: {@link #SORT_BY_ID} (the
+     * default), {@link #SORT_BY_NAME} or {@link #SORT_BY_QUANTITY}.
+     */
+    public static final String QUERY_PARAMETER_SORT = "sort";
+
+    /** Sort pages by item ID */
+    public static final String SORT_BY_ID = "id";
+
+    /** Sort pages by item name, then ID */
+    public static final String SORT_BY_NAME = "name";
+
+    /** Sort pages by quantity, then ID */
+    public static final String SORT_BY_QUANTITY = "quantity";
+
+    /**
+     * Query parameters for {@link #PATH_PAGE} holding the _id and, unless sorting by ID, the
+     * sort column value of the last row of the previous page. They are filled in by the next
+     * page URI and aren't meant to be built by hand.
+     */
+    public static final String QUERY_PARAMETER_AFTER_ID = "after_id";
+    public static final String QUERY_PARAMETER_AFTER_VALUE = "after_value";
+
+    /** Cursor extra: URI of the next page, absent on the last page (String) */
+    public static final String EXTRA_NEXT_PAGE_URI = "nextPageUri";
+
+    /**
+     * Path segment for the change journal: one row per change to the items table, in
+     * {@link ChangeEntry#COLUMN_SEQUENCE} order, starting after the
+     * {@link #QUERY_PARAMETER_SINCE} sequence number and holding up to
+     * {@link #QUERY_PARAMETER_LIMIT} rows. Each row also has the item's current columns, which
+     * are null if it has since been deleted. Once a sync has stored the changes, it should
+     * hand the last sequence number to {@link #METHOD_ACK_CHANGES}.
+     */
+    public static final String PATH_CHANGES = "changes";
+
+    /**
+     * Query parameter for {@link #PATH_CHANGES}: last sequence number already seen. For
+     * {@link #PATH_ROLLUP}: time in milliseconds since the epoch that the returned buckets
+     * must end after.
+     */
+    public static final String QUERY_PARAMETER_SINCE = "since";
+
+    /**
+     * Path segment (appended to a single item's URI) for the item's quantity movements, newest
+     * first and up to {@link #QUERY_PARAMETER_LIMIT} rows, e.g.
+     * content://com.example.android.pets/items/3/movements
+     */
+    public static final String PATH_MOVEMENTS = "movements";
+
+    /**
+     * Path segment (appended to a single item's URI) for the item's movements totalled per
+     * {@link #QUERY_PARAMETER_BUCKET}, oldest bucket first, from {@link #QUERY_PARAMETER_SINCE}
+     * on, e.g. content://com.example.android.pets/items/3/rollup?bucket=day&since=1500000000000
+     * Rows have the {@link MovementEntry#ROLLUP_PROJECTION} columns. The totals are kept up to
+     * date as movements are recorded, so this reads one row per bucket rather than every
+     * movement. Buckets without movements are left out.
+     */
+    public static final String PATH_ROLLUP = "rollup";
+
+    /**
+     * Query parameter for {@link #PATH_ROLLUP}: bucket size, {@link #BUCKET_DAY} (the default)
+     * or {@link #BUCKET_HOUR}. Buckets follow UTC hours and days.
+     */
+    public static final String QUERY_PARAMETER_BUCKET = "bucket";
+
+    /** Roll movements up per hour */
+    public static final String BUCKET_HOUR = "hour";
+
+    /** Roll movements up per day */
+    public static final String BUCKET_DAY = "day";
+
+    /**
+     * Query parameter for updates of items: the {@link MovementEntry} REASON_* recorded for
+     * quantity changes made by the update. Defaults to {@link MovementEntry#REASON_ADJUSTMENT}.
+     */
+    public static final String QUERY_PARAMETER_REASON = "reason";
+
+    /** Query parameter giving the highest quantity that counts as low stock */
+    public static final String QUERY_PARAMETER_THRESHOLD = "threshold";
+
+    /**
+     * Query parameter limiting the number of rows returned for the items URI,
+     * e.g. content://com.example.android.pets/items?limit=50
+     */
+    public static final String QUERY_PARAMETER_LIMIT = "limit";
+
+    /**
+     * Query parameter giving the number of rows to skip before the first returned row.
+     * Only used together with {@link #QUERY_PARAMETER_LIMIT}.
+     */
+    public static final String QUERY_PARAMETER_OFFSET = "offset";
+
+    /**
+     * Query parameter for delete: when "true", matching items are only marked as deleted and
+     * hidden from queries. They are physically removed later by a background compaction.
+     */
+    public static final String QUERY_PARAMETER_SOFT_DELETE = "soft";
+
+    /**
+     * Provider method deleting every item whose ID is in the {@link #EXTRA_IDS} long array in
+     * one transaction. Set {@link #EXTRA_SOFT_DELETE} to only mark them as deleted. The number
+     * of deleted items is returned under {@link #KEY_ROW_COUNT}.
+     */
+    public static final String METHOD_DELETE_ITEMS = "deleteItems";
+
+    /**
+     * Provider method that starts a background compaction, physically removing soft-deleted
+     * items and shrinking the database file.
+     */
+    public static final String METHOD_COMPACT = "compact";
+
+    /**
+     * Provider method adding {@link #EXTRA_DELTA} (negative for a sale) to the quantity of the
+     * item {@link #EXTRA_ID} in a single atomic statement. The change is refused if it would
+     * take the quantity below zero. {@link #KEY_ROW_COUNT} is 1 if the quantity was changed and
+     * 0 otherwise. The change is recorded as a movement with the {@link #EXTRA_REASON}, which
+     * defaults to a sale for a negative delta and a restock otherwise.
+     */
+    public static final String METHOD_ADJUST_QUANTITY = "adjustQuantity";
+
+    /**
+     * Provider method applying a whole sales ticket: {@link #EXTRA_DELTAS}[i] is added to the
+     * quantity of item {@link #EXTRA_IDS}[i], all in one transaction. If any item is missing
+     * or would go below zero, nothing is changed, {@link #KEY_ROW_COUNT} is 0 and
+     * {@link #KEY_FAILED_INDEX} gives the position of the first adjustment that failed.
+     * Movements are recorded as for {@link #METHOD_ADJUST_QUANTITY}.
+     */
+    public static final String METHOD_ADJUST_QUANTITIES = "adjustQuantities";
+
+    /**
+     * Provider method recomputing the per-supplier totals at
+     * {@link ItemEntry#CONTENT_SUPPLIER_SUMMARY_URI} from the items table.
+     */
+    public static final String METHOD_REBUILD_SUPPLIER_SUMMARY = "rebuildSupplierSummary";
+
+    /**
+     * Provider method removing the change journal entries up to and including
+     * {@link #EXTRA_SEQUENCE}, once a sync has stored them. The number of removed entries is
+     * returned under {@link #KEY_ROW_COUNT}.
+     */
+    public static final String METHOD_ACK_CHANGES = "ackChanges";
+
+    /** Extra: change journal sequence number (long) */
+    public static final String EXTRA_SEQUENCE = "sequence";
+
+    /** Extra: item ID (long) */
+    public static final String EXTRA_ID = "id";
+
+    /** Extra: quantity change (int) */
+    public static final String EXTRA_DELTA = "delta";
+
+    /** Extra: quantity changes (int[]) */
+    public static final String EXTRA_DELTAS = "deltas";
+
+    /** Extra: reason for a quantity change, one of the {@link MovementEntry} REASON_* values */
+    public static final String EXTRA_REASON = "reason";
+
+    /** Extra: item IDs (long[]) */
+    public static final String EXTRA_IDS = "ids";
+
+    /** Extra: whether to soft-delete instead of deleting (boolean) */
+    public static final String EXTRA_SOFT_DELETE = "softDelete";
+
+    /** Result key: number of rows affected by a provider method (int) */
+    public static final String KEY_ROW_COUNT = "rowCount";
+
+    /** Result key: position of the operation that failed, or -1 if none did (int) */
+    public static final String KEY_FAILED_INDEX = "failedIndex";
+
+    /**
+     * Provider method returning call counts, rows and latency percentiles per operation and
+     * URI, keyed as "operation/uri/count", "operation/uri/rows", "operation/uri/p50Micros"
+     * and "operation/uri/p99Micros", plus the same for the time spent getting the writable
+     * database under "databaseWait/...". The same figures are written by dumpsys.
+     */
+    public static final String METHOD_GET_METRICS = "getMetrics";
+
+    /**
+     * Provider method (for {@link android.content.ContentResolver#call}) returning counters
+     * for the in-memory item cache under the KEY_CACHE_* keys.
+     */
+    public static final String METHOD_GET_CACHE_STATS = "getCacheStats";
+
+    /** Result key: number of single item lookups served from the cache (long) */
+    public static final String KEY_CACHE_HITS = "cacheHits";
+
+    /** Result key: number of single item lookups that had to read the database (long) */
+    public static final String KEY_CACHE_MISSES = "cacheMisses";
+
+    /** Result key: number of rows dropped from the cache to stay within its size (long) */
+    public static final String KEY_CACHE_EVICTIONS = "cacheEvictions";
+
+    /** Result key: estimated size of the cached rows in bytes (long) */
+    public static final String KEY_CACHE_SIZE_BYTES = "cacheSizeBytes";
+
+    /**
+     * Inner class that defines constant values for the suppliers table. Each supplier is stored
+     * once and items refer to it by ID. Suppliers are created and updated through the supplier
+     * columns of the items written to the provider, or updated directly through their own URI.
+     */
+    public static final class SupplierEntry implements BaseColumns {
+
+        /** The content URI for all suppliers */
+        public static final Uri CONTENT_URI = Uri.withAppendedPath(BASE_CONTENT_URI,
+                PATH_SUPPLIERS);
+
+        /**
+         * Return the content URI for the supplier with the given ID.
+         */
+        public static Uri buildSupplierUri(long id) {
+            return ContentUris.withAppendedId(CONTENT_URI, id);
+        }
+
+        /**
+         * Return the content URI for the live items of the supplier with the given ID.
+         */
+        public static Uri buildSupplierItemsUri(long id) {
+            return buildSupplierUri(id).buildUpon().appendPath(PATH_ITEMS).build();
+        }
+
+        /** Name of database table for suppliers */
+        public final static String TABLE_NAME = "suppliers";
+
+        // Unique ID number for the supplier (only for use in the database table).
+        // Type: INTEGER
+        public final static String _ID = BaseColumns._ID;
+
+        // Name of the supplier, unique among suppliers.
+        // Type: TEXT
+        public final static String COLUMN_SUPPLIER_NAME = "name";
+
+        // Phone number of the supplier, normalized like ItemEntry.COLUMN_ITEM_SUPPLIER_PHONE.
+        // Type: TEXT
+        public final static String COLUMN_SUPPLIER_PHONE = "phone";
+    }
+
+    /**
+     * Inner class that defines constant values for the change journal table.
+     * Each entry records one change to the items table.
+     */
+    public static final class ChangeEntry {
+
+        /** The content URI for the change journal */
+        public static final Uri CONTENT_URI = Uri.withAppendedPath(ItemEntry.CONTENT_URI,
+                PATH_CHANGES);
+
+        /**
+         * Return the content URI for the journal entries after the given sequence number.
+         */
+        public static Uri buildChangesUri(long since) {
+            return CONTENT_URI.buildUpon()
+                    .appendQueryParameter(QUERY_PARAMETER_SINCE, String.valueOf(since))
+                    .build();
+        }
+
+        /** Name of database table for the change journal */
+        public final static String TABLE_NAME = "item_changes";
+
+        // Sequence number of the change. Always increases, even after the journal is truncated.
+        // Type: INTEGER
+        public final static String COLUMN_SEQUENCE = "seq";
+
+        // _id of the changed item, or null for an OP_CLEAR entry.
+        // Type: INTEGER
+        public final static String COLUMN_ITEM_ID = "item_id";
+
+        // Kind of change, one of the OP_* values.
+        // Type: TEXT
+        public final static String COLUMN_OPERATION = "op";
+
+        // Comma-separated names of the columns an update changed, null for other operations.
+        // Type: TEXT
+        public final static String COLUMN_CHANGED_COLUMNS = "columns";
+
+        /** Operation: the item was inserted */
+        public static final String OP_INSERT = "insert";
+
+        /** Operation: the item was updated */
+        public static final String OP_UPDATE = "update";
+
+        /** Operation: the item was deleted, or soft-deleted */
+        public static final String OP_DELETE = "delete";
+
+        /** Operation: every item was deleted at once */
+        public static final String OP_CLEAR = "clear";
+    }
+
+    /**
+     * Inner class that defines constant values for the movement history. Each entry records
+     * one change to the quantity of an item. An item's history is removed with the item.
+     */
+    public static final class MovementEntry implements BaseColumns {
+
+        /**
+         * Return the content URI for the movements of the item with the given ID.
+         */
+        public static Uri buildMovementsUri(long itemId) {
+            return ContentUris.withAppendedId(ItemEntry.CONTENT_URI, itemId).buildUpon()
+                    .appendPath(PATH_MOVEMENTS)
+                    .build();
+        }
+
+        /**
+         * Return the content URI for the movements of the item with the given ID totalled per
+         * bucket, for the buckets ending after the given time.
+         *
+         * @param bucket {@link #BUCKET_HOUR} or {@link #BUCKET_DAY}
+         * @param since  time in milliseconds since the epoch
+         */
+        public static Uri buildRollupUri(long itemId, String bucket, long since) {
+            return ContentUris.withAppendedId(ItemEntry.CONTENT_URI, itemId).buildUpon()
+                    .appendPath(PATH_ROLLUP)
+                    .appendQueryParameter(QUERY_PARAMETER_BUCKET, bucket)
+                    .appendQueryParameter(QUERY_PARAMETER_SINCE, String.valueOf(since))
+                    .build();
+        }
+
+        /** Name of database table for movements */
+        public final static String TABLE_NAME = "item_movements";
+
+        // Unique ID number for the movement (only for use in the database table).
+        // Type: INTEGER
+        public final static String _ID = BaseColumns._ID;
+
+        // _id of the item whose quantity changed.
+        // Type: INTEGER
+        public final static String COLUMN_ITEM_ID = "item_id";
+
+        // Change in quantity, negative when stock went out.
+        // Type: INTEGER
+        public final static String COLUMN_DELTA = "delta";
+
+        // Time of the change in milliseconds since the epoch.
+        // Type: INTEGER
+        public final static String COLUMN_TIME = "time";
+
+        // Why the quantity changed, one of the REASON_* values or one chosen by the caller.
+        // Type: TEXT
+        public final static String COLUMN_REASON = "reason";
+
+        // Rollup rows: start of the bucket in milliseconds since the epoch.
+        // Type: INTEGER
+        public final static String COLUMN_BUCKET_START = "bucket_start";
+
+        // Rollup rows: total of the positive deltas in the bucket.
+        // Type: INTEGER
+        public final static String COLUMN_UNITS_IN = "units_in";
+
+        // Rollup rows: total of the negative deltas in the bucket, as a positive number.
+        // Type: INTEGER
+        public final static String COLUMN_UNITS_OUT = "units_out";
+
+        /** Columns of {@link #PATH_ROLLUP} rows, in order */
+        public static final String[] ROLLUP_PROJECTION = {
+                COLUMN_BUCKET_START,
+                COLUMN_UNITS_IN,
+                COLUMN_UNITS_OUT
+        };
+
+        /** Reason: stock was sold */
+        public static final String REASON_SALE = "sale";
+
+        /** Reason: stock was received */
+        public static final String REASON_RESTOCK = "restock";
+
+        /** Reason: the quantity was corrected, e.g. after a stock count or in the editor */
+        public static final String REASON_ADJUSTMENT = "adjustment";
+    }
+
     /**
      * Inner class that defines constant values for the inventory database table.
      * Each entry in the table represents a single item.
@@ -43,6 +475,63 @@ public final class ItemContract {
         /** The content URI to access the pet data in the provider */
         public static final Uri CONTENT_URI = Uri.withAppendedPath(BASE_CONTENT_URI, PATH_ITEMS);
 
+        /** The content URI for the stock summary */
+        public static final Uri CONTENT_STATS_URI = Uri.withAppendedPath(CONTENT_URI, PATH_STATS);
+
+        /** The content URI for the per-supplier stock summary */
+        public static final Uri CONTENT_BY_SUPPLIER_URI =
+                Uri.withAppendedPath(CONTENT_URI, PATH_BY_SUPPLIER);
+
+        /** The content URI for the maintained per-supplier totals */
+        public static final Uri CONTENT_SUPPLIER_SUMMARY_URI =
+                Uri.withAppendedPath(CONTENT_URI, PATH_SUPPLIER_SUMMARY);
+
+        /** The content URI for low-stock items */
+        public static final Uri CONTENT_LOW_STOCK_URI =
+                Uri.withAppendedPath(CONTENT_URI, PATH_LOW_STOCK);
+
+        /** The content URI for the first page of items sorted by ID */
+        public static final Uri CONTENT_PAGE_URI = Uri.withAppendedPath(CONTENT_URI, PATH_PAGE);
+
+        /** The content URI for the compact item list */
+        public static final Uri CONTENT_LIST_URI = Uri.withAppendedPath(CONTENT_URI, PATH_LIST);
+
+        /** Columns of {@link #CONTENT_LIST_URI} rows, in order */
+        public static final String[] LIST_PROJECTION = {
+                ItemEntry._ID,
+                ItemEntry.COLUMN_ITEM_NAME,
+                ItemEntry.COLUMN_ITEM_PRICE,
+                ItemEntry.COLUMN_ITEM_QUANTITY
+        };
+
+        /**
+         * Return the content URI for the first page of items sorted by the given
+         * SORT_BY_* column, with up to {@code limit} items per page.
+         */
+        public static Uri buildPageUri(String sort, int limit) {
+            return CONTENT_PAGE_URI.buildUpon()
+                    .appendQueryParameter(QUERY_PARAMETER_SORT, sort)
+                    .appendQueryParameter(QUERY_PARAMETER_LIMIT, String.valueOf(limit))
+                    .build();
+        }
+
+        /**
+         * Return the content URI for the single item with the given ID. Change notifications
+         * for that item are sent to this URI.
+         */
+        public static Uri buildItemUri(long id) {
+            return ContentUris.withAppendedId(CONTENT_URI, id);
+        }
+
+        /**
+         * Return the content URI that searches item and supplier names for the given text.
+         * Each word in the text is matched as a prefix, and items whose name starts with the
+         * first word are ranked first.
+         */
+        public static Uri buildSearchUri(String query) {
+            return CONTENT_URI.buildUpon().appendPath(PATH_SEARCH).appendPath(query).build();
+        }
+
         /** Name of database table for items */
         public final static String TABLE_NAME = "items";
 
@@ -54,7 +543,7 @@ public final class ItemContract {
         // Type: TEXT
         public final static String COLUMN_ITEM_NAME ="name";
 
-        // Price of the item.
+        // Price of the item in cents (or the minor unit of the store's currency).
         // Type: INTEGER
         public final static String COLUMN_ITEM_PRICE = "price";
 
@@ -62,14 +551,79 @@ public final class ItemContract {
         // Type: INTEGER
         public final static String COLUMN_ITEM_QUANTITY = "quantity";
 
-        // Name of the item supplier.
+        // ID of the item's supplier in SupplierEntry. Read only; set the supplier name instead.
+        // Type: INTEGER
+        public final static String COLUMN_ITEM_SUPPLIER_ID = "supplier_id";
+
+        // Name of the item supplier, read from and written to the supplier it refers to.
+        // Writing a name no supplier has yet creates that supplier.
         // Type: TEXT
         public final static String COLUMN_ITEM_SUPPLIER_NAME = "supplierName";
 
-        // Phone number of item supplier.
-        // Type: INTEGER
+        // Phone number of item supplier, normalized to its digits with an optional leading "+".
+        // Read from and written to the supplier the item refers to.
+        // Type: TEXT
         public final static String COLUMN_ITEM_SUPPLIER_PHONE = "supplierPhone";
 
+        // Number of items in a summary row. Only in summary results.
+        // Type: INTEGER
+        public final static String COLUMN_ITEM_COUNT = "item_count";
+
+        // Sum of the quantities of the items in a summary row. Only in summary results.
+        // Type: INTEGER
+        public final static String COLUMN_TOTAL_QUANTITY = "total_quantity";
+
+        // Sum of price times quantity, in cents, of the items in a summary row.
+        // Only in summary results.
+        // Type: INTEGER
+        public final static String COLUMN_TOTAL_VALUE = "total_value";
+
+        /**
+         * Convert a price in cents to its decimal form, e.g. 199 becomes "1.99".
+         */
+        public static String formatPrice(long cents) {
+            return BigDecimal.valueOf(cents, 2).toPlainString();
+        }
+
+        /**
+         * Convert a decimal price, e.g. "1.99", to cents.
+         *
+         * @throws NumberFormatException if the text isn't a number with at most two decimals
+         */
+        public static long parsePrice(String price) {
+            try {
+                return new BigDecimal(price.trim()).movePointRight(2).longValueExact();
+            } catch (ArithmeticException e) {
+                throw new NumberFormatException("Invalid price " + price);
+            }
+        }
+
+        /**
+         * Normalize a phone number to its digits, keeping a leading "+" if there is one, so
+         * "+1 (800) 123-4567" becomes "+18001234567". Return null if the value isn't a string
+         * or has no digits.
+         */
+        public static String normalizePhone(Object value) {
+            if (!(value instanceof String)) {
+                return null;
+            }
+            String phone = (String) value;
+            StringBuilder normalized = new StringBuilder(phone.length());
+            for (int i = 0; i < phone.length(); i++) {
+                char c = phone.charAt(i);
+                if (c >= '0' && c <= '9') {
+                    normalized.append(c);
+                } else if (c == '+' && normalized.length() == 0) {
+                    normalized.append(c);
+                }
+            }
+            int length = normalized.length();
+            if (length == 0 || (length == 1 && normalized.charAt(0) == '+')) {
+                return null;
+            }
+            return normalized.toString();
+        }
+
     }
 
 }
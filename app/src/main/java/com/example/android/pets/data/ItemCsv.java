@@ -0,0 +1,549 @@
+package com.example.android.pets.data;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.database.Cursor;
+
+import com.example.android.pets.data.ItemContract.ItemEntry;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Streams the items table to and from CSV files with the columns
+ * name, price, quantity, supplierName, supplierPhone. Quoted fields may span lines; line breaks
+ * inside them are read back as \n.
+ *
+ * Both directions work on a fixed number of rows at a time, so memory use doesn't grow with
+ * the size of the file or the table. Large files can be imported with several threads
+ * parsing and checking lines while a single thread writes them to the provider.
+ */
+public final class ItemCsv {
+
+    /** Number of rows parsed before they are written to the provider in one transaction */
+    private static final int CHUNK_SIZE = 500;
+
+    /** Number of lines per chunk handed to a parse worker, and rows per transaction */
+    private static final int PARALLEL_CHUNK_SIZE = 2000;
+
+    /**
+     * Number of chunks per worker that may be parsed or waiting for the writer at once. The
+     * reader blocks when this many are outstanding, which bounds memory whatever the file size.
+     */
+    private static final int CHUNKS_IN_FLIGHT_PER_WORKER = 2;
+
+    /** How often a blocked reader checks whether the writer has stopped, in milliseconds */
+    private static final long WRITER_CHECK_INTERVAL_MILLIS = 100;
+
+    /**
+     * Longest record, in characters, that lines are joined into while a quoted field is open.
+     * An unterminated quote then fails at its own line instead of reading the rest of the file.
+     */
+    private static final int MAX_RECORD_LENGTH = 64 * 1024;
+
+    /** Number of CSV fields per item */
+    private static final int FIELD_COUNT = 5;
+
+    /** Position of the price in {@link #COLUMNS}; prices are written as decimals, not cents */
+    private static final int PRICE_INDEX = 1;
+
+    /** Columns in the order they appear in the file */
+    private static final String[] COLUMNS = {
+            ItemEntry.COLUMN_ITEM_NAME,
+            ItemEntry.COLUMN_ITEM_PRICE,
+            ItemEntry.COLUMN_ITEM_QUANTITY,
+            ItemEntry.COLUMN_ITEM_SUPPLIER_NAME,
+            ItemEntry.COLUMN_ITEM_SUPPLIER_PHONE
+    };
+
+    /**
+     * Receives progress updates during an import or export.
+     */
+    public interface ProgressListener {
+        /**
+         * Called after each chunk of rows with the total number of rows handled so far.
+         */
+        void onProgress(long rowCount);
+    }
+
+    private ItemCsv() {}
+
+    /**
+     * Read items from CSV and insert them through the provider, one chunk per transaction.
+     * A first line holding the column names is skipped. Rows that were inserted before a
+     * malformed line stay in the table.
+     *
+     * @return the number of items inserted
+     * @throws IllegalArgumentException if a line is malformed, with its line number
+     */
+    public static long importItems(ContentResolver resolver, Reader reader,
+                                   ProgressListener listener) throws IOException {
+        BufferedReader in = reader instanceof BufferedReader
+                ? (BufferedReader) reader : new BufferedReader(reader);
+        ContentValues[] chunk = new ContentValues[CHUNK_SIZE];
+        String[] fields = new String[FIELD_COUNT];
+        StringBuilder record = new StringBuilder();
+        int chunkCount = 0;
+        long lineNumber = 0;
+        long rowCount = 0;
+
+        int recordLines;
+        while ((recordLines = readRecord(in, record)) > 0) {
+            // Report problems at the first line of the record
+            long recordLineNumber = lineNumber + 1;
+            lineNumber += recordLines;
+            String line = record.toString();
+            if (line.isEmpty() || (recordLineNumber == 1 && isHeader(line))) {
+                continue;
+            }
+            if (!parseLine(line, fields)) {
+                throw new IllegalArgumentException("Line " + recordLineNumber + ": expected "
+                        + FIELD_COUNT + " fields");
+            }
+            try {
+                chunk[chunkCount++] = toContentValues(fields);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Line " + recordLineNumber
+                        + ": invalid number", e);
+            }
+
+            if (chunkCount == CHUNK_SIZE) {
+                rowCount += resolver.bulkInsert(ItemEntry.CONTENT_URI, chunk);
+                chunkCount = 0;
+                if (listener != null) {
+                    listener.onProgress(rowCount);
+                }
+            }
+        }
+        if (chunkCount > 0) {
+            rowCount += resolver.bulkInsert(ItemEntry.CONTENT_URI,
+                    Arrays.copyOf(chunk, chunkCount));
+            if (listener != null) {
+                listener.onProgress(rowCount);
+            }
+        }
+        return rowCount;
+    }
+
+    /**
+     * Read items from CSV and insert them through the provider, splitting the work across
+     * threads: the calling thread reads records and hands them out in chunks, a pool of
+     * {@code workerCount} threads parses and checks the chunks, and a single writer thread
+     * inserts them in file order, one chunk per transaction. Only a fixed number of chunks
+     * are in flight at once, so reading waits for the writer rather than filling memory.
+     *
+     * A first line holding the column names is skipped. Rows of the chunks written before a
+     * malformed line stay in the table. The listener is called on the writer thread.
+     *
+     * @return the number of items inserted
+     * @throws IllegalArgumentException if a line is malformed, with its line number
+     */
+    public static long importItems(ContentResolver resolver, Reader reader, int workerCount,
+                                   ProgressListener listener) throws IOException {
+        if (workerCount < 1) {
+            throw new IllegalArgumentException("Import requires at least one worker");
+        }
+        BufferedReader in = reader instanceof BufferedReader
+                ? (BufferedReader) reader : new BufferedReader(reader);
+        ArrayBlockingQueue<Future<ContentValues[]>> parsed =
+                new ArrayBlockingQueue<>(workerCount * CHUNKS_IN_FLIGHT_PER_WORKER);
+        ExecutorService workers = Executors.newFixedThreadPool(workerCount);
+        ExecutorService writerThread = Executors.newSingleThreadExecutor();
+        try {
+            Future<Long> writer = writerThread.submit(new ChunkWriter(resolver, parsed, listener));
+
+            String[] lines = new String[PARALLEL_CHUNK_SIZE];
+            long[] lineNumbers = new long[PARALLEL_CHUNK_SIZE];
+            StringBuilder record = new StringBuilder();
+            int lineCount = 0;
+            long lineNumber = 0;
+            boolean writing = true;
+            int recordLines;
+            while (writing && (recordLines = readRecord(in, record)) > 0) {
+                String line = record.toString();
+                if (lineNumber == 0 && isHeader(line)) {
+                    line = "";
+                }
+                // Report problems at the first line of the record
+                lineNumbers[lineCount] = lineNumber + 1;
+                lineNumber += recordLines;
+                lines[lineCount++] = line;
+                if (lineCount == PARALLEL_CHUNK_SIZE) {
+                    writing = enqueue(parsed, workers.submit(new ChunkParser(lines, lineNumbers,
+                            lineCount)), writer);
+                    lines = new String[PARALLEL_CHUNK_SIZE];
+                    lineNumbers = new long[PARALLEL_CHUNK_SIZE];
+                    lineCount = 0;
+                }
+            }
+            if (writing && lineCount > 0) {
+                writing = enqueue(parsed, workers.submit(new ChunkParser(lines, lineNumbers,
+                        lineCount)), writer);
+            }
+            if (writing) {
+                enqueue(parsed, ChunkWriter.END, writer);
+            }
+            return writer.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Import interrupted");
+        } catch (ExecutionException e) {
+            // Rethrow the parse or write failure as it was thrown on the other thread. A parse
+            // failure reaches here wrapped twice, once by its worker and once by the writer.
+            Throwable cause = e.getCause();
+            while (cause instanceof ExecutionException) {
+                cause = cause.getCause();
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException("Import failed", cause);
+        } finally {
+            workers.shutdownNow();
+            writerThread.shutdownNow();
+        }
+    }
+
+    /**
+     * Queue a parsed chunk for the writer, waiting while the queue is full. Return false
+     * without queueing it if the writer has stopped, which only happens when it failed.
+     */
+    private static boolean enqueue(ArrayBlockingQueue<Future<ContentValues[]>> parsed,
+                                   Future<ContentValues[]> chunk, Future<Long> writer)
+            throws InterruptedException {
+        while (!parsed.offer(chunk, WRITER_CHECK_INTERVAL_MILLIS, TimeUnit.MILLISECONDS)) {
+            if (writer.isDone()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Parses and checks one chunk of records on a worker thread, turning them into the values
+     * for a bulk insert. Empty records are skipped.
+     */
+    private static final class ChunkParser implements Callable<ContentValues[]> {
+        private final String[] mLines;
+        private final long[] mLineNumbers;
+        private final int mLineCount;
+
+        ChunkParser(String[] lines, long[] lineNumbers, int lineCount) {
+            mLines = lines;
+            mLineNumbers = lineNumbers;
+            mLineCount = lineCount;
+        }
+
+        @Override
+        public ContentValues[] call() {
+            ContentValues[] rows = new ContentValues[mLineCount];
+            String[] fields = new String[FIELD_COUNT];
+            int rowCount = 0;
+            for (int i = 0; i < mLineCount; i++) {
+                String line = mLines[i];
+                if (line.isEmpty()) {
+                    continue;
+                }
+                long lineNumber = mLineNumbers[i];
+                if (!parseLine(line, fields)) {
+                    throw new IllegalArgumentException("Line " + lineNumber + ": expected "
+                            + FIELD_COUNT + " fields");
+                }
+                ContentValues values;
+                try {
+                    values = toContentValues(fields);
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Line " + lineNumber + ": invalid number",
+                            e);
+                }
+                int violations = ItemValidator.ITEMS.check(values, true);
+                if (violations != 0) {
+                    throw new IllegalArgumentException("Line " + lineNumber + ": "
+                            + ItemValidator.ITEMS.describe(violations));
+                }
+                rows[rowCount++] = values;
+            }
+            return rowCount == mLineCount ? rows : Arrays.copyOf(rows, rowCount);
+        }
+    }
+
+    /**
+     * Inserts parsed chunks in the order they were queued, until it takes {@link #END}.
+     * Returns the number of items inserted.
+     */
+    private static final class ChunkWriter implements Callable<Long> {
+
+        /** Queued after the last chunk */
+        static final Future<ContentValues[]> END;
+
+        static {
+            FutureTask<ContentValues[]> end = new FutureTask<>(new Runnable() {
+                @Override
+                public void run() {
+                }
+            }, null);
+            end.run();
+            END = end;
+        }
+
+        private final ContentResolver mResolver;
+        private final ArrayBlockingQueue<Future<ContentValues[]>> mParsed;
+        private final ProgressListener mListener;
+
+        ChunkWriter(ContentResolver resolver, ArrayBlockingQueue<Future<ContentValues[]>> parsed,
+                    ProgressListener listener) {
+            mResolver = resolver;
+            mParsed = parsed;
+            mListener = listener;
+        }
+
+        @Override
+        public Long call() throws InterruptedException, ExecutionException {
+            long rowCount = 0;
+            while (true) {
+                Future<ContentValues[]> chunk = mParsed.take();
+                if (chunk == END) {
+                    return rowCount;
+                }
+                ContentValues[] rows = chunk.get();
+                if (rows.length == 0) {
+                    continue;
+                }
+                rowCount += mResolver.bulkInsert(ItemEntry.CONTENT_URI, rows);
+                if (mListener != null) {
+                    mListener.onProgress(rowCount);
+                }
+            }
+        }
+    }
+
+    /**
+     * Write every item to CSV, preceded by a line of column names. Rows are read straight from
+     * the provider's cursor into a buffered writer. The writer is flushed but not closed.
+     *
+     * @return the number of items written
+     */
+    public static long exportItems(ContentResolver resolver, Writer writer,
+                                   ProgressListener listener) throws IOException {
+        BufferedWriter out = writer instanceof BufferedWriter
+                ? (BufferedWriter) writer : new BufferedWriter(writer);
+        Cursor cursor = resolver.query(ItemEntry.CONTENT_URI, COLUMNS, null, null,
+                ItemEntry._ID);
+        if (cursor == null) {
+            throw new IOException("Unable to query items");
+        }
+        long rowCount = 0;
+        try {
+            writeRow(out, COLUMNS);
+            String[] fields = new String[FIELD_COUNT];
+            while (cursor.moveToNext()) {
+                for (int i = 0; i < FIELD_COUNT; i++) {
+                    fields[i] = i == PRICE_INDEX
+                            ? ItemEntry.formatPrice(cursor.getLong(i)) : cursor.getString(i);
+                }
+                writeRow(out, fields);
+                rowCount++;
+                if (listener != null && rowCount % CHUNK_SIZE == 0) {
+                    listener.onProgress(rowCount);
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+        out.flush();
+        if (listener != null) {
+            listener.onProgress(rowCount);
+        }
+        return rowCount;
+    }
+
+    /**
+     * Return whether the record holds exactly the column names {@link #exportItems} writes.
+     * The quantity column can't parse as a number, so no item row is ever taken for a header.
+     */
+    private static boolean isHeader(String line) {
+        String[] fields = new String[FIELD_COUNT];
+        return parseLine(line, fields) && Arrays.equals(fields, COLUMNS);
+    }
+
+    /**
+     * Read the next CSV record into {@code record}, joining lines while a quoted field is still
+     * open, so fields holding line breaks are read whole. Return the number of lines read, or
+     * 0 at the end of the input.
+     */
+    private static int readRecord(BufferedReader in, StringBuilder record) throws IOException {
+        record.setLength(0);
+        String line = in.readLine();
+        if (line == null) {
+            return 0;
+        }
+        record.append(line);
+        int lineCount = 1;
+        while (record.length() < MAX_RECORD_LENGTH && isInsideQuotes(record)
+                && (line = in.readLine()) != null) {
+            record.append('\n').append(line);
+            lineCount++;
+        }
+        return lineCount;
+    }
+
+    /**
+     * Return whether the record ends inside a quoted field. Like {@link #parseLine}, a quote
+     * only opens a field at its start, and "" inside a quoted field is an escaped quote.
+     */
+    private static boolean isInsideQuotes(CharSequence record) {
+        boolean quoted = false;
+        boolean fieldStart = true;
+        int length = record.length();
+        for (int i = 0; i < length; i++) {
+            char c = record.charAt(i);
+            if (quoted) {
+                if (c == '"') {
+                    if (i + 1 < length && record.charAt(i + 1) == '"') {
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                }
+            } else if (c == '"' && fieldStart) {
+                quoted = true;
+                fieldStart = false;
+            } else {
+                fieldStart = c == ',';
+            }
+        }
+        return quoted;
+    }
+
+    /**
+     * Convert the fields of one line into the values for an insert.
+     */
+    private static ContentValues toContentValues(String[] fields) {
+        ContentValues values = new ContentValues(FIELD_COUNT);
+        values.put(ItemEntry.COLUMN_ITEM_NAME, fields[0]);
+        values.put(ItemEntry.COLUMN_ITEM_PRICE, ItemEntry.parsePrice(fields[1]));
+        values.put(ItemEntry.COLUMN_ITEM_QUANTITY, Integer.parseInt(fields[2]));
+        values.put(ItemEntry.COLUMN_ITEM_SUPPLIER_NAME, fields[3]);
+        values.put(ItemEntry.COLUMN_ITEM_SUPPLIER_PHONE, fields[4]);
+        return values;
+    }
+
+    /**
+     * Split a CSV line into the given array. Fields may be quoted, with "" standing for a quote
+     * inside a quoted field. Unquoted fields are trimmed, quoted ones are kept as they are.
+     * Return false if the line doesn't have exactly as many fields as the array.
+     */
+    static boolean parseLine(String line, String[] fields) {
+        StringBuilder field = new StringBuilder();
+        int fieldIndex = 0;
+        int i = 0;
+        int length = line.length();
+        while (true) {
+            String value;
+            if (i < length && line.charAt(i) == '"') {
+                // Quoted field
+                field.setLength(0);
+                i++;
+                while (true) {
+                    if (i >= length) {
+                        // Unterminated quote
+                        return false;
+                    }
+                    char c = line.charAt(i++);
+                    if (c == '"') {
+                        if (i < length && line.charAt(i) == '"') {
+                            field.append('"');
+                            i++;
+                        } else {
+                            break;
+                        }
+                    } else {
+                        field.append(c);
+                    }
+                }
+                if (i < length && line.charAt(i) != ',') {
+                    return false;
+                }
+                value = field.toString();
+            } else {
+                int end = line.indexOf(',', i);
+                if (end < 0) {
+                    end = length;
+                }
+                value = line.substring(i, end).trim();
+                i = end;
+            }
+
+            if (fieldIndex == fields.length) {
+                return false;
+            }
+            fields[fieldIndex++] = value;
+
+            if (i >= length) {
+                return fieldIndex == fields.length;
+            }
+            // Skip the comma
+            i++;
+        }
+    }
+
+    /**
+     * Write one CSV line, quoting the fields that need it.
+     */
+    private static void writeRow(Writer out, String[] fields) throws IOException {
+        for (int i = 0; i < fields.length; i++) {
+            if (i > 0) {
+                out.write(',');
+            }
+            String field = fields[i];
+            if (field == null) {
+                continue;
+            }
+            if (needsQuotes(field)) {
+                out.write('"');
+                out.write(field.replace("\"", "\"\""));
+                out.write('"');
+            } else {
+                out.write(field);
+            }
+        }
+        out.write('\n');
+    }
+
+    /**
+     * Return whether a field has to be quoted to read back the same: it holds a comma, quote
+     * or line break, or starts or ends with characters that reading an unquoted field trims.
+     */
+    private static boolean needsQuotes(String field) {
+        int length = field.length();
+        if (length == 0) {
+            return false;
+        }
+        if (field.charAt(0) <= ' ' || field.charAt(length - 1) <= ' ') {
+            return true;
+        }
+        for (int i = 0; i < length; i++) {
+            char c = field.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.android.pets.data;
+
+/**
+ * Connection settings for the inventory database, applied by {@link ItemDbHelper} each time the
+ * database is opened.
+ */
+public final class ItemDbConfig {
+
+    /** Value for {@link #synchronousMode} that syncs at every commit */
+    public static final String SYNCHRONOUS_FULL = "FULL";
+
+    /**
+     * Value for {@link #synchronousMode} that only syncs at checkpoints when write-ahead
+     * logging is on. A power loss may roll back the last transactions but can't corrupt the
+     * database.
+     */
+    public static final String SYNCHRONOUS_NORMAL = "NORMAL";
+
+    /**
+     * Settings used by the app: write-ahead logging so catalogue queries keep running during a
+     * long import, NORMAL syncing (safe with a write-ahead log) and a 2 MiB page cache.
+     */
+    public static final ItemDbConfig DEFAULT =
+            new ItemDbConfig(true, SYNCHRONOUS_NORMAL, 4096, 2048);
+
+    /** Whether the database uses a write-ahead log instead of a rollback journal */
+    public final boolean writeAheadLogging;
+
+    /** Value for PRAGMA synchronous, one of the SYNCHRONOUS_* constants */
+    public final String synchronousMode;
+
+    /**
+     * Page size in bytes. SQLite only applies it to a database that has no tables yet, so it
+     * takes effect when the database file is first created.
+     */
+    public final int pageSize;
+
+    /**
+     * Size of the page cache in KiB. It is applied to the primary connection, which runs every
+     * write and transaction; the pool's other connections keep SQLite's default.
+     */
+    public final int cacheSizeKb;
+
+    public ItemDbConfig(boolean writeAheadLogging, String synchronousMode, int pageSize,
+                        int cacheSizeKb) {
+        if (!SYNCHRONOUS_FULL.equals(synchronousMode) && !SYNCHRONOUS_NORMAL.equals(synchronousMode)) {
+            throw new IllegalArgumentException("Unknown synchronous mode " + synchronousMode);
+        }
+        // SQLite page sizes are powers of two between 512 and 65536 bytes
+        if (pageSize < 512 || pageSize > 65536 || Integer.bitCount(pageSize) != 1) {
+            throw new IllegalArgumentException("Invalid page size " + pageSize);
+        }
+        if (cacheSizeKb <= 0) {
+            throw new IllegalArgumentException("Invalid cache size " + cacheSizeKb);
+        }
+        this.writeAheadLogging = writeAheadLogging;
+        this.synchronousMode = synchronousMode;
+        this.pageSize = pageSize;
+        this.cacheSizeKb = cacheSizeKb;
+    }
+
+    /**
+     * Return the cache size as a number of pages, the unit every SQLite version accepts.
+     */
+    int getCacheSizePages() {
+        return Math.max(1, cacheSizeKb * 1024 / pageSize);
+    }
+}
@@ -1,11 +1,17 @@
 package com.example.android.pets.data;
 
-import android.content.ClipData;
 import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.os.Build;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
 
+import com.example.android.pets.data.ItemContract.ChangeEntry;
 import com.example.android.pets.data.ItemContract.ItemEntry;
+import com.example.android.pets.data.ItemContract.MovementEntry;
+import com.example.android.pets.data.ItemContract.SupplierEntry;
 
 /**
  * Database helper for Pets app. Manages database creation and version management.
@@ -16,34 +22,922 @@ public class ItemDbHelper extends SQLiteOpenHelper {
     public static final String LOG_TAG = ItemDbHelper.class.getSimpleName();
 
     // Name of the database file
-    private static final String DATABASE_NAME = "storeInventory.db";
+    static final String DATABASE_NAME = "storeInventory.db";
 
-    // Database version. If you change the database schema, you must increment the version number.
-    private static final int DATABASE_VERSION = 1;
+    // Database version. If you change the database schema, you must increment the version number
+    // and add a matching step to migrate(). Snapshots written for an older schema are discarded.
+    static final int DATABASE_VERSION = 11;
+
+    /**
+     * Name of the table holding one row of running totals per supplier, kept up to date by
+     * triggers on the items table. It has the supplier ID column and the
+     * {@link ItemEntry#COLUMN_ITEM_COUNT}, {@link ItemEntry#COLUMN_TOTAL_QUANTITY} and
+     * {@link ItemEntry#COLUMN_TOTAL_VALUE} columns.
+     */
+    static final String SUPPLIER_SUMMARY_TABLE_NAME = "supplier_summary";
+
+    /**
+     * Name of the view of the supplier summary table that adds each supplier's name, as the
+     * supplier name column.
+     */
+    static final String SUPPLIER_SUMMARY_VIEW_NAME = "supplier_summary_view";
+
+    /**
+     * Name of the view that joins each item to its supplier. It has every item column plus
+     * the supplier's name and phone under the {@link ItemEntry#COLUMN_ITEM_SUPPLIER_NAME} and
+     * {@link ItemEntry#COLUMN_ITEM_SUPPLIER_PHONE} names items used to store them under, so
+     * reads that expect those columns keep working. Writes go to the items table.
+     */
+    static final String ITEMS_VIEW_NAME = "items_with_supplier";
+
+    /**
+     * Tombstone column of the items table. Soft-deleted items have it set to 1 and stay in the
+     * table, hidden from queries, until the next compaction removes them.
+     * Type: INTEGER
+     */
+    static final String COLUMN_DELETED = "deleted";
+
+    /** Selection matching the items that haven't been soft-deleted */
+    static final String SELECTION_LIVE = COLUMN_DELETED + " = 0";
+
+    /**
+     * Names of the tables totalling each item's movements per UTC hour and per UTC day, kept up
+     * to date by a trigger on the movements table. Both have the item ID column,
+     * {@link #COLUMN_BUCKET} and the {@link MovementEntry#COLUMN_UNITS_IN} and
+     * {@link MovementEntry#COLUMN_UNITS_OUT} columns, keyed by item and bucket.
+     */
+    static final String MOVEMENTS_HOURLY_TABLE_NAME = "item_movements_hourly";
+    static final String MOVEMENTS_DAILY_TABLE_NAME = "item_movements_daily";
+
+    /**
+     * Bucket column of the movement rollup tables: the number of whole hours or days between
+     * the epoch and the start of the bucket.
+     * Type: INTEGER
+     */
+    static final String COLUMN_BUCKET = "bucket";
+
+    /** Length of the buckets of the hourly and daily rollup tables */
+    static final long MILLIS_PER_HOUR = 60 * 60 * 1000L;
+    static final long MILLIS_PER_DAY = 24 * MILLIS_PER_HOUR;
+
+    /** Name of the full-text search table that shadows the searchable item columns */
+    static final String FTS_TABLE_NAME = "items_fts";
+
+    /**
+     * Name of the table holding a row only while {@link #clearItems} empties the items table.
+     * The delete triggers of the items table do nothing while it has a row.
+     */
+    static final String BULK_CLEAR_TABLE_NAME = "bulk_clear";
+
+    /** Delete trigger condition that is false while {@link #clearItems} is running */
+    private static final String NOT_CLEARING =
+            "NOT EXISTS (SELECT 1 FROM " + BULK_CLEAR_TABLE_NAME + ")";
+
+    /** Connection settings applied whenever the database is opened */
+    private final ItemDbConfig mConfig;
 
     public ItemDbHelper (Context context) {
+        this(context, ItemDbConfig.DEFAULT);
+    }
+
+    public ItemDbHelper (Context context, ItemDbConfig config) {
         super(context, DATABASE_NAME, null, DATABASE_VERSION);
+        mConfig = config;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            setWriteAheadLoggingEnabled(config.writeAheadLogging);
+        }
+    }
+
+    // This is called when the connection is being configured, before the database is created,
+    // upgraded or opened. Only available from API 16; older versions configure in onOpen.
+    @Override
+    public void onConfigure(SQLiteDatabase db) {
+        applyConnectionSettings(db);
+        // Items refer to their supplier by ID, so make SQLite refuse a dangling reference. A
+        // pragma would only reach this connection; this setting is applied to every connection
+        // the framework opens for the database.
+        db.setForeignKeyConstraintsEnabled(true);
+    }
+
+    // This is called when the database has been opened.
+    @Override
+    public void onOpen(SQLiteDatabase db) {
+        super.onOpen(db);
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN) {
+            // There's no onConfigure before API 16, so configure the connection here
+            if (mConfig.writeAheadLogging && !db.isReadOnly()) {
+                db.enableWriteAheadLogging();
+            }
+            applyConnectionSettings(db);
+            db.execSQL("PRAGMA foreign_keys = ON");
+        }
+    }
+
+    /**
+     * Apply the synchronous mode and cache size from the config. A pragma run through execSQL
+     * only reaches the primary connection, and this API level has no way to configure the
+     * other connections of the pool. That is enough for the synchronous mode, since every
+     * write and every transaction runs on the primary connection. With write-ahead logging on,
+     * reads outside a transaction may run on a secondary connection, which keeps SQLite's
+     * default cache size.
+     */
+    private void applyConnectionSettings(SQLiteDatabase db) {
+        db.execSQL("PRAGMA synchronous = " + mConfig.synchronousMode);
+        db.execSQL("PRAGMA cache_size = " + mConfig.getCacheSizePages());
     }
 
     // This is called when the database is created for the first time
     @Override
     public void onCreate(SQLiteDatabase db) {
-        // Create a string that contains the SQL statement to create the items table
-        String SQL_CREATE_ITEMS_TABLE = "CREATE TABLE " + ItemEntry.TABLE_NAME + " ("
+        // The page size and vacuum mode only take effect on a database that has no tables
+        // yet, so set them before anything is created. Incremental vacuuming lets compaction
+        // give free pages back to the system.
+        db.execSQL("PRAGMA page_size = " + mConfig.pageSize);
+        db.execSQL("PRAGMA auto_vacuum = INCREMENTAL");
+
+        // Create the current schema directly. It must match what migrate() leaves behind
+        // after upgrading from any older version.
+        createSuppliersTable(db);
+        createItemsTable(db, ItemEntry.TABLE_NAME);
+        createItemIndexes(db);
+
+        createFtsTable(db);
+        createFtsTriggers(db);
+
+        createSupplierSummaryTable(db);
+        createSupplierSummaryTriggers(db);
+
+        createChangeJournalTable(db);
+        createChangeJournalTriggers(db);
+
+        createViews(db);
+
+        createMovementTables(db);
+
+        createBulkClearTable(db);
+        createDeleteTriggers(db);
+    }
+
+    // This is called when the database needs to be upgraded. Each version is applied in turn,
+    // so a database several versions behind goes through every intermediate schema.
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion){
+        for (int version = oldVersion + 1; version <= newVersion; version++) {
+            migrate(db, version);
+        }
+    }
+
+    /**
+     * Apply the schema changes that take the database from {@code version - 1} to
+     * {@code version}.
+     */
+    private void migrate(SQLiteDatabase db, int version) {
+        switch (version) {
+            case 2:
+                // Indexes for searching by name or supplier and for low-stock queries
+                createNameAndQuantityIndexes(db);
+                db.execSQL("CREATE INDEX items_supplier_name_idx ON " + ItemEntry.TABLE_NAME
+                        + " (" + ItemEntry.COLUMN_ITEM_SUPPLIER_NAME + ");");
+                break;
+            case 3:
+                // Full-text index over item and supplier names. Each row's docid is the _id
+                // of the item it shadows, and triggers keep it in step with the items table.
+                createFtsTable(db);
+                db.execSQL("INSERT INTO " + FTS_TABLE_NAME + " (docid, "
+                        + ItemEntry.COLUMN_ITEM_NAME + ", " + ItemEntry.COLUMN_ITEM_SUPPLIER_NAME
+                        + ") SELECT " + ItemEntry._ID + ", " + ItemEntry.COLUMN_ITEM_NAME + ", "
+                        + ItemEntry.COLUMN_ITEM_SUPPLIER_NAME + " FROM " + ItemEntry.TABLE_NAME + ";");
+                createFtsTriggersV3(db);
+                break;
+            case 4:
+                // Tombstone column for soft deletes
+                db.execSQL("ALTER TABLE " + ItemEntry.TABLE_NAME + " ADD COLUMN "
+                        + COLUMN_DELETED + " INTEGER NOT NULL DEFAULT 0;");
+                break;
+            case 5:
+                // Store prices as whole cents and supplier phones as bare digits. SQLite can't
+                // change a column's type, so the table is rebuilt, keeping every _id. The
+                // AUTOINCREMENT counter is carried over first, so IDs of deleted items aren't
+                // handed out again.
+                db.execSQL("CREATE TABLE items_new ("
+                        + ItemEntry._ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+                        + ItemEntry.COLUMN_ITEM_NAME + " TEXT NOT NULL, "
+                        + ItemEntry.COLUMN_ITEM_PRICE + " INTEGER NOT NULL, "
+                        + ItemEntry.COLUMN_ITEM_QUANTITY + " INTEGER NOT NULL DEFAULT 0, "
+                        + ItemEntry.COLUMN_ITEM_SUPPLIER_NAME + " TEXT NOT NULL, "
+                        + ItemEntry.COLUMN_ITEM_SUPPLIER_PHONE + " TEXT NOT NULL, "
+                        + COLUMN_DELETED + " INTEGER NOT NULL DEFAULT 0);");
+                db.execSQL("INSERT INTO sqlite_sequence (name, seq) SELECT 'items_new', seq"
+                        + " FROM sqlite_sequence WHERE name = '" + ItemEntry.TABLE_NAME + "';");
+                db.execSQL("INSERT INTO items_new SELECT "
+                        + ItemEntry._ID + ", "
+                        + ItemEntry.COLUMN_ITEM_NAME + ", "
+                        + "CAST(ROUND(" + ItemEntry.COLUMN_ITEM_PRICE + " * 100) AS INTEGER), "
+                        + ItemEntry.COLUMN_ITEM_QUANTITY + ", "
+                        + ItemEntry.COLUMN_ITEM_SUPPLIER_NAME + ", "
+                        + ItemEntry.COLUMN_ITEM_SUPPLIER_PHONE + ", "
+                        + COLUMN_DELETED + " FROM " + ItemEntry.TABLE_NAME + ";");
+                normalizeSupplierPhones(db, "items_new");
+                // Dropping the old table drops its indexes and triggers too
+                db.execSQL("DROP TABLE " + ItemEntry.TABLE_NAME + ";");
+                db.execSQL("ALTER TABLE items_new RENAME TO " + ItemEntry.TABLE_NAME + ";");
+                createNameAndQuantityIndexes(db);
+                db.execSQL("CREATE INDEX items_supplier_name_idx ON " + ItemEntry.TABLE_NAME
+                        + " (" + ItemEntry.COLUMN_ITEM_SUPPLIER_NAME + ");");
+                createFtsTriggersV3(db);
+                break;
+            case 6:
+                // Replace the supplier name index with one that also covers the columns the
+                // per-supplier summary adds up, so it never has to read the table itself
+                db.execSQL("DROP INDEX items_supplier_name_idx;");
+                db.execSQL("CREATE INDEX items_supplier_idx ON " + ItemEntry.TABLE_NAME + " ("
+                        + ItemEntry.COLUMN_ITEM_SUPPLIER_NAME + ", " + COLUMN_DELETED + ", "
+                        + ItemEntry.COLUMN_ITEM_QUANTITY + ", " + ItemEntry.COLUMN_ITEM_PRICE + ");");
+                break;
+            case 7:
+                // Per-supplier totals maintained as items change, so dashboards don't have to
+                // add up the whole items table
+                db.execSQL("CREATE TABLE " + SUPPLIER_SUMMARY_TABLE_NAME + " ("
+                        + ItemEntry.COLUMN_ITEM_SUPPLIER_NAME + " TEXT PRIMARY KEY, "
+                        + ItemEntry.COLUMN_ITEM_COUNT + " INTEGER NOT NULL, "
+                        + ItemEntry.COLUMN_TOTAL_QUANTITY + " INTEGER NOT NULL, "
+                        + ItemEntry.COLUMN_TOTAL_VALUE + " INTEGER NOT NULL);");
+                createSupplierSummaryTriggersV7(db);
+                db.execSQL("INSERT INTO " + SUPPLIER_SUMMARY_TABLE_NAME + " SELECT "
+                        + ItemEntry.COLUMN_ITEM_SUPPLIER_NAME + ", COUNT(*), "
+                        + "SUM(" + ItemEntry.COLUMN_ITEM_QUANTITY + "), "
+                        + "SUM(" + ItemEntry.COLUMN_ITEM_PRICE + " * "
+                        + ItemEntry.COLUMN_ITEM_QUANTITY + ") FROM " + ItemEntry.TABLE_NAME
+                        + " WHERE " + SELECTION_LIVE
+                        + " GROUP BY " + ItemEntry.COLUMN_ITEM_SUPPLIER_NAME + ";");
+                break;
+            case 8:
+                // Append-only journal of item changes, written by triggers in the same
+                // transaction as the change, so a sync can export only what changed since its
+                // last run. AUTOINCREMENT keeps sequence numbers rising after the journal is
+                // truncated.
+                createChangeJournalTable(db);
+                createChangeJournalTriggersV8(db);
+                break;
+            case 9:
+                // Move suppliers into their own table and have items refer to them by ID, so
+                // each supplier's name and phone are stored once instead of on every item.
+                // Items that disagreed on a supplier's phone keep the most recent one.
+                createSuppliersTable(db);
+                db.execSQL("INSERT INTO " + SupplierEntry.TABLE_NAME + " ("
+                        + SupplierEntry.COLUMN_SUPPLIER_NAME + ", "
+                        + SupplierEntry.COLUMN_SUPPLIER_PHONE + ") SELECT "
+                        + ItemEntry.COLUMN_ITEM_SUPPLIER_NAME + ", "
+                        + ItemEntry.COLUMN_ITEM_SUPPLIER_PHONE + " FROM " + ItemEntry.TABLE_NAME
+                        + " WHERE " + ItemEntry._ID + " IN (SELECT MAX(" + ItemEntry._ID
+                        + ") FROM " + ItemEntry.TABLE_NAME + " GROUP BY "
+                        + ItemEntry.COLUMN_ITEM_SUPPLIER_NAME + ") ORDER BY "
+                        + ItemEntry.COLUMN_ITEM_SUPPLIER_NAME + ";");
+
+                // Rebuild the items table around the supplier ID, keeping every _id. The
+                // AUTOINCREMENT counter is carried over first, so IDs of deleted items aren't
+                // handed out again.
+                createItemsTable(db, "items_new");
+                db.execSQL("INSERT INTO sqlite_sequence (name, seq) SELECT 'items_new', seq"
+                        + " FROM sqlite_sequence WHERE name = '" + ItemEntry.TABLE_NAME + "';");
+                db.execSQL("INSERT INTO items_new SELECT i." + ItemEntry._ID + ", i."
+                        + ItemEntry.COLUMN_ITEM_NAME + ", i." + ItemEntry.COLUMN_ITEM_PRICE + ", i."
+                        + ItemEntry.COLUMN_ITEM_QUANTITY + ", s." + SupplierEntry._ID + ", i."
+                        + COLUMN_DELETED + " FROM " + ItemEntry.TABLE_NAME + " i JOIN "
+                        + SupplierEntry.TABLE_NAME + " s ON s." + SupplierEntry.COLUMN_SUPPLIER_NAME
+                        + " = i." + ItemEntry.COLUMN_ITEM_SUPPLIER_NAME + ";");
+                // Dropping the old table drops its indexes and triggers too
+                db.execSQL("DROP TABLE " + ItemEntry.TABLE_NAME + ";");
+                db.execSQL("ALTER TABLE items_new RENAME TO " + ItemEntry.TABLE_NAME + ";");
+                createItemIndexes(db);
+
+                // The search table keeps its rows, only the triggers feeding it change
+                createFtsTriggers(db);
+                createFtsDeleteTrigger(db, false);
+
+                // Key the supplier totals by supplier ID as well
+                db.execSQL("DROP TABLE " + SUPPLIER_SUMMARY_TABLE_NAME + ";");
+                createSupplierSummaryTable(db);
+                createSupplierSummaryTriggers(db);
+                createSupplierSummaryDeleteTrigger(db, false);
+                rebuildSupplierSummary(db);
+
+                createChangeJournalTriggers(db);
+                createChangeJournalDeleteTrigger(db, false);
+
+                // Views presenting items and supplier totals with supplier names, as they
+                // looked before
+                createViews(db);
+                break;
+            case 10:
+                // History of quantity changes, with per-hour and per-day totals kept up to
+                // date as movements are recorded, so a chart of recent sales reads one row per
+                // bucket instead of adding up every movement
+                createMovementTables(db);
+                createMovementDeleteTrigger(db, false);
+                break;
+            case 11:
+                // Let clearItems switch off the delete triggers' per-row work and empty the
+                // tables they maintain in one statement each instead
+                createBulkClearTable(db);
+                db.execSQL("DROP TRIGGER items_fts_ad;");
+                db.execSQL("DROP TRIGGER supplier_summary_ad;");
+                db.execSQL("DROP TRIGGER item_changes_ad;");
+                db.execSQL("DROP TRIGGER item_movements_ad;");
+                createDeleteTriggers(db);
+                break;
+            default:
+                throw new IllegalStateException("No migration to database version " + version);
+        }
+    }
+
+    /**
+     * Rewrite the supplier phones stored in the given table the way
+     * {@link ItemEntry#normalizePhone} normalizes the phones of new writes. SQLite has no
+     * function for that, so the rows are rewritten one by one. A phone without any digits is
+     * left as it is.
+     */
+    private static void normalizeSupplierPhones(SQLiteDatabase db, String table) {
+        SQLiteStatement update = db.compileStatement("UPDATE " + table + " SET "
+                + ItemEntry.COLUMN_ITEM_SUPPLIER_PHONE + " = ? WHERE " + ItemEntry._ID + " = ?");
+        Cursor cursor = db.rawQuery("SELECT " + ItemEntry._ID + ", "
+                + ItemEntry.COLUMN_ITEM_SUPPLIER_PHONE + " FROM " + table, null);
+        try {
+            while (cursor.moveToNext()) {
+                String phone = cursor.getString(1);
+                String normalized = ItemEntry.normalizePhone(phone);
+                if (normalized != null && !normalized.equals(phone)) {
+                    update.bindString(1, normalized);
+                    update.bindLong(2, cursor.getLong(0));
+                    update.executeUpdateDelete();
+                }
+            }
+        } finally {
+            cursor.close();
+            update.close();
+        }
+    }
+
+    /**
+     * Delete every item, including soft-deleted ones, in one transaction. A row in the bulk
+     * clear table turns the delete triggers into no-ops for the duration, and the search
+     * table, the supplier totals and the movement history are emptied with one statement each
+     * instead of row by row. The row is removed before the transaction commits, so no other
+     * connection ever sees it. Return the number of live items that were deleted.
+     */
+    static int clearItems(SQLiteDatabase db) {
+        db.beginTransaction();
+        try {
+            int count = (int) DatabaseUtils.queryNumEntries(db, ItemEntry.TABLE_NAME,
+                    SELECTION_LIVE, null);
+            db.execSQL("INSERT INTO " + BULK_CLEAR_TABLE_NAME + " VALUES (1);");
+            db.delete(ItemEntry.TABLE_NAME, null, null);
+            db.delete(FTS_TABLE_NAME, null, null);
+            db.delete(SUPPLIER_SUMMARY_TABLE_NAME, null, null);
+            db.delete(MovementEntry.TABLE_NAME, null, null);
+            db.delete(MOVEMENTS_HOURLY_TABLE_NAME, null, null);
+            db.delete(MOVEMENTS_DAILY_TABLE_NAME, null, null);
+            db.delete(BULK_CLEAR_TABLE_NAME, null, null);
+            // One journal entry stands for every deleted item, in place of one entry each
+            db.execSQL("INSERT INTO " + ChangeEntry.TABLE_NAME + " ("
+                    + ChangeEntry.COLUMN_OPERATION + ") VALUES ('" + ChangeEntry.OP_CLEAR + "');");
+            db.setTransactionSuccessful();
+            return count;
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Remove the journal entries up to and including the given sequence number, once a sync
+     * has stored them. Return the number of entries removed.
+     */
+    static int truncateChangeJournal(SQLiteDatabase db, long sequence) {
+        return db.delete(ChangeEntry.TABLE_NAME, ChangeEntry.COLUMN_SEQUENCE + " <= ?",
+                new String[] { String.valueOf(sequence) });
+    }
+
+    /**
+     * Recompute the supplier summary table from the items table, for recovery if it ever gets
+     * out of step.
+     */
+    static void rebuildSupplierSummary(SQLiteDatabase db) {
+        db.beginTransaction();
+        try {
+            db.execSQL("DELETE FROM " + SUPPLIER_SUMMARY_TABLE_NAME + ";");
+            db.execSQL("INSERT INTO " + SUPPLIER_SUMMARY_TABLE_NAME + " SELECT "
+                    + ItemEntry.COLUMN_ITEM_SUPPLIER_ID + ", COUNT(*), "
+                    + "SUM(" + ItemEntry.COLUMN_ITEM_QUANTITY + "), "
+                    + "SUM(" + ItemEntry.COLUMN_ITEM_PRICE + " * " + ItemEntry.COLUMN_ITEM_QUANTITY
+                    + ") FROM " + ItemEntry.TABLE_NAME + " WHERE " + SELECTION_LIVE
+                    + " GROUP BY " + ItemEntry.COLUMN_ITEM_SUPPLIER_ID + ";");
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Physically remove soft-deleted items and give the pages they used back to the file
+     * system. Must not be called inside a transaction. Return the number of rows removed.
+     */
+    static int compact(SQLiteDatabase db) {
+        int removed = db.delete(ItemEntry.TABLE_NAME, COLUMN_DELETED + " = 1", null);
+
+        // Databases created before incremental vacuuming was turned on need one full VACUUM
+        // to switch over. After that, freeing pages is cheap.
+        if (DatabaseUtils.longForQuery(db, "PRAGMA auto_vacuum", null) != 2) {
+            db.execSQL("PRAGMA auto_vacuum = INCREMENTAL");
+            db.execSQL("VACUUM");
+        } else {
+            // Step through the whole statement; it frees the pages as it goes
+            Cursor cursor = db.rawQuery("PRAGMA incremental_vacuum", null);
+            try {
+                while (cursor.moveToNext()) {
+                    // Nothing to read
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Create the suppliers table, one row per supplier with its name and phone.
+     */
+    private static void createSuppliersTable(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + SupplierEntry.TABLE_NAME + " ("
+                + SupplierEntry._ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + SupplierEntry.COLUMN_SUPPLIER_NAME + " TEXT NOT NULL UNIQUE, "
+                + SupplierEntry.COLUMN_SUPPLIER_PHONE + " TEXT NOT NULL);");
+    }
+
+    /**
+     * Create a table with the current items schema under the given name, prices in whole
+     * cents and the supplier referred to by ID.
+     */
+    private static void createItemsTable(SQLiteDatabase db, String table) {
+        db.execSQL("CREATE TABLE " + table + " ("
                 + ItemEntry._ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
                 + ItemEntry.COLUMN_ITEM_NAME + " TEXT NOT NULL, "
-                + ItemEntry.COLUMN_ITEM_PRICE + " REAL NOT NULL, "
+                + ItemEntry.COLUMN_ITEM_PRICE + " INTEGER NOT NULL, "
                 + ItemEntry.COLUMN_ITEM_QUANTITY + " INTEGER NOT NULL DEFAULT 0, "
-                + ItemEntry.COLUMN_ITEM_SUPPLIER_NAME + " TEXT NOT NULL, "
-                + ItemEntry.COLUMN_ITEM_SUPPLIER_PHONE + " TEXT NOT NULL);";
+                + ItemEntry.COLUMN_ITEM_SUPPLIER_ID + " INTEGER NOT NULL REFERENCES "
+                + SupplierEntry.TABLE_NAME + " (" + SupplierEntry._ID + "), "
+                + COLUMN_DELETED + " INTEGER NOT NULL DEFAULT 0);");
+    }
 
-        //Execute the SQL statement
-        db.execSQL(SQL_CREATE_ITEMS_TABLE);
+    /**
+     * Create the indexes of the current items table. The supplier index also covers the
+     * columns the per-supplier totals add up.
+     */
+    private static void createItemIndexes(SQLiteDatabase db) {
+        createNameAndQuantityIndexes(db);
+        db.execSQL("CREATE INDEX items_supplier_idx ON " + ItemEntry.TABLE_NAME + " ("
+                + ItemEntry.COLUMN_ITEM_SUPPLIER_ID + ", " + COLUMN_DELETED + ", "
+                + ItemEntry.COLUMN_ITEM_QUANTITY + ", " + ItemEntry.COLUMN_ITEM_PRICE + ");");
     }
 
-    // This is called when the database needs to be upgraded.
-    @Override
-    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion){
-        // The database is still at version one, so there's nothing to be done here.
+    /**
+     * Create the indexes for looking up items by name and for low-stock queries.
+     */
+    private static void createNameAndQuantityIndexes(SQLiteDatabase db) {
+        db.execSQL("CREATE INDEX items_name_idx ON " + ItemEntry.TABLE_NAME
+                + " (" + ItemEntry.COLUMN_ITEM_NAME + ");");
+        db.execSQL("CREATE INDEX items_quantity_idx ON " + ItemEntry.TABLE_NAME
+                + " (" + ItemEntry.COLUMN_ITEM_QUANTITY + ");");
+    }
+
+    private static void createFtsTable(SQLiteDatabase db) {
+        db.execSQL("CREATE VIRTUAL TABLE " + FTS_TABLE_NAME + " USING fts4("
+                + ItemEntry.COLUMN_ITEM_NAME + ", "
+                + ItemEntry.COLUMN_ITEM_SUPPLIER_NAME + ");");
+    }
+
+    /**
+     * Create the triggers that copy item and supplier names into the full-text search table
+     * whenever the items table changes, for the version 3 to 8 schema that stored the
+     * supplier name on each item.
+     */
+    private static void createFtsTriggersV3(SQLiteDatabase db) {
+        db.execSQL("CREATE TRIGGER items_fts_ai AFTER INSERT ON " + ItemEntry.TABLE_NAME
+                + " BEGIN INSERT INTO " + FTS_TABLE_NAME + " (docid, "
+                + ItemEntry.COLUMN_ITEM_NAME + ", " + ItemEntry.COLUMN_ITEM_SUPPLIER_NAME
+                + ") VALUES (new." + ItemEntry._ID + ", new." + ItemEntry.COLUMN_ITEM_NAME
+                + ", new." + ItemEntry.COLUMN_ITEM_SUPPLIER_NAME + "); END;");
+        db.execSQL("CREATE TRIGGER items_fts_au AFTER UPDATE OF "
+                + ItemEntry.COLUMN_ITEM_NAME + ", " + ItemEntry.COLUMN_ITEM_SUPPLIER_NAME
+                + " ON " + ItemEntry.TABLE_NAME + " BEGIN UPDATE " + FTS_TABLE_NAME + " SET "
+                + ItemEntry.COLUMN_ITEM_NAME + " = new." + ItemEntry.COLUMN_ITEM_NAME + ", "
+                + ItemEntry.COLUMN_ITEM_SUPPLIER_NAME + " = new." + ItemEntry.COLUMN_ITEM_SUPPLIER_NAME
+                + " WHERE docid = old." + ItemEntry._ID + "; END;");
+        createFtsDeleteTrigger(db, false);
+    }
+
+    /**
+     * Create the triggers that copy item and supplier names into the full-text search table
+     * whenever an item or a supplier's name changes.
+     */
+    private static void createFtsTriggers(SQLiteDatabase db) {
+        String supplierName = "(SELECT " + SupplierEntry.COLUMN_SUPPLIER_NAME + " FROM "
+                + SupplierEntry.TABLE_NAME + " WHERE " + SupplierEntry._ID + " = new."
+                + ItemEntry.COLUMN_ITEM_SUPPLIER_ID + ")";
+        db.execSQL("CREATE TRIGGER items_fts_ai AFTER INSERT ON " + ItemEntry.TABLE_NAME
+                + " BEGIN INSERT INTO " + FTS_TABLE_NAME + " (docid, "
+                + ItemEntry.COLUMN_ITEM_NAME + ", " + ItemEntry.COLUMN_ITEM_SUPPLIER_NAME
+                + ") VALUES (new." + ItemEntry._ID + ", new." + ItemEntry.COLUMN_ITEM_NAME
+                + ", " + supplierName + "); END;");
+        db.execSQL("CREATE TRIGGER items_fts_au AFTER UPDATE OF "
+                + ItemEntry.COLUMN_ITEM_NAME + ", " + ItemEntry.COLUMN_ITEM_SUPPLIER_ID
+                + " ON " + ItemEntry.TABLE_NAME + " BEGIN UPDATE " + FTS_TABLE_NAME + " SET "
+                + ItemEntry.COLUMN_ITEM_NAME + " = new." + ItemEntry.COLUMN_ITEM_NAME + ", "
+                + ItemEntry.COLUMN_ITEM_SUPPLIER_NAME + " = " + supplierName
+                + " WHERE docid = old." + ItemEntry._ID + "; END;");
+        db.execSQL("CREATE TRIGGER suppliers_fts_au AFTER UPDATE OF "
+                + SupplierEntry.COLUMN_SUPPLIER_NAME + " ON " + SupplierEntry.TABLE_NAME
+                + " BEGIN UPDATE " + FTS_TABLE_NAME + " SET "
+                + ItemEntry.COLUMN_ITEM_SUPPLIER_NAME + " = new." + SupplierEntry.COLUMN_SUPPLIER_NAME
+                + " WHERE docid IN (SELECT " + ItemEntry._ID + " FROM " + ItemEntry.TABLE_NAME
+                + " WHERE " + ItemEntry.COLUMN_ITEM_SUPPLIER_ID + " = new." + SupplierEntry._ID
+                + "); END;");
+    }
+
+    private static void createSupplierSummaryTable(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + SUPPLIER_SUMMARY_TABLE_NAME + " ("
+                + ItemEntry.COLUMN_ITEM_SUPPLIER_ID + " INTEGER PRIMARY KEY, "
+                + ItemEntry.COLUMN_ITEM_COUNT + " INTEGER NOT NULL, "
+                + ItemEntry.COLUMN_TOTAL_QUANTITY + " INTEGER NOT NULL, "
+                + ItemEntry.COLUMN_TOTAL_VALUE + " INTEGER NOT NULL);");
+    }
+
+    /**
+     * Create the triggers that keep the supplier summary table in step with the items table.
+     * Soft-deleted items don't count towards the totals.
+     */
+    private static void createSupplierSummaryTriggers(SQLiteDatabase db) {
+        db.execSQL("CREATE TRIGGER supplier_summary_ai AFTER INSERT ON " + ItemEntry.TABLE_NAME
+                + " WHEN new." + COLUMN_DELETED + " = 0 BEGIN "
+                + addToSupplierSummary("new") + " END;");
+        db.execSQL("CREATE TRIGGER supplier_summary_au AFTER UPDATE OF "
+                + ItemEntry.COLUMN_ITEM_SUPPLIER_ID + ", " + ItemEntry.COLUMN_ITEM_PRICE + ", "
+                + ItemEntry.COLUMN_ITEM_QUANTITY + ", " + COLUMN_DELETED
+                + " ON " + ItemEntry.TABLE_NAME + " BEGIN "
+                + subtractFromSupplierSummary("old") + addToSupplierSummary("new") + " END;");
+    }
+
+    private static void createSupplierSummaryDeleteTrigger(SQLiteDatabase db, boolean guarded) {
+        db.execSQL("CREATE TRIGGER supplier_summary_ad AFTER DELETE ON " + ItemEntry.TABLE_NAME
+                + deleteTriggerWhen("old." + COLUMN_DELETED + " = 0", guarded) + " BEGIN "
+                + subtractFromSupplierSummary("old") + " END;");
+    }
+
+    /**
+     * Return trigger statements adding the item in the given row ("new" or "old") to its
+     * supplier's totals, unless it is soft-deleted.
+     */
+    private static String addToSupplierSummary(String row) {
+        String supplier = row + "." + ItemEntry.COLUMN_ITEM_SUPPLIER_ID;
+        String live = row + "." + COLUMN_DELETED + " = 0";
+        return "INSERT OR IGNORE INTO " + SUPPLIER_SUMMARY_TABLE_NAME
+                + " SELECT " + supplier + ", 0, 0, 0 WHERE " + live + "; "
+                + "UPDATE " + SUPPLIER_SUMMARY_TABLE_NAME + " SET "
+                + ItemEntry.COLUMN_ITEM_COUNT + " = " + ItemEntry.COLUMN_ITEM_COUNT + " + 1, "
+                + ItemEntry.COLUMN_TOTAL_QUANTITY + " = " + ItemEntry.COLUMN_TOTAL_QUANTITY
+                + " + " + row + "." + ItemEntry.COLUMN_ITEM_QUANTITY + ", "
+                + ItemEntry.COLUMN_TOTAL_VALUE + " = " + ItemEntry.COLUMN_TOTAL_VALUE
+                + " + " + row + "." + ItemEntry.COLUMN_ITEM_PRICE
+                + " * " + row + "." + ItemEntry.COLUMN_ITEM_QUANTITY
+                + " WHERE " + live + " AND " + ItemEntry.COLUMN_ITEM_SUPPLIER_ID
+                + " = " + supplier + "; ";
+    }
+
+    /**
+     * Return trigger statements taking the item in the given row ("new" or "old") off its
+     * supplier's totals, unless it is soft-deleted, and dropping suppliers left with no items.
+     */
+    private static String subtractFromSupplierSummary(String row) {
+        String supplier = row + "." + ItemEntry.COLUMN_ITEM_SUPPLIER_ID;
+        String live = row + "." + COLUMN_DELETED + " = 0";
+        return "UPDATE " + SUPPLIER_SUMMARY_TABLE_NAME + " SET "
+                + ItemEntry.COLUMN_ITEM_COUNT + " = " + ItemEntry.COLUMN_ITEM_COUNT + " - 1, "
+                + ItemEntry.COLUMN_TOTAL_QUANTITY + " = " + ItemEntry.COLUMN_TOTAL_QUANTITY
+                + " - " + row + "." + ItemEntry.COLUMN_ITEM_QUANTITY + ", "
+                + ItemEntry.COLUMN_TOTAL_VALUE + " = " + ItemEntry.COLUMN_TOTAL_VALUE
+                + " - " + row + "." + ItemEntry.COLUMN_ITEM_PRICE
+                + " * " + row + "." + ItemEntry.COLUMN_ITEM_QUANTITY
+                + " WHERE " + live + " AND " + ItemEntry.COLUMN_ITEM_SUPPLIER_ID
+                + " = " + supplier + "; "
+                + "DELETE FROM " + SUPPLIER_SUMMARY_TABLE_NAME + " WHERE " + live + " AND "
+                + ItemEntry.COLUMN_ITEM_SUPPLIER_ID + " = " + supplier + " AND "
+                + ItemEntry.COLUMN_ITEM_COUNT + " = 0; ";
+    }
+
+    /**
+     * Create the version 7 and 8 triggers that kept the supplier summary table, then keyed by
+     * supplier name, in step with the items table.
+     */
+    private static void createSupplierSummaryTriggersV7(SQLiteDatabase db) {
+        db.execSQL("CREATE TRIGGER supplier_summary_ai AFTER INSERT ON " + ItemEntry.TABLE_NAME
+                + " WHEN new." + COLUMN_DELETED + " = 0 BEGIN "
+                + addToSupplierSummaryV7("new") + " END;");
+        db.execSQL("CREATE TRIGGER supplier_summary_au AFTER UPDATE OF "
+                + ItemEntry.COLUMN_ITEM_SUPPLIER_NAME + ", " + ItemEntry.COLUMN_ITEM_PRICE + ", "
+                + ItemEntry.COLUMN_ITEM_QUANTITY + ", " + COLUMN_DELETED
+                + " ON " + ItemEntry.TABLE_NAME + " BEGIN "
+                + subtractFromSupplierSummaryV7("old") + addToSupplierSummaryV7("new") + " END;");
+        db.execSQL("CREATE TRIGGER supplier_summary_ad AFTER DELETE ON " + ItemEntry.TABLE_NAME
+                + " WHEN old." + COLUMN_DELETED + " = 0 BEGIN "
+                + subtractFromSupplierSummaryV7("old") + " END;");
+    }
+
+    /**
+     * Version 7 and 8 form of {@link #addToSupplierSummary}, keyed by supplier name.
+     */
+    private static String addToSupplierSummaryV7(String row) {
+        String supplier = row + "." + ItemEntry.COLUMN_ITEM_SUPPLIER_NAME;
+        String live = row + "." + COLUMN_DELETED + " = 0";
+        return "INSERT OR IGNORE INTO " + SUPPLIER_SUMMARY_TABLE_NAME
+                + " SELECT " + supplier + ", 0, 0, 0 WHERE " + live + "; "
+                + "UPDATE " + SUPPLIER_SUMMARY_TABLE_NAME + " SET "
+                + ItemEntry.COLUMN_ITEM_COUNT + " = " + ItemEntry.COLUMN_ITEM_COUNT + " + 1, "
+                + ItemEntry.COLUMN_TOTAL_QUANTITY + " = " + ItemEntry.COLUMN_TOTAL_QUANTITY
+                + " + " + row + "." + ItemEntry.COLUMN_ITEM_QUANTITY + ", "
+                + ItemEntry.COLUMN_TOTAL_VALUE + " = " + ItemEntry.COLUMN_TOTAL_VALUE
+                + " + " + row + "." + ItemEntry.COLUMN_ITEM_PRICE
+                + " * " + row + "." + ItemEntry.COLUMN_ITEM_QUANTITY
+                + " WHERE " + live + " AND " + ItemEntry.COLUMN_ITEM_SUPPLIER_NAME
+                + " = " + supplier + "; ";
+    }
+
+    /**
+     * Version 7 and 8 form of {@link #subtractFromSupplierSummary}, keyed by supplier name.
+     */
+    private static String subtractFromSupplierSummaryV7(String row) {
+        String supplier = row + "." + ItemEntry.COLUMN_ITEM_SUPPLIER_NAME;
+        String live = row + "." + COLUMN_DELETED + " = 0";
+        return "UPDATE " + SUPPLIER_SUMMARY_TABLE_NAME + " SET "
+                + ItemEntry.COLUMN_ITEM_COUNT + " = " + ItemEntry.COLUMN_ITEM_COUNT + " - 1, "
+                + ItemEntry.COLUMN_TOTAL_QUANTITY + " = " + ItemEntry.COLUMN_TOTAL_QUANTITY
+                + " - " + row + "." + ItemEntry.COLUMN_ITEM_QUANTITY + ", "
+                + ItemEntry.COLUMN_TOTAL_VALUE + " = " + ItemEntry.COLUMN_TOTAL_VALUE
+                + " - " + row + "." + ItemEntry.COLUMN_ITEM_PRICE
+                + " * " + row + "." + ItemEntry.COLUMN_ITEM_QUANTITY
+                + " WHERE " + live + " AND " + ItemEntry.COLUMN_ITEM_SUPPLIER_NAME
+                + " = " + supplier + "; "
+                + "DELETE FROM " + SUPPLIER_SUMMARY_TABLE_NAME + " WHERE " + live + " AND "
+                + ItemEntry.COLUMN_ITEM_SUPPLIER_NAME + " = " + supplier + " AND "
+                + ItemEntry.COLUMN_ITEM_COUNT + " = 0; ";
+    }
+
+    private static void createChangeJournalTable(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + ChangeEntry.TABLE_NAME + " ("
+                + ChangeEntry.COLUMN_SEQUENCE + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + ChangeEntry.COLUMN_ITEM_ID + " INTEGER, "
+                + ChangeEntry.COLUMN_OPERATION + " TEXT NOT NULL, "
+                + ChangeEntry.COLUMN_CHANGED_COLUMNS + " TEXT);");
+    }
+
+    /**
+     * Create the triggers that journal every change to the items table and to the suppliers
+     * its items refer to. Updates record which columns changed, a supplier change being
+     * recorded against each of its live items, and soft deletes are journaled as deletes, so
+     * removing a soft-deleted item later doesn't add another entry.
+     */
+    private static void createChangeJournalTriggers(SQLiteDatabase db) {
+        createItemChangeTriggers(db, new String[] {
+                ItemEntry.COLUMN_ITEM_NAME,
+                ItemEntry.COLUMN_ITEM_PRICE,
+                ItemEntry.COLUMN_ITEM_QUANTITY,
+                ItemEntry.COLUMN_ITEM_SUPPLIER_ID
+        });
+        String[] supplierColumns = {
+                SupplierEntry.COLUMN_SUPPLIER_NAME,
+                SupplierEntry.COLUMN_SUPPLIER_PHONE
+        };
+        String[] itemColumns = {
+                ItemEntry.COLUMN_ITEM_SUPPLIER_NAME,
+                ItemEntry.COLUMN_ITEM_SUPPLIER_PHONE
+        };
+        db.execSQL("CREATE TRIGGER item_changes_supplier_au AFTER UPDATE ON "
+                + SupplierEntry.TABLE_NAME + " WHEN " + anyColumnChanged(supplierColumns)
+                + " BEGIN INSERT INTO " + ChangeEntry.TABLE_NAME + " ("
+                + ChangeEntry.COLUMN_ITEM_ID + ", " + ChangeEntry.COLUMN_OPERATION + ", "
+                + ChangeEntry.COLUMN_CHANGED_COLUMNS + ") SELECT " + ItemEntry._ID + ", '"
+                + ChangeEntry.OP_UPDATE + "', " + changedColumnList(supplierColumns, itemColumns)
+                + " FROM " + ItemEntry.TABLE_NAME + " WHERE " + ItemEntry.COLUMN_ITEM_SUPPLIER_ID
+                + " = new." + SupplierEntry._ID + " AND " + SELECTION_LIVE + "; END;");
+    }
+
+    /**
+     * Create the version 8 change journal triggers, for the schema that stored the supplier
+     * name and phone on each item.
+     */
+    private static void createChangeJournalTriggersV8(SQLiteDatabase db) {
+        createItemChangeTriggers(db, new String[] {
+                ItemEntry.COLUMN_ITEM_NAME,
+                ItemEntry.COLUMN_ITEM_PRICE,
+                ItemEntry.COLUMN_ITEM_QUANTITY,
+                ItemEntry.COLUMN_ITEM_SUPPLIER_NAME,
+                ItemEntry.COLUMN_ITEM_SUPPLIER_PHONE
+        });
+        createChangeJournalDeleteTrigger(db, false);
+    }
+
+    /**
+     * Create the triggers journaling inserts and soft deletes of items, and updates of the
+     * given item columns.
+     */
+    private static void createItemChangeTriggers(SQLiteDatabase db, String[] columns) {
+        db.execSQL("CREATE TRIGGER item_changes_ai AFTER INSERT ON " + ItemEntry.TABLE_NAME
+                + " BEGIN " + insertChange("new." + ItemEntry._ID, ChangeEntry.OP_INSERT, "NULL")
+                + " END;");
+        db.execSQL("CREATE TRIGGER item_changes_au AFTER UPDATE ON " + ItemEntry.TABLE_NAME
+                + " WHEN old." + COLUMN_DELETED + " = 0 AND new." + COLUMN_DELETED + " = 0 AND ("
+                + anyColumnChanged(columns) + ") BEGIN "
+                + insertChange("new." + ItemEntry._ID, ChangeEntry.OP_UPDATE,
+                        changedColumnList(columns, columns))
+                + " END;");
+        db.execSQL("CREATE TRIGGER item_changes_soft_delete AFTER UPDATE OF " + COLUMN_DELETED
+                + " ON " + ItemEntry.TABLE_NAME + " WHEN old." + COLUMN_DELETED + " = 0 AND new."
+                + COLUMN_DELETED + " = 1 BEGIN "
+                + insertChange("new." + ItemEntry._ID, ChangeEntry.OP_DELETE, "NULL")
+                + " END;");
+    }
+
+    /**
+     * Return a trigger condition that is true if any of the given columns changed.
+     */
+    private static String anyColumnChanged(String[] columns) {
+        StringBuilder condition = new StringBuilder();
+        for (String column : columns) {
+            if (condition.length() > 0) {
+                condition.append(" OR ");
+            }
+            condition.append("old.").append(column).append(" IS NOT new.").append(column);
+        }
+        return condition.toString();
+    }
+
+    /**
+     * Return a trigger expression listing, comma-separated, the names under which the changed
+     * columns are reported. {@code names[i]} is reported if {@code columns[i]} changed.
+     */
+    private static String changedColumnList(String[] columns, String[] names) {
+        StringBuilder list = new StringBuilder("RTRIM(");
+        for (int i = 0; i < columns.length; i++) {
+            if (i > 0) {
+                list.append(" || ");
+            }
+            list.append("CASE WHEN old.").append(columns[i]).append(" IS NOT new.")
+                    .append(columns[i]).append(" THEN '").append(names[i])
+                    .append(",' ELSE '' END");
+        }
+        return list.append(", ',')").toString();
+    }
+
+    private static void createChangeJournalDeleteTrigger(SQLiteDatabase db, boolean guarded) {
+        db.execSQL("CREATE TRIGGER item_changes_ad AFTER DELETE ON " + ItemEntry.TABLE_NAME
+                + deleteTriggerWhen("old." + COLUMN_DELETED + " = 0", guarded) + " BEGIN "
+                + insertChange("old." + ItemEntry._ID, ChangeEntry.OP_DELETE, "NULL")
+                + " END;");
+    }
+
+    /**
+     * Return a trigger statement adding an entry to the change journal.
+     */
+    private static String insertChange(String itemId, String operation, String changedColumns) {
+        return "INSERT INTO " + ChangeEntry.TABLE_NAME + " (" + ChangeEntry.COLUMN_ITEM_ID + ", "
+                + ChangeEntry.COLUMN_OPERATION + ", " + ChangeEntry.COLUMN_CHANGED_COLUMNS
+                + ") VALUES (" + itemId + ", '" + operation + "', " + changedColumns + ");";
+    }
+
+    /**
+     * Create the views joining items and supplier totals to their supplier's name.
+     */
+    private static void createViews(SQLiteDatabase db) {
+        db.execSQL("CREATE VIEW " + ITEMS_VIEW_NAME + " AS SELECT i."
+                + ItemEntry._ID + " AS " + ItemEntry._ID + ", i."
+                + ItemEntry.COLUMN_ITEM_NAME + " AS " + ItemEntry.COLUMN_ITEM_NAME + ", i."
+                + ItemEntry.COLUMN_ITEM_PRICE + " AS " + ItemEntry.COLUMN_ITEM_PRICE + ", i."
+                + ItemEntry.COLUMN_ITEM_QUANTITY + " AS " + ItemEntry.COLUMN_ITEM_QUANTITY
+                + ", i." + ItemEntry.COLUMN_ITEM_SUPPLIER_ID + " AS "
+                + ItemEntry.COLUMN_ITEM_SUPPLIER_ID + ", s."
+                + SupplierEntry.COLUMN_SUPPLIER_NAME + " AS "
+                + ItemEntry.COLUMN_ITEM_SUPPLIER_NAME + ", s."
+                + SupplierEntry.COLUMN_SUPPLIER_PHONE + " AS "
+                + ItemEntry.COLUMN_ITEM_SUPPLIER_PHONE + ", i."
+                + COLUMN_DELETED + " AS " + COLUMN_DELETED
+                + " FROM " + ItemEntry.TABLE_NAME + " i JOIN " + SupplierEntry.TABLE_NAME
+                + " s ON s." + SupplierEntry._ID + " = i."
+                + ItemEntry.COLUMN_ITEM_SUPPLIER_ID + ";");
+        db.execSQL("CREATE VIEW " + SUPPLIER_SUMMARY_VIEW_NAME + " AS SELECT t."
+                + ItemEntry.COLUMN_ITEM_SUPPLIER_ID + " AS "
+                + ItemEntry.COLUMN_ITEM_SUPPLIER_ID + ", s."
+                + SupplierEntry.COLUMN_SUPPLIER_NAME + " AS "
+                + ItemEntry.COLUMN_ITEM_SUPPLIER_NAME + ", t."
+                + ItemEntry.COLUMN_ITEM_COUNT + " AS " + ItemEntry.COLUMN_ITEM_COUNT + ", t."
+                + ItemEntry.COLUMN_TOTAL_QUANTITY + " AS "
+                + ItemEntry.COLUMN_TOTAL_QUANTITY + ", t."
+                + ItemEntry.COLUMN_TOTAL_VALUE + " AS " + ItemEntry.COLUMN_TOTAL_VALUE
+                + " FROM " + SUPPLIER_SUMMARY_TABLE_NAME + " t JOIN "
+                + SupplierEntry.TABLE_NAME + " s ON s." + SupplierEntry._ID + " = t."
+                + ItemEntry.COLUMN_ITEM_SUPPLIER_ID + ";");
+    }
+
+    private static void createFtsDeleteTrigger(SQLiteDatabase db, boolean guarded) {
+        db.execSQL("CREATE TRIGGER items_fts_ad AFTER DELETE ON " + ItemEntry.TABLE_NAME
+                + deleteTriggerWhen(null, guarded) + " BEGIN DELETE FROM " + FTS_TABLE_NAME
+                + " WHERE docid = old." + ItemEntry._ID + "; END;");
+    }
+
+    /**
+     * Create the movements table with its hourly and daily rollup tables and the trigger
+     * adding each new movement to them.
+     */
+    private static void createMovementTables(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + MovementEntry.TABLE_NAME + " ("
+                + MovementEntry._ID + " INTEGER PRIMARY KEY, "
+                + MovementEntry.COLUMN_ITEM_ID + " INTEGER NOT NULL, "
+                + MovementEntry.COLUMN_DELTA + " INTEGER NOT NULL, "
+                + MovementEntry.COLUMN_TIME + " INTEGER NOT NULL, "
+                + MovementEntry.COLUMN_REASON + " TEXT NOT NULL);");
+        db.execSQL("CREATE INDEX item_movements_item_idx ON " + MovementEntry.TABLE_NAME
+                + " (" + MovementEntry.COLUMN_ITEM_ID + ", " + MovementEntry.COLUMN_TIME
+                + ");");
+        createMovementRollupTable(db, MOVEMENTS_HOURLY_TABLE_NAME);
+        createMovementRollupTable(db, MOVEMENTS_DAILY_TABLE_NAME);
+        db.execSQL("CREATE TRIGGER item_movements_ai AFTER INSERT ON "
+                + MovementEntry.TABLE_NAME + " BEGIN "
+                + addToRollup(MOVEMENTS_HOURLY_TABLE_NAME, MILLIS_PER_HOUR)
+                + addToRollup(MOVEMENTS_DAILY_TABLE_NAME, MILLIS_PER_DAY)
+                + " END;");
+    }
+
+    private static void createMovementRollupTable(SQLiteDatabase db, String table) {
+        db.execSQL("CREATE TABLE " + table + " ("
+                + MovementEntry.COLUMN_ITEM_ID + " INTEGER NOT NULL, "
+                + COLUMN_BUCKET + " INTEGER NOT NULL, "
+                + MovementEntry.COLUMN_UNITS_IN + " INTEGER NOT NULL, "
+                + MovementEntry.COLUMN_UNITS_OUT + " INTEGER NOT NULL, "
+                + "PRIMARY KEY (" + MovementEntry.COLUMN_ITEM_ID + ", " + COLUMN_BUCKET + "));");
+    }
+
+    /**
+     * Return trigger statements adding the new movement to its bucket of the given rollup
+     * table, creating the bucket's row if it is the first movement in it.
+     */
+    private static String addToRollup(String table, long bucketMillis) {
+        String item = "new." + MovementEntry.COLUMN_ITEM_ID;
+        String bucket = "new." + MovementEntry.COLUMN_TIME + " / " + bucketMillis;
+        String delta = "new." + MovementEntry.COLUMN_DELTA;
+        return "INSERT OR IGNORE INTO " + table + " VALUES (" + item + ", " + bucket
+                + ", 0, 0); "
+                + "UPDATE " + table + " SET "
+                + MovementEntry.COLUMN_UNITS_IN + " = " + MovementEntry.COLUMN_UNITS_IN
+                + " + MAX(" + delta + ", 0), "
+                + MovementEntry.COLUMN_UNITS_OUT + " = " + MovementEntry.COLUMN_UNITS_OUT
+                + " + MAX(-" + delta + ", 0)"
+                + " WHERE " + MovementEntry.COLUMN_ITEM_ID + " = " + item + " AND "
+                + COLUMN_BUCKET + " = " + bucket + "; ";
+    }
+
+    /**
+     * Create the trigger removing an item's movement history and totals with the item.
+     */
+    private static void createMovementDeleteTrigger(SQLiteDatabase db, boolean guarded) {
+        String item = MovementEntry.COLUMN_ITEM_ID + " = old." + ItemEntry._ID + "; ";
+        db.execSQL("CREATE TRIGGER item_movements_ad AFTER DELETE ON " + ItemEntry.TABLE_NAME
+                + deleteTriggerWhen(null, guarded) + " BEGIN DELETE FROM " + MovementEntry.TABLE_NAME + " WHERE " + item
+                + "DELETE FROM " + MOVEMENTS_HOURLY_TABLE_NAME + " WHERE " + item
+                + "DELETE FROM " + MOVEMENTS_DAILY_TABLE_NAME + " WHERE " + item
+                + "END;");
+    }
+
+    private static void createBulkClearTable(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + BULK_CLEAR_TABLE_NAME + " (_id INTEGER PRIMARY KEY);");
+    }
+
+    /**
+     * Create the delete triggers of the items table, guarded so that they do nothing while
+     * {@link #clearItems} runs.
+     */
+    private static void createDeleteTriggers(SQLiteDatabase db) {
+        createFtsDeleteTrigger(db, true);
+        createSupplierSummaryDeleteTrigger(db, true);
+        createChangeJournalDeleteTrigger(db, true);
+        createMovementDeleteTrigger(db, true);
+    }
+
+    /**
+     * Return the WHEN clause of a delete trigger with the given condition, which may be null.
+     * A guarded trigger also needs {@link #NOT_CLEARING} to hold. Before version 11 the delete
+     * triggers weren't guarded.
+     */
+    private static String deleteTriggerWhen(String condition, boolean guarded) {
+        if (guarded) {
+            condition = condition != null ? condition + " AND " + NOT_CLEARING : NOT_CLEARING;
+        }
+        return condition != null ? " WHEN " + condition : "";
     }
 }
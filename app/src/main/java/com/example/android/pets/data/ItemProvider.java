@@ -1,14 +1,34 @@
 package com.example.android.pets.data;
 
 import android.content.ContentProvider;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
 import android.content.ContentUris;
 import android.content.ContentValues;
+import android.content.OperationApplicationException;
 import android.content.UriMatcher;
 import android.database.Cursor;
+import android.database.CursorWrapper;
+import android.database.DatabaseUtils;
+import android.database.MatrixCursor;
+import android.database.SQLException;
+import android.database.sqlite.SQLiteConstraintException;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.database.sqlite.SQLiteTransactionListener;
 import android.net.Uri;
+import android.os.Bundle;
+import android.text.TextUtils;
 import android.util.Log;
 
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
 /**
  * {@link ContentProvider} for inventory app.
  */
@@ -20,21 +40,310 @@ public class ItemProvider extends ContentProvider {
     /** Database helper object **/
     private ItemDbHelper mDbHelper;
 
+    /** Maximum estimated size of the rows kept in {@link #mItemCache}, in bytes */
+    private static final long ITEM_CACHE_SIZE_BYTES = 1024 * 1024;
+
+    /** Every column of an item, in the order rows are kept in {@link #mItemCache} */
+    private static final String[] ALL_COLUMNS = {
+            ItemContract.ItemEntry._ID,
+            ItemContract.ItemEntry.COLUMN_ITEM_NAME,
+            ItemContract.ItemEntry.COLUMN_ITEM_PRICE,
+            ItemContract.ItemEntry.COLUMN_ITEM_QUANTITY,
+            ItemContract.ItemEntry.COLUMN_ITEM_SUPPLIER_ID,
+            ItemContract.ItemEntry.COLUMN_ITEM_SUPPLIER_NAME,
+            ItemContract.ItemEntry.COLUMN_ITEM_SUPPLIER_PHONE
+    };
+
+    /**
+     * SQL reading every column of a live item, bound to its _id. A row query can't be run
+     * through a compiled statement, but keeping the SQL constant means it is only built once
+     * and hits the connection's prepared statement cache.
+     */
+    private static final String SQL_SELECT_ITEM_BY_ID = "SELECT "
+            + TextUtils.join(", ", ALL_COLUMNS) + " FROM " + ItemDbHelper.ITEMS_VIEW_NAME
+            + " WHERE " + ItemContract.ItemEntry._ID + " = ? AND " + ItemDbHelper.SELECTION_LIVE;
+
+    /** SQL reading the _id and phone of a supplier, bound to its name */
+    private static final String SQL_SELECT_SUPPLIER_BY_NAME = "SELECT "
+            + ItemContract.SupplierEntry._ID + ", " + ItemContract.SupplierEntry.COLUMN_SUPPLIER_PHONE
+            + " FROM " + ItemContract.SupplierEntry.TABLE_NAME
+            + " WHERE " + ItemContract.SupplierEntry.COLUMN_SUPPLIER_NAME + " = ?";
+
+    /** Value of the id argument of {@link #updateItem} when updating by selection */
+    private static final long NO_ID = -1;
+
+    /** Precompiled statements for the fixed-shape writes */
+    private final ItemStatements mStatements = new ItemStatements();
+
+    /** Recently looked up item rows, keyed by _id */
+    private final ItemCache mItemCache = new ItemCache(ITEM_CACHE_SIZE_BYTES);
+
+    /** Supplier IDs and phones by name, for turning the supplier columns of a write into an ID */
+    private final SupplierCache mSupplierCache = new SupplierCache();
+
+    /**
+     * Listener for transactions that may resolve suppliers. Suppliers created or changed in a
+     * transaction are cached before it commits, so the cache is dropped if it rolls back.
+     */
+    private final SQLiteTransactionListener mSupplierRollbackListener =
+            new SQLiteTransactionListener() {
+                @Override
+                public void onBegin() {
+                }
+
+                @Override
+                public void onCommit() {
+                }
+
+                @Override
+                public void onRollback() {
+                    mSupplierCache.clear();
+                }
+            };
+
+    /**
+     * Cache invalidations and change notifications of the calling thread's writes, held back
+     * until its outermost transaction has ended. Dropping a cached row before the commit would
+     * let another connection read the last committed row and cache it again, where it would
+     * outlive the write, and observers notified early would re-query the old data.
+     */
+    private final ThreadLocal<PendingChanges> mPendingChanges =
+            new ThreadLocal<PendingChanges>() {
+                @Override
+                protected PendingChanges initialValue() {
+                    return new PendingChanges();
+                }
+            };
+
+    /** Runs maintenance work, such as compaction, off the calling thread */
+    private final Executor mBackgroundExecutor = Executors.newSingleThreadExecutor();
+
+    /** Whether a compaction has been handed to {@link #mBackgroundExecutor} and not yet started */
+    private final AtomicBoolean mCompactionScheduled = new AtomicBoolean();
+
+    /** Call counts and latencies, per operation and URI match and per provider method */
+    private final ItemProviderMetrics mMetrics = new ItemProviderMetrics(ITEMS, new String[] {
+            "items", "item", "search", "stats", "by_supplier", "low_stock", "supplier_summary",
+            "page", "list", "changes", "suppliers", "supplier", "supplier_items",
+            "movements", "rollup"
+    }, new String[] {
+            ItemContract.METHOD_DELETE_ITEMS, ItemContract.METHOD_ADJUST_QUANTITY,
+            ItemContract.METHOD_ADJUST_QUANTITIES, ItemContract.METHOD_REBUILD_SUPPLIER_SUMMARY,
+            ItemContract.METHOD_ACK_CHANGES, ItemContract.METHOD_COMPACT,
+            ItemContract.METHOD_GET_METRICS, ItemContract.METHOD_GET_CACHE_STATS
+    });
+
+    /** Coalesces change notifications for writes to the items table */
+    private ItemChangeNotifier mChangeNotifier;
+
+    /**
+     * Get the writable database, recording how long that took. Opening or upgrading the
+     * database happens here, so slow starts show up in the metrics.
+     */
+    private SQLiteDatabase getWritableDatabase() {
+        long startNanos = System.nanoTime();
+        SQLiteDatabase database = mDbHelper.getWritableDatabase();
+        mMetrics.recordDatabaseWait(startNanos);
+        return database;
+    }
+
     /**
      * Initialize the provider and the database helper object.
      */
     @Override
     public boolean onCreate() {
         mDbHelper = new ItemDbHelper(getContext());
+        mChangeNotifier = new ItemChangeNotifier(getContext().getContentResolver());
         return true;
     }
 
+    /**
+     * Drop the cached row of the item with the given ID and notify its observers, once the
+     * write that changed it has been committed.
+     */
+    private void onItemChanged(long id) {
+        mPendingChanges.get().addItem(id);
+        flushPendingChangesOutsideTransaction();
+    }
+
+    /**
+     * Notify the observers of the items table, once the write that changed it has been
+     * committed. If {@code cacheStale} is set, every cached row is dropped as well.
+     */
+    private void onTableChanged(boolean cacheStale) {
+        PendingChanges pending = mPendingChanges.get();
+        pending.tableChanged = true;
+        pending.clearCache |= cacheStale;
+        flushPendingChangesOutsideTransaction();
+    }
+
+    /**
+     * End a transaction begun by the provider. If it was the thread's outermost transaction,
+     * apply the invalidations and notifications of the writes made in it. They are applied
+     * after a rollback too, as rows read inside the transaction may have been cached.
+     */
+    private void endTransaction(SQLiteDatabase database) {
+        try {
+            database.endTransaction();
+        } finally {
+            flushPendingChangesOutsideTransaction();
+        }
+    }
+
+    private void flushPendingChangesOutsideTransaction() {
+        if (mDbHelper.getWritableDatabase().inTransaction()) {
+            return;
+        }
+        PendingChanges pending = mPendingChanges.get();
+        if (pending.clearCache) {
+            mItemCache.clear();
+        } else {
+            for (int i = 0; i < pending.itemCount; i++) {
+                mItemCache.remove(pending.itemIds[i]);
+            }
+        }
+        if (pending.tableChanged) {
+            mChangeNotifier.notifyTableChanged();
+        } else {
+            for (int i = 0; i < pending.itemCount; i++) {
+                mChangeNotifier.notifyItemChanged(pending.itemIds[i]);
+            }
+        }
+        pending.reset();
+    }
+
     /** URI matcher code for the content URI for the items table */
     private static final int ITEMS = 100;
 
     /** URI matcher code for the content URI for a single item in the items table */
     private static final int ITEM_ID = 101;
 
+    /** URI matcher code for the content URI for a full-text search of the items table */
+    private static final int ITEMS_SEARCH = 102;
+
+    /** URI matcher code for the content URI for the stock summary */
+    private static final int ITEMS_STATS = 103;
+
+    /** URI matcher code for the content URI for the per-supplier stock summary */
+    private static final int ITEMS_BY_SUPPLIER = 104;
+
+    /** URI matcher code for the content URI for low-stock items */
+    private static final int ITEMS_LOW_STOCK = 105;
+
+    /** URI matcher code for the content URI for the maintained per-supplier totals */
+    private static final int ITEMS_SUPPLIER_SUMMARY = 106;
+
+    /** URI matcher code for the content URI for a page of items */
+    private static final int ITEMS_PAGE = 107;
+
+    /** URI matcher code for the content URI for the compact item list */
+    private static final int ITEMS_LIST = 108;
+
+    /**
+     * SQL for the compact item list, bound to the row limit. The SQL never changes, so it is
+     * prepared once per connection and then found in the statement cache.
+     */
+    private static final String SQL_LIST = "SELECT "
+            + TextUtils.join(", ", ItemContract.ItemEntry.LIST_PROJECTION)
+            + " FROM " + ItemContract.ItemEntry.TABLE_NAME
+            + " WHERE " + ItemDbHelper.SELECTION_LIVE
+            + " ORDER BY " + ItemContract.ItemEntry._ID + " LIMIT ?";
+
+    /** URI matcher code for the content URI for the change journal */
+    private static final int ITEMS_CHANGES = 109;
+
+    /**
+     * SQL for the change journal after a sequence number, bound to that number and the row
+     * limit. Each entry is joined to the item's current columns, so a sync gets everything
+     * it needs in one pass over the journal.
+     */
+    private static final String SQL_CHANGES = "SELECT c."
+            + ItemContract.ChangeEntry.COLUMN_SEQUENCE + ", c."
+            + ItemContract.ChangeEntry.COLUMN_ITEM_ID + ", c."
+            + ItemContract.ChangeEntry.COLUMN_OPERATION + ", c."
+            + ItemContract.ChangeEntry.COLUMN_CHANGED_COLUMNS + ", i."
+            + ItemContract.ItemEntry.COLUMN_ITEM_NAME + ", i."
+            + ItemContract.ItemEntry.COLUMN_ITEM_PRICE + ", i."
+            + ItemContract.ItemEntry.COLUMN_ITEM_QUANTITY + ", i."
+            + ItemContract.ItemEntry.COLUMN_ITEM_SUPPLIER_NAME + ", i."
+            + ItemContract.ItemEntry.COLUMN_ITEM_SUPPLIER_PHONE
+            + " FROM " + ItemContract.ChangeEntry.TABLE_NAME + " c LEFT JOIN "
+            + ItemDbHelper.ITEMS_VIEW_NAME + " i ON i." + ItemContract.ItemEntry._ID
+            + " = c." + ItemContract.ChangeEntry.COLUMN_ITEM_ID + " AND i."
+            + ItemDbHelper.SELECTION_LIVE
+            + " WHERE c." + ItemContract.ChangeEntry.COLUMN_SEQUENCE + " > ?"
+            + " ORDER BY c." + ItemContract.ChangeEntry.COLUMN_SEQUENCE + " LIMIT ?";
+
+    /** URI matcher code for the content URI for the suppliers table */
+    private static final int SUPPLIERS = 110;
+
+    /** URI matcher code for the content URI for a single supplier */
+    private static final int SUPPLIER_ID = 111;
+
+    /** URI matcher code for the content URI for the items of a single supplier */
+    private static final int SUPPLIER_ITEMS = 112;
+
+    /** URI matcher code for the content URI for the movements of a single item */
+    private static final int ITEM_MOVEMENTS = 113;
+
+    /** URI matcher code for the content URI for the movement totals of a single item */
+    private static final int ITEM_ROLLUP = 114;
+
+    /** SQL for an item's hourly movement totals, bound to the item ID and the time to start at */
+    private static final String SQL_ROLLUP_HOURLY = rollupSql(
+            ItemDbHelper.MOVEMENTS_HOURLY_TABLE_NAME, ItemDbHelper.MILLIS_PER_HOUR);
+
+    /** SQL for an item's daily movement totals, bound to the item ID and the time to start at */
+    private static final String SQL_ROLLUP_DAILY = rollupSql(
+            ItemDbHelper.MOVEMENTS_DAILY_TABLE_NAME, ItemDbHelper.MILLIS_PER_DAY);
+
+    /**
+     * Start of the SQL recording the movements an update of the quantity makes to the items
+     * matching a selection. It is bound to the new quantity, the time and the reason, and
+     * followed by the selection, then a condition on the new quantity again.
+     */
+    private static final String SQL_RECORD_QUANTITY_CHANGES = "INSERT INTO "
+            + ItemContract.MovementEntry.TABLE_NAME + " ("
+            + ItemContract.MovementEntry.COLUMN_ITEM_ID + ", "
+            + ItemContract.MovementEntry.COLUMN_DELTA + ", "
+            + ItemContract.MovementEntry.COLUMN_TIME + ", "
+            + ItemContract.MovementEntry.COLUMN_REASON + ") SELECT "
+            + ItemContract.ItemEntry._ID + ", ? - " + ItemContract.ItemEntry.COLUMN_ITEM_QUANTITY
+            + ", ?, ? FROM " + ItemContract.ItemEntry.TABLE_NAME + " WHERE ";
+
+    /** Number of items in a page if the page URI doesn't say */
+    private static final int DEFAULT_PAGE_SIZE = 50;
+
+    /** Quantity at or below which an item counts as low stock if the URI doesn't say */
+    private static final int DEFAULT_LOW_STOCK_THRESHOLD = 5;
+
+    /** Summary columns computed over a group of items */
+    private static final String SQL_SUMMARY_COLUMNS = "COUNT(*) AS "
+            + ItemContract.ItemEntry.COLUMN_ITEM_COUNT + ", "
+            + "IFNULL(SUM(" + ItemContract.ItemEntry.COLUMN_ITEM_QUANTITY + "), 0) AS "
+            + ItemContract.ItemEntry.COLUMN_TOTAL_QUANTITY + ", "
+            + "IFNULL(SUM(" + ItemContract.ItemEntry.COLUMN_ITEM_PRICE + " * "
+            + ItemContract.ItemEntry.COLUMN_ITEM_QUANTITY + "), 0) AS "
+            + ItemContract.ItemEntry.COLUMN_TOTAL_VALUE;
+
+    /** SQL for the stock summary */
+    private static final String SQL_STATS = "SELECT " + SQL_SUMMARY_COLUMNS
+            + " FROM " + ItemContract.ItemEntry.TABLE_NAME
+            + " WHERE " + ItemDbHelper.SELECTION_LIVE;
+
+    /**
+     * SQL for the per-supplier stock summary. The items are grouped from the supplier covering
+     * index, and only the resulting groups are joined to the suppliers for their names.
+     */
+    private static final String SQL_BY_SUPPLIER = "SELECT s."
+            + ItemContract.SupplierEntry.COLUMN_SUPPLIER_NAME + " AS "
+            + ItemContract.ItemEntry.COLUMN_ITEM_SUPPLIER_NAME + ", " + SQL_SUMMARY_COLUMNS
+            + " FROM " + ItemContract.ItemEntry.TABLE_NAME + " i JOIN "
+            + ItemContract.SupplierEntry.TABLE_NAME + " s ON s." + ItemContract.SupplierEntry._ID
+            + " = i." + ItemContract.ItemEntry.COLUMN_ITEM_SUPPLIER_ID
+            + " WHERE i." + ItemDbHelper.SELECTION_LIVE
+            + " GROUP BY i." + ItemContract.ItemEntry.COLUMN_ITEM_SUPPLIER_ID;
+
     /**
      * UriMatcher object to match a content URI to a corresponding code.
      * The input passed into the constructor represents the code to return for the root URI.
@@ -50,12 +359,55 @@ public class ItemProvider extends ContentProvider {
 
         sUriMatcher.addURI(ItemContract.CONTENT_AUTHORITY, ItemContract.PATH_ITEMS, ITEMS);
         sUriMatcher.addURI(ItemContract.CONTENT_AUTHORITY, ItemContract.PATH_ITEMS + "/#", ITEM_ID);
+        sUriMatcher.addURI(ItemContract.CONTENT_AUTHORITY,
+                ItemContract.PATH_ITEMS + "/" + ItemContract.PATH_SEARCH + "/*", ITEMS_SEARCH);
+        sUriMatcher.addURI(ItemContract.CONTENT_AUTHORITY,
+                ItemContract.PATH_ITEMS + "/" + ItemContract.PATH_STATS, ITEMS_STATS);
+        sUriMatcher.addURI(ItemContract.CONTENT_AUTHORITY,
+                ItemContract.PATH_ITEMS + "/" + ItemContract.PATH_BY_SUPPLIER, ITEMS_BY_SUPPLIER);
+        sUriMatcher.addURI(ItemContract.CONTENT_AUTHORITY,
+                ItemContract.PATH_ITEMS + "/" + ItemContract.PATH_LOW_STOCK, ITEMS_LOW_STOCK);
+        sUriMatcher.addURI(ItemContract.CONTENT_AUTHORITY,
+                ItemContract.PATH_ITEMS + "/" + ItemContract.PATH_SUPPLIER_SUMMARY,
+                ITEMS_SUPPLIER_SUMMARY);
+        sUriMatcher.addURI(ItemContract.CONTENT_AUTHORITY,
+                ItemContract.PATH_ITEMS + "/" + ItemContract.PATH_PAGE, ITEMS_PAGE);
+        sUriMatcher.addURI(ItemContract.CONTENT_AUTHORITY,
+                ItemContract.PATH_ITEMS + "/" + ItemContract.PATH_LIST, ITEMS_LIST);
+        sUriMatcher.addURI(ItemContract.CONTENT_AUTHORITY,
+                ItemContract.PATH_ITEMS + "/" + ItemContract.PATH_CHANGES, ITEMS_CHANGES);
+        sUriMatcher.addURI(ItemContract.CONTENT_AUTHORITY, ItemContract.PATH_SUPPLIERS, SUPPLIERS);
+        sUriMatcher.addURI(ItemContract.CONTENT_AUTHORITY, ItemContract.PATH_SUPPLIERS + "/#",
+                SUPPLIER_ID);
+        sUriMatcher.addURI(ItemContract.CONTENT_AUTHORITY,
+                ItemContract.PATH_SUPPLIERS + "/#/" + ItemContract.PATH_ITEMS, SUPPLIER_ITEMS);
+        sUriMatcher.addURI(ItemContract.CONTENT_AUTHORITY,
+                ItemContract.PATH_ITEMS + "/#/" + ItemContract.PATH_MOVEMENTS, ITEM_MOVEMENTS);
+        sUriMatcher.addURI(ItemContract.CONTENT_AUTHORITY,
+                ItemContract.PATH_ITEMS + "/#/" + ItemContract.PATH_ROLLUP, ITEM_ROLLUP);
+    }
+
+    /**
+     * Return the SQL reading an item's totals from the given rollup table, whose buckets are
+     * the given length, oldest first.
+     */
+    private static String rollupSql(String table, long bucketMillis) {
+        return "SELECT " + ItemDbHelper.COLUMN_BUCKET + " * " + bucketMillis + " AS "
+                + ItemContract.MovementEntry.COLUMN_BUCKET_START + ", "
+                + ItemContract.MovementEntry.COLUMN_UNITS_IN + ", "
+                + ItemContract.MovementEntry.COLUMN_UNITS_OUT
+                + " FROM " + table
+                + " WHERE " + ItemContract.MovementEntry.COLUMN_ITEM_ID + " = ? AND "
+                + ItemDbHelper.COLUMN_BUCKET + " >= ? / " + bucketMillis
+                + " ORDER BY " + ItemDbHelper.COLUMN_BUCKET;
     }
 
         // Perform the query for the given URI. Use the given projection, selection, selection arguments, and sort order.
     @Override
     public Cursor query(Uri uri, String[] projection, String selection, String[] selectionArgs,
                         String sortOrder) {
+        long startNanos = System.nanoTime();
+
         // Get readable database
         SQLiteDatabase database = mDbHelper.getReadableDatabase();
 
@@ -66,13 +418,20 @@ public class ItemProvider extends ContentProvider {
         int match = sUriMatcher.match(uri);
         switch (match) {
             case ITEMS:
-                // For the ITEMS code, query the items table directly with the given
+                // For the ITEMS code, query the items with their suppliers with the given
                 // projection, selection, selection arguments, and sort order. The cursor
                 // could contain multiple rows of the pets table.
-                cursor = database.query(ItemContract.ItemEntry.TABLE_NAME, projection, selection,
-                        selectionArgs, null, null, sortOrder);
+                selection = DatabaseUtils.concatenateWhere(selection, ItemDbHelper.SELECTION_LIVE);
+                cursor = database.query(ItemDbHelper.ITEMS_VIEW_NAME, projection, selection,
+                        selectionArgs, null, null, sortOrder, getLimit(uri));
                 break;
             case ITEM_ID:
+                // Single item lookups are served from the in-memory cache where possible
+                cursor = queryCachedItem(database, ContentUris.parseId(uri), projection);
+                if (cursor != null) {
+                    break;
+                }
+
                 // For the ITEM_ID code, extract out the ID from the URI.
                 // For an example URI such as "content://com.example.android.pets/pets/3",
                 // the selection will be "_id=?" and the selection argument will be a
@@ -81,31 +440,502 @@ public class ItemProvider extends ContentProvider {
                 // For every "?" in the selection, we need to have an element in the selection
                 // arguments that will fill in the "?". Since we have 1 question mark in the
                 // selection, we have 1 String in the selection arguments' String array.
-                selection = ItemContract.ItemEntry._ID + "=?";
+                selection = ItemContract.ItemEntry._ID + "=? AND " + ItemDbHelper.SELECTION_LIVE;
                 selectionArgs = new String[] { String.valueOf(ContentUris.parseId(uri)) };
 
                 // This will perform a query on the pets table where the _id equals 3 to return a
                 // Cursor containing that row of the table.
-                cursor = database.query(ItemContract.ItemEntry.TABLE_NAME, projection, selection, selectionArgs,
+                cursor = database.query(ItemDbHelper.ITEMS_VIEW_NAME, projection, selection, selectionArgs,
                         null, null, sortOrder);
                 break;
+            case ITEMS_SEARCH:
+                cursor = searchItems(database, uri, projection, selection, selectionArgs, sortOrder);
+                break;
+            case ITEMS_STATS:
+                // The summaries are computed in SQLite and come back as a handful of rows. The
+                // caller's projection, selection and sort order apply to those rows.
+                cursor = database.query("(" + SQL_STATS + ")", projection, selection,
+                        selectionArgs, null, null, sortOrder);
+                break;
+            case ITEMS_BY_SUPPLIER:
+                if (sortOrder == null) {
+                    sortOrder = ItemContract.ItemEntry.COLUMN_ITEM_SUPPLIER_NAME;
+                }
+                cursor = database.query("(" + SQL_BY_SUPPLIER + ")", projection, selection,
+                        selectionArgs, null, null, sortOrder);
+                break;
+            case ITEMS_SUPPLIER_SUMMARY:
+                if (sortOrder == null) {
+                    sortOrder = ItemContract.ItemEntry.COLUMN_ITEM_SUPPLIER_NAME;
+                }
+                cursor = database.query(ItemDbHelper.SUPPLIER_SUMMARY_VIEW_NAME, projection,
+                        selection, selectionArgs, null, null, sortOrder);
+                break;
+            case ITEMS_LOW_STOCK:
+                selection = DatabaseUtils.concatenateWhere(selection, ItemDbHelper.SELECTION_LIVE
+                        + " AND " + ItemContract.ItemEntry.COLUMN_ITEM_QUANTITY + " <= ?");
+                selectionArgs = DatabaseUtils.appendSelectionArgs(selectionArgs,
+                        new String[] { String.valueOf(getLowStockThreshold(uri)) });
+                if (sortOrder == null) {
+                    sortOrder = ItemContract.ItemEntry.COLUMN_ITEM_QUANTITY;
+                }
+                cursor = database.query(ItemDbHelper.ITEMS_VIEW_NAME, projection, selection,
+                        selectionArgs, null, null, sortOrder, getLimit(uri));
+                break;
+            case ITEMS_PAGE:
+                cursor = queryPage(database, uri, projection, selection, selectionArgs);
+                break;
+            case ITEMS_LIST:
+                cursor = database.rawQuery(SQL_LIST,
+                        new String[] { String.valueOf(getListLimit(uri)) });
+                break;
+            case ITEMS_CHANGES:
+                // Rows are read from the journal as the cursor moves, so a large delta is
+                // streamed a window at a time rather than built up in memory
+                cursor = database.rawQuery(SQL_CHANGES, new String[] {
+                        String.valueOf(getChangesSince(uri)),
+                        String.valueOf(getListLimit(uri)) });
+                break;
+            case SUPPLIERS:
+                if (sortOrder == null) {
+                    sortOrder = ItemContract.SupplierEntry.COLUMN_SUPPLIER_NAME;
+                }
+                cursor = database.query(ItemContract.SupplierEntry.TABLE_NAME, projection,
+                        selection, selectionArgs, null, null, sortOrder, getLimit(uri));
+                break;
+            case SUPPLIER_ID:
+                selection = ItemContract.SupplierEntry._ID + "=?";
+                selectionArgs = new String[] { String.valueOf(ContentUris.parseId(uri)) };
+                cursor = database.query(ItemContract.SupplierEntry.TABLE_NAME, projection,
+                        selection, selectionArgs, null, null, sortOrder);
+                break;
+            case SUPPLIER_ITEMS:
+                // Answered from the supplier index, which leads with the supplier ID
+                selection = DatabaseUtils.concatenateWhere(selection,
+                        ItemContract.ItemEntry.COLUMN_ITEM_SUPPLIER_ID + " = ? AND "
+                                + ItemDbHelper.SELECTION_LIVE);
+                selectionArgs = DatabaseUtils.appendSelectionArgs(selectionArgs,
+                        new String[] { uri.getPathSegments().get(1) });
+                cursor = database.query(ItemDbHelper.ITEMS_VIEW_NAME, projection, selection,
+                        selectionArgs, null, null, sortOrder, getLimit(uri));
+                break;
+            case ITEM_MOVEMENTS:
+                // Answered from the index on item and time, newest first
+                if (sortOrder == null) {
+                    sortOrder = ItemContract.MovementEntry.COLUMN_TIME + " DESC, "
+                            + ItemContract.MovementEntry._ID + " DESC";
+                }
+                selection = DatabaseUtils.concatenateWhere(selection,
+                        ItemContract.MovementEntry.COLUMN_ITEM_ID + " = ?");
+                selectionArgs = DatabaseUtils.appendSelectionArgs(selectionArgs,
+                        new String[] { uri.getPathSegments().get(1) });
+                cursor = database.query(ItemContract.MovementEntry.TABLE_NAME, projection,
+                        selection, selectionArgs, null, null, sortOrder, getLimit(uri));
+                break;
+            case ITEM_ROLLUP:
+                cursor = database.rawQuery(getRollupSql(uri), new String[] {
+                        uri.getPathSegments().get(1),
+                        String.valueOf(getRollupSince(uri)) });
+                break;
             default:
                 throw new IllegalArgumentException("Cannot query unknown URI " + uri);
         }
-        return cursor;
+
+        // Set notification URI on the Cursor, so we know what content URI the Cursor was
+        // created for. If the data at this URI (or any single item below it) changes, then we
+        // know we need to update the Cursor. Searches and summaries can be affected by a
+        // change to any item, so they watch the whole items URI, and so do the suppliers, which
+        // change along with the items that are written with them.
+        cursor.setNotificationUri(getContext().getContentResolver(),
+                match == ITEM_ID ? uri : ItemContract.ItemEntry.CONTENT_URI);
+        // The rows are counted as the caller reads them, not here
+        return mMetrics.recordQuery(match, startNanos, cursor);
+    }
+
+    /**
+     * Return a cursor over the item with the given ID, built from the cached row if there is
+     * one and otherwise from a fresh read that is then cached. Return null if the projection
+     * asks for something other than plain item columns, in which case the caller has to go to
+     * the database.
+     */
+    private Cursor queryCachedItem(SQLiteDatabase database, long id, String[] projection) {
+        if (projection == null) {
+            projection = ALL_COLUMNS;
+        }
+        int[] columnIndexes = new int[projection.length];
+        for (int i = 0; i < projection.length; i++) {
+            columnIndexes[i] = indexOfColumn(projection[i]);
+            if (columnIndexes[i] < 0) {
+                return null;
+            }
+        }
+
+        MatrixCursor result = new MatrixCursor(projection, 1);
+        Object[] row = mItemCache.get(id);
+        if (row == null) {
+            long generation = mItemCache.getGeneration();
+            row = readItemRow(database, id);
+            if (row == null) {
+                // No such item, so return an empty cursor
+                return result;
+            }
+            // A row read inside this thread's own transaction may never be committed
+            if (!database.inTransaction()) {
+                mItemCache.put(id, row, generation);
+            }
+        }
+
+        Object[] values = new Object[projection.length];
+        for (int i = 0; i < projection.length; i++) {
+            values[i] = row[columnIndexes[i]];
+        }
+        result.addRow(values);
+        return result;
+    }
+
+    /**
+     * Return the position of the given column in {@link #ALL_COLUMNS}, or -1 if it isn't there.
+     */
+    private static int indexOfColumn(String column) {
+        for (int i = 0; i < ALL_COLUMNS.length; i++) {
+            if (ALL_COLUMNS[i].equals(column)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Read every column of the item with the given ID from the database. Return null if there
+     * is no such item.
+     */
+    private static Object[] readItemRow(SQLiteDatabase database, long id) {
+        Cursor cursor = database.rawQuery(SQL_SELECT_ITEM_BY_ID,
+                new String[] { String.valueOf(id) });
+        try {
+            if (!cursor.moveToFirst()) {
+                return null;
+            }
+            Object[] row = new Object[ALL_COLUMNS.length];
+            for (int i = 0; i < row.length; i++) {
+                switch (cursor.getType(i)) {
+                    case Cursor.FIELD_TYPE_INTEGER:
+                        row[i] = cursor.getLong(i);
+                        break;
+                    case Cursor.FIELD_TYPE_FLOAT:
+                        row[i] = cursor.getDouble(i);
+                        break;
+                    case Cursor.FIELD_TYPE_STRING:
+                        row[i] = cursor.getString(i);
+                        break;
+                    case Cursor.FIELD_TYPE_BLOB:
+                        row[i] = cursor.getBlob(i);
+                        break;
+                    default:
+                        row[i] = null;
+                        break;
+                }
+            }
+            return row;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Search item and supplier names through the full-text index. The last path segment of the
+     * URI holds the search text; every word in it must match the start of a word in the item or
+     * supplier name. Unless the caller gives a sort order, items whose name starts with the
+     * first word come first, then the rest in name order.
+     */
+    private static Cursor searchItems(SQLiteDatabase database, Uri uri, String[] projection,
+                                      String selection, String[] selectionArgs, String sortOrder) {
+        String query = uri.getLastPathSegment();
+        StringBuilder match = new StringBuilder();
+        String firstWord = null;
+        // Only keep letters and digits, so the user's text can't be read as FTS query syntax
+        for (String word : query.split("[^\\p{L}\\p{N}]+")) {
+            if (word.isEmpty()) {
+                continue;
+            }
+            if (firstWord == null) {
+                firstWord = word;
+            } else {
+                match.append(' ');
+            }
+            match.append(word).append('*');
+        }
+        if (firstWord == null) {
+            // Nothing to search for, so nothing matches
+            selection = DatabaseUtils.concatenateWhere(selection, "0");
+            return database.query(ItemDbHelper.ITEMS_VIEW_NAME, projection, selection,
+                    selectionArgs, null, null, sortOrder, getLimit(uri));
+        }
+
+        selection = DatabaseUtils.concatenateWhere(selection, ItemDbHelper.SELECTION_LIVE);
+        selection = DatabaseUtils.concatenateWhere(selection, ItemContract.ItemEntry._ID
+                + " IN (SELECT docid FROM " + ItemDbHelper.FTS_TABLE_NAME + " WHERE "
+                + ItemDbHelper.FTS_TABLE_NAME + " MATCH ?)");
+        selectionArgs = DatabaseUtils.appendSelectionArgs(selectionArgs,
+                new String[] { match.toString() });
+        if (sortOrder == null) {
+            sortOrder = "CASE WHEN " + ItemContract.ItemEntry.COLUMN_ITEM_NAME + " LIKE "
+                    + DatabaseUtils.sqlEscapeString(firstWord + "%") + " THEN 0 ELSE 1 END, "
+                    + ItemContract.ItemEntry.COLUMN_ITEM_NAME;
+        }
+        return database.query(ItemDbHelper.ITEMS_VIEW_NAME, projection, selection,
+                selectionArgs, null, null, sortOrder, getLimit(uri));
+    }
+
+    /**
+     * Return the low-stock threshold from the URI's query parameter, or the default.
+     */
+    private static int getLowStockThreshold(Uri uri) {
+        String threshold = uri.getQueryParameter(ItemContract.QUERY_PARAMETER_THRESHOLD);
+        if (threshold == null) {
+            return DEFAULT_LOW_STOCK_THRESHOLD;
+        }
+        try {
+            return Integer.parseInt(threshold);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid threshold for " + uri, e);
+        }
+    }
+
+    /**
+     * Read one page of live items for the page URI. Instead of skipping the rows of the earlier
+     * pages with OFFSET, the query seeks straight past the sort key of the last row of the
+     * previous page, which the name and quantity indexes (and the rowid for ID order) can do
+     * in one lookup. The sort key always ends with _id, so rows with the same name or quantity
+     * are neither skipped nor repeated.
+     */
+    private static Cursor queryPage(SQLiteDatabase database, Uri uri, String[] projection,
+                                    String selection, String[] selectionArgs) {
+        String sort = uri.getQueryParameter(ItemContract.QUERY_PARAMETER_SORT);
+        String sortColumn;
+        if (sort == null || ItemContract.SORT_BY_ID.equals(sort)) {
+            sortColumn = null;
+        } else if (ItemContract.SORT_BY_NAME.equals(sort)) {
+            sortColumn = ItemContract.ItemEntry.COLUMN_ITEM_NAME;
+        } else if (ItemContract.SORT_BY_QUANTITY.equals(sort)) {
+            sortColumn = ItemContract.ItemEntry.COLUMN_ITEM_QUANTITY;
+        } else {
+            throw new IllegalArgumentException("Invalid sort for " + uri);
+        }
+
+        int limit = DEFAULT_PAGE_SIZE;
+        String afterId = uri.getQueryParameter(ItemContract.QUERY_PARAMETER_AFTER_ID);
+        String afterValue = uri.getQueryParameter(ItemContract.QUERY_PARAMETER_AFTER_VALUE);
+        try {
+            String limitParameter = uri.getQueryParameter(ItemContract.QUERY_PARAMETER_LIMIT);
+            if (limitParameter != null) {
+                limit = Integer.parseInt(limitParameter);
+            }
+            if (afterId != null) {
+                Long.parseLong(afterId);
+            }
+            if (afterValue != null && ItemContract.SORT_BY_QUANTITY.equals(sort)) {
+                Long.parseLong(afterValue);
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid page parameters for " + uri, e);
+        }
+        if (limit <= 0 || (sortColumn != null && afterId != null && afterValue == null)) {
+            throw new IllegalArgumentException("Invalid page parameters for " + uri);
+        }
+
+        selection = DatabaseUtils.concatenateWhere(selection, ItemDbHelper.SELECTION_LIVE);
+        String orderBy;
+        if (sortColumn == null) {
+            if (afterId != null) {
+                selection = DatabaseUtils.concatenateWhere(selection,
+                        ItemContract.ItemEntry._ID + " > ?");
+                selectionArgs = DatabaseUtils.appendSelectionArgs(selectionArgs,
+                        new String[] { afterId });
+            }
+            orderBy = ItemContract.ItemEntry._ID;
+        } else {
+            if (afterId != null) {
+                // Written as a range on the sort column plus a tie-break, rather than a row value
+                // comparison, so older SQLite versions can still seek the index to the start
+                selection = DatabaseUtils.concatenateWhere(selection, sortColumn + " >= ? AND ("
+                        + sortColumn + " > ? OR " + ItemContract.ItemEntry._ID + " > ?)");
+                selectionArgs = DatabaseUtils.appendSelectionArgs(selectionArgs,
+                        new String[] { afterValue, afterValue, afterId });
+            }
+            orderBy = sortColumn + ", " + ItemContract.ItemEntry._ID;
+        }
+
+        // The last row's _id and sort column are needed for the next page URI
+        projection = withColumns(projection, ItemContract.ItemEntry._ID, sortColumn);
+        Cursor cursor = database.query(ItemDbHelper.ITEMS_VIEW_NAME, projection, selection,
+                selectionArgs, null, null, orderBy, String.valueOf(limit));
+
+        // A full page means there may be more rows, so hand out the URI of the next one
+        Bundle extras = new Bundle();
+        if (cursor.getCount() == limit && cursor.moveToLast()) {
+            Uri.Builder next = ItemContract.ItemEntry.CONTENT_PAGE_URI.buildUpon()
+                    .appendQueryParameter(ItemContract.QUERY_PARAMETER_SORT,
+                            sort == null ? ItemContract.SORT_BY_ID : sort)
+                    .appendQueryParameter(ItemContract.QUERY_PARAMETER_LIMIT,
+                            String.valueOf(limit))
+                    .appendQueryParameter(ItemContract.QUERY_PARAMETER_AFTER_ID,
+                            cursor.getString(cursor.getColumnIndexOrThrow(
+                                    ItemContract.ItemEntry._ID)));
+            if (sortColumn != null) {
+                next.appendQueryParameter(ItemContract.QUERY_PARAMETER_AFTER_VALUE,
+                        cursor.getString(cursor.getColumnIndexOrThrow(sortColumn)));
+            }
+            extras.putString(ItemContract.EXTRA_NEXT_PAGE_URI, next.build().toString());
+            cursor.moveToPosition(-1);
+        }
+        return new ExtrasCursor(cursor, extras);
+    }
+
+    /**
+     * Return the projection with the given columns added if it doesn't already have them.
+     * A null projection already has every column, and null columns are ignored.
+     */
+    private static String[] withColumns(String[] projection, String... columns) {
+        if (projection == null) {
+            return null;
+        }
+        ArrayList<String> result = new ArrayList<>(Arrays.asList(projection));
+        for (String column : columns) {
+            if (column != null && !result.contains(column)) {
+                result.add(column);
+            }
+        }
+        return result.toArray(new String[result.size()]);
+    }
+
+    /**
+     * Cursor carrying extras, such as the next page URI, back to the caller.
+     */
+    private static final class ExtrasCursor extends CursorWrapper {
+        private final Bundle mExtras;
+
+        ExtrasCursor(Cursor cursor, Bundle extras) {
+            super(cursor);
+            mExtras = extras;
+        }
+
+        @Override
+        public Bundle getExtras() {
+            return mExtras;
+        }
+    }
+
+    /**
+     * Return the sequence number the change journal URI asks for changes after, or 0 for the
+     * whole journal.
+     */
+    private static long getChangesSince(Uri uri) {
+        String since = uri.getQueryParameter(ItemContract.QUERY_PARAMETER_SINCE);
+        if (since == null) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(since);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid sequence number for " + uri, e);
+        }
+    }
+
+    /**
+     * Return the SQL for the bucket size the rollup URI asks for.
+     */
+    private static String getRollupSql(Uri uri) {
+        String bucket = uri.getQueryParameter(ItemContract.QUERY_PARAMETER_BUCKET);
+        if (bucket == null || ItemContract.BUCKET_DAY.equals(bucket)) {
+            return SQL_ROLLUP_DAILY;
+        }
+        if (ItemContract.BUCKET_HOUR.equals(bucket)) {
+            return SQL_ROLLUP_HOURLY;
+        }
+        throw new IllegalArgumentException("Invalid bucket for " + uri);
+    }
+
+    /**
+     * Return the time the rollup URI asks for buckets from, or 0 for the whole history.
+     */
+    private static long getRollupSince(Uri uri) {
+        String since = uri.getQueryParameter(ItemContract.QUERY_PARAMETER_SINCE);
+        if (since == null) {
+            return 0;
+        }
+        try {
+            long sinceValue = Long.parseLong(since);
+            if (sinceValue < 0) {
+                throw new IllegalArgumentException("Invalid time for " + uri);
+            }
+            return sinceValue;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid time for " + uri, e);
+        }
+    }
+
+    /**
+     * Return the row limit of the list or change journal URI, or -1, which SQLite takes as no
+     * limit, if it doesn't have one.
+     */
+    private static int getListLimit(Uri uri) {
+        String limit = uri.getQueryParameter(ItemContract.QUERY_PARAMETER_LIMIT);
+        if (limit == null) {
+            return -1;
+        }
+        try {
+            int limitValue = Integer.parseInt(limit);
+            if (limitValue < 0) {
+                throw new IllegalArgumentException("Invalid limit for " + uri);
+            }
+            return limitValue;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid limit for " + uri, e);
+        }
+    }
+
+    /**
+     * Build the LIMIT clause for the given URI from its limit and offset query parameters.
+     * Return null if the URI doesn't ask for a limited window of rows.
+     */
+    private static String getLimit(Uri uri) {
+        String limit = uri.getQueryParameter(ItemContract.QUERY_PARAMETER_LIMIT);
+        if (limit == null) {
+            return null;
+        }
+        String offset = uri.getQueryParameter(ItemContract.QUERY_PARAMETER_OFFSET);
+        try {
+            int limitValue = Integer.parseInt(limit);
+            int offsetValue = offset == null ? 0 : Integer.parseInt(offset);
+            if (limitValue < 0 || offsetValue < 0) {
+                throw new IllegalArgumentException("Invalid limit or offset for " + uri);
+            }
+            return offsetValue + "," + limitValue;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid limit or offset for " + uri, e);
+        }
     }
 
     // Insert new data into the provider with the given ContentValues.
     @Override
     public Uri insert(Uri uri, ContentValues contentValues) {
+        long startNanos = System.nanoTime();
         final int match = sUriMatcher.match(uri);
+        Uri newUri;
         switch (match) {
 
             case ITEMS:
-                return insertItem(uri, contentValues);
+                newUri = insertItem(uri, contentValues);
+                break;
+            case SUPPLIERS:
+                newUri = insertSupplier(uri, contentValues);
+                break;
             default:
                 throw new IllegalArgumentException("Insertion is not supported for " + uri);
         }
+        mMetrics.record(ItemProviderMetrics.OP_INSERT, match, startNanos, newUri == null ? 0 : 1);
+        return newUri;
     }
 
     /**
@@ -113,41 +943,53 @@ public class ItemProvider extends ContentProvider {
      * for that specific row in the database.
      */
     private Uri insertItem(Uri uri, ContentValues values) {
-        // Check that the name is not null
-        String name = values.getAsString(ItemContract.ItemEntry.COLUMN_ITEM_NAME);
-        if (name==null || name.isEmpty()) {
-            throw new IllegalArgumentException("Item requires a name");
-        }
+        checkNoSupplierId(values);
 
-        // Check that the price is not null (not able to have negative input)
-        String price = values.getAsString(ItemContract.ItemEntry.COLUMN_ITEM_PRICE);
-        if (price==null || price.isEmpty()) {
-            throw new IllegalArgumentException("Item requires a price amount");
-        }
+        // The item refers to its supplier by ID, so work on a copy of the values with the
+        // supplier columns replaced by that ID
+        values = new ContentValues(values);
 
-        // Check that the quantity is not null
-        String quantity = values.getAsString(ItemContract.ItemEntry.COLUMN_ITEM_QUANTITY);
-        if (quantity==null || quantity.isEmpty()) {
-            throw new IllegalArgumentException("Item requires a quantity amount");
-        }
+        // Check that every column has a valid value, and normalize the phone number
+        ItemValidator.ITEMS.checkOrThrow(values, true);
+        String supplierName = (String) values.get(ItemContract.ItemEntry.COLUMN_ITEM_SUPPLIER_NAME);
+        String supplierPhone =
+                (String) values.get(ItemContract.ItemEntry.COLUMN_ITEM_SUPPLIER_PHONE);
+        values.remove(ItemContract.ItemEntry.COLUMN_ITEM_SUPPLIER_NAME);
+        values.remove(ItemContract.ItemEntry.COLUMN_ITEM_SUPPLIER_PHONE);
 
-        // Check that the supplierName is not null
-        String supplierName = values.getAsString(ItemContract.ItemEntry.COLUMN_ITEM_SUPPLIER_NAME);
-        if (supplierName==null || supplierName.isEmpty()) {
-            throw new IllegalArgumentException("Item requires a supplier name");
-        }
+        // Get writable database
+        SQLiteDatabase database = getWritableDatabase();
 
-        // Check that the supplierPhone is not null
-        String supplierPhone = values.getAsString(ItemContract.ItemEntry.COLUMN_ITEM_SUPPLIER_PHONE);
-        if (supplierPhone==null || supplierPhone.isEmpty()) {
-            throw new IllegalArgumentException("Item requires a supplier phone number");
-        }
+        long id;
+        boolean supplierChanged;
+        database.beginTransactionWithListener(mSupplierRollbackListener);
+        try {
+            SupplierCache.Supplier supplier = findSupplier(database, supplierName);
+            supplierChanged = isPhoneChange(supplier, supplierPhone);
+            values.put(ItemContract.ItemEntry.COLUMN_ITEM_SUPPLIER_ID,
+                    writeSupplier(database, supplierName, supplierPhone, supplier));
 
-        // Get writable database
-        SQLiteDatabase database = mDbHelper.getWritableDatabase();
+            // Insert the new item with the given values. The usual columns go through the
+            // precompiled statement; anything else is left to SQLiteDatabase to build.
+            if (ItemStatements.isInsertShape(values)) {
+                SQLiteStatement statement = mStatements.acquire(database, ItemStatements.INSERT);
+                for (int i = 0; i < ItemStatements.ITEM_COLUMNS.length; i++) {
+                    DatabaseUtils.bindObjectToProgram(statement, i + 1,
+                            values.get(ItemStatements.ITEM_COLUMNS[i]));
+                }
+                id = statement.executeInsert();
+            } else {
+                id = database.insert(ItemContract.ItemEntry.TABLE_NAME, null, values);
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            endTransaction(database);
+        }
 
-        // Insert the new item with the given values
-        long id = database.insert(ItemContract.ItemEntry.TABLE_NAME, null, values);
+        if (supplierChanged) {
+            // Every item of the supplier shows its new phone
+            onTableChanged(true);
+        }
 
         // If the ID is -1, then the insertion failed. Log an error and return null.
         if (id == -1) {
@@ -155,96 +997,707 @@ public class ItemProvider extends ContentProvider {
             return null;
         }
 
+        // Drop anything cached under this ID and notify all listeners that the data has
+        // changed for the new item
+        onItemChanged(id);
+
         // return the new URI with the ID (of newly inserted row) appended to the end of it
         return ContentUris.withAppendedId(uri, id);
     }
 
+    /**
+     * Insert a supplier with the given name and phone. Return the new content URI for the
+     * supplier, or null if there already is a supplier with that name.
+     */
+    private Uri insertSupplier(Uri uri, ContentValues values) {
+        // Normalize the phone on a copy rather than the caller's values
+        values = new ContentValues(values);
+        ItemValidator.SUPPLIERS.checkOrThrow(values, true);
+        Object name = values.get(ItemContract.SupplierEntry.COLUMN_SUPPLIER_NAME);
+        String phone = (String) values.get(ItemContract.SupplierEntry.COLUMN_SUPPLIER_PHONE);
+
+        SQLiteDatabase database = getWritableDatabase();
+        SQLiteStatement statement = mStatements.acquire(database, ItemStatements.INSERT_SUPPLIER);
+        statement.bindString(1, (String) name);
+        statement.bindString(2, phone);
+        long id;
+        try {
+            id = statement.executeInsert();
+        } catch (SQLiteConstraintException e) {
+            Log.e(LOG_TAG, "Failed to insert row for " + uri, e);
+            return null;
+        }
+
+        mSupplierCache.put((String) name, new SupplierCache.Supplier(id, phone));
+        onTableChanged(false);
+        return ContentUris.withAppendedId(uri, id);
+    }
+
+    /**
+     * Refuse values that set an item's supplier ID, which follows from the supplier name.
+     */
+    private static void checkNoSupplierId(ContentValues values) {
+        if (values.containsKey(ItemContract.ItemEntry.COLUMN_ITEM_SUPPLIER_ID)) {
+            throw new IllegalArgumentException("Item supplier is set by name, not by ID");
+        }
+    }
+
+    /**
+     * Return the supplier with the given name, from the cache if it is there and otherwise from
+     * the database, or null if there is no such supplier.
+     */
+    private SupplierCache.Supplier findSupplier(SQLiteDatabase database, String name) {
+        SupplierCache.Supplier supplier = mSupplierCache.get(name);
+        if (supplier != null) {
+            return supplier;
+        }
+        Cursor cursor = database.rawQuery(SQL_SELECT_SUPPLIER_BY_NAME, new String[] { name });
+        try {
+            return cursor.moveToFirst()
+                    ? new SupplierCache.Supplier(cursor.getLong(0), cursor.getString(1))
+                    : null;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Make sure there is a supplier with the given name and, unless the phone is null, with
+     * that phone, creating the supplier or updating its phone as needed. {@code existing} is
+     * the supplier as returned by {@link #findSupplier}. Return the ID of the supplier.
+     *
+     * The supplier is cached before the write commits, so this must run inside a transaction
+     * that uses {@link #mSupplierRollbackListener}.
+     */
+    private long writeSupplier(SQLiteDatabase database, String name, String phone,
+                               SupplierCache.Supplier existing) {
+        SupplierCache.Supplier supplier = existing;
+        if (supplier == null) {
+            if (phone == null) {
+                throw new IllegalArgumentException("A new supplier requires a phone number");
+            }
+            SQLiteStatement statement = mStatements.acquire(database,
+                    ItemStatements.INSERT_SUPPLIER);
+            statement.bindString(1, name);
+            statement.bindString(2, phone);
+            supplier = new SupplierCache.Supplier(statement.executeInsert(), phone);
+        } else if (isPhoneChange(supplier, phone)) {
+            SQLiteStatement statement = mStatements.acquire(database,
+                    ItemStatements.UPDATE_SUPPLIER_PHONE);
+            statement.bindString(1, phone);
+            statement.bindLong(2, supplier.id);
+            statement.executeUpdateDelete();
+            supplier = new SupplierCache.Supplier(supplier.id, phone);
+        }
+        if (supplier != existing) {
+            mSupplierCache.put(name, supplier);
+        }
+        return supplier.id;
+    }
+
+    /**
+     * Return whether writing the given phone changes the phone of an existing supplier.
+     */
+    private static boolean isPhoneChange(SupplierCache.Supplier existing, String phone) {
+        return existing != null && phone != null && !phone.equals(existing.phone);
+    }
+
+    /** Columns every inserted item must have, in the order they are checked */
+    private static final String[] INSERT_COLUMNS = ItemValidator.ITEMS.getColumns();
+
+    /** Positions of the typed and supplier columns in {@link #INSERT_COLUMNS} */
+    private static final int INSERT_PRICE_INDEX = 1;
+    private static final int INSERT_QUANTITY_INDEX = 2;
+    private static final int INSERT_SUPPLIER_NAME_INDEX = 3;
+    private static final int INSERT_SUPPLIER_PHONE_INDEX = 4;
+
+    /**
+     * Insert a batch of items inside a single transaction. One compiled statement is reused for
+     * every row, each value is read out of its ContentValues exactly once, and a single change
+     * notification is sent once the whole batch has been committed. Suppliers are looked up
+     * through {@link #mSupplierCache}, so each one is only read from the database the first
+     * time the batch names it. Return the number of rows that were inserted.
+     */
+    @Override
+    public int bulkInsert(Uri uri, ContentValues[] values) {
+        long startNanos = System.nanoTime();
+        final int match = sUriMatcher.match(uri);
+        if (match != ITEMS) {
+            throw new IllegalArgumentException("Bulk insertion is not supported for " + uri);
+        }
+
+        SQLiteDatabase database = getWritableDatabase();
+        int inserted = 0;
+        boolean suppliersChanged = false;
+        Object[] fields = new Object[INSERT_COLUMNS.length];
+        database.beginTransactionWithListener(mSupplierRollbackListener);
+        try {
+            SQLiteStatement statement = mStatements.acquire(database, ItemStatements.INSERT);
+            for (ContentValues row : values) {
+                // Read each value once and check its type without converting it to a String
+                for (int i = 0; i < INSERT_COLUMNS.length; i++) {
+                    fields[i] = row.get(INSERT_COLUMNS[i]);
+                }
+                ItemValidator.ITEMS.checkOrThrow(fields);
+
+                String supplierName = (String) fields[INSERT_SUPPLIER_NAME_INDEX];
+                String supplierPhone = (String) fields[INSERT_SUPPLIER_PHONE_INDEX];
+                SupplierCache.Supplier supplier = findSupplier(database, supplierName);
+                suppliersChanged |= isPhoneChange(supplier, supplierPhone);
+                long supplierId = writeSupplier(database, supplierName, supplierPhone, supplier);
+
+                statement.clearBindings();
+                DatabaseUtils.bindObjectToProgram(statement, 1, fields[0]);
+                DatabaseUtils.bindObjectToProgram(statement, 2, fields[INSERT_PRICE_INDEX]);
+                DatabaseUtils.bindObjectToProgram(statement, 3, fields[INSERT_QUANTITY_INDEX]);
+                statement.bindLong(4, supplierId);
+                if (statement.executeInsert() != -1) {
+                    inserted++;
+                }
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            endTransaction(database);
+        }
+
+        if (inserted > 0 || suppliersChanged) {
+            onTableChanged(suppliersChanged);
+        }
+        mMetrics.record(ItemProviderMetrics.OP_BULK_INSERT, match, startNanos, inserted);
+        return inserted;
+    }
+
+    /**
+     * Apply a batch of operations inside a single transaction, so either every operation is
+     * committed or none of them are. The operations' cache invalidations and change
+     * notifications are held back until the transaction has ended.
+     */
+    @Override
+    public ContentProviderResult[] applyBatch(ArrayList<ContentProviderOperation> operations)
+            throws OperationApplicationException {
+        SQLiteDatabase database = getWritableDatabase();
+        database.beginTransactionWithListener(mSupplierRollbackListener);
+        try {
+            ContentProviderResult[] results = super.applyBatch(operations);
+            database.setTransactionSuccessful();
+            return results;
+        } finally {
+            endTransaction(database);
+        }
+    }
+
+    /**
+     * Turn a caller's selection over items, which may use the supplier columns, into one over
+     * the items table by matching the _ids the selection picks out of the items view. A null
+     * selection stays null.
+     */
+    private static String toItemsSelection(String selection) {
+        if (selection == null) {
+            return null;
+        }
+        return ItemContract.ItemEntry._ID + " IN (SELECT " + ItemContract.ItemEntry._ID
+                + " FROM " + ItemDbHelper.ITEMS_VIEW_NAME + " WHERE " + selection + ")";
+    }
+
     // Updates the data at the given selection and selection arguments, with the new ContentValues.
     @Override
     public int update(Uri uri, ContentValues contentValues, String selection,
                       String[] selectionArgs) {
+        long startNanos = System.nanoTime();
         final int match = sUriMatcher.match(uri);
+        int rowsUpdated;
         switch (match) {
             case ITEMS:
-                return updateItem(uri, contentValues, selection, selectionArgs);
+                rowsUpdated = updateItem(uri, contentValues, NO_ID, toItemsSelection(selection),
+                        selectionArgs);
+                if (rowsUpdated != 0) {
+                    // The selection could have touched any cached row
+                    onTableChanged(true);
+                }
+                break;
             case ITEM_ID:
                 // For the ITEM_ID code, extract out the ID from the URI,
-                // so we know which row to update. Selection will be "_id=?" and selection
-                // arguments will be a String array containing the actual ID.
-                selection = ItemContract.ItemEntry._ID + "=?";
-                selectionArgs = new String[] { String.valueOf(ContentUris.parseId(uri)) };
-                return updateItem(uri, contentValues, selection, selectionArgs);
+                // so we know which row to update.
+                long id = ContentUris.parseId(uri);
+                rowsUpdated = updateItem(uri, contentValues, id, null, null);
+                if (rowsUpdated != 0) {
+                    onItemChanged(id);
+                }
+                break;
+            case SUPPLIER_ID:
+                rowsUpdated = updateSupplier(contentValues, ContentUris.parseId(uri));
+                break;
             default:
                 throw new IllegalArgumentException("Update is not supported for " + uri);
         }
+        mMetrics.record(ItemProviderMetrics.OP_UPDATE, match, startNanos, rowsUpdated);
+        return rowsUpdated;
     }
 
     /**
-     * Update pets in the database with the given content values. Apply the changes to the rows
-     * specified in the selection and selection arguments (which could be 0 or 1 or more items).
+     * Update items in the database with the given content values. Apply the changes to the item
+     * with the given ID, or if that is {@link #NO_ID}, to the rows specified in the selection and
+     * selection arguments (which could be 0 or 1 or more items).
      * Return the number of rows that were successfully updated.
      */
-    private int updateItem(Uri uri, ContentValues values, String selection, String[] selectionArgs) {
+    private int updateItem(Uri uri, ContentValues values, long id, String selection,
+                           String[] selectionArgs) {
+        // The phone is normalized and the supplier columns are replaced below, so work on a
+        // copy rather than the caller's values
+        values = new ContentValues(values);
 
-        // If the {@link ItemEntry#COLUMN_ITEM_NAME} key is present,
-        // check that the name value is not null.
-        if (values.containsKey(ItemContract.ItemEntry.COLUMN_ITEM_NAME)) {
-            String name = values.getAsString(ItemContract.ItemEntry.COLUMN_ITEM_NAME);
-            if (name == null) {
-                throw new IllegalArgumentException("Item requires a name");
-            }
+        // Check the value of every item column that is present, and normalize the phone
+        ItemValidator.ITEMS.checkOrThrow(values, false);
+        checkNoSupplierId(values);
+
+        // If there are no values to update, then don't try to update the database
+        if (values.size() == 0) {
+            return 0;
+        }// Otherwise, get writable database to update the data
+        SQLiteDatabase database = getWritableDatabase();
+
+        // Both are Strings if present, having passed the check above
+        String supplierName = (String) values.get(ItemContract.ItemEntry.COLUMN_ITEM_SUPPLIER_NAME);
+        String supplierPhone =
+                (String) values.get(ItemContract.ItemEntry.COLUMN_ITEM_SUPPLIER_PHONE);
+        String reason = uri.getQueryParameter(ItemContract.QUERY_PARAMETER_REASON);
+        if (TextUtils.isEmpty(reason)) {
+            reason = ItemContract.MovementEntry.REASON_ADJUSTMENT;
+        }
+        if (supplierName == null && supplierPhone == null
+                && !values.containsKey(ItemContract.ItemEntry.COLUMN_ITEM_QUANTITY)) {
+            return writeItemUpdate(database, values, id, selection, selectionArgs, reason);
         }
 
-        // If the {@link ItemEntry#COLUMN_ITEM_PRICE} key is present,
-        // check that the price value is valid.
-        if (values.containsKey(ItemContract.ItemEntry.COLUMN_ITEM_PRICE)) {
-            String price = values.getAsString(ItemContract.ItemEntry.COLUMN_ITEM_PRICE);
-            if (price==null) {
-                throw new IllegalArgumentException("Item requires a price amount");
+        // A quantity change is recorded as a movement in the same transaction as the update.
+        // The supplier columns are stored with the supplier rather than the item, so drop them
+        values.remove(ItemContract.ItemEntry.COLUMN_ITEM_SUPPLIER_NAME);
+        values.remove(ItemContract.ItemEntry.COLUMN_ITEM_SUPPLIER_PHONE);
+
+        int rowsUpdated;
+        boolean suppliersChanged;
+        database.beginTransactionWithListener(mSupplierRollbackListener);
+        try {
+            if (supplierName != null) {
+                // Point the items at the named supplier, which is created or given the new
+                // phone as needed
+                SupplierCache.Supplier supplier = findSupplier(database, supplierName);
+                suppliersChanged = isPhoneChange(supplier, supplierPhone);
+                values.put(ItemContract.ItemEntry.COLUMN_ITEM_SUPPLIER_ID,
+                        writeSupplier(database, supplierName, supplierPhone, supplier));
+                rowsUpdated = writeItemUpdate(database, values, id, selection, selectionArgs,
+                        reason);
+            } else if (supplierPhone != null) {
+                // Only the phone is given, so it changes the phone of the items' suppliers
+                String itemSelection = selection;
+                String[] itemSelectionArgs = selectionArgs;
+                if (id != NO_ID) {
+                    itemSelection = ItemContract.ItemEntry._ID + "=?";
+                    itemSelectionArgs = new String[] { String.valueOf(id) };
+                }
+                itemSelection = DatabaseUtils.concatenateWhere(itemSelection,
+                        ItemDbHelper.SELECTION_LIVE);
+                ContentValues phone = new ContentValues(1);
+                phone.put(ItemContract.SupplierEntry.COLUMN_SUPPLIER_PHONE, supplierPhone);
+                suppliersChanged = database.update(ItemContract.SupplierEntry.TABLE_NAME, phone,
+                        ItemContract.SupplierEntry._ID + " IN (SELECT "
+                                + ItemContract.ItemEntry.COLUMN_ITEM_SUPPLIER_ID + " FROM "
+                                + ItemContract.ItemEntry.TABLE_NAME + " WHERE " + itemSelection
+                                + ")", itemSelectionArgs) != 0;
+                // The cached phones of those suppliers are now stale. Nothing else can resolve a
+                // supplier until this transaction ends, so dropping them here is enough.
+                mSupplierCache.clear();
+                if (values.size() == 0) {
+                    rowsUpdated = (int) DatabaseUtils.queryNumEntries(database,
+                            ItemContract.ItemEntry.TABLE_NAME, itemSelection, itemSelectionArgs);
+                } else {
+                    rowsUpdated = writeItemUpdate(database, values, id, selection, selectionArgs,
+                            reason);
+                }
+            } else {
+                suppliersChanged = false;
+                rowsUpdated = writeItemUpdate(database, values, id, selection, selectionArgs,
+                        reason);
             }
+            database.setTransactionSuccessful();
+        } finally {
+            endTransaction(database);
         }
 
-        // If the {@link ItemEntry#COLUMN_ITEM_QUANTITY} key is present,
-        // check that the quantity value is valid.
+        if (suppliersChanged) {
+            // Every item of the changed suppliers shows the new phone
+            onTableChanged(true);
+        }
+        return rowsUpdated;
+    }
+
+    /**
+     * Write an update of item columns to the item with the given ID, or if that is
+     * {@link #NO_ID}, to the live items matching the selection. A change of quantity is
+     * recorded as a movement with the given reason, so this has to be called in a transaction
+     * if the values hold the quantity. Return the number of rows that were updated.
+     */
+    private int writeItemUpdate(SQLiteDatabase database, ContentValues values, long id,
+                                String selection, String[] selectionArgs, String reason) {
         if (values.containsKey(ItemContract.ItemEntry.COLUMN_ITEM_QUANTITY)) {
-            String quantity = values.getAsString(ItemContract.ItemEntry.COLUMN_ITEM_QUANTITY);
-            if (quantity==null) {
-                throw new IllegalArgumentException("Item requires a quantity amount");
-            }
+            recordQuantityChange(database,
+                    values.get(ItemContract.ItemEntry.COLUMN_ITEM_QUANTITY), reason, id,
+                    selection, selectionArgs);
         }
 
-        // If the {@link ItemEntry#COLUMN_ITEM_SUPPLIER_NAME} key is present,
-        // check that the supplier name value is valid.
-        if (values.containsKey(ItemContract.ItemEntry.COLUMN_ITEM_SUPPLIER_NAME)) {
-            String supplierName = values.getAsString(ItemContract.ItemEntry.COLUMN_ITEM_SUPPLIER_NAME);
-            if (supplierName==null) {
-                throw new IllegalArgumentException("Item requires a supplier name");
+        // A single item update of the usual columns goes through a precompiled statement
+        if (id != NO_ID) {
+            int shape = ItemStatements.updateShape(values);
+            if (shape >= 0) {
+                SQLiteStatement statement = mStatements.acquire(database, shape);
+                ItemStatements.bindUpdate(statement, shape, values, id);
+                return statement.executeUpdateDelete();
             }
+            selection = ItemContract.ItemEntry._ID + "=?";
+            selectionArgs = new String[] { String.valueOf(id) };
         }
 
-        // If the {@link ItemEntry#COLUMN_ITEM_SUPPLIER_PHONE} key is present,
-        // check that the supplier phone value is valid.
-        if (values.containsKey(ItemContract.ItemEntry.COLUMN_ITEM_SUPPLIER_PHONE)) {
-            String supplierPhone = values.getAsString(ItemContract.ItemEntry.COLUMN_ITEM_SUPPLIER_NAME);
-            if (supplierPhone==null) {
-                throw new IllegalArgumentException("Item requires a supplier phone");
-            }
+        // Returns the number of database rows affected by the update statement. Soft-deleted
+        // items can't be updated.
+        selection = DatabaseUtils.concatenateWhere(selection, ItemDbHelper.SELECTION_LIVE);
+        return database.update(ItemContract.ItemEntry.TABLE_NAME, values, selection, selectionArgs);
+    }
+
+    /**
+     * Record, as movements with the given reason, the change that setting the quantity makes to
+     * the item with the given ID, or if that is {@link #NO_ID}, to the live items matching the
+     * selection. It reads the old quantities, so it must run before the update. Items whose
+     * quantity stays the same get no movement.
+     */
+    private void recordQuantityChange(SQLiteDatabase database, Object quantity, String reason,
+                                      long id, String selection, String[] selectionArgs) {
+        long now = System.currentTimeMillis();
+        if (id != NO_ID) {
+            SQLiteStatement statement = mStatements.acquire(database,
+                    ItemStatements.RECORD_QUANTITY_CHANGE);
+            DatabaseUtils.bindObjectToProgram(statement, 1, quantity);
+            statement.bindLong(2, now);
+            statement.bindString(3, reason);
+            statement.bindLong(4, id);
+            statement.executeInsert();
+            return;
         }
 
-        // If there are no values to update, then don't try to update the database
+        selection = DatabaseUtils.concatenateWhere(selection, ItemDbHelper.SELECTION_LIVE);
+        int selectionArgCount = selectionArgs == null ? 0 : selectionArgs.length;
+        Object[] bindArgs = new Object[selectionArgCount + 4];
+        bindArgs[0] = quantity;
+        bindArgs[1] = now;
+        bindArgs[2] = reason;
+        if (selectionArgCount > 0) {
+            System.arraycopy(selectionArgs, 0, bindArgs, 3, selectionArgCount);
+        }
+        bindArgs[selectionArgCount + 3] = quantity;
+        database.execSQL(SQL_RECORD_QUANTITY_CHANGES + selection + " AND "
+                + ItemContract.ItemEntry.COLUMN_ITEM_QUANTITY + " != ?", bindArgs);
+    }
+
+    /**
+     * Update the name or phone of the supplier with the given ID, which every item of the
+     * supplier then shows. Return the number of suppliers that were updated.
+     */
+    private int updateSupplier(ContentValues values, long id) {
+        // Normalize the phone on a copy rather than the caller's values
+        values = new ContentValues(values);
+        ItemValidator.SUPPLIERS.checkOrThrow(values, false);
         if (values.size() == 0) {
             return 0;
-        }// Otherwise, get writable database to update the data
-        SQLiteDatabase database = mDbHelper.getWritableDatabase();
+        }
 
-        // Returns the number of database rows affected by the update statement
-        return database.update(ItemContract.ItemEntry.TABLE_NAME, values, selection, selectionArgs);
+        SQLiteDatabase database = getWritableDatabase();
+        int rowsUpdated;
+        try {
+            rowsUpdated = database.update(ItemContract.SupplierEntry.TABLE_NAME, values,
+                    ItemContract.SupplierEntry._ID + "=?", new String[] { String.valueOf(id) });
+        } catch (SQLiteConstraintException e) {
+            throw new IllegalArgumentException("Another supplier is already named "
+                    + values.get(ItemContract.SupplierEntry.COLUMN_SUPPLIER_NAME), e);
+        }
+        if (rowsUpdated != 0) {
+            mSupplierCache.clear();
+            onTableChanged(true);
+        }
+        return rowsUpdated;
     }
 
     // Delete the data at the given selection and selection arguments.
     @Override
     public int delete(Uri uri, String selection, String[] selectionArgs) {
-        return 0;
+        long startNanos = System.nanoTime();
+        boolean soft = uri.getBooleanQueryParameter(ItemContract.QUERY_PARAMETER_SOFT_DELETE, false);
+        SQLiteDatabase database = getWritableDatabase();
+        int rowsDeleted;
+
+        final int match = sUriMatcher.match(uri);
+        switch (match) {
+            case ITEMS:
+                if (selection == null && !soft) {
+                    // Deleting everything doesn't need to look at the rows one by one
+                    rowsDeleted = ItemDbHelper.clearItems(database);
+                } else {
+                    rowsDeleted = deleteItems(database, toItemsSelection(selection),
+                            selectionArgs, soft);
+                }
+                if (rowsDeleted != 0) {
+                    onTableChanged(true);
+                }
+                break;
+            case ITEM_ID:
+                // For the ITEM_ID code, extract out the ID from the URI,
+                // so we know which row to delete.
+                long id = ContentUris.parseId(uri);
+                SQLiteStatement statement = mStatements.acquire(database,
+                        soft ? ItemStatements.SOFT_DELETE_BY_ID : ItemStatements.DELETE_BY_ID);
+                statement.bindLong(1, id);
+                rowsDeleted = statement.executeUpdateDelete();
+                if (rowsDeleted != 0) {
+                    if (soft) {
+                        scheduleCompaction();
+                    }
+                    onItemChanged(id);
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Deletion is not supported for " + uri);
+        }
+        mMetrics.record(ItemProviderMetrics.OP_DELETE, match, startNanos, rowsDeleted);
+        return rowsDeleted;
+    }
+
+    /**
+     * Delete the items matching the selection, or only mark them as deleted if {@code soft} is
+     * set. Return the number of items that were deleted.
+     */
+    private int deleteItems(SQLiteDatabase database, String selection, String[] selectionArgs,
+                            boolean soft) {
+        if (!soft) {
+            return database.delete(ItemContract.ItemEntry.TABLE_NAME, selection, selectionArgs);
+        }
+        selection = DatabaseUtils.concatenateWhere(selection, ItemDbHelper.SELECTION_LIVE);
+        ContentValues tombstone = new ContentValues(1);
+        tombstone.put(ItemDbHelper.COLUMN_DELETED, 1);
+        int rowsDeleted = database.update(ItemContract.ItemEntry.TABLE_NAME, tombstone,
+                selection, selectionArgs);
+        if (rowsDeleted != 0) {
+            scheduleCompaction();
+        }
+        return rowsDeleted;
+    }
+
+    /**
+     * Delete every item whose ID is in the given array in one transaction, reusing a single
+     * compiled statement. Return the number of items that were deleted.
+     */
+    private int deleteItemsById(long[] ids, boolean soft) {
+        SQLiteDatabase database = getWritableDatabase();
+        int rowsDeleted = 0;
+        database.beginTransaction();
+        try {
+            SQLiteStatement statement = mStatements.acquire(database,
+                    soft ? ItemStatements.SOFT_DELETE_BY_ID : ItemStatements.DELETE_BY_ID);
+            for (long id : ids) {
+                statement.bindLong(1, id);
+                rowsDeleted += statement.executeUpdateDelete();
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            endTransaction(database);
+        }
+
+        if (rowsDeleted != 0) {
+            for (long id : ids) {
+                onItemChanged(id);
+            }
+            if (soft) {
+                scheduleCompaction();
+            }
+        }
+        return rowsDeleted;
+    }
+
+    /**
+     * Add {@code deltas[i]} to the quantity of item {@code ids[i]} for every i, in one
+     * transaction. Each change is a single UPDATE that reads and writes the quantity in the
+     * database, so concurrent adjustments of the same item can't overwrite each other. If any
+     * item is missing or would go below zero, the whole transaction is rolled back. Each
+     * change is recorded as a movement with the given reason, or if that is null, as a sale or
+     * a restock depending on its sign.
+     * Return the index of the adjustment that failed, or -1 if they all succeeded.
+     */
+    private int adjustQuantities(long[] ids, int[] deltas, String reason) {
+        SQLiteDatabase database = getWritableDatabase();
+        long now = System.currentTimeMillis();
+        int failedIndex = -1;
+        database.beginTransaction();
+        try {
+            SQLiteStatement statement = mStatements.acquire(database,
+                    ItemStatements.ADJUST_QUANTITY);
+            SQLiteStatement movement = mStatements.acquire(database,
+                    ItemStatements.INSERT_MOVEMENT);
+            for (int i = 0; i < ids.length; i++) {
+                statement.bindLong(1, deltas[i]);
+                statement.bindLong(2, ids[i]);
+                if (statement.executeUpdateDelete() == 0) {
+                    failedIndex = i;
+                    break;
+                }
+                if (deltas[i] != 0) {
+                    movement.bindLong(1, ids[i]);
+                    movement.bindLong(2, deltas[i]);
+                    movement.bindLong(3, now);
+                    movement.bindString(4, reason != null ? reason : deltas[i] < 0
+                            ? ItemContract.MovementEntry.REASON_SALE
+                            : ItemContract.MovementEntry.REASON_RESTOCK);
+                    movement.executeInsert();
+                }
+            }
+            if (failedIndex < 0) {
+                database.setTransactionSuccessful();
+            }
+        } finally {
+            endTransaction(database);
+        }
+
+        if (failedIndex < 0) {
+            for (long id : ids) {
+                onItemChanged(id);
+            }
+        }
+        return failedIndex;
+    }
+
+    /**
+     * Start a compaction on the background thread, unless one is already waiting to run.
+     */
+    private void scheduleCompaction() {
+        if (mCompactionScheduled.compareAndSet(false, true)) {
+            mBackgroundExecutor.execute(mCompaction);
+        }
+    }
+
+    /**
+     * Removes soft-deleted items and shrinks the database file.
+     */
+    private final Runnable mCompaction = new Runnable() {
+        @Override
+        public void run() {
+            // Clear the flag first, so deletes that happen while compacting schedule another run
+            mCompactionScheduled.set(false);
+            try {
+                int removed = ItemDbHelper.compact(getWritableDatabase());
+                Log.i(LOG_TAG, "Compaction removed " + removed + " deleted items");
+            } catch (SQLException e) {
+                Log.e(LOG_TAG, "Compaction failed", e);
+            }
+        }
+    };
+
+    // Run a provider method that doesn't fit the query/insert/update/delete model.
+    @Override
+    public Bundle call(String method, String arg, Bundle extras) {
+        long startNanos = System.nanoTime();
+        Bundle result = runMethod(method, arg, extras);
+        mMetrics.recordCall(method, startNanos,
+                result == null ? 0 : result.getInt(ItemContract.KEY_ROW_COUNT, 0));
+        return result;
+    }
+
+    /**
+     * Run the provider method and return its result.
+     */
+    private Bundle runMethod(String method, String arg, Bundle extras) {
+        if (ItemContract.METHOD_DELETE_ITEMS.equals(method)) {
+            long[] ids = extras == null ? null : extras.getLongArray(ItemContract.EXTRA_IDS);
+            if (ids == null) {
+                throw new IllegalArgumentException("Deleting items requires their IDs");
+            }
+            boolean soft = extras.getBoolean(ItemContract.EXTRA_SOFT_DELETE, false);
+            Bundle result = new Bundle();
+            result.putInt(ItemContract.KEY_ROW_COUNT, deleteItemsById(ids, soft));
+            return result;
+        }
+        if (ItemContract.METHOD_ADJUST_QUANTITY.equals(method)) {
+            if (extras == null || !extras.containsKey(ItemContract.EXTRA_ID)
+                    || !extras.containsKey(ItemContract.EXTRA_DELTA)) {
+                throw new IllegalArgumentException("Adjusting a quantity requires an ID and a delta");
+            }
+            long[] ids = { extras.getLong(ItemContract.EXTRA_ID) };
+            int[] deltas = { extras.getInt(ItemContract.EXTRA_DELTA) };
+            String reason = extras.getString(ItemContract.EXTRA_REASON);
+            Bundle result = new Bundle();
+            result.putInt(ItemContract.KEY_ROW_COUNT,
+                    adjustQuantities(ids, deltas, reason) < 0 ? 1 : 0);
+            return result;
+        }
+        if (ItemContract.METHOD_ADJUST_QUANTITIES.equals(method)) {
+            long[] ids = extras == null ? null : extras.getLongArray(ItemContract.EXTRA_IDS);
+            int[] deltas = extras == null ? null : extras.getIntArray(ItemContract.EXTRA_DELTAS);
+            if (ids == null || deltas == null || ids.length != deltas.length) {
+                throw new IllegalArgumentException(
+                        "Adjusting quantities requires matching arrays of IDs and deltas");
+            }
+            int failedIndex = adjustQuantities(ids, deltas,
+                    extras.getString(ItemContract.EXTRA_REASON));
+            Bundle result = new Bundle();
+            result.putInt(ItemContract.KEY_ROW_COUNT, failedIndex < 0 ? ids.length : 0);
+            result.putInt(ItemContract.KEY_FAILED_INDEX, failedIndex);
+            return result;
+        }
+        if (ItemContract.METHOD_REBUILD_SUPPLIER_SUMMARY.equals(method)) {
+            ItemDbHelper.rebuildSupplierSummary(getWritableDatabase());
+            onTableChanged(false);
+            return null;
+        }
+        if (ItemContract.METHOD_ACK_CHANGES.equals(method)) {
+            if (extras == null || !extras.containsKey(ItemContract.EXTRA_SEQUENCE)) {
+                throw new IllegalArgumentException(
+                        "Acknowledging changes requires a sequence number");
+            }
+            Bundle result = new Bundle();
+            result.putInt(ItemContract.KEY_ROW_COUNT, ItemDbHelper.truncateChangeJournal(
+                    getWritableDatabase(), extras.getLong(ItemContract.EXTRA_SEQUENCE)));
+            return result;
+        }
+        if (ItemContract.METHOD_COMPACT.equals(method)) {
+            scheduleCompaction();
+            return null;
+        }
+        if (ItemContract.METHOD_GET_METRICS.equals(method)) {
+            return mMetrics.toBundle();
+        }
+        if (ItemContract.METHOD_GET_CACHE_STATS.equals(method)) {
+            Bundle result = new Bundle();
+            result.putLong(ItemContract.KEY_CACHE_HITS, mItemCache.getHitCount());
+            result.putLong(ItemContract.KEY_CACHE_MISSES, mItemCache.getMissCount());
+            result.putLong(ItemContract.KEY_CACHE_EVICTIONS, mItemCache.getEvictionCount());
+            result.putLong(ItemContract.KEY_CACHE_SIZE_BYTES, mItemCache.getSizeBytes());
+            return result;
+        }
+        return super.call(method, arg, extras);
+    }
+
+    // Write the provider's metrics and cache counters, e.g. for
+    // "adb shell dumpsys activity provider com.example.android.pets".
+    @Override
+    public void dump(FileDescriptor fd, PrintWriter writer, String[] args) {
+        mMetrics.dump(writer);
+        writer.println("Item cache: hits=" + mItemCache.getHitCount()
+                + " misses=" + mItemCache.getMissCount()
+                + " evictions=" + mItemCache.getEvictionCount()
+                + " sizeBytes=" + mItemCache.getSizeBytes());
+    }
+
+    // Close the compiled statements and the database. Android never calls this on a running
+    // app; it is for tests that create the provider themselves.
+    @Override
+    public void shutdown() {
+        mStatements.close();
+        mDbHelper.close();
     }
 
     // Returns the MIME type of data for the content URI.
@@ -253,4 +1706,32 @@ public class ItemProvider extends ContentProvider {
         return null;
     }
 
-}
\ No newline at end of file
+
+    /**
+     * Invalidations and notifications recorded by one thread's writes and not yet applied.
+     */
+    private static final class PendingChanges {
+        /** Whether every cached row may be out of date */
+        boolean clearCache;
+
+        /** Whether an unknown set of rows changed, so the whole items table is notified */
+        boolean tableChanged;
+
+        /** IDs of the changed items, in the first {@link #itemCount} entries */
+        long[] itemIds = new long[16];
+        int itemCount;
+
+        void addItem(long id) {
+            if (itemCount == itemIds.length) {
+                itemIds = Arrays.copyOf(itemIds, itemCount * 2);
+            }
+            itemIds[itemCount++] = id;
+        }
+
+        void reset() {
+            clearCache = false;
+            tableChanged = false;
+            itemCount = 0;
+        }
+    }
+}
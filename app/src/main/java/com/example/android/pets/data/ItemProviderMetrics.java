@@ -0,0 +1,323 @@
+package com.example.android.pets.data;
+
+import android.database.Cursor;
+import android.database.CursorWrapper;
+import android.os.Bundle;
+
+import java.io.PrintWriter;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counters and latency histograms for {@link ItemProvider}, recorded per operation and per URI
+ * match, and per method for {@link ItemProvider#call}. Everything lives in preallocated atomic
+ * arrays, so recording doesn't lock and can stay on in production.
+ */
+class ItemProviderMetrics {
+
+    static final int OP_QUERY = 0;
+    static final int OP_INSERT = 1;
+    static final int OP_BULK_INSERT = 2;
+    static final int OP_UPDATE = 3;
+    static final int OP_DELETE = 4;
+    private static final String[] OP_NAMES = { "query", "insert", "bulkInsert", "update", "delete" };
+
+    /**
+     * Latencies are bucketed by powers of two microseconds: bucket 0 holds everything under
+     * 2us, bucket i holds [2^i, 2^(i+1)) us, and the last bucket holds everything from
+     * about 16 seconds up.
+     */
+    private static final int BUCKET_COUNT = 25;
+
+    /** Names for the URI matches, indexed by match code minus {@link #mFirstMatch} */
+    private final String[] mMatchNames;
+    private final int mFirstMatch;
+
+    /** Number of calls, per operation and match */
+    private final AtomicLongArray mCounts;
+
+    /** Rows returned or affected, per operation and match */
+    private final AtomicLongArray mRows;
+
+    /** Latency histogram buckets, per operation and match */
+    private final AtomicLongArray mLatency;
+
+    /** Names of the provider methods recorded by {@link #recordCall} */
+    private final String[] mMethodNames;
+
+    /** Number of calls, rows affected and latency histogram buckets, per provider method */
+    private final AtomicLongArray mCallCounts;
+    private final AtomicLongArray mCallRows;
+    private final AtomicLongArray mCallLatency;
+
+    /** Histogram of the time spent waiting to get the writable database */
+    private final AtomicLongArray mDatabaseWait = new AtomicLongArray(BUCKET_COUNT);
+
+    /**
+     * @param firstMatch  the lowest URI matcher code
+     * @param matchNames  names for the matcher codes from {@code firstMatch} on, used in dumps
+     * @param methodNames the provider methods to record; calls to other methods are ignored
+     */
+    ItemProviderMetrics(int firstMatch, String[] matchNames, String[] methodNames) {
+        mFirstMatch = firstMatch;
+        mMatchNames = matchNames;
+        int slots = OP_NAMES.length * matchNames.length;
+        mCounts = new AtomicLongArray(slots);
+        mRows = new AtomicLongArray(slots);
+        mLatency = new AtomicLongArray(slots * BUCKET_COUNT);
+        mMethodNames = methodNames;
+        mCallCounts = new AtomicLongArray(methodNames.length);
+        mCallRows = new AtomicLongArray(methodNames.length);
+        mCallLatency = new AtomicLongArray(methodNames.length * BUCKET_COUNT);
+    }
+
+    /**
+     * Record a completed call.
+     *
+     * @param op         one of the OP_* constants
+     * @param match      the URI matcher code of the call
+     * @param startNanos {@link System#nanoTime()} when the call started
+     * @param rows       rows returned or affected
+     */
+    void record(int op, int match, long startNanos, int rows) {
+        int slot = slotFor(op, match);
+        if (slot < 0) {
+            return;
+        }
+        mCounts.incrementAndGet(slot);
+        mRows.addAndGet(slot, rows);
+        mLatency.incrementAndGet(slot * BUCKET_COUNT + bucketFor(System.nanoTime() - startNanos));
+    }
+
+    /**
+     * Record a completed query and return the cursor wrapped so that the rows the caller reads
+     * are added to the query's row count when it closes the cursor. Counting the rows up front
+     * would make SQLite step through the whole result before the caller needs any of it.
+     *
+     * @param match      the URI matcher code of the query
+     * @param startNanos {@link System#nanoTime()} when the query started
+     * @param cursor     the query's result
+     */
+    Cursor recordQuery(int match, long startNanos, Cursor cursor) {
+        record(OP_QUERY, match, startNanos, 0);
+        int slot = slotFor(OP_QUERY, match);
+        return slot < 0 ? cursor : new RowCountingCursor(cursor, slot);
+    }
+
+    /**
+     * Record a completed provider method call. Methods that weren't named when the metrics
+     * were created are ignored.
+     *
+     * @param method     the method name passed to {@link ItemProvider#call}
+     * @param startNanos {@link System#nanoTime()} when the call started
+     * @param rows       rows affected
+     */
+    void recordCall(String method, long startNanos, int rows) {
+        for (int i = 0; i < mMethodNames.length; i++) {
+            if (mMethodNames[i].equals(method)) {
+                mCallCounts.incrementAndGet(i);
+                mCallRows.addAndGet(i, rows);
+                mCallLatency.incrementAndGet(
+                        i * BUCKET_COUNT + bucketFor(System.nanoTime() - startNanos));
+                return;
+            }
+        }
+    }
+
+    /**
+     * Return the slot of the operation and URI match, or -1 if the match isn't recorded.
+     */
+    private int slotFor(int op, int match) {
+        int matchIndex = match - mFirstMatch;
+        if (matchIndex < 0 || matchIndex >= mMatchNames.length) {
+            return -1;
+        }
+        return op * mMatchNames.length + matchIndex;
+    }
+
+    /**
+     * Record how long getting the writable database took.
+     */
+    void recordDatabaseWait(long startNanos) {
+        mDatabaseWait.incrementAndGet(bucketFor(System.nanoTime() - startNanos));
+    }
+
+    /**
+     * Return the metrics as a bundle. For every operation and match that has been called, the
+     * keys "op/match/count", "op/match/rows", "op/match/p50Micros" and "op/match/p99Micros"
+     * hold longs. The rows of a query are those the caller read before closing the cursor.
+     * Provider methods have the same keys, as "call/method/...". "databaseWait/count",
+     * "databaseWait/p50Micros" and "databaseWait/p99Micros" describe the time spent getting the
+     * writable database.
+     */
+    Bundle toBundle() {
+        Bundle bundle = new Bundle();
+        for (int op = 0; op < OP_NAMES.length; op++) {
+            for (int matchIndex = 0; matchIndex < mMatchNames.length; matchIndex++) {
+                putStats(bundle, OP_NAMES[op] + "/" + mMatchNames[matchIndex] + "/",
+                        mCounts, mRows, mLatency, op * mMatchNames.length + matchIndex);
+            }
+        }
+        for (int i = 0; i < mMethodNames.length; i++) {
+            putStats(bundle, "call/" + mMethodNames[i] + "/", mCallCounts, mCallRows,
+                    mCallLatency, i);
+        }
+        bundle.putLong("databaseWait/count", total(mDatabaseWait, 0));
+        bundle.putLong("databaseWait/p50Micros", percentile(mDatabaseWait, 0, 0.50));
+        bundle.putLong("databaseWait/p99Micros", percentile(mDatabaseWait, 0, 0.99));
+        return bundle;
+    }
+
+    /**
+     * Add the count, rows and latency percentiles of the slot to the bundle, under keys
+     * starting with the prefix, unless the slot was never recorded.
+     */
+    private static void putStats(Bundle bundle, String prefix, AtomicLongArray counts,
+                                 AtomicLongArray rows, AtomicLongArray latency, int slot) {
+        long count = counts.get(slot);
+        if (count == 0) {
+            return;
+        }
+        bundle.putLong(prefix + "count", count);
+        bundle.putLong(prefix + "rows", rows.get(slot));
+        bundle.putLong(prefix + "p50Micros", percentile(latency, slot * BUCKET_COUNT, 0.50));
+        bundle.putLong(prefix + "p99Micros", percentile(latency, slot * BUCKET_COUNT, 0.99));
+    }
+
+    /**
+     * Write the metrics in human readable form, for dumpsys.
+     */
+    void dump(PrintWriter writer) {
+        writer.println("ItemProvider metrics (latencies in microseconds, bucket upper bounds):");
+        for (int op = 0; op < OP_NAMES.length; op++) {
+            for (int matchIndex = 0; matchIndex < mMatchNames.length; matchIndex++) {
+                dumpStats(writer, OP_NAMES[op] + " " + mMatchNames[matchIndex], mCounts, mRows,
+                        mLatency, op * mMatchNames.length + matchIndex);
+            }
+        }
+        for (int i = 0; i < mMethodNames.length; i++) {
+            dumpStats(writer, "call " + mMethodNames[i], mCallCounts, mCallRows, mCallLatency, i);
+        }
+        writer.println("  getWritableDatabase: count=" + total(mDatabaseWait, 0)
+                + " p50=" + percentile(mDatabaseWait, 0, 0.50)
+                + " p99=" + percentile(mDatabaseWait, 0, 0.99)
+                + " max=" + percentile(mDatabaseWait, 0, 1.0));
+    }
+
+    /**
+     * Write one line with the count, rows and latency percentiles of the slot, unless it was
+     * never recorded.
+     */
+    private static void dumpStats(PrintWriter writer, String label, AtomicLongArray counts,
+                                  AtomicLongArray rows, AtomicLongArray latency, int slot) {
+        long count = counts.get(slot);
+        if (count == 0) {
+            return;
+        }
+        int offset = slot * BUCKET_COUNT;
+        writer.println("  " + label
+                + ": count=" + count
+                + " rows=" + rows.get(slot)
+                + " p50=" + percentile(latency, offset, 0.50)
+                + " p90=" + percentile(latency, offset, 0.90)
+                + " p99=" + percentile(latency, offset, 0.99)
+                + " max=" + percentile(latency, offset, 1.0));
+    }
+
+    private static int bucketFor(long nanos) {
+        long micros = nanos / 1000;
+        if (micros < 2) {
+            return 0;
+        }
+        return Math.min(BUCKET_COUNT - 1, 63 - Long.numberOfLeadingZeros(micros));
+    }
+
+    private static long total(AtomicLongArray histogram, int offset) {
+        long total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            total += histogram.get(offset + i);
+        }
+        return total;
+    }
+
+    /**
+     * Return the upper bound in microseconds of the bucket holding the given fraction of
+     * the histogram's samples, or 0 if it is empty.
+     */
+    private static long percentile(AtomicLongArray histogram, int offset, double fraction) {
+        long total = total(histogram, offset);
+        if (total == 0) {
+            return 0;
+        }
+        long target = (long) Math.ceil(total * fraction);
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += histogram.get(offset + i);
+            if (seen >= target) {
+                return 1L << (i + 1);
+            }
+        }
+        return 1L << BUCKET_COUNT;
+    }
+
+    /**
+     * Cursor that keeps track of the furthest row the caller moved to, and adds the number of
+     * rows up to it to its slot when closed.
+     */
+    private final class RowCountingCursor extends CursorWrapper {
+
+        private final int mSlot;
+
+        /** Number of rows up to and including the furthest one moved to */
+        private int mRowsRead;
+
+        RowCountingCursor(Cursor cursor, int slot) {
+            super(cursor);
+            mSlot = slot;
+        }
+
+        @Override
+        public boolean move(int offset) {
+            return countRow(super.move(offset));
+        }
+
+        @Override
+        public boolean moveToPosition(int position) {
+            return countRow(super.moveToPosition(position));
+        }
+
+        @Override
+        public boolean moveToFirst() {
+            return countRow(super.moveToFirst());
+        }
+
+        @Override
+        public boolean moveToLast() {
+            return countRow(super.moveToLast());
+        }
+
+        @Override
+        public boolean moveToNext() {
+            return countRow(super.moveToNext());
+        }
+
+        @Override
+        public boolean moveToPrevious() {
+            return countRow(super.moveToPrevious());
+        }
+
+        private boolean countRow(boolean moved) {
+            if (moved) {
+                mRowsRead = Math.max(mRowsRead, getPosition() + 1);
+            }
+            return moved;
+        }
+
+        @Override
+        public void close() {
+            if (!isClosed()) {
+                mRows.addAndGet(mSlot, mRowsRead);
+            }
+            super.close();
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package com.example.android.pets.data;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.util.Log;
+
+import com.example.android.pets.data.ItemContract.ItemEntry;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.zip.CRC32;
+
+/**
+ * Keeps a small binary copy of the first rows of the item list on disk, so the catalog can
+ * show them as soon as it starts, before the database has been opened and queried.
+ *
+ * The file holds a header (magic number, format version, database schema version, row count,
+ * payload length and a CRC32 of the payload) followed by the rows in
+ * {@link ItemEntry#LIST_PROJECTION} order. A snapshot with a different format or schema
+ * version, or whose length or checksum doesn't match, is deleted rather than shown. Snapshots
+ * are replaced by writing a new file and renaming it over the old one, so a reader never sees
+ * one that is half written.
+ */
+public final class ItemSnapshot {
+
+    private static final String LOG_TAG = ItemSnapshot.class.getSimpleName();
+
+    /** Name of the snapshot file in the app's cache directory */
+    static final String FILE_NAME = "catalog.snapshot";
+
+    /** Largest number of rows kept, about one screen plus a margin */
+    public static final int MAX_ROWS = 50;
+
+    /** "ISNP", at the start of every snapshot file */
+    private static final int MAGIC = 0x49534e50;
+
+    /** Version of the file layout. Bump it whenever the layout changes. */
+    private static final int FORMAT_VERSION = 1;
+
+    /** Header size in bytes: magic, format, schema, row count, payload length, CRC32 */
+    private static final int HEADER_SIZE = 4 + 4 + 4 + 4 + 4 + 8;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /** Writes snapshots off the main thread, one at a time and in the order they were taken */
+    private static final Executor sWriter = Executors.newSingleThreadExecutor();
+
+    /** CRC32 of the payload last handed to {@link #sWriter}, to skip writing an identical one */
+    private static long sLastCrc = -1;
+
+    private ItemSnapshot() {}
+
+    /**
+     * Read the snapshot, if there is a valid one. The file is memory-mapped rather than read
+     * through a stream, so this is quick enough to call on the main thread during startup.
+     *
+     * @return a cursor over the snapshot rows with the {@link ItemEntry#LIST_PROJECTION}
+     * columns, or null if there is no snapshot or it can't be used
+     */
+    public static Cursor read(Context context) {
+        File file = getFile(context);
+        if (!file.exists()) {
+            return null;
+        }
+        try {
+            Cursor cursor = parse(map(file));
+            if (cursor == null) {
+                Log.w(LOG_TAG, "Discarding stale or corrupt snapshot");
+                file.delete();
+            }
+            return cursor;
+        } catch (IOException e) {
+            Log.w(LOG_TAG, "Failed to read snapshot", e);
+            file.delete();
+            return null;
+        }
+    }
+
+    /**
+     * Take a snapshot of the first {@link #MAX_ROWS} rows of a cursor with the
+     * {@link ItemEntry#LIST_PROJECTION} columns, and write it to disk in the background.
+     * The rows are copied out of the cursor before this returns, and the cursor's position is
+     * left unchanged. Nothing is written if the rows are the same as in the last snapshot.
+     */
+    public static void save(Context context, Cursor cursor) {
+        final byte[] payload;
+        int rowCount = Math.min(cursor.getCount(), MAX_ROWS);
+        try {
+            payload = encode(cursor, rowCount);
+        } catch (IOException e) {
+            // Only thrown for a name too long to encode, which isn't worth a snapshot
+            Log.w(LOG_TAG, "Failed to encode snapshot", e);
+            return;
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        final long payloadCrc = crc.getValue();
+        synchronized (ItemSnapshot.class) {
+            if (payloadCrc == sLastCrc) {
+                return;
+            }
+            sLastCrc = payloadCrc;
+        }
+
+        final File file = getFile(context);
+        final int rows = rowCount;
+        sWriter.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    write(file, rows, payload, payloadCrc);
+                } catch (IOException e) {
+                    Log.w(LOG_TAG, "Failed to write snapshot", e);
+                    synchronized (ItemSnapshot.class) {
+                        sLastCrc = -1;
+                    }
+                }
+            }
+        });
+    }
+
+    private static File getFile(Context context) {
+        return new File(context.getCacheDir(), FILE_NAME);
+    }
+
+    /**
+     * Encode the given number of rows from the start of the cursor. Each row is the _id and
+     * price as longs, the quantity as an int, then the name as a length-prefixed UTF-8 string.
+     */
+    private static byte[] encode(Cursor cursor, int rowCount) throws IOException {
+        int idIndex = cursor.getColumnIndexOrThrow(ItemEntry._ID);
+        int nameIndex = cursor.getColumnIndexOrThrow(ItemEntry.COLUMN_ITEM_NAME);
+        int priceIndex = cursor.getColumnIndexOrThrow(ItemEntry.COLUMN_ITEM_PRICE);
+        int quantityIndex = cursor.getColumnIndexOrThrow(ItemEntry.COLUMN_ITEM_QUANTITY);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(rowCount * 48);
+        DataOutputStream out = new DataOutputStream(bytes);
+        int position = cursor.getPosition();
+        try {
+            for (int i = 0; i < rowCount && cursor.moveToPosition(i); i++) {
+                byte[] name = cursor.getString(nameIndex).getBytes(UTF_8);
+                if (name.length > Short.MAX_VALUE) {
+                    throw new IOException("Item name too long for a snapshot");
+                }
+                out.writeLong(cursor.getLong(idIndex));
+                out.writeLong(cursor.getLong(priceIndex));
+                out.writeInt(cursor.getInt(quantityIndex));
+                out.writeShort(name.length);
+                out.write(name);
+            }
+        } finally {
+            cursor.moveToPosition(position);
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Write a snapshot to a temporary file and rename it over the current one.
+     */
+    private static void write(File file, int rowCount, byte[] payload, long payloadCrc)
+            throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC)
+                .putInt(FORMAT_VERSION)
+                .putInt(ItemDbHelper.DATABASE_VERSION)
+                .putInt(rowCount)
+                .putInt(payload.length)
+                .putLong(payloadCrc);
+
+        File temp = new File(file.getPath() + ".tmp");
+        FileOutputStream out = new FileOutputStream(temp);
+        try {
+            out.write(header.array());
+            out.write(payload);
+        } finally {
+            out.close();
+        }
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            throw new IOException("Failed to rename " + temp + " to " + file);
+        }
+    }
+
+    private static MappedByteBuffer map(File file) throws IOException {
+        RandomAccessFile in = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = in.getChannel();
+            // The mapping stays valid after the file is closed
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Check the header and checksum of a mapped snapshot and decode its rows. Return null if
+     * the snapshot is for another format or schema version, or is damaged.
+     */
+    private static Cursor parse(ByteBuffer buffer) {
+        if (buffer.remaining() < HEADER_SIZE
+                || buffer.getInt() != MAGIC
+                || buffer.getInt() != FORMAT_VERSION
+                || buffer.getInt() != ItemDbHelper.DATABASE_VERSION) {
+            return null;
+        }
+        int rowCount = buffer.getInt();
+        int payloadLength = buffer.getInt();
+        long payloadCrc = buffer.getLong();
+        if (rowCount < 0 || rowCount > MAX_ROWS || payloadLength != buffer.remaining()) {
+            return null;
+        }
+
+        byte[] payload = new byte[payloadLength];
+        buffer.get(payload);
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        if (crc.getValue() != payloadCrc) {
+            return null;
+        }
+
+        ByteBuffer rows = ByteBuffer.wrap(payload);
+        MatrixCursor cursor = new MatrixCursor(ItemEntry.LIST_PROJECTION, rowCount);
+        try {
+            for (int i = 0; i < rowCount; i++) {
+                long id = rows.getLong();
+                long price = rows.getLong();
+                int quantity = rows.getInt();
+                int nameLength = rows.getShort();
+                String name = new String(payload, rows.position(), nameLength, UTF_8);
+                rows.position(rows.position() + nameLength);
+                cursor.addRow(new Object[] { id, name, price, quantity });
+            }
+        } catch (RuntimeException e) {
+            // The checksum matched but the rows don't add up, so the writer was broken
+            cursor.close();
+            return null;
+        }
+        if (rows.hasRemaining()) {
+            cursor.close();
+            return null;
+        }
+        return cursor;
+    }
+}
@@ -0,0 +1,266 @@
+package com.example.android.pets.data;
+
+import android.content.ContentValues;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import com.example.android.pets.data.ItemContract.ItemEntry;
+import com.example.android.pets.data.ItemContract.MovementEntry;
+import com.example.android.pets.data.ItemContract.SupplierEntry;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Pool of precompiled statements for the fixed-shape writes {@link ItemProvider} makes, so they
+ * are compiled once and then only bound with primitives instead of building SQL and argument
+ * arrays on every call.
+ *
+ * A compiled statement keeps its bindings between calls, so it can't be shared by threads that
+ * run at the same time. Locking it would let a thread holding it wait on a transaction owned
+ * by a thread that is itself waiting for the statement, so each thread gets its own set
+ * instead. Provider calls run on a small, fixed pool of binder threads, which keeps the number
+ * of statements bounded. Statements of threads that have ended, such as an import's writer,
+ * are closed when another thread compiles its first statement, and {@link #close} closes the
+ * rest.
+ */
+class ItemStatements {
+
+    /** Shape: insert an item, bound to the {@link #ITEM_COLUMNS} in order */
+    static final int INSERT = 0;
+
+    /** Shape: delete an item, bound to its _id */
+    static final int DELETE_BY_ID = 1;
+
+    /** Shape: soft-delete a live item, bound to its _id */
+    static final int SOFT_DELETE_BY_ID = 2;
+
+    /**
+     * Shape: add a delta to the quantity of a live item, bound to the delta and the _id. The row
+     * is left alone if the quantity would become negative.
+     */
+    static final int ADJUST_QUANTITY = 3;
+
+    /** Shape: insert a supplier, bound to its name and phone */
+    static final int INSERT_SUPPLIER = 4;
+
+    /** Shape: change the phone of a supplier, bound to the phone and the supplier's _id */
+    static final int UPDATE_SUPPLIER_PHONE = 5;
+
+    /** Shape: record a quantity movement, bound to the item _id, delta, time and reason */
+    static final int INSERT_MOVEMENT = 6;
+
+    /**
+     * Shape: record the movement that setting the quantity of a live item makes, bound to the
+     * new quantity, the time, the reason and the item's _id. Nothing is recorded if the quantity
+     * stays the same.
+     */
+    static final int RECORD_QUANTITY_CHANGE = 7;
+
+    /**
+     * First update shape. Updating a live item by _id uses shape {@code UPDATE_BY_ID + mask},
+     * where bit i of the mask is set if {@link #ITEM_COLUMNS}[i] is being updated. It is bound
+     * to the values of those columns in order, then the _id.
+     */
+    private static final int UPDATE_BY_ID = 8;
+
+    /** Columns of the items table an item is inserted with, and that can be updated */
+    static final String[] ITEM_COLUMNS = {
+            ItemEntry.COLUMN_ITEM_NAME,
+            ItemEntry.COLUMN_ITEM_PRICE,
+            ItemEntry.COLUMN_ITEM_QUANTITY,
+            ItemEntry.COLUMN_ITEM_SUPPLIER_ID
+    };
+
+    private static final int SHAPE_COUNT = UPDATE_BY_ID + (1 << ITEM_COLUMNS.length);
+
+    /** This thread's statements, and the database they were compiled against */
+    private final ThreadLocal<Pool> mPools = new ThreadLocal<>();
+
+    /** Every thread's statements, so they can be closed once the thread is gone */
+    private final Map<Thread, Pool> mAllPools = new HashMap<>();
+
+    /**
+     * Return this thread's statement of the given shape, compiling it on first use, with its
+     * bindings cleared.
+     */
+    SQLiteStatement acquire(SQLiteDatabase database, int shape) {
+        Pool pool = mPools.get();
+        if (pool == null || pool.closed || pool.database != database) {
+            // The database has been reopened, so statements compiled against the old one
+            // can't be used any more, or the statements have been closed
+            pool = new Pool(database);
+            synchronized (mAllPools) {
+                closeEndedThreadPools();
+                Pool old = mAllPools.put(Thread.currentThread(), pool);
+                if (old != null) {
+                    old.close();
+                }
+            }
+            mPools.set(pool);
+        }
+        SQLiteStatement statement = pool.statements[shape];
+        if (statement == null) {
+            statement = database.compileStatement(sqlFor(shape));
+            pool.statements[shape] = statement;
+        }
+        statement.clearBindings();
+        return statement;
+    }
+
+    /**
+     * Close the statements of every thread. A thread that acquires a statement afterwards gets
+     * a newly compiled one. Must not be called while another thread is using its statements.
+     */
+    void close() {
+        synchronized (mAllPools) {
+            for (Pool pool : mAllPools.values()) {
+                pool.close();
+            }
+            mAllPools.clear();
+        }
+        mPools.remove();
+    }
+
+    /**
+     * Close the statements of threads that have ended. Must hold the lock on
+     * {@link #mAllPools}.
+     */
+    private void closeEndedThreadPools() {
+        Iterator<Map.Entry<Thread, Pool>> pools = mAllPools.entrySet().iterator();
+        while (pools.hasNext()) {
+            Map.Entry<Thread, Pool> entry = pools.next();
+            if (!entry.getKey().isAlive()) {
+                entry.getValue().close();
+                pools.remove();
+            }
+        }
+    }
+
+    /**
+     * Return the update shape for the given values, or -1 if they hold anything other than
+     * {@link #ITEM_COLUMNS} or nothing at all.
+     */
+    static int updateShape(ContentValues values) {
+        int mask = 0;
+        int found = 0;
+        for (int i = 0; i < ITEM_COLUMNS.length; i++) {
+            if (values.containsKey(ITEM_COLUMNS[i])) {
+                mask |= 1 << i;
+                found++;
+            }
+        }
+        if (found == 0 || found != values.size()) {
+            return -1;
+        }
+        return UPDATE_BY_ID + mask;
+    }
+
+    /**
+     * Return true if the given values hold exactly the {@link #ITEM_COLUMNS}, so they can be
+     * inserted with the {@link #INSERT} statement.
+     */
+    static boolean isInsertShape(ContentValues values) {
+        return updateShape(values) == UPDATE_BY_ID + (1 << ITEM_COLUMNS.length) - 1;
+    }
+
+    /**
+     * Bind the values of an update of the given shape and the _id of the item to update.
+     */
+    static void bindUpdate(SQLiteStatement statement, int shape, ContentValues values, long id) {
+        int mask = shape - UPDATE_BY_ID;
+        int index = 1;
+        for (int i = 0; i < ITEM_COLUMNS.length; i++) {
+            if ((mask & (1 << i)) != 0) {
+                DatabaseUtils.bindObjectToProgram(statement, index++, values.get(ITEM_COLUMNS[i]));
+            }
+        }
+        statement.bindLong(index, id);
+    }
+
+    private static String sqlFor(int shape) {
+        switch (shape) {
+            case INSERT:
+                return "INSERT INTO " + ItemEntry.TABLE_NAME + " ("
+                        + ItemEntry.COLUMN_ITEM_NAME + ", "
+                        + ItemEntry.COLUMN_ITEM_PRICE + ", "
+                        + ItemEntry.COLUMN_ITEM_QUANTITY + ", "
+                        + ItemEntry.COLUMN_ITEM_SUPPLIER_ID + ") VALUES (?, ?, ?, ?)";
+            case DELETE_BY_ID:
+                return "DELETE FROM " + ItemEntry.TABLE_NAME + " WHERE " + ItemEntry._ID + " = ?";
+            case SOFT_DELETE_BY_ID:
+                return "UPDATE " + ItemEntry.TABLE_NAME
+                        + " SET " + ItemDbHelper.COLUMN_DELETED + " = 1"
+                        + " WHERE " + ItemEntry._ID + " = ? AND " + ItemDbHelper.SELECTION_LIVE;
+            case ADJUST_QUANTITY:
+                return "UPDATE " + ItemEntry.TABLE_NAME + " SET "
+                        + ItemEntry.COLUMN_ITEM_QUANTITY + " = "
+                        + ItemEntry.COLUMN_ITEM_QUANTITY + " + ?1"
+                        + " WHERE " + ItemEntry._ID + " = ?2 AND " + ItemDbHelper.SELECTION_LIVE
+                        + " AND " + ItemEntry.COLUMN_ITEM_QUANTITY + " + ?1 >= 0";
+            case INSERT_SUPPLIER:
+                return "INSERT INTO " + SupplierEntry.TABLE_NAME + " ("
+                        + SupplierEntry.COLUMN_SUPPLIER_NAME + ", "
+                        + SupplierEntry.COLUMN_SUPPLIER_PHONE + ") VALUES (?, ?)";
+            case UPDATE_SUPPLIER_PHONE:
+                return "UPDATE " + SupplierEntry.TABLE_NAME + " SET "
+                        + SupplierEntry.COLUMN_SUPPLIER_PHONE + " = ? WHERE "
+                        + SupplierEntry._ID + " = ?";
+            case INSERT_MOVEMENT:
+                return "INSERT INTO " + MovementEntry.TABLE_NAME + " ("
+                        + MovementEntry.COLUMN_ITEM_ID + ", "
+                        + MovementEntry.COLUMN_DELTA + ", "
+                        + MovementEntry.COLUMN_TIME + ", "
+                        + MovementEntry.COLUMN_REASON + ") VALUES (?, ?, ?, ?)";
+            case RECORD_QUANTITY_CHANGE:
+                return "INSERT INTO " + MovementEntry.TABLE_NAME + " ("
+                        + MovementEntry.COLUMN_ITEM_ID + ", "
+                        + MovementEntry.COLUMN_DELTA + ", "
+                        + MovementEntry.COLUMN_TIME + ", "
+                        + MovementEntry.COLUMN_REASON + ") SELECT "
+                        + ItemEntry._ID + ", ?1 - " + ItemEntry.COLUMN_ITEM_QUANTITY + ", ?2, ?3"
+                        + " FROM " + ItemEntry.TABLE_NAME
+                        + " WHERE " + ItemEntry._ID + " = ?4 AND " + ItemDbHelper.SELECTION_LIVE
+                        + " AND " + ItemEntry.COLUMN_ITEM_QUANTITY + " != ?1";
+            default:
+                int mask = shape - UPDATE_BY_ID;
+                StringBuilder sql = new StringBuilder("UPDATE ")
+                        .append(ItemEntry.TABLE_NAME).append(" SET ");
+                String separator = "";
+                for (int i = 0; i < ITEM_COLUMNS.length; i++) {
+                    if ((mask & (1 << i)) != 0) {
+                        sql.append(separator).append(ITEM_COLUMNS[i]).append(" = ?");
+                        separator = ", ";
+                    }
+                }
+                return sql.append(" WHERE ").append(ItemEntry._ID).append(" = ? AND ")
+                        .append(ItemDbHelper.SELECTION_LIVE).toString();
+        }
+    }
+
+    /**
+     * One thread's statements.
+     */
+    private static final class Pool {
+        final SQLiteDatabase database;
+        final SQLiteStatement[] statements = new SQLiteStatement[SHAPE_COUNT];
+
+        /** Set once the statements are closed, possibly by another thread */
+        volatile boolean closed;
+
+        Pool(SQLiteDatabase database) {
+            this.database = database;
+        }
+
+        void close() {
+            closed = true;
+            for (SQLiteStatement statement : statements) {
+                if (statement != null) {
+                    statement.close();
+                }
+            }
+        }
+    }
+}
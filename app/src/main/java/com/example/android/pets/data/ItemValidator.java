@@ -0,0 +1,207 @@
+package com.example.android.pets.data;
+
+import android.content.ContentValues;
+
+import com.example.android.pets.data.ItemContract.ItemEntry;
+import com.example.android.pets.data.ItemContract.SupplierEntry;
+
+/**
+ * Checks the values written for items and suppliers against a fixed rule per column, so the
+ * insert, update, bulk insert and import paths all apply the same checks. The rules are set
+ * up once from the contract; checking a value only looks at its type and contents and doesn't
+ * convert it to a String. Phone numbers are normalized as they are checked.
+ *
+ * Every column is checked, so one pass finds every problem with a write. The result is a mask
+ * with bit i set if the value for column i broke its rule, and {@link #describe} only builds a
+ * message from it when there is something to report.
+ */
+final class ItemValidator {
+
+    /** Rule: a non-empty string */
+    private static final int RULE_TEXT = 0;
+
+    /** Rule: an integral number that isn't negative */
+    private static final int RULE_WHOLE_NUMBER = 1;
+
+    /** Rule: a phone number, which is replaced by its normalized form */
+    private static final int RULE_PHONE = 2;
+
+    /** Rules for the columns an item is written with */
+    static final ItemValidator ITEMS = new ItemValidator(
+            new String[] {
+                    ItemEntry.COLUMN_ITEM_NAME,
+                    ItemEntry.COLUMN_ITEM_PRICE,
+                    ItemEntry.COLUMN_ITEM_QUANTITY,
+                    ItemEntry.COLUMN_ITEM_SUPPLIER_NAME,
+                    ItemEntry.COLUMN_ITEM_SUPPLIER_PHONE
+            },
+            new int[] { RULE_TEXT, RULE_WHOLE_NUMBER, RULE_WHOLE_NUMBER, RULE_TEXT, RULE_PHONE },
+            new String[] {
+                    "Item requires a name",
+                    "Item requires a price amount",
+                    "Item requires a quantity amount",
+                    "Item requires a supplier name",
+                    "Item requires a supplier phone number"
+            });
+
+    /** Rules for the columns a supplier is written with */
+    static final ItemValidator SUPPLIERS = new ItemValidator(
+            new String[] {
+                    SupplierEntry.COLUMN_SUPPLIER_NAME,
+                    SupplierEntry.COLUMN_SUPPLIER_PHONE
+            },
+            new int[] { RULE_TEXT, RULE_PHONE },
+            new String[] {
+                    "Supplier requires a name",
+                    "Supplier requires a phone number"
+            });
+
+    private final String[] mColumns;
+    private final int[] mRules;
+    private final String[] mMessages;
+
+    private ItemValidator(String[] columns, int[] rules, String[] messages) {
+        mColumns = columns;
+        mRules = rules;
+        mMessages = messages;
+    }
+
+    /**
+     * Return the checked columns, in the order of the bits of a result and of the fields
+     * passed to {@link #check(Object[])}. The array is shared and must not be modified.
+     */
+    String[] getColumns() {
+        return mColumns;
+    }
+
+    /**
+     * Check the values for the checked columns. Phone numbers are replaced by their normalized
+     * form in the values.
+     *
+     * @param requireAll true if every checked column must have a value, as for an insert, or
+     *                   false to only check the columns present, as for an update
+     * @return the mask of columns that broke their rule, or 0 if the values are valid
+     */
+    int check(ContentValues values, boolean requireAll) {
+        int violations = 0;
+        for (int i = 0; i < mColumns.length; i++) {
+            Object value = values.get(mColumns[i]);
+            if (value == null && !values.containsKey(mColumns[i])) {
+                if (requireAll) {
+                    violations |= 1 << i;
+                }
+                continue;
+            }
+            Object checked = checkValue(mRules[i], value);
+            if (checked == null) {
+                violations |= 1 << i;
+            } else if (checked != value) {
+                values.put(mColumns[i], (String) checked);
+            }
+        }
+        return violations;
+    }
+
+    /**
+     * Check a value for every checked column, given in {@link #getColumns} order. Phone
+     * numbers are replaced by their normalized form in the array.
+     *
+     * @return the mask of columns that broke their rule, or 0 if the fields are valid
+     */
+    int check(Object[] fields) {
+        int violations = 0;
+        for (int i = 0; i < mColumns.length; i++) {
+            Object checked = checkValue(mRules[i], fields[i]);
+            if (checked == null) {
+                violations |= 1 << i;
+            } else {
+                fields[i] = checked;
+            }
+        }
+        return violations;
+    }
+
+    /**
+     * Like {@link #check(ContentValues, boolean)}, but throw if the values are invalid.
+     *
+     * @throws IllegalArgumentException describing every broken rule
+     */
+    void checkOrThrow(ContentValues values, boolean requireAll) {
+        int violations = check(values, requireAll);
+        if (violations != 0) {
+            throw new IllegalArgumentException(describe(violations));
+        }
+    }
+
+    /**
+     * Like {@link #check(Object[])}, but throw if the fields are invalid.
+     *
+     * @throws IllegalArgumentException describing every broken rule
+     */
+    void checkOrThrow(Object[] fields) {
+        int violations = check(fields);
+        if (violations != 0) {
+            throw new IllegalArgumentException(describe(violations));
+        }
+    }
+
+    /**
+     * Return the messages for the broken rules in a check result, separated by "; ".
+     */
+    String describe(int violations) {
+        StringBuilder description = new StringBuilder();
+        for (int i = 0; i < mMessages.length; i++) {
+            if ((violations & (1 << i)) != 0) {
+                if (description.length() > 0) {
+                    description.append("; ");
+                }
+                description.append(mMessages[i]);
+            }
+        }
+        return description.toString();
+    }
+
+    /**
+     * Return the value to store if it passes the rule, which is the value itself unless it is
+     * a phone number that had to be normalized, or null if it doesn't pass.
+     */
+    private static Object checkValue(int rule, Object value) {
+        switch (rule) {
+            case RULE_TEXT:
+                return value instanceof String && !((String) value).isEmpty() ? value : null;
+            case RULE_WHOLE_NUMBER:
+                // Prices are stored in cents, so fractional values are refused rather than
+                // silently truncated
+                return (value instanceof Long || value instanceof Integer
+                        || value instanceof Short || value instanceof Byte)
+                        && ((Number) value).longValue() >= 0 ? value : null;
+            case RULE_PHONE:
+                // Most phones arrive normalized already, e.g. from an export, and are kept as is
+                return isNormalizedPhone(value) ? value : ItemEntry.normalizePhone(value);
+            default:
+                throw new IllegalStateException("Unknown rule " + rule);
+        }
+    }
+
+    /**
+     * Return whether the value is a phone number in the form
+     * {@link ItemEntry#normalizePhone} produces: digits with an optional leading "+".
+     */
+    private static boolean isNormalizedPhone(Object value) {
+        if (!(value instanceof String)) {
+            return false;
+        }
+        String phone = (String) value;
+        int start = phone.startsWith("+") ? 1 : 0;
+        if (phone.length() == start) {
+            return false;
+        }
+        for (int i = start; i < phone.length(); i++) {
+            char c = phone.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+}
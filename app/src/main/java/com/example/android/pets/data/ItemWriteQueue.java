@@ -0,0 +1,281 @@
+package com.example.android.pets.data;
+
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.OperationApplicationException;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.RemoteException;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Process-wide queue that writes items to the provider off the UI thread. All writes are made
+ * by a single background thread, which takes every write queued at the time and applies them
+ * as one batch, so a burst of saves costs one transaction instead of one each.
+ *
+ * The queue belongs to the process rather than to an activity, so a write carries on if the
+ * activity that submitted it is finished or recreated. Callbacks run on the main thread and
+ * should only hold on to the application context.
+ */
+public final class ItemWriteQueue {
+
+    private static final String LOG_TAG = ItemWriteQueue.class.getSimpleName();
+
+    /** Largest number of writes applied in one transaction */
+    private static final int MAX_BATCH_SIZE = 100;
+
+    /** Kinds of queued write */
+    private static final int WRITE_INSERT = 0;
+    private static final int WRITE_UPDATE = 1;
+    private static final int WRITE_DELETE = 2;
+
+    /**
+     * Receives the result of a write on the main thread.
+     */
+    public interface Callback {
+        /**
+         * Called once the write has been applied. The result holds the URI of an inserted item
+         * or the number of updated or deleted rows, or is null if the write failed.
+         */
+        void onWriteComplete(ContentProviderResult result);
+    }
+
+    private static ItemWriteQueue sInstance;
+
+    private final ContentResolver mResolver;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final Executor mWriter = Executors.newSingleThreadExecutor();
+    private final LinkedBlockingQueue<PendingWrite> mPending = new LinkedBlockingQueue<>();
+
+    /** Whether a drain of {@link #mPending} has been handed to the writer thread */
+    private final AtomicBoolean mDrainScheduled = new AtomicBoolean();
+
+    private final Runnable mDrain = new Runnable() {
+        @Override
+        public void run() {
+            drain();
+        }
+    };
+
+    private ItemWriteQueue(Context context) {
+        mResolver = context.getContentResolver();
+    }
+
+    /**
+     * Return the queue for this process.
+     */
+    public static synchronized ItemWriteQueue getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new ItemWriteQueue(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    /**
+     * Check the values of a new item against the rules the provider applies, without writing
+     * anything, so a screen can report bad input before queueing the insert rather than after.
+     *
+     * @return null if the values are valid, or a description of every broken rule
+     */
+    public static String checkInsert(ContentValues values) {
+        // Check a copy, as checking normalizes the phone in the values
+        int violations = ItemValidator.ITEMS.check(new ContentValues(values), true);
+        return violations == 0 ? null : ItemValidator.ITEMS.describe(violations);
+    }
+
+    /**
+     * Queue the insertion of a new item.
+     *
+     * @param callback notified on the main thread when the insert is done, or null
+     * @return a future holding the result, as described in {@link Callback#onWriteComplete}
+     */
+    public Future<ContentProviderResult> insert(ContentValues values, Callback callback) {
+        return submit(new PendingWrite(WRITE_INSERT, ItemContract.ItemEntry.CONTENT_URI, values,
+                callback));
+    }
+
+    /**
+     * Queue an update of the item or items at the given URI.
+     *
+     * @param callback notified on the main thread when the update is done, or null
+     * @return a future holding the result, as described in {@link Callback#onWriteComplete}
+     */
+    public Future<ContentProviderResult> update(Uri uri, ContentValues values,
+                                                Callback callback) {
+        return submit(new PendingWrite(WRITE_UPDATE, uri, values, callback));
+    }
+
+    /**
+     * Queue the deletion of the item or items at the given URI, such as every item for
+     * {@link ItemContract.ItemEntry#CONTENT_URI}.
+     *
+     * @param callback notified on the main thread when the delete is done, or null
+     * @return a future holding the result, as described in {@link Callback#onWriteComplete}
+     */
+    public Future<ContentProviderResult> delete(Uri uri, Callback callback) {
+        return submit(new PendingWrite(WRITE_DELETE, uri, null, callback));
+    }
+
+    private Future<ContentProviderResult> submit(PendingWrite write) {
+        mPending.add(write);
+        if (mDrainScheduled.compareAndSet(false, true)) {
+            mWriter.execute(mDrain);
+        }
+        return write;
+    }
+
+    /**
+     * Apply everything that is queued, in batches. Runs on the writer thread.
+     */
+    private void drain() {
+        // Clear the flag first, so a write queued while this runs schedules another drain
+        // rather than being missed
+        mDrainScheduled.set(false);
+        ArrayList<PendingWrite> batch = new ArrayList<>(MAX_BATCH_SIZE);
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>(MAX_BATCH_SIZE);
+        while (mPending.drainTo(batch, MAX_BATCH_SIZE) > 0) {
+            for (PendingWrite write : batch) {
+                operations.add(write.toOperation());
+            }
+            applyBatch(batch, operations);
+            batch.clear();
+            operations.clear();
+        }
+    }
+
+    /**
+     * Apply a batch in one transaction. If any write in it fails, the transaction is rolled back
+     * and the writes are applied one at a time instead, so one bad write doesn't lose the rest.
+     * Every write in the batch is completed, with a null result if it failed.
+     */
+    private void applyBatch(ArrayList<PendingWrite> batch,
+                            ArrayList<ContentProviderOperation> operations) {
+        ContentProviderResult[] results = null;
+        try {
+            results = mResolver.applyBatch(ItemContract.CONTENT_AUTHORITY, operations);
+        } catch (RemoteException e) {
+            Log.e(LOG_TAG, "Failed to apply " + operations.size() + " writes", e);
+        } catch (OperationApplicationException e) {
+            Log.w(LOG_TAG, "Batch failed, applying writes one at a time", e);
+        } catch (RuntimeException e) {
+            // Invalid values and database errors, such as a constraint failure
+            Log.w(LOG_TAG, "Batch failed, applying writes one at a time", e);
+        }
+
+        for (int i = 0; i < batch.size(); i++) {
+            PendingWrite write = batch.get(i);
+            complete(write, results != null ? results[i] : applySingle(write));
+        }
+    }
+
+    private ContentProviderResult applySingle(PendingWrite write) {
+        try {
+            switch (write.kind) {
+                case WRITE_INSERT:
+                    Uri uri = mResolver.insert(write.uri, write.values);
+                    return uri != null ? new ContentProviderResult(uri) : null;
+                case WRITE_UPDATE:
+                    return new ContentProviderResult(
+                            mResolver.update(write.uri, write.values, null, null));
+                default:
+                    return new ContentProviderResult(mResolver.delete(write.uri, null, null));
+            }
+        } catch (RuntimeException e) {
+            Log.e(LOG_TAG, "Failed to write " + write.uri, e);
+            return null;
+        }
+    }
+
+    private void complete(final PendingWrite write, final ContentProviderResult result) {
+        write.set(result);
+        if (write.callback != null) {
+            mMainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    write.callback.onWriteComplete(result);
+                }
+            });
+        }
+    }
+
+    /**
+     * A queued write and the future its result is delivered through. Writes can't be cancelled.
+     */
+    private static final class PendingWrite implements Future<ContentProviderResult> {
+        final int kind;
+        final Uri uri;
+        final ContentValues values;
+        final Callback callback;
+        private final CountDownLatch mDone = new CountDownLatch(1);
+        private volatile ContentProviderResult mResult;
+
+        PendingWrite(int kind, Uri uri, ContentValues values, Callback callback) {
+            this.kind = kind;
+            this.uri = uri;
+            // Copy the values, so the caller can't change them while the write is queued.
+            // Deletes have none.
+            this.values = values != null ? new ContentValues(values) : null;
+            this.callback = callback;
+        }
+
+        ContentProviderOperation toOperation() {
+            switch (kind) {
+                case WRITE_INSERT:
+                    return ContentProviderOperation.newInsert(uri).withValues(values).build();
+                case WRITE_UPDATE:
+                    return ContentProviderOperation.newUpdate(uri).withValues(values).build();
+                default:
+                    return ContentProviderOperation.newDelete(uri).build();
+            }
+        }
+
+        void set(ContentProviderResult result) {
+            mResult = result;
+            mDone.countDown();
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            return false;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+
+        @Override
+        public boolean isDone() {
+            return mDone.getCount() == 0;
+        }
+
+        @Override
+        public ContentProviderResult get() throws InterruptedException {
+            mDone.await();
+            return mResult;
+        }
+
+        @Override
+        public ContentProviderResult get(long timeout, TimeUnit unit)
+                throws InterruptedException, TimeoutException {
+            if (!mDone.await(timeout, unit)) {
+                throw new TimeoutException();
+            }
+            return mResult;
+        }
+    }
+}
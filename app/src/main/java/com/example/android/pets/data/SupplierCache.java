@@ -0,0 +1,58 @@
+package com.example.android.pets.data;
+
+import java.util.HashMap;
+
+/**
+ * In-process map from supplier name to the supplier's ID and phone, so items can be written
+ * with the ID of their supplier without looking the supplier up for every row. An import
+ * touching a few dozen suppliers only queries each of them once.
+ *
+ * Entries may be added inside a transaction, so the owner must {@link #clear} the cache if a
+ * transaction rolls back, or if suppliers are changed other than through {@link #put}.
+ *
+ * All methods are thread-safe.
+ */
+class SupplierCache {
+
+    /** Number of suppliers above which the cache starts over, to keep it bounded */
+    private static final int MAX_SIZE = 1024;
+
+    /**
+     * A supplier's ID and phone.
+     */
+    static final class Supplier {
+        final long id;
+        final String phone;
+
+        Supplier(long id, String phone) {
+            this.id = id;
+            this.phone = phone;
+        }
+    }
+
+    private final HashMap<String, Supplier> mSuppliers = new HashMap<>();
+
+    /**
+     * Return the supplier with the given name, or null if it isn't cached.
+     */
+    synchronized Supplier get(String name) {
+        return mSuppliers.get(name);
+    }
+
+    /**
+     * Cache the supplier with the given name.
+     */
+    synchronized void put(String name, Supplier supplier) {
+        if (mSuppliers.size() >= MAX_SIZE && !mSuppliers.containsKey(name)) {
+            mSuppliers.clear();
+        }
+        mSuppliers.put(name, supplier);
+    }
+
+    /**
+     * Drop every cached supplier.
+     */
+    synchronized void clear() {
+        mSuppliers.clear();
+    }
+}
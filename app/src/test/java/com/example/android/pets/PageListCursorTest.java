@@ -0,0 +1,76 @@
+package com.example.android.pets;
+
+import android.database.Cursor;
+import android.database.MatrixCursor;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+public class PageListCursorTest {
+
+    private static final String[] COLUMNS = { "_id", "name" };
+
+    @Test
+    public void pagesReadAsOneList() {
+        PageListCursor cursor = new PageListCursor(new Cursor[] {
+                page(1, "Pen", 2, "Ink"), page(), page(3, "Paper", 4, "Glue", 5, "Tape") });
+
+        assertEquals(5, cursor.getCount());
+        assertArrayEquals(COLUMNS, cursor.getColumnNames());
+        List<String> names = new ArrayList<>();
+        while (cursor.moveToNext()) {
+            assertEquals(names.size() + 1, cursor.getLong(0));
+            names.add(cursor.getString(1));
+        }
+        assertEquals(Arrays.asList("Pen", "Ink", "Paper", "Glue", "Tape"), names);
+        assertTrue(cursor.isAfterLast());
+    }
+
+    @Test
+    public void movesBackAcrossPages() {
+        PageListCursor cursor = new PageListCursor(new Cursor[] {
+                page(1, "Pen", 2, "Ink"), page(3, "Paper") });
+
+        assertTrue(cursor.moveToLast());
+        assertEquals("Paper", cursor.getString(1));
+        assertTrue(cursor.moveToPrevious());
+        assertEquals("Ink", cursor.getString(1));
+        assertTrue(cursor.moveToPosition(0));
+        assertEquals("Pen", cursor.getString(1));
+        assertFalse(cursor.moveToPosition(3));
+    }
+
+    @Test
+    public void closingLeavesThePagesOpen() {
+        Cursor first = page(1, "Pen");
+        Cursor second = page(2, "Ink");
+        PageListCursor cursor = new PageListCursor(new Cursor[] { first, second });
+
+        cursor.close();
+
+        assertFalse(first.isClosed());
+        assertFalse(second.isClosed());
+    }
+
+    /**
+     * Return a page holding rows of the given ID and name pairs.
+     */
+    private static Cursor page(Object... idsAndNames) {
+        MatrixCursor page = new MatrixCursor(COLUMNS);
+        for (int i = 0; i < idsAndNames.length; i += 2) {
+            page.addRow(new Object[] { idsAndNames[i], idsAndNames[i + 1] });
+        }
+        return page;
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.android.pets.benchmark;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Times repeated runs of an operation and collects the results of a benchmark class into one
+ * JSON file, so two runs can be diffed.
+ *
+ * Each measurement reports operations per second, latency percentiles and, where the JVM can
+ * count them, bytes allocated per operation on the measuring thread.
+ */
+final class BenchmarkRecorder {
+
+    /** Runs made before measuring, so the JIT and the database caches have warmed up */
+    private static final int WARMUP_RUNS = 50;
+
+    /**
+     * One benchmarked operation. {@link #run} is called with a different index each time, so
+     * operations can touch a different row on each run.
+     */
+    interface Operation {
+        void run(int index) throws Exception;
+    }
+
+    private final List<String> mResults = new ArrayList<String>();
+
+    /**
+     * Run the operation {@code runs} times after a warm-up and record the timings under the
+     * given name and dataset size.
+     */
+    void measure(String name, int datasetSize, int runs, Operation operation) throws Exception {
+        for (int i = 0; i < WARMUP_RUNS; i++) {
+            operation.run(i);
+        }
+
+        long[] nanos = new long[runs];
+        long allocatedBefore = getAllocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < runs; i++) {
+            long runStart = System.nanoTime();
+            operation.run(WARMUP_RUNS + i);
+            nanos[i] = System.nanoTime() - runStart;
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocatedAfter = getAllocatedBytes();
+
+        Arrays.sort(nanos);
+        StringBuilder result = new StringBuilder();
+        result.append("{\"name\":\"").append(name).append('"')
+                .append(",\"datasetSize\":").append(datasetSize)
+                .append(",\"runs\":").append(runs)
+                .append(",\"opsPerSecond\":")
+                .append(String.format(Locale.US, "%.1f", runs * 1e9 / elapsed))
+                .append(",\"p50Nanos\":").append(percentile(nanos, 50))
+                .append(",\"p90Nanos\":").append(percentile(nanos, 90))
+                .append(",\"p99Nanos\":").append(percentile(nanos, 99))
+                .append(",\"maxNanos\":").append(nanos[runs - 1]);
+        if (allocatedBefore >= 0 && allocatedAfter >= 0) {
+            result.append(",\"bytesAllocatedPerOp\":")
+                    .append((allocatedAfter - allocatedBefore) / runs);
+        }
+        result.append('}');
+        mResults.add(result.toString());
+    }
+
+    /**
+     * Write every recorded result to the file as a JSON array, creating its directory if
+     * needed. Does nothing if the file is null.
+     */
+    void writeTo(File file) throws IOException {
+        if (file == null) {
+            return;
+        }
+        File directory = file.getParentFile();
+        if (directory != null && !directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Unable to create " + directory);
+        }
+        Writer out = new FileWriter(file);
+        try {
+            out.write("[\n");
+            for (int i = 0; i < mResults.size(); i++) {
+                out.write("  ");
+                out.write(mResults.get(i));
+                out.write(i < mResults.size() - 1 ? ",\n" : "\n");
+            }
+            out.write("]\n");
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Return the given percentile of the sorted timings, using the nearest-rank method.
+     */
+    private static long percentile(long[] sorted, int percent) {
+        int rank = (int) Math.ceil(percent / 100.0 * sorted.length);
+        return sorted[Math.max(rank, 1) - 1];
+    }
+
+    /**
+     * Return the number of bytes allocated so far by the current thread, or -1 if the JVM
+     * doesn't count them.
+     */
+    private static long getAllocatedBytes() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (!(threads instanceof com.sun.management.ThreadMXBean)) {
+            return -1;
+        }
+        com.sun.management.ThreadMXBean counting = (com.sun.management.ThreadMXBean) threads;
+        if (!counting.isThreadAllocatedMemorySupported()
+                || !counting.isThreadAllocatedMemoryEnabled()) {
+            return -1;
+        }
+        return counting.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
@@ -0,0 +1,563 @@
+package com.example.android.pets.benchmark;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.net.Uri;
+
+import com.example.android.pets.data.ItemContract;
+import com.example.android.pets.data.ItemContract.ItemEntry;
+import com.example.android.pets.data.ItemContract.MovementEntry;
+import com.example.android.pets.data.ItemContract.SupplierEntry;
+import com.example.android.pets.data.ItemCsv;
+import com.example.android.pets.data.ItemMovementGenerator;
+import com.example.android.pets.data.ItemProvider;
+
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.io.File;
+import java.io.StringReader;
+
+/**
+ * Benchmarks the provider's write and read paths on the host JVM, against datasets of several
+ * sizes. Each test starts from an empty database holding {@code size} items.
+ *
+ * Run with {@code ./gradlew testDebugUnitTest -Pbenchmark}; the results are written as JSON to
+ * app/build/benchmark/results.json. The benchmarks are left out of ordinary test runs.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class ItemProviderBenchmark {
+
+    /** Numbers of items in the table while each benchmark runs */
+    private static final int[] DATASET_SIZES = { 100, 1000, 10000 };
+
+    /** Measured runs of each single-row operation */
+    private static final int RUNS = 1000;
+
+    /** Measured runs of each operation that reads or writes a whole dataset */
+    private static final int BULK_RUNS = 20;
+
+    /** Items per bulk insert, matching the chunks of the CSV import */
+    private static final int BULK_SIZE = 500;
+
+    /** Movements a day in the year of history the rollup benchmarks read */
+    private static final int[] MOVEMENTS_PER_DAY = { 1, 10, 100 };
+
+    private static final long MILLIS_PER_DAY = 24 * 60 * 60 * 1000L;
+
+    /** Rows per page of the paging benchmarks */
+    private static final int PAGE_SIZE = 50;
+
+    /** Number of items the cached lookups read, few enough for the item cache to hold */
+    private static final int HOT_ITEM_COUNT = 16;
+
+    /** Number of suppliers the items are spread over */
+    private static final int SUPPLIER_COUNT = 20;
+
+    /** Results of every benchmark in this class, written out once they have all run */
+    private static final BenchmarkRecorder sRecorder = new BenchmarkRecorder();
+
+    private ContentResolver mResolver;
+
+    @Before
+    public void setUp() {
+        Robolectric.buildContentProvider(ItemProvider.class)
+                .create(ItemContract.CONTENT_AUTHORITY);
+        mResolver = RuntimeEnvironment.application.getContentResolver();
+    }
+
+    @AfterClass
+    public static void writeResults() throws Exception {
+        String output = System.getProperty("benchmark.output");
+        sRecorder.writeTo(output != null ? new File(output) : null);
+    }
+
+    @Test
+    public void insertItem() throws Exception {
+        for (int size : DATASET_SIZES) {
+            resetItems(size);
+            sRecorder.measure("insertItem", size, RUNS, new BenchmarkRecorder.Operation() {
+                @Override
+                public void run(int index) {
+                    mResolver.insert(ItemEntry.CONTENT_URI, newItem(index));
+                }
+            });
+        }
+    }
+
+    @Test
+    public void updateItem() throws Exception {
+        for (int size : DATASET_SIZES) {
+            final long[] ids = resetItems(size);
+            sRecorder.measure("updateItem", size, RUNS, new BenchmarkRecorder.Operation() {
+                @Override
+                public void run(int index) {
+                    ContentValues values = new ContentValues();
+                    values.put(ItemEntry.COLUMN_ITEM_QUANTITY, index);
+                    mResolver.update(ItemEntry.buildItemUri(ids[index % ids.length]), values,
+                            null, null);
+                }
+            });
+        }
+    }
+
+    @Test
+    public void updatePrice() throws Exception {
+        for (int size : DATASET_SIZES) {
+            final long[] ids = resetItems(size);
+            // An update of one item by its URI binds a statement compiled once per thread
+            sRecorder.measure("updatePricePrecompiled", size, RUNS,
+                    new BenchmarkRecorder.Operation() {
+                        @Override
+                        public void run(int index) {
+                            mResolver.update(ItemEntry.buildItemUri(ids[index % ids.length]),
+                                    newPrice(index), null, null);
+                        }
+                    });
+            // The same update through a selection is compiled by SQLiteDatabase every time
+            sRecorder.measure("updatePriceCompiled", size, RUNS,
+                    new BenchmarkRecorder.Operation() {
+                        @Override
+                        public void run(int index) {
+                            mResolver.update(ItemEntry.CONTENT_URI, newPrice(index),
+                                    ItemEntry._ID + " = ?",
+                                    new String[] { String.valueOf(ids[index % ids.length]) });
+                        }
+                    });
+        }
+    }
+
+    @Test
+    public void bulkInsert() throws Exception {
+        for (int size : DATASET_SIZES) {
+            resetItems(size);
+            final ContentValues[] chunk = new ContentValues[BULK_SIZE];
+            for (int i = 0; i < BULK_SIZE; i++) {
+                chunk[i] = newItem(i);
+            }
+            sRecorder.measure("bulkInsert" + BULK_SIZE, size, BULK_RUNS,
+                    new BenchmarkRecorder.Operation() {
+                        @Override
+                        public void run(int index) {
+                            mResolver.bulkInsert(ItemEntry.CONTENT_URI, chunk);
+                        }
+                    });
+        }
+    }
+
+    @Test
+    public void importCsv() throws Exception {
+        // Here the dataset size is the number of rows in the file. Each run starts from an
+        // empty table, so the timings include deleting the rows of the previous run.
+        final int workerCount = Runtime.getRuntime().availableProcessors();
+        for (int size : DATASET_SIZES) {
+            final String csv = newCsv(size);
+            sRecorder.measure("importCsvSequential", size, BULK_RUNS,
+                    new BenchmarkRecorder.Operation() {
+                        @Override
+                        public void run(int index) throws Exception {
+                            mResolver.delete(ItemEntry.CONTENT_URI, null, null);
+                            ItemCsv.importItems(mResolver, new StringReader(csv), null);
+                        }
+                    });
+            sRecorder.measure("importCsvParallel", size, BULK_RUNS,
+                    new BenchmarkRecorder.Operation() {
+                        @Override
+                        public void run(int index) throws Exception {
+                            mResolver.delete(ItemEntry.CONTENT_URI, null, null);
+                            ItemCsv.importItems(mResolver, new StringReader(csv), workerCount,
+                                    null);
+                        }
+                    });
+        }
+    }
+
+    @Test
+    public void queryItemId() throws Exception {
+        for (int size : DATASET_SIZES) {
+            final long[] ids = resetItems(size);
+            sRecorder.measure("queryItemId", size, RUNS, new BenchmarkRecorder.Operation() {
+                @Override
+                public void run(int index) {
+                    Cursor cursor = mResolver.query(
+                            ItemEntry.buildItemUri(ids[(index * 31) % ids.length]),
+                            null, null, null, null);
+                    try {
+                        cursor.moveToFirst();
+                    } finally {
+                        cursor.close();
+                    }
+                }
+            });
+        }
+    }
+
+    @Test
+    public void queryItemIdCached() throws Exception {
+        for (int size : DATASET_SIZES) {
+            final long[] ids = resetItems(size);
+            // A few items read over and over, as when flipping between editor screens, so
+            // nearly every lookup is a cache hit
+            sRecorder.measure("queryItemIdCached", size, RUNS,
+                    new BenchmarkRecorder.Operation() {
+                        @Override
+                        public void run(int index) {
+                            readAll(mResolver.query(
+                                    ItemEntry.buildItemUri(ids[index % HOT_ITEM_COUNT]),
+                                    null, null, null, null));
+                        }
+                    });
+            // The same items looked up through a selection, which the cache doesn't serve
+            sRecorder.measure("queryItemIdUncached", size, RUNS,
+                    new BenchmarkRecorder.Operation() {
+                        @Override
+                        public void run(int index) {
+                            readAll(mResolver.query(ItemEntry.CONTENT_URI, null,
+                                    ItemEntry._ID + " = ?", new String[] {
+                                            String.valueOf(ids[index % HOT_ITEM_COUNT]) },
+                                    null));
+                        }
+                    });
+        }
+    }
+
+    @Test
+    public void queryItems() throws Exception {
+        for (int size : DATASET_SIZES) {
+            resetItems(size);
+            sRecorder.measure("queryItems", size, BULK_RUNS, new BenchmarkRecorder.Operation() {
+                @Override
+                public void run(int index) {
+                    iterate(ItemEntry.CONTENT_URI);
+                }
+            });
+        }
+    }
+
+    @Test
+    public void iterateList() throws Exception {
+        for (int size : DATASET_SIZES) {
+            resetItems(size);
+            final Uri listUri = ItemEntry.CONTENT_LIST_URI.buildUpon()
+                    .appendQueryParameter(ItemContract.QUERY_PARAMETER_LIMIT,
+                            String.valueOf(size))
+                    .build();
+            sRecorder.measure("iterateList", size, BULK_RUNS, new BenchmarkRecorder.Operation() {
+                @Override
+                public void run(int index) {
+                    iterate(listUri);
+                }
+            });
+        }
+    }
+
+    @Test
+    public void queryByName() throws Exception {
+        for (int size : DATASET_SIZES) {
+            resetItems(size);
+            measureNameLookup("queryByName", size, ItemEntry.COLUMN_ITEM_NAME + " = ?");
+            // A unary + keeps SQLite from using the index on the name, for comparison
+            measureNameLookup("queryByNameNoIndex", size,
+                    "+" + ItemEntry.COLUMN_ITEM_NAME + " = ?");
+        }
+    }
+
+    @Test
+    public void querySupplierItems() throws Exception {
+        for (int size : DATASET_SIZES) {
+            resetItems(size);
+            final long[] supplierIds = querySupplierIds();
+            sRecorder.measure("querySupplierItems", size, BULK_RUNS,
+                    new BenchmarkRecorder.Operation() {
+                        @Override
+                        public void run(int index) {
+                            iterate(SupplierEntry.buildSupplierItemsUri(
+                                    supplierIds[index % supplierIds.length]));
+                        }
+                    });
+        }
+    }
+
+    @Test
+    public void queryLowStock() throws Exception {
+        for (int size : DATASET_SIZES) {
+            resetItems(size);
+            final Uri lowStockUri = ItemEntry.CONTENT_LOW_STOCK_URI.buildUpon()
+                    .appendQueryParameter(ItemContract.QUERY_PARAMETER_THRESHOLD, "2")
+                    .build();
+            sRecorder.measure("queryLowStock", size, BULK_RUNS,
+                    new BenchmarkRecorder.Operation() {
+                        @Override
+                        public void run(int index) {
+                            iterate(lowStockUri);
+                        }
+                    });
+        }
+    }
+
+    @Test
+    public void searchItems() throws Exception {
+        for (final int size : DATASET_SIZES) {
+            resetItems(size);
+            sRecorder.measure("searchFullText", size, RUNS, new BenchmarkRecorder.Operation() {
+                @Override
+                public void run(int index) {
+                    iterate(ItemEntry.buildSearchUri(searchTerm(index, size)));
+                }
+            });
+            // The same word-prefix match on item and supplier names done with LIKE, which has
+            // to scan every item
+            final String selection = ItemEntry.COLUMN_ITEM_NAME + " LIKE ?1 OR "
+                    + ItemEntry.COLUMN_ITEM_NAME + " LIKE ?2 OR "
+                    + ItemEntry.COLUMN_ITEM_SUPPLIER_NAME + " LIKE ?1 OR "
+                    + ItemEntry.COLUMN_ITEM_SUPPLIER_NAME + " LIKE ?2";
+            sRecorder.measure("searchLike", size, RUNS, new BenchmarkRecorder.Operation() {
+                @Override
+                public void run(int index) {
+                    String term = searchTerm(index, size);
+                    readAll(mResolver.query(ItemEntry.CONTENT_URI, null, selection,
+                            new String[] { term + "%", "% " + term + "%" },
+                            ItemEntry.COLUMN_ITEM_NAME));
+                }
+            });
+        }
+    }
+
+    /**
+     * Measure looking items up by name with the given selection, which takes the name.
+     */
+    private void measureNameLookup(String name, final int size, final String selection)
+            throws Exception {
+        sRecorder.measure(name, size, RUNS, new BenchmarkRecorder.Operation() {
+            @Override
+            public void run(int index) {
+                Cursor cursor = mResolver.query(ItemEntry.CONTENT_URI, null, selection,
+                        new String[] { "Item " + (index * 31) % size }, null);
+                try {
+                    cursor.moveToFirst();
+                } finally {
+                    cursor.close();
+                }
+            }
+        });
+    }
+
+    @Test
+    public void readLastPage() throws Exception {
+        for (int size : DATASET_SIZES) {
+            resetItems(size);
+
+            // Follow the next page URIs to the last page with rows, which starts after the key
+            // of the row before it
+            String next = ItemEntry.CONTENT_PAGE_URI.buildUpon()
+                    .appendQueryParameter(ItemContract.QUERY_PARAMETER_LIMIT,
+                            String.valueOf(PAGE_SIZE))
+                    .build().toString();
+            String lastPage = null;
+            while (next != null) {
+                Cursor cursor = mResolver.query(Uri.parse(next), null, null, null, null);
+                try {
+                    if (cursor.getCount() > 0) {
+                        lastPage = next;
+                    }
+                    next = cursor.getExtras().getString(ItemContract.EXTRA_NEXT_PAGE_URI);
+                } finally {
+                    cursor.close();
+                }
+            }
+            final Uri keysetUri = Uri.parse(lastPage);
+            sRecorder.measure("readLastPageKeyset", size, RUNS,
+                    new BenchmarkRecorder.Operation() {
+                        @Override
+                        public void run(int index) {
+                            iterate(keysetUri);
+                        }
+                    });
+
+            // The same page read with OFFSET, which steps over every row before it
+            final Uri offsetUri = ItemEntry.CONTENT_URI.buildUpon()
+                    .appendQueryParameter(ItemContract.QUERY_PARAMETER_LIMIT,
+                            String.valueOf(PAGE_SIZE))
+                    .appendQueryParameter(ItemContract.QUERY_PARAMETER_OFFSET,
+                            String.valueOf((size - 1) / PAGE_SIZE * PAGE_SIZE))
+                    .build();
+            sRecorder.measure("readLastPageOffset", size, RUNS,
+                    new BenchmarkRecorder.Operation() {
+                        @Override
+                        public void run(int index) {
+                            readAll(mResolver.query(offsetUri, null, null, null,
+                                    ItemEntry._ID));
+                        }
+                    });
+        }
+    }
+
+    @Test
+    public void rollupYear() throws Exception {
+        for (int perDay : MOVEMENTS_PER_DAY) {
+            resetItems(0);
+            final long id = ContentUris.parseId(mResolver.insert(ItemEntry.CONTENT_URI,
+                    newItem(0)));
+            long end = System.currentTimeMillis();
+            final long since = end - ItemMovementGenerator.YEAR_MILLIS;
+            int size = ItemMovementGenerator.generateYear(RuntimeEnvironment.application, id,
+                    perDay, end, perDay);
+
+            final Uri dayUri = MovementEntry.buildRollupUri(id, ItemContract.BUCKET_DAY, since);
+            sRecorder.measure("rollupDay", size, BULK_RUNS, new BenchmarkRecorder.Operation() {
+                @Override
+                public void run(int index) {
+                    iterate(dayUri);
+                }
+            });
+            final Uri hourUri = MovementEntry.buildRollupUri(id, ItemContract.BUCKET_HOUR,
+                    since);
+            sRecorder.measure("rollupHour", size, BULK_RUNS, new BenchmarkRecorder.Operation() {
+                @Override
+                public void run(int index) {
+                    iterate(hourUri);
+                }
+            });
+            // The daily totals added up from the movements themselves, as without the rollups
+            final Uri movementsUri = MovementEntry.buildMovementsUri(id);
+            sRecorder.measure("rollupDayFromMovements", size, BULK_RUNS,
+                    new BenchmarkRecorder.Operation() {
+                        @Override
+                        public void run(int index) {
+                            totalPerDay(movementsUri, since);
+                        }
+                    });
+        }
+    }
+
+    /**
+     * Read every row and column the URI returns, as a list adapter binding each row would.
+     */
+    private void iterate(Uri uri) {
+        readAll(mResolver.query(uri, null, null, null, null));
+    }
+
+    /**
+     * Read every row and column of the cursor, then close it.
+     */
+    private static void readAll(Cursor cursor) {
+        try {
+            int columnCount = cursor.getColumnCount();
+            while (cursor.moveToNext()) {
+                for (int i = 0; i < columnCount; i++) {
+                    cursor.getString(i);
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Read the movements since the given time and total the units in and out per day.
+     */
+    private void totalPerDay(Uri movementsUri, long since) {
+        int days = (int) (ItemMovementGenerator.YEAR_MILLIS / MILLIS_PER_DAY) + 1;
+        long[] unitsIn = new long[days];
+        long[] unitsOut = new long[days];
+        Cursor cursor = mResolver.query(movementsUri,
+                new String[] { MovementEntry.COLUMN_TIME, MovementEntry.COLUMN_DELTA },
+                MovementEntry.COLUMN_TIME + " >= ?", new String[] { String.valueOf(since) },
+                null);
+        try {
+            while (cursor.moveToNext()) {
+                int day = (int) ((cursor.getLong(0) - since) / MILLIS_PER_DAY);
+                long delta = cursor.getLong(1);
+                if (delta > 0) {
+                    unitsIn[day] += delta;
+                } else {
+                    unitsOut[day] -= delta;
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Return the word to search for on the given run: the number in the name of one of the
+     * {@code size} items, which also starts the numbers of some others.
+     */
+    private static String searchTerm(int index, int size) {
+        return String.valueOf((index * 31) % size);
+    }
+
+    /**
+     * Return the IDs of every supplier.
+     */
+    private long[] querySupplierIds() {
+        Cursor cursor = mResolver.query(SupplierEntry.CONTENT_URI,
+                new String[] { SupplierEntry._ID }, null, null, null);
+        try {
+            long[] ids = new long[cursor.getCount()];
+            for (int i = 0; cursor.moveToNext(); i++) {
+                ids[i] = cursor.getLong(0);
+            }
+            return ids;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Delete every item, then insert {@code size} new ones. Return their IDs.
+     */
+    private long[] resetItems(int size) {
+        mResolver.delete(ItemEntry.CONTENT_URI, null, null);
+        long[] ids = new long[size];
+        for (int i = 0; i < size; i++) {
+            ids[i] = ContentUris.parseId(mResolver.insert(ItemEntry.CONTENT_URI, newItem(i)));
+        }
+        return ids;
+    }
+
+    /**
+     * Return a CSV file of {@code size} items, with a header line.
+     */
+    private static String newCsv(int size) {
+        StringBuilder csv = new StringBuilder()
+                .append(ItemEntry.COLUMN_ITEM_NAME).append(',')
+                .append(ItemEntry.COLUMN_ITEM_PRICE).append(',')
+                .append(ItemEntry.COLUMN_ITEM_QUANTITY).append(',')
+                .append(ItemEntry.COLUMN_ITEM_SUPPLIER_NAME).append(',')
+                .append(ItemEntry.COLUMN_ITEM_SUPPLIER_PHONE).append('\n');
+        for (int i = 0; i < size; i++) {
+            csv.append("Item ").append(i)
+                    .append(',').append(1 + i % 9).append('.').append(10 + i % 90)
+                    .append(',').append(i % 50)
+                    .append(",Supplier ").append(i % SUPPLIER_COUNT)
+                    .append(",1800555").append(1000 + i % SUPPLIER_COUNT)
+                    .append('\n');
+        }
+        return csv.toString();
+    }
+
+    private static ContentValues newPrice(int index) {
+        ContentValues values = new ContentValues();
+        values.put(ItemEntry.COLUMN_ITEM_PRICE, 100 + index % 900);
+        return values;
+    }
+
+    private static ContentValues newItem(int index) {
+        ContentValues values = new ContentValues();
+        values.put(ItemEntry.COLUMN_ITEM_NAME, "Item " + index);
+        values.put(ItemEntry.COLUMN_ITEM_PRICE, 100 + index % 900);
+        values.put(ItemEntry.COLUMN_ITEM_QUANTITY, index % 50);
+        values.put(ItemEntry.COLUMN_ITEM_SUPPLIER_NAME, "Supplier " + index % SUPPLIER_COUNT);
+        values.put(ItemEntry.COLUMN_ITEM_SUPPLIER_PHONE,
+                "1800555" + (1000 + index % SUPPLIER_COUNT));
+        return values;
+    }
+}
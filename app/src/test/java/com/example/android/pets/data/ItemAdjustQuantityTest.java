@@ -0,0 +1,140 @@
+package com.example.android.pets.data;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.os.Bundle;
+
+import com.example.android.pets.data.ItemContract.ItemEntry;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks that quantity adjustments never take a quantity below zero, alone, in a sales ticket
+ * or when several sales race for the last items.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class ItemAdjustQuantityTest {
+
+    private ContentResolver mResolver;
+    private long mNotebookId;
+    private long mPenId;
+
+    @Before
+    public void setUp() {
+        mResolver = ItemTestData.createProvider();
+        mNotebookId = insert("Notebook", 5);
+        mPenId = insert("Pen", 2);
+    }
+
+    @Test
+    public void saleLowersQuantity() {
+        assertEquals(1, adjust(mNotebookId, -3));
+        assertEquals(2, quantity(mNotebookId));
+    }
+
+    @Test
+    public void saleOfEveryItemIsAllowed() {
+        assertEquals(1, adjust(mNotebookId, -5));
+        assertEquals(0, quantity(mNotebookId));
+    }
+
+    @Test
+    public void saleBelowZeroIsRefused() {
+        assertEquals(0, adjust(mNotebookId, -6));
+        assertEquals(5, quantity(mNotebookId));
+    }
+
+    @Test
+    public void adjustingMissingItemIsRefused() {
+        assertEquals(0, adjust(mPenId + 100, 1));
+    }
+
+    @Test
+    public void ticketIsAppliedWhole() {
+        Bundle result = adjustAll(new long[] { mNotebookId, mPenId }, new int[] { -1, -2 });
+        assertEquals(2, result.getInt(ItemContract.KEY_ROW_COUNT));
+        assertEquals(-1, result.getInt(ItemContract.KEY_FAILED_INDEX));
+        assertEquals(4, quantity(mNotebookId));
+        assertEquals(0, quantity(mPenId));
+    }
+
+    @Test
+    public void ticketWithOneShortItemChangesNothing() {
+        Bundle result = adjustAll(new long[] { mNotebookId, mPenId }, new int[] { -1, -3 });
+        assertEquals(0, result.getInt(ItemContract.KEY_ROW_COUNT));
+        assertEquals(1, result.getInt(ItemContract.KEY_FAILED_INDEX));
+        assertEquals(5, quantity(mNotebookId));
+        assertEquals(2, quantity(mPenId));
+    }
+
+    @Test
+    public void ticketLinesForTheSameItemAddUp() {
+        Bundle result = adjustAll(new long[] { mNotebookId, mNotebookId }, new int[] { -3, -3 });
+        assertEquals(1, result.getInt(ItemContract.KEY_FAILED_INDEX));
+        assertEquals(5, quantity(mNotebookId));
+    }
+
+    @Test
+    public void concurrentSalesNeverOversell() throws Exception {
+        final long id = insert("Limited edition", 100);
+        ExecutorService tills = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Integer>> sales = new ArrayList<>();
+            for (int i = 0; i < 150; i++) {
+                sales.add(tills.submit(new Callable<Integer>() {
+                    @Override
+                    public Integer call() {
+                        return adjust(id, -1);
+                    }
+                }));
+            }
+            int sold = 0;
+            for (Future<Integer> sale : sales) {
+                sold += sale.get();
+            }
+            assertEquals(100, sold);
+            assertEquals(0, quantity(id));
+        } finally {
+            tills.shutdown();
+        }
+    }
+
+    private long insert(String name, int quantity) {
+        return ContentUris.parseId(mResolver.insert(ItemEntry.CONTENT_URI,
+                ItemTestData.newItem(name, quantity)));
+    }
+
+    private long quantity(long id) {
+        return ItemTestData.queryLong(mResolver, ItemEntry.buildItemUri(id),
+                ItemEntry.COLUMN_ITEM_QUANTITY);
+    }
+
+    /** Return the row count the adjustment reports */
+    private int adjust(long id, int delta) {
+        Bundle extras = new Bundle();
+        extras.putLong(ItemContract.EXTRA_ID, id);
+        extras.putInt(ItemContract.EXTRA_DELTA, delta);
+        return mResolver.call(ItemEntry.CONTENT_URI, ItemContract.METHOD_ADJUST_QUANTITY, null,
+                extras).getInt(ItemContract.KEY_ROW_COUNT);
+    }
+
+    private Bundle adjustAll(long[] ids, int[] deltas) {
+        Bundle extras = new Bundle();
+        extras.putLongArray(ItemContract.EXTRA_IDS, ids);
+        extras.putIntArray(ItemContract.EXTRA_DELTAS, deltas);
+        return mResolver.call(ItemEntry.CONTENT_URI, ItemContract.METHOD_ADJUST_QUANTITIES, null,
+                extras);
+    }
+}
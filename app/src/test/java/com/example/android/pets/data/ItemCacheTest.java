@@ -0,0 +1,132 @@
+package com.example.android.pets.data;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class ItemCacheTest {
+
+    /** A small row; every row made by {@link #row} has the same estimated size */
+    private static Object[] row(long id) {
+        return new Object[] { id, "Item", 199L, 3 };
+    }
+
+    /** Return the estimated size of a row made by {@link #row} */
+    private static long rowSize() {
+        ItemCache probe = new ItemCache(Long.MAX_VALUE);
+        probe.put(1, row(1), probe.getGeneration());
+        return probe.getSizeBytes();
+    }
+
+    /** Return a cache that holds exactly {@code rows} rows made by {@link #row} */
+    private static ItemCache cacheHolding(int rows) {
+        return new ItemCache(rowSize() * rows);
+    }
+
+    @Test
+    public void getReturnsCachedRow() {
+        ItemCache cache = new ItemCache(1024 * 1024);
+        Object[] row = row(7);
+        cache.put(7, row, cache.getGeneration());
+
+        assertSame(row, cache.get(7));
+        assertNull(cache.get(8));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void leastRecentlyUsedRowIsEvictedFirst() {
+        ItemCache cache = cacheHolding(3);
+        cache.put(1, row(1), cache.getGeneration());
+        cache.put(2, row(2), cache.getGeneration());
+        cache.put(3, row(3), cache.getGeneration());
+        // Using 1 makes 2 the least recently used row
+        cache.get(1);
+        cache.put(4, row(4), cache.getGeneration());
+
+        assertNotNull(cache.get(1));
+        assertNull(cache.get(2));
+        assertNotNull(cache.get(3));
+        assertNotNull(cache.get(4));
+        assertEquals(1, cache.getEvictionCount());
+    }
+
+    @Test
+    public void sizeStaysWithinLimit() {
+        ItemCache cache = cacheHolding(10);
+        for (long id = 0; id < 1000; id++) {
+            cache.put(id, row(id), cache.getGeneration());
+        }
+        assertEquals(10 * rowSize(), cache.getSizeBytes());
+        assertEquals(990, cache.getEvictionCount());
+        for (long id = 990; id < 1000; id++) {
+            assertNotNull(cache.get(id));
+        }
+    }
+
+    @Test
+    public void rowLargerThanCacheIsNotCached() {
+        ItemCache cache = new ItemCache(64);
+        cache.put(1, new Object[] { "a long name that doesn't fit" }, cache.getGeneration());
+        assertNull(cache.get(1));
+        assertEquals(0, cache.getSizeBytes());
+    }
+
+    @Test
+    public void rowReadBeforeRemoveIsNotCached() {
+        ItemCache cache = new ItemCache(1024 * 1024);
+        long generation = cache.getGeneration();
+        // A write to item 1 lands between reading the row and caching it
+        cache.remove(1);
+        cache.put(1, row(1), generation);
+        assertNull(cache.get(1));
+    }
+
+    @Test
+    public void rowReadBeforeClearIsNotCached() {
+        ItemCache cache = new ItemCache(1024 * 1024);
+        long generation = cache.getGeneration();
+        cache.clear();
+        cache.put(1, row(1), generation);
+        assertNull(cache.get(1));
+    }
+
+    @Test
+    public void clearDropsEveryRow() {
+        ItemCache cache = new ItemCache(1024 * 1024);
+        for (long id = 0; id < 100; id++) {
+            cache.put(id, row(id), cache.getGeneration());
+        }
+        cache.clear();
+        for (long id = 0; id < 100; id++) {
+            assertNull(cache.get(id));
+        }
+        assertEquals(0, cache.getSizeBytes());
+    }
+
+    @Test
+    public void putReplacesCachedRow() {
+        ItemCache cache = new ItemCache(1024 * 1024);
+        cache.put(1, row(1), cache.getGeneration());
+        long size = cache.getSizeBytes();
+        Object[] newer = row(1);
+        cache.put(1, newer, cache.getGeneration());
+        assertSame(newer, cache.get(1));
+        assertEquals(size, cache.getSizeBytes());
+    }
+
+    @Test
+    public void manyRowsSurviveTableGrowth() {
+        ItemCache cache = new ItemCache(Long.MAX_VALUE);
+        for (long id = 1; id <= 10000; id++) {
+            cache.put(id * 1024, row(id), cache.getGeneration());
+        }
+        for (long id = 1; id <= 10000; id++) {
+            assertNotNull(cache.get(id * 1024));
+        }
+    }
+}
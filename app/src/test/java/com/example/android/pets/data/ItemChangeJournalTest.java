@@ -0,0 +1,208 @@
+package com.example.android.pets.data;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Bundle;
+
+import com.example.android.pets.data.ItemContract.ChangeEntry;
+import com.example.android.pets.data.ItemContract.ItemEntry;
+import com.example.android.pets.data.ItemContract.SupplierEntry;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Checks the change journal a sync reads through the changes URI and truncates through
+ * {@link ItemContract#METHOD_ACK_CHANGES}.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class ItemChangeJournalTest {
+
+    private ContentResolver mResolver;
+
+    @Before
+    public void setUp() {
+        mResolver = ItemTestData.createProvider();
+    }
+
+    @Test
+    public void writesAreJournaledInOrder() {
+        long penId = insert("Pen", 3);
+        long inkId = insert("Ink", 4);
+        ContentValues values = new ContentValues();
+        values.put(ItemEntry.COLUMN_ITEM_NAME, "Blue pen");
+        values.put(ItemEntry.COLUMN_ITEM_QUANTITY, 5);
+        mResolver.update(ItemEntry.buildItemUri(penId), values, null, null);
+        mResolver.delete(ItemEntry.buildItemUri(inkId), null, null);
+
+        // Each entry shows the item as it is now, with nulls once it has been deleted
+        assertEquals(Arrays.asList(
+                ChangeEntry.OP_INSERT + " " + penId + " null Blue pen",
+                ChangeEntry.OP_INSERT + " " + inkId + " null null",
+                ChangeEntry.OP_UPDATE + " " + penId + " "
+                        + ItemEntry.COLUMN_ITEM_NAME + "," + ItemEntry.COLUMN_ITEM_QUANTITY
+                        + " Blue pen",
+                ChangeEntry.OP_DELETE + " " + inkId + " null null"), changesSince(0));
+    }
+
+    @Test
+    public void updateWithoutChangesIsNotJournaled() {
+        long id = insert("Pen", 3);
+        long since = lastSequence();
+        ContentValues values = new ContentValues();
+        values.put(ItemEntry.COLUMN_ITEM_QUANTITY, 3);
+        mResolver.update(ItemEntry.buildItemUri(id), values, null, null);
+
+        assertEquals(Collections.emptyList(), changesSince(since));
+    }
+
+    @Test
+    public void supplierChangeIsJournaledForEachOfItsItems() {
+        long penId = insert("Pen", 3);
+        long inkId = insert("Ink", 4);
+        long since = lastSequence();
+        long supplierId = ItemTestData.queryLong(mResolver, ItemEntry.buildItemUri(penId),
+                ItemEntry.COLUMN_ITEM_SUPPLIER_ID);
+        ContentValues values = new ContentValues();
+        values.put(SupplierEntry.COLUMN_SUPPLIER_PHONE, "18005550199");
+        mResolver.update(SupplierEntry.buildSupplierUri(supplierId), values, null, null);
+
+        List<String> changes = changesSince(since);
+        Collections.sort(changes);
+        String columns = " " + ItemEntry.COLUMN_ITEM_SUPPLIER_PHONE + " ";
+        List<String> expected = new ArrayList<>(Arrays.asList(
+                ChangeEntry.OP_UPDATE + " " + penId + columns + "Pen",
+                ChangeEntry.OP_UPDATE + " " + inkId + columns + "Ink"));
+        Collections.sort(expected);
+        assertEquals(expected, changes);
+    }
+
+    @Test
+    public void changesStartAfterSinceAndStopAtTheLimit() {
+        insert("Pen", 3);
+        long since = lastSequence();
+        long inkId = insert("Ink", 4);
+        long paperId = insert("Paper", 10);
+        insert("Glue", 1);
+
+        assertEquals(Arrays.asList(
+                ChangeEntry.OP_INSERT + " " + inkId + " null Ink",
+                ChangeEntry.OP_INSERT + " " + paperId + " null Paper"),
+                changes(ChangeEntry.buildChangesUri(since).buildUpon()
+                        .appendQueryParameter(ItemContract.QUERY_PARAMETER_LIMIT, "2")
+                        .build()));
+    }
+
+    @Test
+    public void clearIsJournaledAfterEarlierChanges() {
+        long id = insert("Pen", 3);
+        mResolver.delete(ItemEntry.CONTENT_URI, null, null);
+
+        assertEquals(Arrays.asList(
+                ChangeEntry.OP_INSERT + " " + id + " null null",
+                ChangeEntry.OP_CLEAR + " null null null"), changesSince(0));
+    }
+
+    @Test
+    public void ackRemovesEntriesUpToTheSequence() {
+        insert("Pen", 3);
+        insert("Ink", 4);
+        long acked = lastSequence();
+        long paperId = insert("Paper", 10);
+
+        assertEquals(2, ack(acked));
+        assertEquals(Collections.singletonList(
+                ChangeEntry.OP_INSERT + " " + paperId + " null Paper"), changesSince(0));
+        assertEquals(0, ack(acked));
+    }
+
+    @Test
+    public void sequenceKeepsIncreasingAfterAck() {
+        insert("Pen", 3);
+        long acked = lastSequence();
+        ack(acked);
+
+        insert("Ink", 4);
+        assertTrue(lastSequence() > acked);
+    }
+
+    @Test
+    public void ackRequiresSequence() {
+        try {
+            mResolver.call(ItemEntry.CONTENT_URI, ItemContract.METHOD_ACK_CHANGES, null,
+                    new Bundle());
+            fail("Expected the missing sequence number to be rejected");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    private long insert(String name, int quantity) {
+        return ContentUris.parseId(mResolver.insert(ItemEntry.CONTENT_URI,
+                ItemTestData.newItem(name, quantity)));
+    }
+
+    private int ack(long sequence) {
+        Bundle extras = new Bundle();
+        extras.putLong(ItemContract.EXTRA_SEQUENCE, sequence);
+        return mResolver.call(ItemEntry.CONTENT_URI, ItemContract.METHOD_ACK_CHANGES, null,
+                extras).getInt(ItemContract.KEY_ROW_COUNT);
+    }
+
+    /**
+     * Return the sequence number of the last journal entry, or 0 if the journal is empty.
+     */
+    private long lastSequence() {
+        Cursor cursor = mResolver.query(ChangeEntry.buildChangesUri(0), null, null, null, null);
+        try {
+            return cursor.moveToLast()
+                    ? cursor.getLong(cursor.getColumnIndexOrThrow(ChangeEntry.COLUMN_SEQUENCE))
+                    : 0;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private List<String> changesSince(long since) {
+        return changes(ChangeEntry.buildChangesUri(since));
+    }
+
+    /**
+     * Return the journal entries the URI returns as "operation itemId changedColumns name",
+     * checking that their sequence numbers increase.
+     */
+    private List<String> changes(Uri uri) {
+        Cursor cursor = mResolver.query(uri, null, null, null, null);
+        List<String> changes = new ArrayList<>();
+        try {
+            int sequence = cursor.getColumnIndexOrThrow(ChangeEntry.COLUMN_SEQUENCE);
+            int operation = cursor.getColumnIndexOrThrow(ChangeEntry.COLUMN_OPERATION);
+            int itemId = cursor.getColumnIndexOrThrow(ChangeEntry.COLUMN_ITEM_ID);
+            int columns = cursor.getColumnIndexOrThrow(ChangeEntry.COLUMN_CHANGED_COLUMNS);
+            int name = cursor.getColumnIndexOrThrow(ItemEntry.COLUMN_ITEM_NAME);
+            long lastSequence = -1;
+            while (cursor.moveToNext()) {
+                assertTrue(cursor.getLong(sequence) > lastSequence);
+                lastSequence = cursor.getLong(sequence);
+                changes.add(cursor.getString(operation) + " " + cursor.getString(itemId) + " "
+                        + cursor.getString(columns) + " " + cursor.getString(name));
+            }
+        } finally {
+            cursor.close();
+        }
+        return changes;
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.android.pets.data;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.database.ContentObserver;
+import android.net.Uri;
+
+import com.example.android.pets.data.ItemContract.ItemEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+@RunWith(RobolectricTestRunner.class)
+public class ItemChangeNotifierTest {
+
+    private ContentResolver mResolver;
+    private ItemChangeNotifier mNotifier;
+
+    /** URIs notified so far, in order */
+    private final List<Uri> mNotified = new ArrayList<>();
+
+    private final ContentObserver mObserver = new ContentObserver(null) {
+        @Override
+        public void onChange(boolean selfChange, Uri uri) {
+            mNotified.add(uri);
+        }
+    };
+
+    @Before
+    public void setUp() {
+        mResolver = ItemTestData.createProvider();
+        mNotifier = new ItemChangeNotifier(mResolver);
+        mResolver.registerContentObserver(ItemEntry.CONTENT_URI, true, mObserver);
+    }
+
+    @After
+    public void tearDown() {
+        mResolver.unregisterContentObserver(mObserver);
+    }
+
+    @Test
+    public void burstOfChangesIsDeliveredOnceLater() {
+        mNotifier.notifyItemChanged(1);
+        mNotifier.notifyItemChanged(2);
+        mNotifier.notifyItemChanged(1);
+        assertEquals(0, mNotified.size());
+
+        Robolectric.flushForegroundThreadScheduler();
+
+        assertEquals(Arrays.asList(ItemEntry.buildItemUri(1), ItemEntry.buildItemUri(2)),
+                mNotified);
+    }
+
+    @Test
+    public void manyItemsBecomeOneTableChange() {
+        for (int id = 1; id <= 100; id++) {
+            mNotifier.notifyItemChanged(id);
+        }
+        Robolectric.flushForegroundThreadScheduler();
+
+        assertEquals(Collections.singletonList(ItemEntry.CONTENT_URI), mNotified);
+    }
+
+    @Test
+    public void tableChangeCoversItemChanges() {
+        mNotifier.notifyItemChanged(1);
+        mNotifier.notifyTableChanged();
+        mNotifier.notifyItemChanged(2);
+        Robolectric.flushForegroundThreadScheduler();
+
+        assertEquals(Collections.singletonList(ItemEntry.CONTENT_URI), mNotified);
+    }
+
+    @Test
+    public void laterChangesAreDeliveredSeparately() {
+        mNotifier.notifyItemChanged(1);
+        Robolectric.flushForegroundThreadScheduler();
+        mNotifier.notifyItemChanged(1);
+        Robolectric.flushForegroundThreadScheduler();
+
+        assertEquals(Arrays.asList(ItemEntry.buildItemUri(1), ItemEntry.buildItemUri(1)),
+                mNotified);
+    }
+
+    @Test
+    public void providerWritesNotifyTheirItems() {
+        long id = ContentUris.parseId(mResolver.insert(ItemEntry.CONTENT_URI,
+                ItemTestData.newItem("Pen", 3)));
+        mResolver.delete(ItemEntry.buildItemUri(id), null, null);
+        assertEquals(0, mNotified.size());
+
+        Robolectric.flushForegroundThreadScheduler();
+
+        assertEquals(Collections.singletonList(ItemEntry.buildItemUri(id)), mNotified);
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.android.pets.data;
+
+import android.content.ContentResolver;
+import android.database.Cursor;
+import android.net.Uri;
+
+import com.example.android.pets.data.ItemContract.ItemEntry;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+@RunWith(RobolectricTestRunner.class)
+public class ItemContractTest {
+
+    @Test
+    public void pricesAreFormattedFromCents() {
+        assertEquals("1.99", ItemEntry.formatPrice(199));
+        assertEquals("0.07", ItemEntry.formatPrice(7));
+        assertEquals("1250.00", ItemEntry.formatPrice(125000));
+    }
+
+    @Test
+    public void pricesAreParsedToCents() {
+        assertEquals(199, ItemEntry.parsePrice("1.99"));
+        assertEquals(250, ItemEntry.parsePrice(" 2.5 "));
+        assertEquals(1200, ItemEntry.parsePrice("12"));
+        assertEquals(7, ItemEntry.parsePrice("0.07"));
+    }
+
+    @Test
+    public void pricesWithFractionsOfCentsAreRefused() {
+        assertNotAPrice("1.999");
+        assertNotAPrice("price");
+        assertNotAPrice("");
+    }
+
+    @Test
+    public void phonesAreNormalizedToDigits() {
+        assertEquals("+18001234567", ItemEntry.normalizePhone("+1 (800) 123-4567"));
+        assertEquals("18001234567", ItemEntry.normalizePhone("1-800-123-4567"));
+        // Only a leading + is kept
+        assertEquals("18001234567", ItemEntry.normalizePhone("1800+1234567"));
+        assertEquals("+18001234567", ItemEntry.normalizePhone(" +1800+1234567"));
+    }
+
+    @Test
+    public void phonesWithoutDigitsAreRefused() {
+        assertNull(ItemEntry.normalizePhone("()"));
+        assertNull(ItemEntry.normalizePhone("+"));
+        assertNull(ItemEntry.normalizePhone(18001234567L));
+        assertNull(ItemEntry.normalizePhone(null));
+    }
+
+    @Test
+    public void providerStoresCentsAndNormalizedPhones() {
+        ContentResolver resolver = ItemTestData.createProvider();
+        Uri uri = resolver.insert(ItemEntry.CONTENT_URI,
+                ItemTestData.newItem("Pen", 199, 3, "Ink Co", "+1 (800) 555-0100"));
+
+        Cursor cursor = resolver.query(uri, new String[] {
+                ItemEntry.COLUMN_ITEM_PRICE, ItemEntry.COLUMN_ITEM_SUPPLIER_PHONE },
+                null, null, null);
+        try {
+            cursor.moveToFirst();
+            assertEquals(Cursor.FIELD_TYPE_INTEGER, cursor.getType(0));
+            assertEquals(199, cursor.getLong(0));
+            assertEquals("+18005550100", cursor.getString(1));
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static void assertNotAPrice(String price) {
+        try {
+            ItemEntry.parsePrice(price);
+            fail("Expected " + price + " to be refused");
+        } catch (NumberFormatException expected) {
+        }
+    }
+}
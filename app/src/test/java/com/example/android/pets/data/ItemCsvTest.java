@@ -0,0 +1,208 @@
+package com.example.android.pets.data;
+
+import android.content.ContentResolver;
+import android.database.Cursor;
+
+import com.example.android.pets.data.ItemContract.ItemEntry;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+@RunWith(RobolectricTestRunner.class)
+public class ItemCsvTest {
+
+    /**
+     * Names that need quoting, one with spaces to keep and one that looks like the header's
+     * first column
+     */
+    private static final String[] NAMES = {
+            "Plain",
+            "Comma, separated",
+            "Say \"cheese\"",
+            "Two\nlines",
+            "name",
+            "  padded  "
+    };
+
+    /** Rows for the parallel import, enough for two full chunks and part of a third */
+    private static final int PARALLEL_ROW_COUNT = 4500;
+
+    private ContentResolver mResolver;
+
+    @Before
+    public void setUp() {
+        mResolver = ItemTestData.createProvider();
+    }
+
+    @Test
+    public void parseLineSplitsQuotedFields() {
+        String[] fields = new String[3];
+        assertTrue(ItemCsv.parseLine("a,\"b, \"\"c\"\"\",d", fields));
+        assertArrayEquals(new String[] { "a", "b, \"c\"", "d" }, fields);
+    }
+
+    @Test
+    public void parseLineRejectsWrongFieldCount() {
+        assertFalse(ItemCsv.parseLine("a,b", new String[3]));
+        assertFalse(ItemCsv.parseLine("a,b,c,d", new String[3]));
+    }
+
+    @Test
+    public void parseLineRejectsUnterminatedQuote() {
+        assertFalse(ItemCsv.parseLine("a,\"b,c", new String[3]));
+    }
+
+    @Test
+    public void exportThenImportRestoresEveryItem() throws Exception {
+        for (int i = 0; i < NAMES.length; i++) {
+            mResolver.insert(ItemEntry.CONTENT_URI, ItemTestData.newItem(NAMES[i], 1999 + i, i,
+                    "Supplier, Inc.", "+1 (800) 555-0100"));
+        }
+        List<String> exported = readItems();
+
+        StringWriter csv = new StringWriter();
+        assertEquals(NAMES.length, ItemCsv.exportItems(mResolver, csv, null));
+        mResolver.delete(ItemEntry.CONTENT_URI, null, null);
+        assertEquals(NAMES.length,
+                ItemCsv.importItems(mResolver, new StringReader(csv.toString()), null));
+
+        assertEquals(exported, readItems());
+    }
+
+    @Test
+    public void firstRowNamedNameIsImported() throws Exception {
+        String csv = "name,1.99,3,Tree Killers,18001234567\n"
+                + "Pen,0.50,10,Tree Killers,18001234567\n";
+        assertEquals(2, ItemCsv.importItems(mResolver, new StringReader(csv), null));
+    }
+
+    @Test
+    public void headerIsSkipped() throws Exception {
+        String csv = "name,price,quantity,supplierName,supplierPhone\n"
+                + "Pen,0.50,10,Tree Killers,18001234567\n";
+        assertEquals(1, ItemCsv.importItems(mResolver, new StringReader(csv), null));
+    }
+
+    @Test
+    public void malformedRecordReportsItsFirstLine() throws Exception {
+        String csv = "\"Two\nlines\",1.00,1,Tree Killers,18001234567\n"
+                + "Pen,0.50,ten,Tree Killers,18001234567\n";
+        try {
+            ItemCsv.importItems(mResolver, new StringReader(csv), null);
+            fail("Expected the quantity to be rejected");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("Line 3:"));
+        }
+    }
+
+    @Test
+    public void parallelImportInsertsRowsInFileOrder() throws Exception {
+        final List<Long> progress = Collections.synchronizedList(new ArrayList<Long>());
+        long rowCount = ItemCsv.importItems(mResolver,
+                new StringReader(manyRows(PARALLEL_ROW_COUNT, -1)), 4,
+                new ItemCsv.ProgressListener() {
+                    @Override
+                    public void onProgress(long count) {
+                        progress.add(count);
+                    }
+                });
+
+        assertEquals(PARALLEL_ROW_COUNT, rowCount);
+        Cursor cursor = mResolver.query(ItemEntry.CONTENT_URI,
+                new String[] { ItemEntry.COLUMN_ITEM_NAME }, null, null, ItemEntry._ID);
+        try {
+            assertEquals(PARALLEL_ROW_COUNT, cursor.getCount());
+            for (int i = 0; cursor.moveToNext(); i++) {
+                assertEquals(rowName(i), cursor.getString(0));
+            }
+        } finally {
+            cursor.close();
+        }
+        for (int i = 1; i < progress.size(); i++) {
+            assertTrue(progress.get(i) > progress.get(i - 1));
+        }
+        assertEquals(Long.valueOf(PARALLEL_ROW_COUNT), progress.get(progress.size() - 1));
+    }
+
+    @Test
+    public void parallelImportReportsLineOfMalformedRecord() throws Exception {
+        // Record 4200 is in the third chunk, and the two line name before it pushes it one
+        // line further down the file
+        try {
+            ItemCsv.importItems(mResolver, new StringReader(manyRows(PARALLEL_ROW_COUNT, 4200)),
+                    4, null);
+            fail("Expected the quantity to be rejected");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("Line 4202:"));
+        }
+        // The two chunks before the malformed one were already written
+        assertEquals(3999, ItemTestData.count(mResolver, ItemEntry.CONTENT_URI));
+    }
+
+    @Test
+    public void parallelImportRequiresAWorker() throws Exception {
+        try {
+            ItemCsv.importItems(mResolver, new StringReader(""), 0, null);
+            fail("Expected no workers to be rejected");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    /**
+     * Return a CSV file with a header and the given number of rows, the first of which has a
+     * name spanning two lines. If {@code badRecord} isn't -1, the record with that index,
+     * counting the header as record 0, has an invalid quantity.
+     */
+    private static String manyRows(int rowCount, int badRecord) {
+        StringBuilder csv = new StringBuilder("name,price,quantity,supplierName,supplierPhone\n");
+        for (int i = 0; i < rowCount; i++) {
+            String name = i == 0 ? "\"" + rowName(i) + "\"" : rowName(i);
+            String quantity = i + 1 == badRecord ? "ten" : String.valueOf(i % 100);
+            csv.append(name).append(",1.99,").append(quantity)
+                    .append(",Tree Killers,18001234567\n");
+        }
+        return csv.toString();
+    }
+
+    private static String rowName(int index) {
+        return index == 0 ? "Item\n0" : "Item " + index;
+    }
+
+    /**
+     * Return every item as a line of its CSV columns, ordered by name.
+     */
+    private List<String> readItems() {
+        Cursor cursor = mResolver.query(ItemEntry.CONTENT_URI, new String[] {
+                        ItemEntry.COLUMN_ITEM_NAME,
+                        ItemEntry.COLUMN_ITEM_PRICE,
+                        ItemEntry.COLUMN_ITEM_QUANTITY,
+                        ItemEntry.COLUMN_ITEM_SUPPLIER_NAME,
+                        ItemEntry.COLUMN_ITEM_SUPPLIER_PHONE
+                }, null, null, ItemEntry.COLUMN_ITEM_NAME);
+        List<String> items = new ArrayList<>();
+        try {
+            while (cursor.moveToNext()) {
+                items.add(Arrays.asList(cursor.getString(0), cursor.getLong(1), cursor.getInt(2),
+                        cursor.getString(3), cursor.getString(4)).toString());
+            }
+        } finally {
+            cursor.close();
+        }
+        return items;
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.android.pets.data;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class ItemDbConfigTest {
+
+    @Test
+    public void cacheSizeIsConvertedToPages() {
+        assertEquals(512, ItemDbConfig.DEFAULT.getCacheSizePages());
+        assertEquals(1, new ItemDbConfig(false, ItemDbConfig.SYNCHRONOUS_FULL, 65536, 1)
+                .getCacheSizePages());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownSynchronousModeIsRejected() {
+        new ItemDbConfig(true, "OFF", 4096, 2048);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void pageSizeMustBeAPowerOfTwo() {
+        new ItemDbConfig(true, ItemDbConfig.SYNCHRONOUS_NORMAL, 3000, 2048);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void pageSizeMustBeInRange() {
+        new ItemDbConfig(true, ItemDbConfig.SYNCHRONOUS_NORMAL, 256, 2048);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void cacheSizeMustBePositive() {
+        new ItemDbConfig(true, ItemDbConfig.SYNCHRONOUS_NORMAL, 4096, 0);
+    }
+}
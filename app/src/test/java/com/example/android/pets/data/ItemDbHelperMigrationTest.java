@@ -0,0 +1,200 @@
+package com.example.android.pets.data;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.example.android.pets.data.ItemContract.ItemEntry;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Upgrades a database written with the version one schema all the way to the current one, and
+ * checks it ends up with the schema a new database is created with.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class ItemDbHelperMigrationTest {
+
+    /** Supplier phones as version one stored them, one per supplier */
+    private static final String[] PHONES = {
+            "+1 (555) 010-2000",
+            "555/123 4567",
+            "0044 20 7946 0958"
+    };
+
+    /** Prices as version one stored them, in dollars */
+    private static final double[] PRICES = { 2.5, 19.99, 0.07, 1250 };
+
+    private Context mContext;
+
+    @Before
+    public void setUp() {
+        mContext = RuntimeEnvironment.application;
+
+        // Write ten items with the version one schema, then delete the last three
+        File file = mContext.getDatabasePath(ItemDbHelper.DATABASE_NAME);
+        file.getParentFile().mkdirs();
+        SQLiteDatabase db = SQLiteDatabase.openOrCreateDatabase(file, null);
+        try {
+            db.execSQL("CREATE TABLE items (_id INTEGER PRIMARY KEY AUTOINCREMENT, "
+                    + "name TEXT NOT NULL, price REAL NOT NULL, "
+                    + "quantity INTEGER NOT NULL DEFAULT 0, supplierName TEXT NOT NULL, "
+                    + "supplierPhone TEXT NOT NULL);");
+            for (int i = 0; i < 10; i++) {
+                ContentValues values = new ContentValues();
+                values.put("name", "Item " + i);
+                values.put("price", PRICES[i % PRICES.length]);
+                values.put("quantity", i);
+                values.put("supplierName", "Supplier " + i % PHONES.length);
+                values.put("supplierPhone", PHONES[i % PHONES.length]);
+                db.insertOrThrow("items", null, values);
+            }
+            db.execSQL("DELETE FROM items WHERE _id > 7");
+            db.setVersion(1);
+        } finally {
+            db.close();
+        }
+    }
+
+    @Test
+    public void upgradeKeepsEveryItem() {
+        ContentResolver resolver = ItemTestData.createProvider();
+        Cursor cursor = resolver.query(ItemEntry.CONTENT_URI,
+                new String[] { ItemEntry._ID, ItemEntry.COLUMN_ITEM_NAME }, null, null,
+                ItemEntry._ID);
+        try {
+            assertEquals(7, cursor.getCount());
+            for (int i = 0; cursor.moveToNext(); i++) {
+                assertEquals(i + 1, cursor.getLong(0));
+                assertEquals("Item " + i, cursor.getString(1));
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Test
+    public void upgradeDoesNotReuseDeletedIds() {
+        ContentResolver resolver = ItemTestData.createProvider();
+        long id = ContentUris.parseId(resolver.insert(ItemEntry.CONTENT_URI,
+                ItemTestData.newItem("New", 1)));
+        assertEquals(11, id);
+    }
+
+    @Test
+    public void upgradeConvertsPricesToCents() {
+        ContentResolver resolver = ItemTestData.createProvider();
+        long[] expectedCents = { 250, 1999, 7, 125000 };
+        for (int i = 0; i < 7; i++) {
+            assertEquals("Price of item " + i, expectedCents[i % expectedCents.length],
+                    ItemTestData.queryLong(resolver, ItemEntry.buildItemUri(i + 1),
+                            ItemEntry.COLUMN_ITEM_PRICE));
+        }
+    }
+
+    @Test
+    public void upgradeNormalizesPhonesLikeNewWrites() {
+        ContentResolver resolver = ItemTestData.createProvider();
+        Cursor cursor = resolver.query(ItemEntry.CONTENT_URI, new String[] {
+                ItemEntry._ID, ItemEntry.COLUMN_ITEM_SUPPLIER_PHONE }, null, null, ItemEntry._ID);
+        try {
+            assertTrue(cursor.getCount() > 0);
+            while (cursor.moveToNext()) {
+                int i = (int) cursor.getLong(0) - 1;
+                assertEquals(ItemEntry.normalizePhone(PHONES[i % PHONES.length]),
+                        cursor.getString(1));
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Test
+    public void upgradeReachesCurrentVersion() {
+        SQLiteDatabase db = new ItemDbHelper(mContext).getReadableDatabase();
+        try {
+            assertEquals(ItemDbHelper.DATABASE_VERSION, db.getVersion());
+        } finally {
+            db.close();
+        }
+    }
+
+    @Test
+    public void upgradeMatchesNewDatabaseSchema() {
+        ItemDbHelper helper = new ItemDbHelper(mContext);
+        List<String> upgraded;
+        try {
+            upgraded = schemaOf(helper.getReadableDatabase());
+        } finally {
+            helper.close();
+        }
+
+        mContext.deleteDatabase(ItemDbHelper.DATABASE_NAME);
+        helper = new ItemDbHelper(mContext);
+        List<String> created;
+        try {
+            created = schemaOf(helper.getReadableDatabase());
+        } finally {
+            helper.close();
+        }
+        assertEquals(created, upgraded);
+    }
+
+    /**
+     * Describe every table, index, trigger and view of the database, sorted by name. Tables are
+     * described by their columns and foreign keys rather than by their SQL, which SQLite
+     * rewrites when a table is renamed.
+     */
+    private static List<String> schemaOf(SQLiteDatabase db) {
+        List<String> schema = new ArrayList<>();
+        Cursor objects = db.rawQuery("SELECT type, name, tbl_name, sql FROM sqlite_master"
+                + " ORDER BY name", null);
+        try {
+            while (objects.moveToNext()) {
+                String type = objects.getString(0);
+                String name = objects.getString(1);
+                StringBuilder entry = new StringBuilder(type).append(' ').append(name)
+                        .append(" on ").append(objects.getString(2)).append(": ");
+                if ("table".equals(type)) {
+                    appendRows(db, "PRAGMA table_info(" + name + ")", entry);
+                    appendRows(db, "PRAGMA foreign_key_list(" + name + ")", entry);
+                } else {
+                    entry.append(objects.getString(3));
+                }
+                schema.add(entry.toString());
+            }
+        } finally {
+            objects.close();
+        }
+        return schema;
+    }
+
+    private static void appendRows(SQLiteDatabase db, String sql, StringBuilder entry) {
+        Cursor cursor = db.rawQuery(sql, null);
+        try {
+            while (cursor.moveToNext()) {
+                entry.append('(');
+                for (int i = 0; i < cursor.getColumnCount(); i++) {
+                    entry.append(i > 0 ? ", " : "").append(cursor.getString(i));
+                }
+                entry.append(')');
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+}
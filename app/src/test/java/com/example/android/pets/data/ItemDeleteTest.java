@@ -0,0 +1,204 @@
+package com.example.android.pets.data;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.os.Bundle;
+
+import com.example.android.pets.data.ItemContract.ChangeEntry;
+import com.example.android.pets.data.ItemContract.ItemEntry;
+import com.example.android.pets.data.ItemContract.MovementEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that every way of deleting items keeps the search table, the supplier totals, the
+ * movement history and the change journal in step.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class ItemDeleteTest {
+
+    /** Longest time to wait for the background compaction */
+    private static final long COMPACTION_TIMEOUT_MILLIS = 5000;
+
+    private ContentResolver mResolver;
+
+    /** Reads the tables the provider doesn't expose, including soft-deleted items */
+    private ItemDbHelper mHelper;
+
+    private long mPenId;
+    private long mInkId;
+    private long mPaperId;
+
+    @Before
+    public void setUp() {
+        mResolver = ItemTestData.createProvider();
+        mHelper = new ItemDbHelper(RuntimeEnvironment.application);
+        mPenId = insert(ItemTestData.newItem("Pen", 3));
+        mInkId = insert(ItemTestData.newItem("Ink", 150, 4, "Ink Co", "18005550100"));
+        mPaperId = insert(ItemTestData.newItem("Paper", 10));
+
+        Bundle extras = new Bundle();
+        extras.putLong(ItemContract.EXTRA_ID, mPenId);
+        extras.putInt(ItemContract.EXTRA_DELTA, -1);
+        mResolver.call(ItemEntry.CONTENT_URI, ItemContract.METHOD_ADJUST_QUANTITY, null, extras);
+    }
+
+    @After
+    public void tearDown() {
+        mHelper.close();
+    }
+
+    @Test
+    public void deleteAllEmptiesEveryItemTable() {
+        assertEquals(3, mResolver.delete(ItemEntry.CONTENT_URI, null, null));
+
+        assertEquals(0, ItemTestData.count(mResolver, ItemEntry.CONTENT_URI));
+        assertEquals(0, rows(ItemEntry.TABLE_NAME));
+        assertEquals(0, rows(ItemDbHelper.FTS_TABLE_NAME));
+        assertEquals(0, rows(ItemDbHelper.SUPPLIER_SUMMARY_TABLE_NAME));
+        assertEquals(0, rows(MovementEntry.TABLE_NAME));
+        assertEquals(0, rows(ItemDbHelper.MOVEMENTS_HOURLY_TABLE_NAME));
+        assertEquals(0, rows(ItemDbHelper.MOVEMENTS_DAILY_TABLE_NAME));
+        assertEquals(0, rows(ItemDbHelper.BULK_CLEAR_TABLE_NAME));
+    }
+
+    @Test
+    public void deleteAllIsJournaledOnce() {
+        long since = lastSequence();
+        mResolver.delete(ItemEntry.CONTENT_URI, null, null);
+
+        assertEquals(Arrays.asList(ChangeEntry.OP_CLEAR + " null"), changesSince(since));
+    }
+
+    @Test
+    public void deleteAllCountsSoftDeletedItemsOut() {
+        mResolver.delete(ItemEntry.buildItemUri(mInkId).buildUpon()
+                .appendQueryParameter(ItemContract.QUERY_PARAMETER_SOFT_DELETE, "true")
+                .build(), null, null);
+
+        assertEquals(2, mResolver.delete(ItemEntry.CONTENT_URI, null, null));
+        assertEquals(0, rows(ItemEntry.TABLE_NAME));
+    }
+
+    @Test
+    public void deleteTriggersWorkAgainAfterDeleteAll() {
+        mResolver.delete(ItemEntry.CONTENT_URI, null, null);
+        long id = insert(ItemTestData.newItem("Stapler", 2));
+        long since = lastSequence();
+
+        assertEquals(1, mResolver.delete(ItemEntry.buildItemUri(id), null, null));
+        assertEquals(0, rows(ItemDbHelper.FTS_TABLE_NAME));
+        assertEquals(0, rows(ItemDbHelper.SUPPLIER_SUMMARY_TABLE_NAME));
+        assertEquals(Arrays.asList(ChangeEntry.OP_DELETE + " " + id), changesSince(since));
+    }
+
+    @Test
+    public void deleteByIdListRemovesOnlyThoseItems() {
+        long since = lastSequence();
+        assertEquals(2, deleteItems(new long[] { mPenId, mInkId }, false));
+
+        assertEquals(1, ItemTestData.count(mResolver, ItemEntry.CONTENT_URI));
+        assertEquals(1, rows(ItemEntry.TABLE_NAME));
+        assertEquals(1, rows(ItemDbHelper.FTS_TABLE_NAME));
+        // Only the default supplier of the paper is left
+        assertEquals(1, rows(ItemDbHelper.SUPPLIER_SUMMARY_TABLE_NAME));
+        assertEquals(0, rows(MovementEntry.TABLE_NAME));
+        assertEquals(Arrays.asList(ChangeEntry.OP_DELETE + " " + mPenId,
+                ChangeEntry.OP_DELETE + " " + mInkId), changesSince(since));
+    }
+
+    @Test
+    public void deleteByIdListIgnoresMissingItems() {
+        assertEquals(1, deleteItems(new long[] { mPaperId, mPaperId + 100 }, false));
+        assertEquals(2, ItemTestData.count(mResolver, ItemEntry.CONTENT_URI));
+    }
+
+    @Test
+    public void softDeleteHidesItems() {
+        long since = lastSequence();
+        assertEquals(2, deleteItems(new long[] { mPenId, mPaperId }, true));
+
+        // The rows stay until the compaction the delete scheduled has run
+        assertEquals(1, ItemTestData.count(mResolver, ItemEntry.CONTENT_URI));
+        assertEquals(0, ItemTestData.count(mResolver, ItemEntry.buildItemUri(mPenId)));
+        // The default supplier has no live items left
+        assertEquals(1, rows(ItemDbHelper.SUPPLIER_SUMMARY_TABLE_NAME));
+        assertEquals(Arrays.asList(ChangeEntry.OP_DELETE + " " + mPenId,
+                ChangeEntry.OP_DELETE + " " + mPaperId), changesSince(since));
+    }
+
+    @Test
+    public void compactionRemovesSoftDeletedItems() throws InterruptedException {
+        deleteItems(new long[] { mPenId }, true);
+        long since = lastSequence();
+
+        mResolver.call(ItemEntry.CONTENT_URI, ItemContract.METHOD_COMPACT, null, null);
+        long deadline = System.currentTimeMillis() + COMPACTION_TIMEOUT_MILLIS;
+        while (rows(ItemEntry.TABLE_NAME) != 2) {
+            assertTrue("Compaction didn't run", System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+
+        assertEquals(2, ItemTestData.count(mResolver, ItemEntry.CONTENT_URI));
+        assertEquals(2, rows(ItemDbHelper.FTS_TABLE_NAME));
+        assertEquals(0, rows(MovementEntry.TABLE_NAME));
+        // The soft delete was journaled already
+        assertEquals(0, changesSince(since).size());
+    }
+
+    private long insert(ContentValues values) {
+        return ContentUris.parseId(mResolver.insert(ItemEntry.CONTENT_URI, values));
+    }
+
+    private int deleteItems(long[] ids, boolean soft) {
+        Bundle extras = new Bundle();
+        extras.putLongArray(ItemContract.EXTRA_IDS, ids);
+        extras.putBoolean(ItemContract.EXTRA_SOFT_DELETE, soft);
+        return mResolver.call(ItemEntry.CONTENT_URI, ItemContract.METHOD_DELETE_ITEMS, null,
+                extras).getInt(ItemContract.KEY_ROW_COUNT);
+    }
+
+    private long rows(String table) {
+        return DatabaseUtils.queryNumEntries(mHelper.getReadableDatabase(), table);
+    }
+
+    private long lastSequence() {
+        return DatabaseUtils.longForQuery(mHelper.getReadableDatabase(), "SELECT IFNULL(MAX("
+                + ChangeEntry.COLUMN_SEQUENCE + "), 0) FROM " + ChangeEntry.TABLE_NAME, null);
+    }
+
+    /**
+     * Return the journal entries after the given sequence number as "operation itemId".
+     */
+    private List<String> changesSince(long since) {
+        Cursor cursor = mResolver.query(ChangeEntry.buildChangesUri(since), null, null, null,
+                null);
+        List<String> changes = new ArrayList<>();
+        try {
+            int operation = cursor.getColumnIndexOrThrow(ChangeEntry.COLUMN_OPERATION);
+            int itemId = cursor.getColumnIndexOrThrow(ChangeEntry.COLUMN_ITEM_ID);
+            while (cursor.moveToNext()) {
+                changes.add(cursor.getString(operation) + " "
+                        + (cursor.isNull(itemId) ? "null" : cursor.getString(itemId)));
+            }
+        } finally {
+            cursor.close();
+        }
+        return changes;
+    }
+}
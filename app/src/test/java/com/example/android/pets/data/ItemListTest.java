@@ -0,0 +1,113 @@
+package com.example.android.pets.data;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.database.Cursor;
+import android.net.Uri;
+
+import com.example.android.pets.data.ItemContract.ItemEntry;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+@RunWith(RobolectricTestRunner.class)
+public class ItemListTest {
+
+    private ContentResolver mResolver;
+
+    @Before
+    public void setUp() {
+        mResolver = ItemTestData.createProvider();
+        insert("Pen", 3);
+        insert("Ink", 4);
+        insert("Paper", 10);
+    }
+
+    @Test
+    public void listHasOnlyTheListColumnsInIdOrder() {
+        Cursor cursor = mResolver.query(ItemEntry.CONTENT_LIST_URI, null, null, null, null);
+        try {
+            assertArrayEquals(ItemEntry.LIST_PROJECTION, cursor.getColumnNames());
+            assertEquals(Arrays.asList("Pen 3", "Ink 4", "Paper 10"), namesAndQuantities(cursor));
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Test
+    public void listIgnoresProjectionSelectionAndSortOrder() {
+        Cursor cursor = mResolver.query(ItemEntry.CONTENT_LIST_URI,
+                new String[] { ItemEntry.COLUMN_ITEM_NAME }, ItemEntry.COLUMN_ITEM_NAME + " = ?",
+                new String[] { "Ink" }, ItemEntry.COLUMN_ITEM_NAME);
+        try {
+            assertArrayEquals(ItemEntry.LIST_PROJECTION, cursor.getColumnNames());
+            assertEquals(Arrays.asList("Pen 3", "Ink 4", "Paper 10"), namesAndQuantities(cursor));
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Test
+    public void listStopsAtTheLimit() {
+        assertEquals(2, ItemTestData.count(mResolver, listUri("2")));
+        assertEquals(0, ItemTestData.count(mResolver, listUri("0")));
+    }
+
+    @Test
+    public void listLeavesOutSoftDeletedItems() {
+        long id = insert("Glue", 1);
+        mResolver.delete(ItemEntry.buildItemUri(id).buildUpon()
+                .appendQueryParameter(ItemContract.QUERY_PARAMETER_SOFT_DELETE, "true")
+                .build(), null, null);
+
+        assertEquals(3, ItemTestData.count(mResolver, ItemEntry.CONTENT_LIST_URI));
+    }
+
+    @Test
+    public void listRejectsInvalidLimits() {
+        assertRejected(listUri("-1"));
+        assertRejected(listUri("many"));
+    }
+
+    private long insert(String name, int quantity) {
+        return ContentUris.parseId(mResolver.insert(ItemEntry.CONTENT_URI,
+                ItemTestData.newItem(name, quantity)));
+    }
+
+    private static Uri listUri(String limit) {
+        return ItemEntry.CONTENT_LIST_URI.buildUpon()
+                .appendQueryParameter(ItemContract.QUERY_PARAMETER_LIMIT, limit)
+                .build();
+    }
+
+    /**
+     * Return the rows of the cursor as "name quantity".
+     */
+    private static List<String> namesAndQuantities(Cursor cursor) {
+        int name = cursor.getColumnIndexOrThrow(ItemEntry.COLUMN_ITEM_NAME);
+        int quantity = cursor.getColumnIndexOrThrow(ItemEntry.COLUMN_ITEM_QUANTITY);
+        List<String> rows = new ArrayList<>();
+        while (cursor.moveToNext()) {
+            rows.add(cursor.getString(name) + " " + cursor.getInt(quantity));
+        }
+        return rows;
+    }
+
+    private void assertRejected(Uri uri) {
+        try {
+            mResolver.query(uri, null, null, null, null);
+            fail("Expected " + uri + " to be rejected");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+}
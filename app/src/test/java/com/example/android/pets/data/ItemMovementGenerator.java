@@ -0,0 +1,68 @@
+package com.example.android.pets.data;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import com.example.android.pets.data.ItemContract.MovementEntry;
+
+import java.util.Random;
+
+/**
+ * Writes a synthetic movement history straight into the database, so reads of the history and
+ * its rollups can be measured on a year of data. The rollup tables are filled by the same
+ * trigger as for the movements the provider records. The item's quantity isn't changed.
+ */
+public final class ItemMovementGenerator {
+
+    /** Length of the generated history */
+    public static final long YEAR_MILLIS = 365 * ItemDbHelper.MILLIS_PER_DAY;
+
+    /** Largest number of units a generated movement moves */
+    private static final int MAX_UNITS = 10;
+
+    private ItemMovementGenerator() {}
+
+    /**
+     * Give the item {@code perDay} movements a day over the year before {@code end}, at random
+     * times within each day and with random deltas of up to {@link #MAX_UNITS} units either
+     * way. The same seed gives the same history. Return the number of movements written.
+     */
+    public static int generateYear(Context context, long itemId, int perDay, long end,
+                                   long seed) {
+        Random random = new Random(seed);
+        ItemDbHelper helper = new ItemDbHelper(context);
+        try {
+            SQLiteDatabase db = helper.getWritableDatabase();
+            SQLiteStatement insert = db.compileStatement("INSERT INTO "
+                    + MovementEntry.TABLE_NAME + " (" + MovementEntry.COLUMN_ITEM_ID + ", "
+                    + MovementEntry.COLUMN_DELTA + ", " + MovementEntry.COLUMN_TIME + ", "
+                    + MovementEntry.COLUMN_REASON + ") VALUES (?, ?, ?, ?)");
+            int count = 0;
+            db.beginTransaction();
+            try {
+                for (long day = end - YEAR_MILLIS; day < end; day += ItemDbHelper.MILLIS_PER_DAY) {
+                    for (int i = 0; i < perDay; i++) {
+                        int delta = random.nextBoolean()
+                                ? random.nextInt(MAX_UNITS) + 1 : -random.nextInt(MAX_UNITS) - 1;
+                        insert.bindLong(1, itemId);
+                        insert.bindLong(2, delta);
+                        insert.bindLong(3, day + (long) (random.nextDouble()
+                                * ItemDbHelper.MILLIS_PER_DAY));
+                        insert.bindString(4, delta > 0
+                                ? MovementEntry.REASON_RESTOCK : MovementEntry.REASON_SALE);
+                        insert.executeInsert();
+                        count++;
+                    }
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+                insert.close();
+            }
+            return count;
+        } finally {
+            helper.close();
+        }
+    }
+}
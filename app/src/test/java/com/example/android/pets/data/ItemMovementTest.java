@@ -0,0 +1,240 @@
+package com.example.android.pets.data;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.net.Uri;
+import android.os.Bundle;
+
+import com.example.android.pets.data.ItemContract.ItemEntry;
+import com.example.android.pets.data.ItemContract.MovementEntry;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Checks that quantity changes are recorded as movements and totalled per hour and per day.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class ItemMovementTest {
+
+    private static final long HOUR = ItemDbHelper.MILLIS_PER_HOUR;
+    private static final long DAY = ItemDbHelper.MILLIS_PER_DAY;
+
+    /** Start of a UTC day, well after the epoch */
+    private static final long DAY_START = 17000 * DAY;
+
+    private ContentResolver mResolver;
+    private long mId;
+
+    @Before
+    public void setUp() {
+        mResolver = ItemTestData.createProvider();
+        mId = ContentUris.parseId(mResolver.insert(ItemEntry.CONTENT_URI,
+                ItemTestData.newItem("Notebook", 5)));
+    }
+
+    @Test
+    public void adjustmentsAreRecordedWithDefaultReasons() {
+        adjust(mId, -3, null);
+        adjust(mId, 4, null);
+        adjust(mId, -1, "damaged");
+
+        assertEquals(Arrays.asList(
+                "-3 " + MovementEntry.REASON_SALE,
+                "4 " + MovementEntry.REASON_RESTOCK,
+                "-1 damaged"), movements(mId));
+    }
+
+    @Test
+    public void refusedAdjustmentsAreNotRecorded() {
+        adjust(mId, -6, null);
+
+        long otherId = ContentUris.parseId(mResolver.insert(ItemEntry.CONTENT_URI,
+                ItemTestData.newItem("Pen", 1)));
+        Bundle extras = new Bundle();
+        extras.putLongArray(ItemContract.EXTRA_IDS, new long[] { mId, otherId });
+        extras.putIntArray(ItemContract.EXTRA_DELTAS, new int[] { -2, -2 });
+        mResolver.call(ItemEntry.CONTENT_URI, ItemContract.METHOD_ADJUST_QUANTITIES, null,
+                extras);
+
+        assertEquals(0, movements(mId).size());
+        assertEquals(0, movements(otherId).size());
+    }
+
+    @Test
+    public void settingQuantityRecordsTheDifference() {
+        setQuantity(ItemEntry.buildItemUri(mId), 9);
+        setQuantity(ItemEntry.buildItemUri(mId), 9);
+        setQuantity(ItemEntry.buildItemUri(mId).buildUpon()
+                .appendQueryParameter(ItemContract.QUERY_PARAMETER_REASON, "stock count")
+                .build(), 7);
+
+        assertEquals(Arrays.asList(
+                "4 " + MovementEntry.REASON_ADJUSTMENT,
+                "-2 stock count"), movements(mId));
+    }
+
+    @Test
+    public void rollupsTotalMovementsPerBucket() {
+        insertMovements(mId,
+                DAY_START + HOUR + 5 * 60 * 1000, 5,
+                DAY_START + HOUR + 50 * 60 * 1000, -2,
+                DAY_START + 2 * HOUR, -3,
+                DAY_START + DAY + 1, 7);
+
+        assertEquals(Arrays.asList(
+                rollupRow(DAY_START + HOUR, 5, 2),
+                rollupRow(DAY_START + 2 * HOUR, 0, 3),
+                rollupRow(DAY_START + DAY, 7, 0)),
+                rollup(mId, ItemContract.BUCKET_HOUR, 0));
+        assertEquals(Arrays.asList(
+                rollupRow(DAY_START, 5, 5),
+                rollupRow(DAY_START + DAY, 7, 0)),
+                rollup(mId, ItemContract.BUCKET_DAY, 0));
+    }
+
+    @Test
+    public void rollupStartsAtBucketHoldingSince() {
+        insertMovements(mId,
+                DAY_START + HOUR, 5,
+                DAY_START + 3 * HOUR, -1);
+
+        assertEquals(Arrays.asList(rollupRow(DAY_START + 3 * HOUR, 0, 1)),
+                rollup(mId, ItemContract.BUCKET_HOUR, DAY_START + 3 * HOUR + 30 * 60 * 1000));
+        assertEquals(Arrays.asList(rollupRow(DAY_START, 5, 1)),
+                rollup(mId, ItemContract.BUCKET_DAY, DAY_START + 3 * HOUR));
+    }
+
+    @Test
+    public void rollupsFollowAdjustments() {
+        adjust(mId, -3, null);
+        adjust(mId, 4, null);
+        adjust(mId, -1, null);
+
+        long unitsIn = 0;
+        long unitsOut = 0;
+        for (String row : rollup(mId, ItemContract.BUCKET_DAY, 0)) {
+            String[] columns = row.split(" ");
+            unitsIn += Long.parseLong(columns[1]);
+            unitsOut += Long.parseLong(columns[2]);
+        }
+        assertEquals(4, unitsIn);
+        assertEquals(4, unitsOut);
+    }
+
+    @Test
+    public void deletingItemRemovesItsHistory() {
+        adjust(mId, -3, null);
+        insertMovements(mId, DAY_START, 2);
+        mResolver.delete(ItemEntry.buildItemUri(mId), null, null);
+
+        assertEquals(0, movements(mId).size());
+        assertEquals(0, rollup(mId, ItemContract.BUCKET_HOUR, 0).size());
+        assertEquals(0, rollup(mId, ItemContract.BUCKET_DAY, 0).size());
+    }
+
+    @Test
+    public void invalidRollupParametersAreRejected() {
+        assertRejected(MovementEntry.buildRollupUri(mId, "week", 0));
+        assertRejected(MovementEntry.buildRollupUri(mId, ItemContract.BUCKET_DAY, -1));
+    }
+
+    private void adjust(long id, int delta, String reason) {
+        Bundle extras = new Bundle();
+        extras.putLong(ItemContract.EXTRA_ID, id);
+        extras.putInt(ItemContract.EXTRA_DELTA, delta);
+        if (reason != null) {
+            extras.putString(ItemContract.EXTRA_REASON, reason);
+        }
+        mResolver.call(ItemEntry.CONTENT_URI, ItemContract.METHOD_ADJUST_QUANTITY, null, extras);
+    }
+
+    private void setQuantity(Uri uri, int quantity) {
+        ContentValues values = new ContentValues();
+        values.put(ItemEntry.COLUMN_ITEM_QUANTITY, quantity);
+        mResolver.update(uri, values, null, null);
+    }
+
+    /**
+     * Insert movements at chosen times straight into the database, given as pairs of time and
+     * delta, since the provider always records the current time.
+     */
+    private static void insertMovements(long itemId, long... timesAndDeltas) {
+        ItemDbHelper helper = new ItemDbHelper(RuntimeEnvironment.application);
+        try {
+            SQLiteDatabase db = helper.getWritableDatabase();
+            for (int i = 0; i < timesAndDeltas.length; i += 2) {
+                ContentValues values = new ContentValues();
+                values.put(MovementEntry.COLUMN_ITEM_ID, itemId);
+                values.put(MovementEntry.COLUMN_TIME, timesAndDeltas[i]);
+                values.put(MovementEntry.COLUMN_DELTA, timesAndDeltas[i + 1]);
+                values.put(MovementEntry.COLUMN_REASON, MovementEntry.REASON_ADJUSTMENT);
+                db.insertOrThrow(MovementEntry.TABLE_NAME, null, values);
+            }
+        } finally {
+            helper.close();
+        }
+    }
+
+    /**
+     * Return the movements of the item, oldest first, as "delta reason".
+     */
+    private List<String> movements(long itemId) {
+        Cursor cursor = mResolver.query(MovementEntry.buildMovementsUri(itemId), new String[] {
+                MovementEntry.COLUMN_DELTA, MovementEntry.COLUMN_REASON }, null, null, null);
+        List<String> movements = new ArrayList<>();
+        try {
+            while (cursor.moveToNext()) {
+                movements.add(cursor.getLong(0) + " " + cursor.getString(1));
+            }
+        } finally {
+            cursor.close();
+        }
+        // The URI lists the newest movement first
+        Collections.reverse(movements);
+        return movements;
+    }
+
+    /**
+     * Return the rollup rows of the item as "bucket_start units_in units_out".
+     */
+    private List<String> rollup(long itemId, String bucket, long since) {
+        Cursor cursor = mResolver.query(MovementEntry.buildRollupUri(itemId, bucket, since),
+                MovementEntry.ROLLUP_PROJECTION, null, null, null);
+        List<String> rows = new ArrayList<>();
+        try {
+            while (cursor.moveToNext()) {
+                rows.add(rollupRow(cursor.getLong(0), cursor.getLong(1), cursor.getLong(2)));
+            }
+        } finally {
+            cursor.close();
+        }
+        return rows;
+    }
+
+    private static String rollupRow(long bucketStart, long unitsIn, long unitsOut) {
+        return bucketStart + " " + unitsIn + " " + unitsOut;
+    }
+
+    private void assertRejected(Uri uri) {
+        try {
+            mResolver.query(uri, null, null, null, null).close();
+            fail("Expected " + uri + " to be rejected");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+}
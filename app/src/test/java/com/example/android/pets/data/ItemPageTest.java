@@ -0,0 +1,209 @@
+package com.example.android.pets.data;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.database.Cursor;
+import android.net.Uri;
+
+import com.example.android.pets.data.ItemContract.ItemEntry;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+@RunWith(RobolectricTestRunner.class)
+public class ItemPageTest {
+
+    /** Items in the table; names and quantities repeat so pages end inside runs of ties */
+    private static final int ITEM_COUNT = 23;
+
+    private static final int PAGE_SIZE = 5;
+
+    private ContentResolver mResolver;
+
+    /** The items in the table, in insertion order */
+    private final List<Row> mRows = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        mResolver = ItemTestData.createProvider();
+        for (int i = 0; i < ITEM_COUNT; i++) {
+            // Insert out of name order, so name order and ID order differ
+            String name = "Item " + (ITEM_COUNT - i) % 5;
+            int quantity = i % 4;
+            long id = ContentUris.parseId(mResolver.insert(ItemEntry.CONTENT_URI,
+                    ItemTestData.newItem(name, quantity)));
+            mRows.add(new Row(id, name, quantity));
+        }
+    }
+
+    @Test
+    public void pagesByIdCoverEveryItemOnce() {
+        assertEquals(expectedIds(new Comparator<Row>() {
+            @Override
+            public int compare(Row a, Row b) {
+                return compareIds(a, b);
+            }
+        }), walk(ItemEntry.buildPageUri(ItemContract.SORT_BY_ID, PAGE_SIZE), null, null));
+    }
+
+    @Test
+    public void pagesByNameCoverEveryItemOnce() {
+        assertEquals(expectedIds(new Comparator<Row>() {
+            @Override
+            public int compare(Row a, Row b) {
+                int order = a.name.compareTo(b.name);
+                return order != 0 ? order : compareIds(a, b);
+            }
+        }), walk(ItemEntry.buildPageUri(ItemContract.SORT_BY_NAME, PAGE_SIZE), null, null));
+    }
+
+    @Test
+    public void pagesByQuantityCoverEveryItemOnce() {
+        assertEquals(expectedIds(new Comparator<Row>() {
+            @Override
+            public int compare(Row a, Row b) {
+                int order = a.quantity < b.quantity ? -1 : (a.quantity == b.quantity ? 0 : 1);
+                return order != 0 ? order : compareIds(a, b);
+            }
+        }), walk(ItemEntry.buildPageUri(ItemContract.SORT_BY_QUANTITY, PAGE_SIZE), null, null));
+    }
+
+    @Test
+    public void pageSizeDividingItemCountEndsWithEmptyPage() {
+        // A page as large as the table is full, so it still hands out a next page URI
+        Uri uri = ItemEntry.buildPageUri(ItemContract.SORT_BY_ID, ITEM_COUNT);
+        Cursor first = mResolver.query(uri, null, null, null, null);
+        String next;
+        try {
+            assertEquals(ITEM_COUNT, first.getCount());
+            next = first.getExtras().getString(ItemContract.EXTRA_NEXT_PAGE_URI);
+        } finally {
+            first.close();
+        }
+
+        Cursor last = mResolver.query(Uri.parse(next), null, null, null, null);
+        try {
+            assertEquals(0, last.getCount());
+            assertNull(last.getExtras().getString(ItemContract.EXTRA_NEXT_PAGE_URI));
+        } finally {
+            last.close();
+        }
+    }
+
+    @Test
+    public void pagesHonorCallerSelection() {
+        List<Long> expected = new ArrayList<>();
+        for (Row row : mRows) {
+            if (row.quantity >= 2) {
+                expected.add(row.id);
+            }
+        }
+        assertEquals(expected, walk(ItemEntry.buildPageUri(ItemContract.SORT_BY_ID, PAGE_SIZE),
+                ItemEntry.COLUMN_ITEM_QUANTITY + " >= ?", new String[] { "2" }));
+    }
+
+    @Test
+    public void pagesLeaveOutDeletedItems() {
+        Row deleted = mRows.remove(7);
+        mResolver.delete(ItemEntry.buildItemUri(deleted.id), null, null);
+
+        List<Long> ids = walk(ItemEntry.buildPageUri(ItemContract.SORT_BY_NAME, PAGE_SIZE),
+                null, null);
+        assertEquals(ITEM_COUNT - 1, ids.size());
+        assertFalse(ids.contains(deleted.id));
+    }
+
+    @Test
+    public void invalidPageParametersAreRejected() {
+        assertRejected(ItemEntry.buildPageUri("price", PAGE_SIZE));
+        assertRejected(ItemEntry.buildPageUri(ItemContract.SORT_BY_ID, 0));
+        assertRejected(ItemEntry.CONTENT_PAGE_URI.buildUpon()
+                .appendQueryParameter(ItemContract.QUERY_PARAMETER_LIMIT, "many")
+                .build());
+        assertRejected(ItemEntry.buildPageUri(ItemContract.SORT_BY_ID, PAGE_SIZE).buildUpon()
+                .appendQueryParameter(ItemContract.QUERY_PARAMETER_AFTER_ID, "last")
+                .build());
+        // Paging by name needs the name of the last row as well as its _id
+        assertRejected(ItemEntry.buildPageUri(ItemContract.SORT_BY_NAME, PAGE_SIZE).buildUpon()
+                .appendQueryParameter(ItemContract.QUERY_PARAMETER_AFTER_ID, "3")
+                .build());
+        assertRejected(ItemEntry.buildPageUri(ItemContract.SORT_BY_QUANTITY, PAGE_SIZE)
+                .buildUpon()
+                .appendQueryParameter(ItemContract.QUERY_PARAMETER_AFTER_ID, "3")
+                .appendQueryParameter(ItemContract.QUERY_PARAMETER_AFTER_VALUE, "some")
+                .build());
+    }
+
+    /**
+     * Follow the next page URIs from the given page until the last one. Return the IDs of every
+     * row read, in order, checking that no page holds more than {@link #PAGE_SIZE} rows.
+     */
+    private List<Long> walk(Uri uri, String selection, String[] selectionArgs) {
+        List<Long> ids = new ArrayList<>();
+        int pages = 0;
+        while (uri != null) {
+            assertTrue("Paging doesn't end", ++pages <= ITEM_COUNT + 1);
+            Cursor cursor = mResolver.query(uri, new String[] { ItemEntry._ID }, selection,
+                    selectionArgs, null);
+            try {
+                assertTrue(cursor.getCount() <= PAGE_SIZE);
+                int idColumn = cursor.getColumnIndexOrThrow(ItemEntry._ID);
+                while (cursor.moveToNext()) {
+                    ids.add(cursor.getLong(idColumn));
+                }
+                String next = cursor.getExtras().getString(ItemContract.EXTRA_NEXT_PAGE_URI);
+                uri = next != null ? Uri.parse(next) : null;
+            } finally {
+                cursor.close();
+            }
+        }
+        return ids;
+    }
+
+    private List<Long> expectedIds(Comparator<Row> order) {
+        List<Row> rows = new ArrayList<>(mRows);
+        Collections.sort(rows, order);
+        List<Long> ids = new ArrayList<>();
+        for (Row row : rows) {
+            ids.add(row.id);
+        }
+        return ids;
+    }
+
+    private static int compareIds(Row a, Row b) {
+        return a.id < b.id ? -1 : (a.id == b.id ? 0 : 1);
+    }
+
+    private void assertRejected(Uri uri) {
+        try {
+            mResolver.query(uri, null, null, null, null).close();
+            fail("Expected " + uri + " to be rejected");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    private static final class Row {
+        final long id;
+        final String name;
+        final int quantity;
+
+        Row(long id, String name, int quantity) {
+            this.id = id;
+            this.name = name;
+            this.quantity = quantity;
+        }
+    }
+}
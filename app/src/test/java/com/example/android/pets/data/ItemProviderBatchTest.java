@@ -0,0 +1,145 @@
+package com.example.android.pets.data;
+
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.ContentValues;
+
+import com.example.android.pets.data.ItemContract.ItemEntry;
+import com.example.android.pets.data.ItemContract.SupplierEntry;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.fail;
+
+@RunWith(RobolectricTestRunner.class)
+public class ItemProviderBatchTest {
+
+    private ContentResolver mResolver;
+
+    @Before
+    public void setUp() {
+        mResolver = ItemTestData.createProvider();
+    }
+
+    @Test
+    public void bulkInsertInsertsEveryRow() {
+        ContentValues[] rows = new ContentValues[100];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = ItemTestData.newItem("Item " + i, i);
+        }
+
+        assertEquals(100, mResolver.bulkInsert(ItemEntry.CONTENT_URI, rows));
+        assertEquals(100, ItemTestData.count(mResolver, ItemEntry.CONTENT_URI));
+    }
+
+    @Test
+    public void bulkInsertWithInvalidRowInsertsNothing() {
+        ContentValues invalid = ItemTestData.newItem("Broken", 1);
+        invalid.remove(ItemEntry.COLUMN_ITEM_NAME);
+        ContentValues[] rows = {
+                ItemTestData.newItem("First", 1),
+                invalid,
+                ItemTestData.newItem("Last", 1)
+        };
+
+        try {
+            mResolver.bulkInsert(ItemEntry.CONTENT_URI, rows);
+            fail("Expected the invalid row to be rejected");
+        } catch (IllegalArgumentException expected) {
+        }
+        assertEquals(0, ItemTestData.count(mResolver, ItemEntry.CONTENT_URI));
+    }
+
+    @Test
+    public void applyBatchAppliesEveryOperation() throws Exception {
+        long id = ContentUris.parseId(mResolver.insert(ItemEntry.CONTENT_URI,
+                ItemTestData.newItem("Existing", 1)));
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>();
+        operations.add(ContentProviderOperation.newInsert(ItemEntry.CONTENT_URI)
+                .withValues(ItemTestData.newItem("New", 2))
+                .build());
+        operations.add(ContentProviderOperation.newUpdate(ItemEntry.buildItemUri(id))
+                .withValue(ItemEntry.COLUMN_ITEM_QUANTITY, 7)
+                .build());
+
+        ContentProviderResult[] results =
+                mResolver.applyBatch(ItemContract.CONTENT_AUTHORITY, operations);
+
+        assertEquals(2, results.length);
+        assertNotNull(results[0].uri);
+        assertEquals(Integer.valueOf(1), results[1].count);
+        assertEquals(2, ItemTestData.count(mResolver, ItemEntry.CONTENT_URI));
+        assertEquals(7, ItemTestData.queryLong(mResolver, ItemEntry.buildItemUri(id),
+                ItemEntry.COLUMN_ITEM_QUANTITY));
+    }
+
+    @Test
+    public void applyBatchRollsBackEveryOperationOnFailure() throws Exception {
+        long id = ContentUris.parseId(mResolver.insert(ItemEntry.CONTENT_URI,
+                ItemTestData.newItem("Existing", 1)));
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>();
+        operations.add(ContentProviderOperation.newInsert(ItemEntry.CONTENT_URI)
+                .withValues(ItemTestData.newItem("New", 2))
+                .build());
+        operations.add(ContentProviderOperation.newUpdate(ItemEntry.buildItemUri(id))
+                .withValue(ItemEntry.COLUMN_ITEM_QUANTITY, 7)
+                .build());
+        operations.add(ContentProviderOperation.newUpdate(ItemEntry.buildItemUri(id))
+                .withValue(ItemEntry.COLUMN_ITEM_QUANTITY, -1)
+                .build());
+
+        try {
+            mResolver.applyBatch(ItemContract.CONTENT_AUTHORITY, operations);
+            fail("Expected the negative quantity to be rejected");
+        } catch (IllegalArgumentException expected) {
+        }
+        assertEquals(1, ItemTestData.count(mResolver, ItemEntry.CONTENT_URI));
+        assertEquals(1, ItemTestData.queryLong(mResolver, ItemEntry.buildItemUri(id),
+                ItemEntry.COLUMN_ITEM_QUANTITY));
+    }
+
+    @Test
+    public void writesLeaveTheCallersValuesAlone() {
+        ContentValues item = ItemTestData.newItem("Pen", 199, 3, "Ink Co", "+1 (800) 555-0100");
+        ContentValues itemCopy = new ContentValues(item);
+        long id = ContentUris.parseId(mResolver.insert(ItemEntry.CONTENT_URI, item));
+        assertEquals(itemCopy, item);
+
+        ContentValues update = new ContentValues();
+        update.put(ItemEntry.COLUMN_ITEM_QUANTITY, 5);
+        update.put(ItemEntry.COLUMN_ITEM_SUPPLIER_NAME, "Paper Co");
+        update.put(ItemEntry.COLUMN_ITEM_SUPPLIER_PHONE, "+1 (800) 555-0199");
+        ContentValues updateCopy = new ContentValues(update);
+        assertEquals(1, mResolver.update(ItemEntry.buildItemUri(id), update, null, null));
+        assertEquals(updateCopy, update);
+
+        ContentValues[] rows = {
+                ItemTestData.newItem("Ink", 150, 4, "Ink Co", "+1 (800) 555-0100"),
+                ItemTestData.newItem("Paper", 10)
+        };
+        ContentValues[] rowCopies = { new ContentValues(rows[0]), new ContentValues(rows[1]) };
+        assertEquals(2, mResolver.bulkInsert(ItemEntry.CONTENT_URI, rows));
+        assertEquals(rowCopies[0], rows[0]);
+        assertEquals(rowCopies[1], rows[1]);
+
+        ContentValues supplier = new ContentValues();
+        supplier.put(SupplierEntry.COLUMN_SUPPLIER_NAME, "Glue Co");
+        supplier.put(SupplierEntry.COLUMN_SUPPLIER_PHONE, "+1 (800) 555-0142");
+        ContentValues supplierCopy = new ContentValues(supplier);
+        long supplierId = ContentUris.parseId(mResolver.insert(SupplierEntry.CONTENT_URI,
+                supplier));
+        assertEquals(supplierCopy, supplier);
+        assertEquals(1, mResolver.update(SupplierEntry.buildSupplierUri(supplierId), supplier,
+                null, null));
+        assertEquals(supplierCopy, supplier);
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.android.pets.data;
+
+import android.content.ContentProviderOperation;
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.net.Uri;
+
+import com.example.android.pets.data.ItemContract.ItemEntry;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Checks that single item lookups, which are served from the cache, never return a stale or
+ * uncommitted row.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class ItemProviderCacheTest {
+
+    private ContentResolver mResolver;
+    private Uri mItemUri;
+
+    @Before
+    public void setUp() {
+        mResolver = ItemTestData.createProvider();
+        mItemUri = ItemEntry.buildItemUri(ContentUris.parseId(mResolver.insert(
+                ItemEntry.CONTENT_URI, ItemTestData.newItem("Notebook", 30))));
+        // Cache the row
+        assertEquals(30, quantity());
+    }
+
+    @Test
+    public void lookupAfterUpdateReturnsNewRow() {
+        ContentValues values = new ContentValues();
+        values.put(ItemEntry.COLUMN_ITEM_QUANTITY, 12);
+        mResolver.update(mItemUri, values, null, null);
+        assertEquals(12, quantity());
+    }
+
+    @Test
+    public void lookupAfterDeleteReturnsNothing() {
+        mResolver.delete(mItemUri, null, null);
+        assertEquals(0, ItemTestData.count(mResolver, mItemUri));
+    }
+
+    @Test
+    public void rolledBackBatchLeavesNoTrace() throws Exception {
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>();
+        operations.add(ContentProviderOperation.newUpdate(mItemUri)
+                .withValue(ItemEntry.COLUMN_ITEM_QUANTITY, 5)
+                .build());
+        // Reading the item inside the batch sees the uncommitted update
+        operations.add(ContentProviderOperation.newAssertQuery(mItemUri)
+                .withValue(ItemEntry.COLUMN_ITEM_QUANTITY, 5)
+                .build());
+        operations.add(ContentProviderOperation.newInsert(ItemEntry.CONTENT_URI)
+                .withValue(ItemEntry.COLUMN_ITEM_NAME, "Missing everything else")
+                .build());
+        try {
+            mResolver.applyBatch(ItemContract.CONTENT_AUTHORITY, operations);
+            fail("Expected the incomplete insert to be rejected");
+        } catch (IllegalArgumentException expected) {
+        }
+        assertEquals(30, quantity());
+    }
+
+    private long quantity() {
+        return ItemTestData.queryLong(mResolver, mItemUri, ItemEntry.COLUMN_ITEM_QUANTITY);
+    }
+}
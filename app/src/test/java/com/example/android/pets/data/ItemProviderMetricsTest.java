@@ -0,0 +1,117 @@
+package com.example.android.pets.data;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.database.Cursor;
+import android.os.Bundle;
+
+import com.example.android.pets.data.ItemContract.ItemEntry;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+public class ItemProviderMetricsTest {
+
+    private ItemProvider mProvider;
+    private ContentResolver mResolver;
+
+    @Before
+    public void setUp() {
+        mProvider = Robolectric.buildContentProvider(ItemProvider.class)
+                .create(ItemContract.CONTENT_AUTHORITY).get();
+        mResolver = RuntimeEnvironment.application.getContentResolver();
+    }
+
+    @Test
+    public void writesAreCountedWithTheirRows() {
+        insert("Pen", 3);
+        insert("Ink", 4);
+        mResolver.delete(ItemEntry.CONTENT_URI, null, null);
+
+        Bundle metrics = getMetrics();
+        assertEquals(2, metrics.getLong("insert/items/count"));
+        assertEquals(2, metrics.getLong("insert/items/rows"));
+        assertEquals(1, metrics.getLong("delete/items/count"));
+        assertEquals(2, metrics.getLong("delete/items/rows"));
+        assertTrue(metrics.getLong("insert/items/p99Micros")
+                >= metrics.getLong("insert/items/p50Micros"));
+        assertTrue(metrics.getLong("databaseWait/count") > 0);
+    }
+
+    @Test
+    public void queryRowsAreTheRowsRead() {
+        for (int i = 0; i < 5; i++) {
+            insert("Item " + i, i);
+        }
+
+        Cursor cursor = mResolver.query(ItemEntry.CONTENT_URI, null, null, null, null);
+        assertTrue(cursor.moveToNext());
+        assertTrue(cursor.moveToNext());
+        assertTrue(cursor.moveToFirst());
+        // Not counted until the cursor is closed
+        assertEquals(0, getMetrics().getLong("query/items/rows"));
+        cursor.close();
+        cursor.close();
+
+        mResolver.query(ItemEntry.CONTENT_URI, null, null, null, null).close();
+
+        Bundle metrics = getMetrics();
+        assertEquals(2, metrics.getLong("query/items/count"));
+        assertEquals(2, metrics.getLong("query/items/rows"));
+    }
+
+    @Test
+    public void providerMethodsAreCounted() {
+        long id = insert("Pen", 3);
+        Bundle extras = new Bundle();
+        extras.putLong(ItemContract.EXTRA_ID, id);
+        extras.putInt(ItemContract.EXTRA_DELTA, -1);
+        mResolver.call(ItemEntry.CONTENT_URI, ItemContract.METHOD_ADJUST_QUANTITY, null, extras);
+        mResolver.call(ItemEntry.CONTENT_URI, ItemContract.METHOD_ADJUST_QUANTITY, null, extras);
+
+        Bundle metrics = getMetrics();
+        assertEquals(2, metrics.getLong("call/" + ItemContract.METHOD_ADJUST_QUANTITY + "/count"));
+        assertEquals(2, metrics.getLong("call/" + ItemContract.METHOD_ADJUST_QUANTITY + "/rows"));
+        assertFalse(metrics.containsKey("call/" + ItemContract.METHOD_COMPACT + "/count"));
+    }
+
+    @Test
+    public void dumpListsRecordedCalls() {
+        insert("Pen", 3);
+        Cursor cursor = mResolver.query(ItemEntry.CONTENT_URI, null, null, null, null);
+        assertTrue(cursor.moveToFirst());
+        cursor.close();
+        getMetrics();
+
+        StringWriter out = new StringWriter();
+        PrintWriter writer = new PrintWriter(out);
+        mProvider.dump(null, writer, new String[0]);
+        writer.flush();
+        String dump = out.toString();
+        assertTrue(dump, dump.contains("insert items: count=1 rows=1"));
+        assertTrue(dump, dump.contains("query items: count=1 rows=1"));
+        assertTrue(dump, dump.contains("call " + ItemContract.METHOD_GET_METRICS + ": count=1"));
+        assertTrue(dump, dump.contains("Item cache: hits="));
+    }
+
+    private long insert(String name, int quantity) {
+        return ContentUris.parseId(mResolver.insert(ItemEntry.CONTENT_URI,
+                ItemTestData.newItem(name, quantity)));
+    }
+
+    private Bundle getMetrics() {
+        return mResolver.call(ItemEntry.CONTENT_URI, ItemContract.METHOD_GET_METRICS, null, null);
+    }
+}
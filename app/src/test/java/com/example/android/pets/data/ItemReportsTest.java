@@ -0,0 +1,175 @@
+package com.example.android.pets.data;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.database.Cursor;
+import android.net.Uri;
+
+import com.example.android.pets.data.ItemContract.ItemEntry;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+public class ItemReportsTest {
+
+    private ContentResolver mResolver;
+
+    @Before
+    public void setUp() {
+        mResolver = ItemTestData.createProvider();
+        insert("Notebook", 199, 30, "Tree Killers");
+        insert("Pencil", 50, 4, "Tree Killers");
+        insert("Pen", 120, 2, "Ink Co");
+        long deleted = insert("Eraser", 75, 1, "Ink Co");
+        mResolver.delete(ItemEntry.buildItemUri(deleted), null, null);
+    }
+
+    @Test
+    public void statsSummarizeLiveItems() {
+        Cursor cursor = mResolver.query(ItemEntry.CONTENT_STATS_URI, null, null, null, null);
+        try {
+            assertEquals(1, cursor.getCount());
+            assertTrue(cursor.moveToFirst());
+            assertEquals(3, getLong(cursor, ItemEntry.COLUMN_ITEM_COUNT));
+            assertEquals(36, getLong(cursor, ItemEntry.COLUMN_TOTAL_QUANTITY));
+            assertEquals(199 * 30 + 50 * 4 + 120 * 2,
+                    getLong(cursor, ItemEntry.COLUMN_TOTAL_VALUE));
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Test
+    public void statsOfEmptyTableAreZero() {
+        mResolver.delete(ItemEntry.CONTENT_URI, null, null);
+        Cursor cursor = mResolver.query(ItemEntry.CONTENT_STATS_URI, null, null, null, null);
+        try {
+            assertTrue(cursor.moveToFirst());
+            assertEquals(0, getLong(cursor, ItemEntry.COLUMN_ITEM_COUNT));
+            assertEquals(0, getLong(cursor, ItemEntry.COLUMN_TOTAL_QUANTITY));
+            assertEquals(0, getLong(cursor, ItemEntry.COLUMN_TOTAL_VALUE));
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Test
+    public void bySupplierSummarizesEachSupplier() {
+        Cursor cursor = mResolver.query(ItemEntry.CONTENT_BY_SUPPLIER_URI, null, null, null,
+                null);
+        try {
+            assertEquals(2, cursor.getCount());
+            assertTrue(cursor.moveToNext());
+            assertEquals("Ink Co", cursor.getString(
+                    cursor.getColumnIndexOrThrow(ItemEntry.COLUMN_ITEM_SUPPLIER_NAME)));
+            assertEquals(1, getLong(cursor, ItemEntry.COLUMN_ITEM_COUNT));
+            assertEquals(2, getLong(cursor, ItemEntry.COLUMN_TOTAL_QUANTITY));
+            assertEquals(240, getLong(cursor, ItemEntry.COLUMN_TOTAL_VALUE));
+            assertTrue(cursor.moveToNext());
+            assertEquals("Tree Killers", cursor.getString(
+                    cursor.getColumnIndexOrThrow(ItemEntry.COLUMN_ITEM_SUPPLIER_NAME)));
+            assertEquals(2, getLong(cursor, ItemEntry.COLUMN_ITEM_COUNT));
+            assertEquals(34, getLong(cursor, ItemEntry.COLUMN_TOTAL_QUANTITY));
+            assertEquals(199 * 30 + 50 * 4, getLong(cursor, ItemEntry.COLUMN_TOTAL_VALUE));
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Test
+    public void bySupplierAppliesProjectionSelectionAndSortOrder() {
+        Cursor cursor = mResolver.query(ItemEntry.CONTENT_BY_SUPPLIER_URI, new String[] {
+                        ItemEntry.COLUMN_ITEM_SUPPLIER_NAME, ItemEntry.COLUMN_TOTAL_QUANTITY },
+                ItemEntry.COLUMN_ITEM_COUNT + " >= ?", new String[] { "1" },
+                ItemEntry.COLUMN_TOTAL_QUANTITY + " DESC");
+        try {
+            assertEquals(2, cursor.getColumnCount());
+            assertEquals(2, cursor.getCount());
+            assertTrue(cursor.moveToNext());
+            assertEquals("Tree Killers", cursor.getString(0));
+            assertEquals(34, cursor.getLong(1));
+            assertTrue(cursor.moveToNext());
+            assertEquals("Ink Co", cursor.getString(0));
+        } finally {
+            cursor.close();
+        }
+
+        cursor = mResolver.query(ItemEntry.CONTENT_BY_SUPPLIER_URI, null,
+                ItemEntry.COLUMN_ITEM_COUNT + " >= ?", new String[] { "2" }, null);
+        try {
+            assertEquals(1, cursor.getCount());
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Test
+    public void statsApplyProjection() {
+        Cursor cursor = mResolver.query(ItemEntry.CONTENT_STATS_URI,
+                new String[] { ItemEntry.COLUMN_TOTAL_VALUE }, null, null, null);
+        try {
+            assertEquals(1, cursor.getColumnCount());
+            assertTrue(cursor.moveToFirst());
+            assertEquals(199 * 30 + 50 * 4 + 120 * 2, cursor.getLong(0));
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Test
+    public void lowStockUsesDefaultThreshold() {
+        assertEquals(Arrays.asList("Pen", "Pencil"), names(ItemEntry.CONTENT_LOW_STOCK_URI));
+    }
+
+    @Test
+    public void lowStockUsesGivenThreshold() {
+        Uri uri = ItemEntry.CONTENT_LOW_STOCK_URI.buildUpon()
+                .appendQueryParameter(ItemContract.QUERY_PARAMETER_THRESHOLD, "2")
+                .build();
+        assertEquals(Arrays.asList("Pen"), names(uri));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void lowStockRejectsInvalidThreshold() {
+        Uri uri = ItemEntry.CONTENT_LOW_STOCK_URI.buildUpon()
+                .appendQueryParameter(ItemContract.QUERY_PARAMETER_THRESHOLD, "few")
+                .build();
+        names(uri);
+    }
+
+    private long insert(String name, long priceCents, int quantity, String supplierName) {
+        return ContentUris.parseId(mResolver.insert(ItemEntry.CONTENT_URI,
+                ItemTestData.newItem(name, priceCents, quantity, supplierName, "18001234567")));
+    }
+
+    private static long getLong(Cursor cursor, String column) {
+        return cursor.getLong(cursor.getColumnIndexOrThrow(column));
+    }
+
+    /**
+     * Return the names of the items the URI returns, in order.
+     */
+    private List<String> names(Uri uri) {
+        Cursor cursor = mResolver.query(uri, new String[] { ItemEntry.COLUMN_ITEM_NAME }, null,
+                null, null);
+        List<String> names = new ArrayList<>();
+        try {
+            while (cursor.moveToNext()) {
+                names.add(cursor.getString(0));
+            }
+        } finally {
+            cursor.close();
+        }
+        return names;
+    }
+}
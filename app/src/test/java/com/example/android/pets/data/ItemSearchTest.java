@@ -0,0 +1,96 @@
+package com.example.android.pets.data;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.database.Cursor;
+
+import com.example.android.pets.data.ItemContract.ItemEntry;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+@RunWith(RobolectricTestRunner.class)
+public class ItemSearchTest {
+
+    private ContentResolver mResolver;
+
+    @Before
+    public void setUp() {
+        mResolver = ItemTestData.createProvider();
+        insert("Spiral notebook", "Paper Mill");
+        insert("Notebook cover", "Leather Works");
+        insert("Blue pen", "Ink Co");
+        insert("Red pen", "Ink Co");
+    }
+
+    @Test
+    public void searchMatchesNamePrefixes() {
+        assertEquals(Arrays.asList("Notebook cover", "Spiral notebook"), search("note"));
+    }
+
+    @Test
+    public void searchMatchesSupplierNames() {
+        assertEquals(Arrays.asList("Blue pen", "Red pen"), search("ink"));
+    }
+
+    @Test
+    public void searchRequiresEveryWord() {
+        assertEquals(Arrays.asList("Blue pen"), search("pen blu"));
+    }
+
+    @Test
+    public void searchRanksNamesStartingWithTheFirstWordFirst() {
+        assertEquals("Notebook cover", search("notebook").get(0));
+    }
+
+    @Test
+    public void searchIgnoresQuerySyntax() {
+        assertEquals(Arrays.asList("Blue pen"), search("\"blue\" (pen*"));
+        assertEquals(0, search("*\"-").size());
+    }
+
+    @Test
+    public void searchFollowsUpdatesAndDeletes() {
+        long id = insert("Stapler", "Office Goods");
+        ContentValues values = new ContentValues();
+        values.put(ItemEntry.COLUMN_ITEM_NAME, "Hole punch");
+        mResolver.update(ItemEntry.buildItemUri(id), values, null, null);
+
+        assertEquals(0, search("stapler").size());
+        assertEquals(Arrays.asList("Hole punch"), search("hole"));
+
+        mResolver.delete(ItemEntry.buildItemUri(id), null, null);
+        assertEquals(0, search("hole").size());
+    }
+
+    private long insert(String name, String supplierName) {
+        return ContentUris.parseId(mResolver.insert(ItemEntry.CONTENT_URI,
+                ItemTestData.newItem(name, 199, 1, supplierName, "18001234567")));
+    }
+
+    /**
+     * Return the names of the items the search URI returns, in order.
+     */
+    private List<String> search(String query) {
+        Cursor cursor = mResolver.query(ItemEntry.buildSearchUri(query),
+                new String[] { ItemEntry.COLUMN_ITEM_NAME }, null, null, null);
+        List<String> names = new ArrayList<>();
+        try {
+            while (cursor.moveToNext()) {
+                names.add(cursor.getString(0));
+            }
+        } finally {
+            cursor.close();
+        }
+        return names;
+    }
+}
@@ -0,0 +1,170 @@
+package com.example.android.pets.data;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.MatrixCursor;
+
+import com.example.android.pets.data.ItemContract.ItemEntry;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+public class ItemSnapshotTest {
+
+    /** Offset of the database schema version in the snapshot header */
+    private static final int SCHEMA_VERSION_OFFSET = 8;
+
+    /** Longest time to wait for the background writer */
+    private static final long WRITE_TIMEOUT_MILLIS = 5000;
+
+    /**
+     * Makes the rows of each snapshot differ from the last one saved, since identical rows are
+     * not written again
+     */
+    private static int sSaveCount;
+
+    private Context mContext;
+    private File mFile;
+
+    @Before
+    public void setUp() {
+        mContext = RuntimeEnvironment.application;
+        mFile = new File(mContext.getCacheDir(), ItemSnapshot.FILE_NAME);
+        mFile.delete();
+    }
+
+    @Test
+    public void readWithoutSnapshotReturnsNull() {
+        assertNull(ItemSnapshot.read(mContext));
+    }
+
+    @Test
+    public void savedRowsAreReadBack() throws Exception {
+        String tag = nextTag();
+        MatrixCursor rows = new MatrixCursor(ItemEntry.LIST_PROJECTION);
+        rows.addRow(new Object[] { 3L, "Notebook " + tag, 250L, 12 });
+        rows.addRow(new Object[] { 9L, "Cr\u00e8me br\u00fbl\u00e9e torch", 1999L, 0 });
+        rows.moveToPosition(1);
+        saveAndWait(rows);
+        assertEquals(1, rows.getPosition());
+
+        Cursor cursor = ItemSnapshot.read(mContext);
+        assertNotNull(cursor);
+        try {
+            assertEquals(2, cursor.getCount());
+            assertTrue(cursor.moveToFirst());
+            assertEquals(3, cursor.getLong(cursor.getColumnIndexOrThrow(ItemEntry._ID)));
+            assertEquals("Notebook " + tag,
+                    cursor.getString(cursor.getColumnIndexOrThrow(ItemEntry.COLUMN_ITEM_NAME)));
+            assertEquals(250,
+                    cursor.getLong(cursor.getColumnIndexOrThrow(ItemEntry.COLUMN_ITEM_PRICE)));
+            assertEquals(12,
+                    cursor.getInt(cursor.getColumnIndexOrThrow(ItemEntry.COLUMN_ITEM_QUANTITY)));
+            assertTrue(cursor.moveToNext());
+            assertEquals("Cr\u00e8me br\u00fbl\u00e9e torch",
+                    cursor.getString(cursor.getColumnIndexOrThrow(ItemEntry.COLUMN_ITEM_NAME)));
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Test
+    public void saveKeepsOnlyFirstRows() throws Exception {
+        saveAndWait(newRows(ItemSnapshot.MAX_ROWS + 10));
+
+        Cursor cursor = ItemSnapshot.read(mContext);
+        assertNotNull(cursor);
+        try {
+            assertEquals(ItemSnapshot.MAX_ROWS, cursor.getCount());
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Test
+    public void snapshotWithFlippedByteIsDeleted() throws Exception {
+        saveAndWait(newRows(5));
+        RandomAccessFile file = new RandomAccessFile(mFile, "rw");
+        try {
+            // Flip a bit in the last name, which only the checksum can notice
+            long last = file.length() - 1;
+            file.seek(last);
+            int b = file.read();
+            file.seek(last);
+            file.write(b ^ 0x01);
+        } finally {
+            file.close();
+        }
+
+        assertNull(ItemSnapshot.read(mContext));
+        assertFalse(mFile.exists());
+    }
+
+    @Test
+    public void truncatedSnapshotIsDeleted() throws Exception {
+        saveAndWait(newRows(5));
+        RandomAccessFile file = new RandomAccessFile(mFile, "rw");
+        try {
+            file.setLength(file.length() - 3);
+        } finally {
+            file.close();
+        }
+
+        assertNull(ItemSnapshot.read(mContext));
+        assertFalse(mFile.exists());
+    }
+
+    @Test
+    public void snapshotFromOtherSchemaVersionIsDeleted() throws Exception {
+        saveAndWait(newRows(5));
+        RandomAccessFile file = new RandomAccessFile(mFile, "rw");
+        try {
+            file.seek(SCHEMA_VERSION_OFFSET);
+            file.writeInt(ItemDbHelper.DATABASE_VERSION - 1);
+        } finally {
+            file.close();
+        }
+
+        assertNull(ItemSnapshot.read(mContext));
+        assertFalse(mFile.exists());
+    }
+
+    /**
+     * Save a snapshot of the rows and wait until the background writer has renamed it into
+     * place.
+     */
+    private void saveAndWait(Cursor rows) throws InterruptedException {
+        ItemSnapshot.save(mContext, rows);
+        long deadline = System.currentTimeMillis() + WRITE_TIMEOUT_MILLIS;
+        while (!mFile.exists()) {
+            assertTrue("Snapshot not written", System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    private static Cursor newRows(int count) {
+        String tag = nextTag();
+        MatrixCursor rows = new MatrixCursor(ItemEntry.LIST_PROJECTION);
+        for (int i = 0; i < count; i++) {
+            rows.addRow(new Object[] { (long) i + 1, "Item " + i + " " + tag, 199L, i });
+        }
+        return rows;
+    }
+
+    private static synchronized String nextTag() {
+        return String.valueOf(++sSaveCount);
+    }
+}
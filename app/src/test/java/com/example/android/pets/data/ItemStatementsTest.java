@@ -0,0 +1,222 @@
+package com.example.android.pets.data;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import com.example.android.pets.data.ItemContract.ItemEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+@RunWith(RobolectricTestRunner.class)
+public class ItemStatementsTest {
+
+    private ItemDbHelper mHelper;
+    private SQLiteDatabase mDatabase;
+    private ItemStatements mStatements;
+
+    @Before
+    public void setUp() {
+        mHelper = new ItemDbHelper(RuntimeEnvironment.application);
+        mDatabase = mHelper.getWritableDatabase();
+        mStatements = new ItemStatements();
+    }
+
+    @After
+    public void tearDown() {
+        mHelper.close();
+    }
+
+    @Test
+    public void updateShapeNeedsOnlyItemColumns() {
+        ContentValues values = new ContentValues();
+        assertEquals(-1, ItemStatements.updateShape(values));
+
+        values.put(ItemEntry.COLUMN_ITEM_QUANTITY, 3);
+        int quantityOnly = ItemStatements.updateShape(values);
+        assertTrue(quantityOnly >= 0);
+
+        values.put(ItemEntry.COLUMN_ITEM_NAME, "Pen");
+        int nameAndQuantity = ItemStatements.updateShape(values);
+        assertTrue(nameAndQuantity >= 0);
+        assertTrue(nameAndQuantity != quantityOnly);
+
+        values.put(ItemEntry.COLUMN_ITEM_SUPPLIER_NAME, "Ink Co");
+        assertEquals(-1, ItemStatements.updateShape(values));
+    }
+
+    @Test
+    public void insertShapeNeedsEveryItemColumn() {
+        ContentValues values = new ContentValues();
+        values.put(ItemEntry.COLUMN_ITEM_NAME, "Pen");
+        values.put(ItemEntry.COLUMN_ITEM_PRICE, 199);
+        values.put(ItemEntry.COLUMN_ITEM_QUANTITY, 3);
+        assertFalse(ItemStatements.isInsertShape(values));
+
+        values.put(ItemEntry.COLUMN_ITEM_SUPPLIER_ID, 1);
+        assertTrue(ItemStatements.isInsertShape(values));
+    }
+
+    @Test
+    public void acquireReusesStatementOnSameThread() {
+        SQLiteStatement first = mStatements.acquire(mDatabase, ItemStatements.INSERT);
+        assertSame(first, mStatements.acquire(mDatabase, ItemStatements.INSERT));
+        assertNotSame(first, mStatements.acquire(mDatabase, ItemStatements.DELETE_BY_ID));
+    }
+
+    @Test
+    public void acquireGivesEachThreadItsOwnStatement() throws Exception {
+        SQLiteStatement mine = mStatements.acquire(mDatabase, ItemStatements.INSERT);
+        final SQLiteStatement[] theirs = new SQLiteStatement[1];
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                theirs[0] = mStatements.acquire(mDatabase, ItemStatements.INSERT);
+            }
+        });
+        thread.start();
+        thread.join();
+        assertNotSame(mine, theirs[0]);
+    }
+
+    @Test
+    public void acquireRecompilesForReopenedDatabase() {
+        SQLiteStatement first = mStatements.acquire(mDatabase, ItemStatements.INSERT);
+        mHelper.close();
+        mDatabase = mHelper.getWritableDatabase();
+        assertNotSame(first, mStatements.acquire(mDatabase, ItemStatements.INSERT));
+    }
+
+    @Test
+    public void acquireRecompilesAfterClose() {
+        SQLiteStatement first = mStatements.acquire(mDatabase, ItemStatements.INSERT);
+        mStatements.close();
+        assertNotSame(first, mStatements.acquire(mDatabase, ItemStatements.INSERT));
+    }
+
+    @Test
+    public void statementsOfEndedThreadsAreClosed() throws Exception {
+        final SQLiteStatement[] theirs = new SQLiteStatement[1];
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                theirs[0] = mStatements.acquire(mDatabase, ItemStatements.DELETE_BY_ID);
+            }
+        });
+        thread.start();
+        thread.join();
+
+        // Compiling this thread's first statement closes those of the ended thread
+        mStatements.acquire(mDatabase, ItemStatements.INSERT);
+        theirs[0].bindLong(1, 1);
+        try {
+            theirs[0].executeUpdateDelete();
+            fail("Statement of an ended thread is still open");
+        } catch (IllegalStateException expected) {
+        }
+    }
+
+    @Test
+    public void updateStatementChangesOnlyGivenColumns() {
+        long id = insertItem("Pen", 199, 3);
+        ContentValues values = new ContentValues();
+        values.put(ItemEntry.COLUMN_ITEM_QUANTITY, 8);
+        values.put(ItemEntry.COLUMN_ITEM_NAME, "Blue pen");
+        int shape = ItemStatements.updateShape(values);
+
+        SQLiteStatement statement = mStatements.acquire(mDatabase, shape);
+        ItemStatements.bindUpdate(statement, shape, values, id);
+        assertEquals(1, statement.executeUpdateDelete());
+
+        Cursor cursor = mDatabase.query(ItemEntry.TABLE_NAME, new String[] {
+                ItemEntry.COLUMN_ITEM_NAME, ItemEntry.COLUMN_ITEM_PRICE,
+                ItemEntry.COLUMN_ITEM_QUANTITY }, ItemEntry._ID + " = " + id, null, null, null,
+                null);
+        try {
+            assertTrue(cursor.moveToFirst());
+            assertEquals("Blue pen", cursor.getString(0));
+            assertEquals(199, cursor.getLong(1));
+            assertEquals(8, cursor.getLong(2));
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Test
+    public void adjustStatementKeepsQuantityFromGoingNegative() {
+        long id = insertItem("Pen", 199, 3);
+        SQLiteStatement statement = mStatements.acquire(mDatabase, ItemStatements.ADJUST_QUANTITY);
+        statement.bindLong(1, -2);
+        statement.bindLong(2, id);
+        assertEquals(1, statement.executeUpdateDelete());
+
+        statement = mStatements.acquire(mDatabase, ItemStatements.ADJUST_QUANTITY);
+        statement.bindLong(1, -2);
+        statement.bindLong(2, id);
+        assertEquals(0, statement.executeUpdateDelete());
+
+        assertEquals(1, quantityOf(id));
+    }
+
+    @Test
+    public void softDeletedItemIsNotUpdated() {
+        long id = insertItem("Pen", 199, 3);
+        SQLiteStatement delete = mStatements.acquire(mDatabase,
+                ItemStatements.SOFT_DELETE_BY_ID);
+        delete.bindLong(1, id);
+        assertEquals(1, delete.executeUpdateDelete());
+
+        ContentValues values = new ContentValues();
+        values.put(ItemEntry.COLUMN_ITEM_QUANTITY, 8);
+        int shape = ItemStatements.updateShape(values);
+        SQLiteStatement update = mStatements.acquire(mDatabase, shape);
+        ItemStatements.bindUpdate(update, shape, values, id);
+        assertEquals(0, update.executeUpdateDelete());
+        assertEquals(3, quantityOf(id));
+    }
+
+    /**
+     * Insert an item and its supplier through the statements. Return the item's _id.
+     */
+    private long insertItem(String name, long priceCents, int quantity) {
+        SQLiteStatement supplier = mStatements.acquire(mDatabase,
+                ItemStatements.INSERT_SUPPLIER);
+        supplier.bindString(1, "Supplier of " + name);
+        supplier.bindString(2, "18001234567");
+        long supplierId = supplier.executeInsert();
+
+        SQLiteStatement item = mStatements.acquire(mDatabase, ItemStatements.INSERT);
+        item.bindString(1, name);
+        item.bindLong(2, priceCents);
+        item.bindLong(3, quantity);
+        item.bindLong(4, supplierId);
+        long id = item.executeInsert();
+        assertTrue(id > 0);
+        return id;
+    }
+
+    private long quantityOf(long id) {
+        Cursor cursor = mDatabase.query(ItemEntry.TABLE_NAME,
+                new String[] { ItemEntry.COLUMN_ITEM_QUANTITY },
+                ItemEntry._ID + " = " + id, null, null, null, null);
+        try {
+            assertTrue(cursor.moveToFirst());
+            return cursor.getLong(0);
+        } finally {
+            cursor.close();
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.android.pets.data;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.net.Uri;
+
+import com.example.android.pets.data.ItemContract.ItemEntry;
+
+import org.robolectric.Robolectric;
+import org.robolectric.RuntimeEnvironment;
+
+/**
+ * Shared setup for tests that go through {@link ItemProvider}.
+ */
+final class ItemTestData {
+
+    private ItemTestData() {}
+
+    /**
+     * Create a provider backed by a fresh database and return the resolver that reaches it.
+     */
+    static ContentResolver createProvider() {
+        Robolectric.buildContentProvider(ItemProvider.class)
+                .create(ItemContract.CONTENT_AUTHORITY);
+        return RuntimeEnvironment.application.getContentResolver();
+    }
+
+    /**
+     * Return the values of a valid item.
+     */
+    static ContentValues newItem(String name, long priceCents, int quantity,
+                                 String supplierName, String supplierPhone) {
+        ContentValues values = new ContentValues();
+        values.put(ItemEntry.COLUMN_ITEM_NAME, name);
+        values.put(ItemEntry.COLUMN_ITEM_PRICE, priceCents);
+        values.put(ItemEntry.COLUMN_ITEM_QUANTITY, quantity);
+        values.put(ItemEntry.COLUMN_ITEM_SUPPLIER_NAME, supplierName);
+        values.put(ItemEntry.COLUMN_ITEM_SUPPLIER_PHONE, supplierPhone);
+        return values;
+    }
+
+    /**
+     * Return the values of a valid item with the given name from a default supplier.
+     */
+    static ContentValues newItem(String name, int quantity) {
+        return newItem(name, 199, quantity, "Tree Killers", "18001234567");
+    }
+
+    /**
+     * Return the number of rows the URI returns.
+     */
+    static int count(ContentResolver resolver, Uri uri) {
+        Cursor cursor = resolver.query(uri, null, null, null, null);
+        try {
+            return cursor.getCount();
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Return the long value of the column in the single row the URI returns.
+     */
+    static long queryLong(ContentResolver resolver, Uri uri, String column) {
+        Cursor cursor = resolver.query(uri, new String[] { column }, null, null, null);
+        try {
+            if (!cursor.moveToFirst()) {
+                throw new AssertionError("No row at " + uri);
+            }
+            return cursor.getLong(0);
+        } finally {
+            cursor.close();
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.example.android.pets.data;
+
+import android.content.ContentValues;
+
+import com.example.android.pets.data.ItemContract.ItemEntry;
+import com.example.android.pets.data.ItemContract.SupplierEntry;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+@RunWith(RobolectricTestRunner.class)
+public class ItemValidatorTest {
+
+    @Test
+    public void validItemHasNoViolations() {
+        assertEquals(0, ItemValidator.ITEMS.check(ItemTestData.newItem("Pen", 5), true));
+    }
+
+    @Test
+    public void missingColumnsAreViolationsOnlyWhenRequired() {
+        ContentValues values = new ContentValues();
+        values.put(ItemEntry.COLUMN_ITEM_QUANTITY, 3);
+
+        assertEquals(0, ItemValidator.ITEMS.check(values, false));
+        assertEquals(maskOf(ItemValidator.ITEMS, ItemEntry.COLUMN_ITEM_NAME,
+                ItemEntry.COLUMN_ITEM_PRICE, ItemEntry.COLUMN_ITEM_SUPPLIER_NAME,
+                ItemEntry.COLUMN_ITEM_SUPPLIER_PHONE), ItemValidator.ITEMS.check(values, true));
+    }
+
+    @Test
+    public void everyBrokenRuleIsInTheMask() {
+        ContentValues values = ItemTestData.newItem("", 199, -1, "Tree Killers", "no digits");
+
+        assertEquals(maskOf(ItemValidator.ITEMS, ItemEntry.COLUMN_ITEM_NAME,
+                ItemEntry.COLUMN_ITEM_QUANTITY, ItemEntry.COLUMN_ITEM_SUPPLIER_PHONE),
+                ItemValidator.ITEMS.check(values, true));
+    }
+
+    @Test
+    public void nullValueBreaksRuleEvenWhenNotRequired() {
+        ContentValues values = new ContentValues();
+        values.putNull(ItemEntry.COLUMN_ITEM_NAME);
+
+        assertEquals(maskOf(ItemValidator.ITEMS, ItemEntry.COLUMN_ITEM_NAME),
+                ItemValidator.ITEMS.check(values, false));
+    }
+
+    @Test
+    public void fractionalAndTextNumbersAreRefused() {
+        ContentValues values = new ContentValues();
+        values.put(ItemEntry.COLUMN_ITEM_PRICE, 1.99);
+        values.put(ItemEntry.COLUMN_ITEM_QUANTITY, "3");
+
+        assertEquals(maskOf(ItemValidator.ITEMS, ItemEntry.COLUMN_ITEM_PRICE,
+                ItemEntry.COLUMN_ITEM_QUANTITY), ItemValidator.ITEMS.check(values, false));
+    }
+
+    @Test
+    public void zeroIsAWholeNumber() {
+        ContentValues values = new ContentValues();
+        values.put(ItemEntry.COLUMN_ITEM_PRICE, 0L);
+        values.put(ItemEntry.COLUMN_ITEM_QUANTITY, 0);
+
+        assertEquals(0, ItemValidator.ITEMS.check(values, false));
+    }
+
+    @Test
+    public void phoneIsNormalizedInTheValues() {
+        ContentValues values = new ContentValues();
+        values.put(SupplierEntry.COLUMN_SUPPLIER_NAME, "Tree Killers");
+        values.put(SupplierEntry.COLUMN_SUPPLIER_PHONE, "+1 (800) 123-4567");
+
+        assertEquals(0, ItemValidator.SUPPLIERS.check(values, true));
+        assertEquals("+18001234567", values.getAsString(SupplierEntry.COLUMN_SUPPLIER_PHONE));
+    }
+
+    @Test
+    public void normalizedPhoneIsKeptAsIs() {
+        String phone = "18001234567";
+        Object[] fields = { "Tree Killers", phone };
+
+        assertEquals(0, ItemValidator.SUPPLIERS.check(fields));
+        assertSame(phone, fields[1]);
+    }
+
+    @Test
+    public void fieldsAreCheckedInColumnOrder() {
+        Object[] fields = { "Pen", 199L, 3, "Tree Killers", "1-800-123-4567" };
+
+        assertEquals(0, ItemValidator.ITEMS.check(fields));
+        assertEquals("18001234567", fields[4]);
+
+        fields = new Object[] { "Pen", null, 3, "", "1-800-123-4567" };
+        assertEquals(maskOf(ItemValidator.ITEMS, ItemEntry.COLUMN_ITEM_PRICE,
+                ItemEntry.COLUMN_ITEM_SUPPLIER_NAME), ItemValidator.ITEMS.check(fields));
+    }
+
+    @Test
+    public void describeJoinsMessagesOfBrokenRules() {
+        assertEquals("", ItemValidator.ITEMS.describe(0));
+        assertEquals("Item requires a name; Item requires a quantity amount",
+                ItemValidator.ITEMS.describe(maskOf(ItemValidator.ITEMS,
+                        ItemEntry.COLUMN_ITEM_NAME, ItemEntry.COLUMN_ITEM_QUANTITY)));
+    }
+
+    @Test
+    public void checkOrThrowDescribesEveryBrokenRule() {
+        ContentValues values = new ContentValues();
+        values.put(SupplierEntry.COLUMN_SUPPLIER_NAME, "");
+        values.put(SupplierEntry.COLUMN_SUPPLIER_PHONE, "()");
+        try {
+            ItemValidator.SUPPLIERS.checkOrThrow(values, false);
+            fail("Expected the supplier to be rejected");
+        } catch (IllegalArgumentException e) {
+            assertEquals("Supplier requires a name; Supplier requires a phone number",
+                    e.getMessage());
+        }
+    }
+
+    @Test
+    public void checkInsertDescribesBrokenRulesWithoutChangingTheValues() {
+        ContentValues values = ItemTestData.newItem("", 199, 3, "Ink Co", "+1 (800) 555-0100");
+        ContentValues copy = new ContentValues(values);
+
+        assertEquals("Item requires a name", ItemWriteQueue.checkInsert(values));
+        assertEquals(copy, values);
+        assertNull(ItemWriteQueue.checkInsert(ItemTestData.newItem("Pen", 3)));
+    }
+
+    /**
+     * Return the mask with the bits of the given columns set.
+     */
+    private static int maskOf(ItemValidator validator, String... columns) {
+        String[] checked = validator.getColumns();
+        int mask = 0;
+        for (String column : columns) {
+            int bit = -1;
+            for (int i = 0; i < checked.length; i++) {
+                if (checked[i].equals(column)) {
+                    bit = i;
+                }
+            }
+            if (bit < 0) {
+                throw new AssertionError(column + " isn't checked");
+            }
+            mask |= 1 << bit;
+        }
+        return mask;
+    }
+}
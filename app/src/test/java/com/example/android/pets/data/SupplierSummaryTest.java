@@ -0,0 +1,129 @@
+package com.example.android.pets.data;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Bundle;
+
+import com.example.android.pets.data.ItemContract.ItemEntry;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks that the per-supplier totals kept by triggers always match the totals computed from
+ * the items table.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class SupplierSummaryTest {
+
+    private ContentResolver mResolver;
+    private long mNotebookId;
+    private long mPenId;
+
+    @Before
+    public void setUp() {
+        mResolver = ItemTestData.createProvider();
+        mNotebookId = insert("Notebook", 199, 30, "Tree Killers");
+        insert("Pencil", 50, 4, "Tree Killers");
+        mPenId = insert("Pen", 120, 2, "Ink Co");
+    }
+
+    @Test
+    public void summaryFollowsInserts() {
+        assertSummaryMatchesItems();
+        ContentValues[] rows = {
+                ItemTestData.newItem("Stapler", 899, 3, "Office Goods", "18005550100"),
+                ItemTestData.newItem("Ink", 300, 10, "Ink Co", "18001234567")
+        };
+        mResolver.bulkInsert(ItemEntry.CONTENT_URI, rows);
+        assertSummaryMatchesItems();
+    }
+
+    @Test
+    public void summaryFollowsPriceAndQuantityChanges() {
+        ContentValues values = new ContentValues();
+        values.put(ItemEntry.COLUMN_ITEM_PRICE, 249);
+        values.put(ItemEntry.COLUMN_ITEM_QUANTITY, 12);
+        mResolver.update(ItemEntry.buildItemUri(mNotebookId), values, null, null);
+        assertSummaryMatchesItems();
+
+        Bundle extras = new Bundle();
+        extras.putLong(ItemContract.EXTRA_ID, mPenId);
+        extras.putInt(ItemContract.EXTRA_DELTA, -2);
+        mResolver.call(ItemEntry.CONTENT_URI, ItemContract.METHOD_ADJUST_QUANTITY, null, extras);
+        assertSummaryMatchesItems();
+    }
+
+    @Test
+    public void summaryFollowsItemsMovingToAnotherSupplier() {
+        ContentValues values = new ContentValues();
+        values.put(ItemEntry.COLUMN_ITEM_SUPPLIER_NAME, "Ink Co");
+        values.put(ItemEntry.COLUMN_ITEM_SUPPLIER_PHONE, "18001234567");
+        mResolver.update(ItemEntry.buildItemUri(mNotebookId), values, null, null);
+        assertSummaryMatchesItems();
+    }
+
+    @Test
+    public void summaryFollowsDeletes() {
+        Bundle extras = new Bundle();
+        extras.putLongArray(ItemContract.EXTRA_IDS, new long[] { mNotebookId });
+        extras.putBoolean(ItemContract.EXTRA_SOFT_DELETE, true);
+        mResolver.call(ItemEntry.CONTENT_URI, ItemContract.METHOD_DELETE_ITEMS, null, extras);
+        assertSummaryMatchesItems();
+
+        mResolver.delete(ItemEntry.buildItemUri(mPenId), null, null);
+        assertSummaryMatchesItems();
+
+        mResolver.delete(ItemEntry.CONTENT_URI, null, null);
+        assertEquals(0, summary(ItemEntry.CONTENT_SUPPLIER_SUMMARY_URI).size());
+    }
+
+    @Test
+    public void rebuildGivesTheSameSummary() {
+        List<String> maintained = summary(ItemEntry.CONTENT_SUPPLIER_SUMMARY_URI);
+        mResolver.call(ItemEntry.CONTENT_URI, ItemContract.METHOD_REBUILD_SUPPLIER_SUMMARY, null,
+                null);
+        assertEquals(maintained, summary(ItemEntry.CONTENT_SUPPLIER_SUMMARY_URI));
+    }
+
+    private long insert(String name, long priceCents, int quantity, String supplierName) {
+        return ContentUris.parseId(mResolver.insert(ItemEntry.CONTENT_URI,
+                ItemTestData.newItem(name, priceCents, quantity, supplierName, "18001234567")));
+    }
+
+    private void assertSummaryMatchesItems() {
+        assertEquals(summary(ItemEntry.CONTENT_BY_SUPPLIER_URI),
+                summary(ItemEntry.CONTENT_SUPPLIER_SUMMARY_URI));
+    }
+
+    /**
+     * Return the summary rows the URI returns, ordered by supplier name, one string per row.
+     */
+    private List<String> summary(Uri uri) {
+        Cursor cursor = mResolver.query(uri, null, null, null, null);
+        List<String> rows = new ArrayList<>();
+        try {
+            int name = cursor.getColumnIndexOrThrow(ItemEntry.COLUMN_ITEM_SUPPLIER_NAME);
+            int count = cursor.getColumnIndexOrThrow(ItemEntry.COLUMN_ITEM_COUNT);
+            int quantity = cursor.getColumnIndexOrThrow(ItemEntry.COLUMN_TOTAL_QUANTITY);
+            int value = cursor.getColumnIndexOrThrow(ItemEntry.COLUMN_TOTAL_VALUE);
+            while (cursor.moveToNext()) {
+                rows.add(cursor.getString(name) + ": " + cursor.getLong(count) + " items, "
+                        + cursor.getLong(quantity) + " in stock worth " + cursor.getLong(value));
+            }
+        } finally {
+            cursor.close();
+        }
+        return rows;
+    }
+}